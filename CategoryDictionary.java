@@ -0,0 +1,145 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps category names to dense int ids, so a store, its indexes and the
+ * {@link Expense} objects it hands out hold the same canonical String for a
+ * category and category filters compare ints instead of strings. Each store
+ * has its own dictionary unless it is given one to share, so one tracker's
+ * categories never show up in another's counts or files.
+ *
+ * <p>Lookups take no lock: names are found in a ConcurrentHashMap and ids
+ * resolved through an array published with a volatile write. Only adding a
+ * new category synchronizes, and ids are never reused or removed.</p>
+ *
+ * <p>A dictionary can ignore case, in which case "food" and "FOOD" map to
+ * the id of whichever spelling was added first, and that spelling becomes
+ * the canonical name. Dictionaries made with {@link #CategoryDictionary()}
+ * do this when the {@code expense.ignoreCategoryCase} system property is
+ * true. Only the canonical spelling and its lower-case key are stored, so
+ * looking up other spellings never grows the dictionary.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class CategoryDictionary {
+
+    private static final boolean IGNORE_CASE = Boolean.getBoolean("expense.ignoreCategoryCase");
+
+    private final boolean ignoreCase;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16]; // Canonical name of each id
+    private volatile int size;
+
+    /**
+     * Constructs an empty dictionary that ignores case if the
+     * {@code expense.ignoreCategoryCase} system property is true.
+     */
+    public CategoryDictionary() {
+        this(IGNORE_CASE);
+    }
+
+    /**
+     * Constructs an empty dictionary.
+     *
+     * @param ignoreCase True to treat names that differ only in case as the same category.
+     */
+    public CategoryDictionary(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Returns whether names that differ only in case share an id.
+     *
+     * @return True if case is ignored.
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Returns the id of a category without adding it.
+     *
+     * @param name The category name.
+     * @return The id, or -1 if the category is unknown.
+     */
+    public int find(String name) {
+        Integer id = ids.get(name);
+        if (id == null && ignoreCase) {
+            id = ids.get(normalize(name));
+        }
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the id of a category, adding it if it is new.
+     *
+     * @param name The category name.
+     * @return The id.
+     */
+    public int encode(String name) {
+        int id = find(name);
+        return id >= 0 ? id : add(name);
+    }
+
+    private synchronized int add(String name) {
+        int id = find(name); // Another thread may have added it since the lock-free miss
+        if (id >= 0) {
+            return id;
+        }
+        name = name.intern(); // Shared with Expense objects built outside any store
+        id = size;
+        String[] current = names;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = name;
+        names = current;
+        size = id + 1;
+        // Published last, so a reader that finds the id also sees its name
+        if (ignoreCase) {
+            ids.put(normalize(name), id);
+        }
+        ids.put(name, id);
+        return id;
+    }
+
+    /**
+     * Returns the canonical instance of a category name, adding the
+     * category if it is new.
+     *
+     * @param name The category name.
+     * @return The shared String for the category.
+     */
+    public String intern(String name) {
+        return name(encode(name));
+    }
+
+    /**
+     * Returns the canonical name of an id.
+     *
+     * @param id The category id.
+     * @return The category name.
+     */
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Category id " + id + " out of bounds for size " + size);
+        }
+        return names[id];
+    }
+
+    /**
+     * Returns the number of categories; ids run from 0 to size() - 1.
+     *
+     * @return The category count.
+     */
+    public int size() {
+        return size;
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class for CategoryDictionary to validate dense ids, interning,
+ * case-insensitive lookups, concurrent encoding and the category bitmaps
+ * built on the ids.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class CategoryDictionaryTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        // 1. Test Dense Ids and Interning
+        testInterning();
+
+        // 2. Test Case-Insensitive Dictionary
+        testIgnoreCase();
+
+        // 3. Test Concurrent Encoding
+        testConcurrentEncoding();
+
+        // 4. Test Category Bitmaps
+        testBitmaps();
+
+        // 5. Test Trackers Keep Their Own Categories
+        testSeparateTrackers();
+    }
+
+    // Test Dense Ids and Interning
+    private static void testInterning() {
+        System.out.println("\n=== Testing Dense Ids and Interning ===");
+        CategoryDictionary dictionary = new CategoryDictionary(false);
+        System.out.println("Ids: " + dictionary.encode("Food") + ", " + dictionary.encode("Rent") + ", "
+                + dictionary.encode("Food") + " (Expected: 0, 1, 0)");
+        System.out.println("Unknown: " + dictionary.find("food") + " (Expected: -1)");
+        Expense first = new Expense("2024-01-01", 1.0, new String("Books"));
+        Expense second = new Expense("2024-01-02", 2.0, new String("Books"));
+        System.out.println((first.getCategory() == second.getCategory() ? "✅" : "❌")
+                + " Expenses share one category String");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-03", 3.0, new String("Books"));
+        System.out.println((tracker.searchByCategory("Books").get(0).getCategory() == first.getCategory() ? "✅" : "❌")
+                + " Stored rows hand out the same String");
+    }
+
+    // Test Case-Insensitive Dictionary
+    private static void testIgnoreCase() {
+        System.out.println("\n=== Testing Case-Insensitive Dictionary ===");
+        CategoryDictionary dictionary = new CategoryDictionary(true);
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseStore(dictionary));
+        tracker.addExpense("2024-01-01", 10.0, "Food");
+        tracker.addExpense("2024-01-02", 20.0, "FOOD");
+        tracker.addExpense("2024-01-03", 30.0, "food");
+        tracker.addExpense("2024-01-04", 5.0, "Rent");
+        System.out.println("Categories: " + dictionary.size() + " (Expected: 2)");
+        System.out.println("Canonical name: " + dictionary.name(dictionary.find("fOoD")) + " (Expected: Food)");
+        System.out.println("fOOd total: " + tracker.getTotalByCategory("fOOd") + " (Expected: 60.0)");
+        System.out.println("FOOD rows: " + tracker.searchByCategory("FOOD").size() + " (Expected: 3)");
+        System.out.println("Stored name: " + tracker.searchByCategory("food").get(1).getCategory() + " (Expected: Food)");
+    }
+
+    // Test Concurrent Encoding
+    private static void testConcurrentEncoding() throws InterruptedException {
+        System.out.println("\n=== Testing Concurrent Encoding ===");
+        CategoryDictionary dictionary = new CategoryDictionary(true);
+        int names = 2_000;
+        AtomicInteger mismatches = new AtomicInteger();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 500;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < names; i++) {
+                    String name = "Category-" + ((i + offset) % names);
+                    int id = dictionary.encode(spelling(name, offset));
+                    if (!dictionary.name(id).equalsIgnoreCase(name) || dictionary.find(name) != id) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println("Categories: " + dictionary.size() + " (Expected: " + names + ")");
+        System.out.println((mismatches.get() == 0 ? "✅" : "❌") + " Inconsistent lookups: " + mismatches.get());
+    }
+
+    // Alternate the spelling between threads so case folding is exercised under contention
+    private static String spelling(String name, int offset) {
+        return offset % 1000 == 0 ? name : name.toUpperCase();
+    }
+
+    // Test Category Bitmaps
+    private static void testBitmaps() {
+        System.out.println("\n=== Testing Category Bitmaps ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-01", 10.0, "Food");
+        tracker.addExpense("2024-01-02", 20.0, "Rent");
+        tracker.addExpense("2024-01-03", 30.0, "Food");
+        tracker.addExpense("2024-01-04", 40.0, "Travel");
+        tracker.addExpense("2024-01-05", 50.0, "Food");
+        tracker.deleteExpense(1); // Drops the only Rent row
+        System.out.println("Rent rows: " + tracker.searchByCategory("Rent").size() + " (Expected: 0)");
+        System.out.println("Food rows: " + tracker.searchByCategory("Food") + " (Expected: 10.00, 30.00, 50.00)");
+        System.out.println("Food or Travel: " + tracker.query().inCategories("Travel", "Food").list().size()
+                + " (Expected: 4)");
+        System.out.println(tracker.getIndexReport() + " (Expected: 2 categories)");
+    }
+
+    // Test Trackers Keep Their Own Categories
+    private static void testSeparateTrackers() {
+        System.out.println("\n=== Testing Trackers Keep Their Own Categories ===");
+        ExpenseTracker first = new ExpenseTracker();
+        first.addExpense("2024-01-01", 10.0, "Food");
+        new Expense("2024-01-02", 5.0, "Standalone"); // Expenses outside any tracker register nothing
+        ExpenseTracker second = new ExpenseTracker();
+        second.addExpense("2024-01-03", 20.0, "Rent");
+        System.out.println("First: " + first.getIndexReport() + " (Expected: 1 categories)");
+        System.out.println("Second: " + second.getIndexReport() + " (Expected: 1 categories)");
+        System.out.println("Food in the second tracker: " + second.searchByCategory("Food").size() + " (Expected: 0)");
+    }
+}
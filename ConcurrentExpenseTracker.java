@@ -0,0 +1,506 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe expense tracker for ingestion threads and report threads
+ * running at the same time.
+ *
+ * <p><b>Reads</b> never lock. Every change publishes a new immutable
+ * {@link Snapshot} through a volatile field, and readers simply use the
+ * latest one. Rows live in fixed-size column segments that snapshots share:
+ * an append writes past the end that existing snapshots can see, and a delete
+ * copies only the segments from the deleted row onwards.</p>
+ *
+ * <p><b>Writes</b> are batched by flat combining. A writer queues its change
+ * and then takes the write lock; whoever holds the lock applies every queued
+ * change and publishes one snapshot for the whole batch, so under contention
+ * most writers find their change already applied.</p>
+ *
+ * <p><b>Deletes</b> remove the row at the given index in the tracker's state
+ * at the moment the delete is applied, which may differ from any snapshot
+ * the caller looked at. Callers that picked the index from a snapshot should
+ * use {@link #deleteExpense(int, long)}, which only deletes if nothing has
+ * changed since that snapshot's version.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ConcurrentExpenseTracker {
+
+    private static final int SEGMENT_SHIFT = 12;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final ConcurrentLinkedQueue<Op> queue = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final CategoryDictionary categories = new CategoryDictionary();
+    private volatile Snapshot current = new Snapshot(categories);
+
+    // Writer-side state, only touched while holding writeLock
+    private int[][] daySegments = new int[0][];
+    private long[][] centSegments = new long[0][];
+    private int[][] codeSegments = new int[0][];
+
+    /**
+     * Adds a new expense. Safe to call from any thread.
+     *
+     * @param date     The date of the expense.
+     * @param amount   The amount spent.
+     * @param category The category of the expense.
+     * @throws IllegalArgumentException if the expense is invalid.
+     */
+    public void addExpense(String date, double amount, String category) {
+        Expense expense = new Expense(date, amount, category); // Parse, validate and encode on the caller's thread
+        submit(new Op(expense.getEpochDay(), expense.getCents(), categories.encode(expense.getCategory())));
+    }
+
+    /**
+     * Deletes the expense at an index of the tracker's current state.
+     *
+     * @param index The index of the expense to delete.
+     * @return The deleted expense, or null if the index was out of range.
+     */
+    public Expense deleteExpense(int index) {
+        return submit(new Op(index, -1L)).removed;
+    }
+
+    /**
+     * Deletes the expense at an index only if the tracker is still at the
+     * given version, i.e. nothing changed since the caller's snapshot.
+     *
+     * @param index           The index of the expense to delete.
+     * @param expectedVersion The version of the snapshot the index came from.
+     * @return The deleted expense, or null if the version moved on or the index was out of range.
+     */
+    public Expense deleteExpense(int index, long expectedVersion) {
+        return submit(new Op(index, expectedVersion)).removed;
+    }
+
+    /**
+     * Returns the latest published snapshot. Never blocks.
+     *
+     * @return The current snapshot.
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Returns the total of all expenses in the current snapshot.
+     *
+     * @return The total.
+     */
+    public double getTotalExpenses() {
+        return current.getTotalExpenses();
+    }
+
+    /**
+     * Returns the total of one category in the current snapshot.
+     *
+     * @param category The category.
+     * @return The total for the category.
+     */
+    public double getTotalByCategory(String category) {
+        return current.getTotalByCategory(category);
+    }
+
+    /**
+     * Returns the expenses within a date range in the current snapshot.
+     *
+     * @param startDate The start date of the range (inclusive).
+     * @param endDate   The end date of the range (inclusive).
+     * @return The matching expenses.
+     */
+    public ArrayList<Expense> getExpensesInDateRange(String startDate, String endDate) {
+        return current.getExpensesInDateRange(startDate, endDate);
+    }
+
+    private Op submit(Op op) {
+        queue.add(op);
+        writeLock.lock();
+        try {
+            if (!op.done) {
+                applyQueued();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return op;
+    }
+
+    /**
+     * Applies every queued change and publishes a single snapshot for them.
+     */
+    private void applyQueued() {
+        Snapshot base = current;
+        int size = base.size;
+        long total = base.totalCents;
+        long[] sums = base.categorySums.clone();
+        int[] counts = base.categoryCounts.clone();
+        long version = base.version;
+        ArrayList<Op> applied = new ArrayList<>();
+
+        Op op;
+        while ((op = queue.poll()) != null) {
+            applied.add(op);
+            if (op.isAdd()) {
+                int code = op.code;
+                if (code >= sums.length) {
+                    // Every code up to the dictionary's size already has its name published
+                    sums = Arrays.copyOf(sums, categories.size());
+                    counts = Arrays.copyOf(counts, categories.size());
+                }
+                append(size++, op.day, op.cents, code);
+                total += op.cents;
+                sums[code] += op.cents;
+                counts[code]++;
+                version++;
+            } else if (op.index >= 0 && op.index < size && (op.expectedVersion < 0 || op.expectedVersion == version)) {
+                int code = codeAt(op.index);
+                op.removed = new Expense(dayAt(op.index), centsAt(op.index), categories.name(code));
+                total -= centsAt(op.index);
+                sums[code] -= centsAt(op.index);
+                counts[code]--;
+                removeAt(op.index, size--);
+                version++;
+            }
+        }
+
+        current = new Snapshot(daySegments, centSegments, codeSegments, size, categories, total, sums, counts,
+                version);
+        for (Op done : applied) {
+            done.done = true;
+        }
+    }
+
+    private void append(int row, int day, long cents, int code) {
+        int segment = row >>> SEGMENT_SHIFT;
+        if (segment == daySegments.length) {
+            int length = Math.max(4, daySegments.length * 2);
+            daySegments = Arrays.copyOf(daySegments, length);
+            centSegments = Arrays.copyOf(centSegments, length);
+            codeSegments = Arrays.copyOf(codeSegments, length);
+        }
+        // Slots (and directory entries) at or past the published size are never read by any
+        // snapshot, so they can be written in place; the next publish makes them visible.
+        if (daySegments[segment] == null) {
+            daySegments[segment] = new int[SEGMENT_SIZE];
+            centSegments[segment] = new long[SEGMENT_SIZE];
+            codeSegments[segment] = new int[SEGMENT_SIZE];
+        }
+        int offset = row & SEGMENT_MASK;
+        daySegments[segment][offset] = day;
+        centSegments[segment][offset] = cents;
+        codeSegments[segment][offset] = code;
+    }
+
+    /**
+     * Removes a row by rebuilding the segments from the row's segment onwards;
+     * segments before it are still shared with older snapshots.
+     */
+    private void removeAt(int row, int size) {
+        int first = row >>> SEGMENT_SHIFT;
+        int lastRow = size - 1;
+        int segments = daySegments.length;
+        int[][] newDays = Arrays.copyOf(daySegments, segments);
+        long[][] newCents = Arrays.copyOf(centSegments, segments);
+        int[][] newCodes = Arrays.copyOf(codeSegments, segments);
+        for (int s = first; s <= lastRow >>> SEGMENT_SHIFT; s++) {
+            newDays[s] = new int[SEGMENT_SIZE];
+            newCents[s] = new long[SEGMENT_SIZE];
+            newCodes[s] = new int[SEGMENT_SIZE];
+        }
+        for (int from = first << SEGMENT_SHIFT; from < size; from++) {
+            if (from == row) {
+                continue;
+            }
+            int to = from < row ? from : from - 1;
+            newDays[to >>> SEGMENT_SHIFT][to & SEGMENT_MASK] = dayAt(from);
+            newCents[to >>> SEGMENT_SHIFT][to & SEGMENT_MASK] = centsAt(from);
+            newCodes[to >>> SEGMENT_SHIFT][to & SEGMENT_MASK] = codeAt(from);
+        }
+        daySegments = newDays;
+        centSegments = newCents;
+        codeSegments = newCodes;
+    }
+
+    private int dayAt(int row) {
+        return daySegments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+    }
+
+    private long centsAt(int row) {
+        return centSegments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+    }
+
+    private int codeAt(int row) {
+        return codeSegments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+    }
+
+    /**
+     * A queued add or delete.
+     */
+    private static final class Op {
+        final int day;
+        final long cents;
+        final int code;
+        final int index;
+        final long expectedVersion;
+        Expense removed;
+        volatile boolean done;
+
+        Op(int day, long cents, int code) {
+            this.day = day;
+            this.cents = cents;
+            this.code = code;
+            this.index = -1;
+            this.expectedVersion = -1;
+        }
+
+        Op(int index, long expectedVersion) {
+            this.day = 0;
+            this.cents = 0;
+            this.code = -1;
+            this.index = index;
+            this.expectedVersion = expectedVersion;
+        }
+
+        boolean isAdd() {
+            return code >= 0;
+        }
+    }
+
+    /**
+     * An immutable, consistent view of the tracker at one version. Every
+     * method reads only this view, so totals and rows always agree.
+     */
+    public static final class Snapshot {
+        private final int[][] daySegments;
+        private final long[][] centSegments;
+        private final int[][] codeSegments;
+        private final int size;
+        private final CategoryDictionary categories; // Append-only; this snapshot knows codes below categorySums.length
+        private final long totalCents;
+        private final long[] categorySums;
+        private final int[] categoryCounts;
+        private final long version;
+
+        private Snapshot(CategoryDictionary categories) {
+            this(new int[0][], new long[0][], new int[0][], 0, categories, 0, new long[0], new int[0], 0);
+        }
+
+        private Snapshot(int[][] daySegments, long[][] centSegments, int[][] codeSegments, int size,
+                CategoryDictionary categories, long totalCents, long[] categorySums, int[] categoryCounts,
+                long version) {
+            this.daySegments = daySegments;
+            this.centSegments = centSegments;
+            this.codeSegments = codeSegments;
+            this.size = size;
+            this.categories = categories;
+            this.totalCents = totalCents;
+            this.categorySums = categorySums;
+            this.categoryCounts = categoryCounts;
+            this.version = version;
+        }
+
+        /**
+         * Returns the version of this snapshot; it increases with every applied change.
+         *
+         * @return The version.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the number of expenses.
+         *
+         * @return The size.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the expense at an index.
+         *
+         * @param index The index.
+         * @return The expense.
+         */
+        public Expense get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+            }
+            return new Expense(dayAt(index), centsAt(index), categories.name(codeAt(index)));
+        }
+
+        /**
+         * Returns the total of all expenses.
+         *
+         * @return The total.
+         */
+        public double getTotalExpenses() {
+            return ExpenseStore.fromCents(totalCents);
+        }
+
+        /**
+         * Returns the total of all expenses in cents.
+         *
+         * @return The total in cents.
+         */
+        public long getTotalCents() {
+            return totalCents;
+        }
+
+        /**
+         * Returns the total of one category.
+         *
+         * @param category The category.
+         * @return The total for the category.
+         */
+        public double getTotalByCategory(String category) {
+            int code = findCategory(category);
+            return code < 0 ? 0.0 : ExpenseStore.fromCents(categorySums[code]);
+        }
+
+        /**
+         * Returns the number of expenses in one category.
+         *
+         * @param category The category.
+         * @return The count.
+         */
+        public int getCountByCategory(String category) {
+            int code = findCategory(category);
+            return code < 0 ? 0 : categoryCounts[code];
+        }
+
+        /**
+         * Returns the names of every category seen so far.
+         *
+         * @return The category names, in order of first appearance.
+         */
+        public String[] getCategories() {
+            String[] names = new String[categorySums.length];
+            for (int code = 0; code < names.length; code++) {
+                names[code] = categories.name(code);
+            }
+            return names;
+        }
+
+        /**
+         * Returns the code of a category as this snapshot knows it; categories
+         * first added after the snapshot was taken are unknown to it.
+         */
+        private int findCategory(String category) {
+            int code = categories.find(category);
+            return code < categorySums.length ? code : -1;
+        }
+
+        /**
+         * Finds expenses by date.
+         *
+         * @param date The date to search for.
+         * @return List of matching expenses.
+         */
+        public ArrayList<Expense> searchByDate(String date) {
+            int day = ExpenseDates.parse(date);
+            ArrayList<Expense> result = new ArrayList<>();
+            if (day == ExpenseDates.INVALID) {
+                return result; // No stored row can match an unparseable date
+            }
+            for (int i = 0; i < size; i++) {
+                if (dayAt(i) == day) {
+                    result.add(get(i));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Finds expenses by category.
+         *
+         * @param category The category to search for.
+         * @return List of matching expenses.
+         */
+        public ArrayList<Expense> searchByCategory(String category) {
+            ArrayList<Expense> result = new ArrayList<>();
+            int code = findCategory(category);
+            if (code < 0) {
+                return result;
+            }
+            for (int i = 0; i < size; i++) {
+                if (codeAt(i) == code) {
+                    result.add(get(i));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Finds expenses by amount.
+         *
+         * @param amount The amount to search for.
+         * @return List of matching expenses.
+         */
+        public ArrayList<Expense> searchByAmount(double amount) {
+            long cents = ExpenseStore.toCents(amount);
+            ArrayList<Expense> result = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (centsAt(i) == cents) {
+                    result.add(get(i));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Retrieves all expenses within a given date range.
+         *
+         * @param startDate The start date of the range (inclusive), or null.
+         * @param endDate   The end date of the range (inclusive), or null.
+         * @return A list of expenses within the specified date range.
+         */
+        public ArrayList<Expense> getExpensesInDateRange(String startDate, String endDate) {
+            int startDay = startDate == null ? Integer.MIN_VALUE : ExpenseDates.parse(startDate);
+            int endDay = endDate == null ? Integer.MAX_VALUE : ExpenseDates.parse(endDate);
+            ArrayList<Expense> result = new ArrayList<>();
+            if ((startDate != null && startDay == ExpenseDates.INVALID) || endDay == ExpenseDates.INVALID) {
+                return result; // No stored row can fall between unparseable dates
+            }
+            for (int i = 0; i < size; i++) {
+                int day = dayAt(i);
+                if (day >= startDay && day <= endDay) {
+                    result.add(get(i));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Sums the amounts of the rows directly, for checking the running totals.
+         *
+         * @return The total in cents.
+         */
+        public long scanTotalCents() {
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                total += centsAt(i);
+            }
+            return total;
+        }
+
+        int dayAt(int row) {
+            return daySegments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+        }
+
+        long centsAt(int row) {
+            return centSegments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+        }
+
+        int codeAt(int row) {
+            return codeSegments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress test for ConcurrentExpenseTracker: writers, a deleter and readers
+ * run at the same time, and every snapshot a reader sees must be internally
+ * consistent while the final totals must match what was written.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ConcurrentExpenseTrackerTest {
+
+    private static final String[] CATEGORIES = { "Food", "Transport", "Rent", "Groceries", "Travel" };
+
+    public static void main(String[] args) throws InterruptedException {
+        // 1. Test Mixed Concurrent Load
+        testMixedLoad(4, 25_000, 3);
+
+        // 2. Test Versioned Delete
+        testVersionedDelete();
+
+        // 3. Test Lookups Match ExpenseTracker
+        testLookups();
+    }
+
+    // Test Mixed Concurrent Load
+    private static void testMixedLoad(int writers, int addsPerWriter, int readers) throws InterruptedException {
+        System.out.println("\n=== Testing Mixed Concurrent Load ===");
+        ConcurrentExpenseTracker tracker = new ConcurrentExpenseTracker();
+        AtomicLong addedCents = new AtomicLong();
+        AtomicLong deletedCents = new AtomicLong();
+        AtomicLong deletedRows = new AtomicLong();
+        AtomicLong inconsistencies = new AtomicLong();
+        AtomicLong snapshotsChecked = new AtomicLong();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < writers; w++) {
+            int seed = w;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < addsPerWriter; i++) {
+                    int cents = (seed * 7919 + i * 31) % 10_000;
+                    tracker.addExpense(String.format("2024-%02d-%02d", i % 12 + 1, i % 28 + 1), cents / 100.0,
+                            CATEGORIES[(seed + i) % CATEGORIES.length]);
+                    addedCents.addAndGet(cents);
+                }
+            }));
+        }
+        Thread deleter = new Thread(() -> {
+            await(start);
+            while (deletedRows.get() < addsPerWriter / 10) {
+                Expense removed = tracker.deleteExpense(0);
+                if (removed != null) {
+                    deletedCents.addAndGet(ExpenseStore.toCents(removed.getAmount()));
+                    deletedRows.incrementAndGet();
+                } else {
+                    Thread.yield(); // Nothing added yet
+                }
+            }
+        });
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (writing.get()) {
+                    ConcurrentExpenseTracker.Snapshot snapshot = tracker.snapshot();
+                    long byCategory = 0;
+                    for (String category : CATEGORIES) {
+                        byCategory += ExpenseStore.toCents(snapshot.getTotalByCategory(category));
+                    }
+                    if (byCategory != snapshot.getTotalCents() || snapshot.scanTotalCents() != snapshot.getTotalCents()) {
+                        inconsistencies.incrementAndGet();
+                    }
+                    snapshotsChecked.incrementAndGet();
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        deleter.start();
+        start.countDown();
+        for (int w = 0; w < writers; w++) {
+            threads.get(w).join();
+        }
+        deleter.join();
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        ConcurrentExpenseTracker.Snapshot last = tracker.snapshot();
+        long expected = addedCents.get() - deletedCents.get();
+        System.out.println("Snapshots checked by readers: " + snapshotsChecked.get());
+        System.out.println((inconsistencies.get() == 0 ? "✅" : "❌") + " Inconsistent snapshots: "
+                + inconsistencies.get() + " (Expected: 0)");
+        System.out.println((last.getTotalCents() == expected && last.scanTotalCents() == expected ? "✅" : "❌")
+                + " Final total cents: " + last.getTotalCents() + " (Expected: " + expected + ")");
+        long expectedRows = (long) writers * addsPerWriter - deletedRows.get();
+        System.out.println((last.size() == expectedRows ? "✅" : "❌") + " Final rows: " + last.size()
+                + " (Expected: " + expectedRows + ")");
+    }
+
+    // Test Versioned Delete
+    private static void testVersionedDelete() {
+        System.out.println("\n=== Testing Versioned Delete ===");
+        ConcurrentExpenseTracker tracker = new ConcurrentExpenseTracker();
+        tracker.addExpense("2024-01-01", 50.0, "Food");
+        tracker.addExpense("2024-01-02", 20.0, "Transport");
+        ConcurrentExpenseTracker.Snapshot seen = tracker.snapshot();
+        tracker.addExpense("2024-01-03", 30.0, "Food");
+        System.out.println("Stale delete: " + tracker.deleteExpense(1, seen.getVersion()) + " (Expected: null)");
+        System.out.println("Fresh delete: " + tracker.deleteExpense(1, tracker.snapshot().getVersion()));
+        System.out.println("Old snapshot still sees: " + seen.size() + " rows (Expected: 2)");
+        System.out.println("Total: $" + tracker.getTotalExpenses() + " (Expected: 80.0)");
+    }
+
+    // Test Lookups Match ExpenseTracker
+    private static void testLookups() {
+        System.out.println("\n=== Testing Lookups Match ExpenseTracker ===");
+        ConcurrentExpenseTracker tracker = new ConcurrentExpenseTracker();
+        tracker.addExpense("2024-01-01", 50.0, "Food");
+        ConcurrentExpenseTracker.Snapshot seen = tracker.snapshot();
+        tracker.addExpense("2024-01-02", 20.0, "Books");
+        ConcurrentExpenseTracker.Snapshot now = tracker.snapshot();
+        System.out.println("Bad dates: " + now.searchByDate("2024-13-01").size() + ", "
+                + now.getExpensesInDateRange("01/01/2024", "2024-12-31").size() + " (Expected: 0, 0)");
+        System.out.println("Open range: " + now.getExpensesInDateRange("2024-01-02", null) + " (Expected: 20.00)");
+        System.out.println("Older snapshot: " + seen.getCategories().length + " categories, Books total "
+                + seen.getTotalByCategory("Books") + " (Expected: 1, 0.0)");
+        System.out.println("Current snapshot: " + String.join(", ", now.getCategories()) + ", Books rows "
+                + now.searchByCategory("Books").size() + " (Expected: Food, Books, 1)");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Date-ordered index over the rows of an {@link ExpenseStore}. Rows are kept
+ * sorted by (epoch day, row id) in two parallel arrays, so any date range is
+ * located with two binary searches and returned as a contiguous slice.
+ *
+ * <p>Rows added in date order are appended directly. A row that arrives out
+ * of order only marks the index unsorted; the next lookup re-sorts it once.
+ * Removals are deferred the same way: removed rows are collected in a bitmap
+ * and dropped in one pass by the next lookup, so a run of deletes costs one
+ * sweep of the index instead of one shift per delete.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class DateIndex {
+
+    private int[] days = new int[16]; // Epoch day of each entry, ascending once sorted
+    private int[] rows = new int[16]; // Row id of each entry
+    private int size;
+    private boolean sorted = true;
+    private final BitSet removed = new BitSet(); // Rows waiting to be dropped
+    private int pendingRemovals;
+
+    /**
+     * Records a row that was just appended to the store.
+     *
+     * @param row      The row id.
+     * @param epochDay The row's date as an epoch day.
+     */
+    public void add(int row, int epochDay) {
+        if (size == days.length) {
+            int newCapacity = size + (size >> 1);
+            days = Arrays.copyOf(days, newCapacity);
+            rows = Arrays.copyOf(rows, newCapacity);
+        }
+        if (size > 0 && epochDay < days[size - 1]) {
+            sorted = false;
+        }
+        days[size] = epochDay;
+        rows[size] = row;
+        size++;
+    }
+
+    /**
+     * Forgets a row that was just deleted from the store. Other rows keep
+     * their ids; the entry itself is dropped by the next lookup.
+     *
+     * @param row      The deleted row id.
+     * @param epochDay The deleted row's date as an epoch day.
+     */
+    public void remove(int row, int epochDay) {
+        if (!removed.get(row)) {
+            removed.set(row);
+            pendingRemovals++;
+        }
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void clear() {
+        size = 0;
+        sorted = true;
+        removed.clear();
+        pendingRemovals = 0;
+    }
+
+    /**
+     * Returns the position of the first entry on or after the given day.
+     *
+     * @param epochDay The day to search for.
+     * @return The lower bound position.
+     */
+    public int lowerBound(int epochDay) {
+        prepare();
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the position just past the last entry on or before the given day.
+     *
+     * @param epochDay The day to search for.
+     * @return The upper bound position.
+     */
+    public int upperBound(int epochDay) {
+        if (epochDay == Integer.MAX_VALUE) {
+            prepare();
+            return size;
+        }
+        return lowerBound(epochDay + 1);
+    }
+
+    /**
+     * Returns the row id at a position in date order.
+     *
+     * @param pos The position in date order.
+     * @return The row id.
+     */
+    public int rowAt(int pos) {
+        return rows[pos];
+    }
+
+    /**
+     * Returns the number of indexed rows.
+     *
+     * @return The size.
+     */
+    public int size() {
+        prepare();
+        return size;
+    }
+
+    /**
+     * Drops removed rows and re-sorts the index if needed. Lookups call this
+     * themselves; calling it first lets several threads share the index.
+     */
+    public void prepare() {
+        if (pendingRemovals > 0) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                days[kept] = days[i];
+                rows[kept] = rows[i];
+                kept += removed.get(rows[i]) ? 0 : 1;
+            }
+            size = kept;
+            removed.clear();
+            pendingRemovals = 0;
+        }
+        if (sorted) {
+            return;
+        }
+        // Sort (day, row) pairs packed into longs; rows are non-negative so the
+        // low half never borrows into the day.
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) days[i] << 32) | rows[i];
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < size; i++) {
+            days[i] = (int) (keys[i] >> 32);
+            rows[i] = (int) keys[i];
+        }
+        sorted = true;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Test class for DateIndex and ExpenseRange to validate date-range lookups.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class DateIndexTest {
+
+    public static void main(String[] args) {
+        // 1. Test Out-of-Order Inserts
+        testOutOfOrder();
+
+        // 2. Test Open-Ended and Bucket Ranges
+        testRanges();
+
+        // 3. Test Removal
+        testRemove();
+    }
+
+    // Test Out-of-Order Inserts
+    private static void testOutOfOrder() {
+        System.out.println("\n=== Testing Out-of-Order Inserts ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-03-05", 10.0, "Food");
+        tracker.addExpense("2024-01-15", 20.0, "Transport");
+        tracker.addExpense("2024-02-01", 30.0, "Food");
+        tracker.addExpense("2024-01-15", 40.0, "Rent");
+        for (Expense expense : tracker.viewDateRange("2024-01-01", "2024-12-31")) {
+            System.out.println(expense);
+        }
+        System.out.println("Expected order: 2024-01-15 ($20), 2024-01-15 ($40), 2024-02-01, 2024-03-05");
+    }
+
+    // Test Open-Ended and Bucket Ranges
+    private static void testRanges() {
+        System.out.println("\n=== Testing Open-Ended and Bucket Ranges ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2023-12-31", 5.0, "Food");
+        tracker.addExpense("2024-01-01", 10.0, "Food");
+        tracker.addExpense("2024-01-31", 20.0, "Food");
+        tracker.addExpense("2024-02-01", 40.0, "Food");
+        System.out.println("From 2024-01-01: " + tracker.viewDateRange("2024-01-01", null).size() + " (Expected: 3)");
+        System.out.println("Until 2024-01-01: " + tracker.viewDateRange(null, "2024-01-01").size() + " (Expected: 2)");
+        System.out.println("January 2024: " + tracker.viewMonth(2024, 1).size() + " (Expected: 2)");
+        System.out.println("Year 2024 cents: " + tracker.viewYear(2024).sumCents() + " (Expected: 7000)");
+        System.out.println("Inverted range: " + tracker.viewDateRange("2024-02-01", "2024-01-01").size()
+                + " (Expected: 0)");
+        System.out.println("Unparseable bounds: " + tracker.viewDateRange("2024-13-01", null).size() + ", "
+                + tracker.getExpensesInDateRange("2024-01-01", "Jan 31").size() + ", "
+                + tracker.getTotalByDate("2024/01/01") + " (Expected: 0, 0, 0.0)");
+    }
+
+    // Test Removal
+    private static void testRemove() {
+        System.out.println("\n=== Testing Removal ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-03", 30.0, "Food");
+        tracker.addExpense("2024-01-01", 10.0, "Food");
+        tracker.addExpense("2024-01-02", 20.0, "Food");
+        tracker.deleteExpense(0);
+        System.out.println("Range after delete: " + tracker.getExpensesInDateRange("2024-01-01", "2024-01-31"));
+        System.out.println("Expected: 2024-01-01 ($10), 2024-01-02 ($20)");
+    }
+}
@@ -4,6 +4,13 @@ import java.util.Comparator;
 /**
  * Represents an expense entry with details about date, amount, and category.
  * Used in the Expense Tracker application to store and manage expense records.
+ *
+ * <p>The date is held as an epoch day and the amount as whole cents, parsed
+ * once in the constructor, so comparisons and sorting are integer
+ * operations. {@link #getDate()} and {@link #getAmount()} are views over
+ * those fields. The category is an interned String, the same instance a
+ * {@link CategoryDictionary} stores for that spelling, so expenses in one
+ * category share it without a process-wide dictionary holding on to it.</p>
  * 
  * @author logicthreader
  * @version 1.0
@@ -12,31 +19,54 @@ import java.util.Comparator;
 public class Expense {
 
     // Attributes
-    private final String date;      // Date of the expense (e.g., "2024-01-01")
-    private final double amount;    // Amount spent
-    private final String category;  // Category of the expense (e.g., "Food", "Transport")
+    private final int epochDay;     // Date of the expense as days since 1970-01-01
+    private final long cents;       // Amount spent in cents
+    private final String category;  // Category of the expense (e.g., "Food", "Transport"), interned
 
     /**
      * Constructs an Expense object with the specified date, amount, and category.
      *
      * @param date     The date of the expense.
-     * @param amount   The amount spent (must be non-negative).
+     * @param amount   The amount spent (must be finite and non-negative).
      * @param category The category of the expense.
-     * @throws IllegalArgumentException if date/category is null/empty or amount is negative.
+     * @throws IllegalArgumentException if date/category is null/empty, the date is not a
+     *                                  valid YYYY-MM-DD date or amount is negative, NaN or infinite.
      */
     public Expense(String date, double amount, String category) {
-        if (date == null || date.trim().isEmpty()) {
+        if (ExpenseStore.isBlank(date)) {
             throw new IllegalArgumentException("Date cannot be null or empty");
         }
+        if (!Double.isFinite(amount)) {
+            throw new IllegalArgumentException("Amount must be a finite number: " + amount);
+        }
         if (amount < 0) {
             throw new IllegalArgumentException("Amount cannot be negative");
         }
-        if (category == null || category.trim().isEmpty()) {
+        if (ExpenseStore.isBlank(category)) {
             throw new IllegalArgumentException("Category cannot be null or empty");
         }
 
-        this.date = date;
-        this.amount = amount;
+        int parsed = ExpenseDates.parse(date);
+        if (parsed == ExpenseDates.INVALID) {
+            throw new IllegalArgumentException("Date must be in YYYY-MM-DD format: " + date);
+        }
+
+        this.epochDay = parsed;
+        this.cents = ExpenseStore.toCents(amount);
+        this.category = category.intern(); // One shared String per spelling, reclaimed once unused
+    }
+
+    /**
+     * Constructs an Expense from fields that are already encoded and
+     * validated, such as a row of an {@link ExpenseStore}.
+     *
+     * @param epochDay The date as days since 1970-01-01.
+     * @param cents    The amount in cents.
+     * @param category The category of the expense.
+     */
+    Expense(int epochDay, long cents, String category) {
+        this.epochDay = epochDay;
+        this.cents = cents;
         this.category = category;
     }
 
@@ -46,7 +76,16 @@ public class Expense {
      * @return The expense amount.
      */
     public double getAmount() {
-        return this.amount;
+        return ExpenseStore.fromCents(this.cents);
+    }
+
+    /**
+     * Returns the amount of the expense in cents.
+     *
+     * @return The expense amount in cents.
+     */
+    public long getCents() {
+        return this.cents;
     }
 
     /**
@@ -55,7 +94,16 @@ public class Expense {
      * @return The expense date.
      */
     public String getDate() {
-        return this.date;
+        return ExpenseDates.format(this.epochDay);
+    }
+
+    /**
+     * Returns the date of the expense as days since 1970-01-01.
+     *
+     * @return The expense date as an epoch day.
+     */
+    public int getEpochDay() {
+        return this.epochDay;
     }
 
     /**
@@ -74,10 +122,11 @@ public class Expense {
      */
     @Override
     public String toString() {
-        return String.format("Expense [Date: %s, Amount: $%.2f, Category: %s]", date, amount, category);
+        return String.format("Expense [Date: %s, Amount: $%.2f, Category: %s]", getDate(), getAmount(),
+                category);
     }
 
     // Comparators for sorting
-    public static final Comparator<Expense> BY_DATE = Comparator.comparing(Expense::getDate);
-    public static final Comparator<Expense> BY_AMOUNT = Comparator.comparingDouble(Expense::getAmount);
+    public static final Comparator<Expense> BY_DATE = Comparator.comparingInt(Expense::getEpochDay);
+    public static final Comparator<Expense> BY_AMOUNT = Comparator.comparingLong(Expense::getCents);
 }
\ No newline at end of file
@@ -0,0 +1,354 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Running aggregates over an {@link ExpenseStore}: a grand total, per-category
+ * sum/count/min/max, and per-day and per-month rollups. All sums are kept in
+ * whole cents, so they never drift no matter how many rows are added.
+ *
+ * <p>Adds and removes update every aggregate in constant time. The one
+ * exception is a category's min or max after the row holding it is removed;
+ * that value is marked stale and recomputed from the store on the next read.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseAggregates {
+
+    // Widest date span (about 2,700 years) rebuilt through a flat per-day array
+    private static final int MAX_REBUILD_SPAN_DAYS = 1_000_000;
+
+    private final ExpenseStore store;
+
+    // Grand total
+    private long totalCents;
+    private int totalCount;
+
+    // Per-category aggregates, indexed by category code
+    private long[] categorySum = new long[8];
+    private int[] categoryCount = new int[8];
+    private long[] categoryMin = new long[8];
+    private long[] categoryMax = new long[8];
+    private boolean[] categoryExtremesStale = new boolean[8];
+
+    // Rollups keyed by epoch day and by month number (year * 12 + month - 1); each value is {sum, count}
+    private final HashMap<Integer, long[]> byDay = new HashMap<>();
+    private final HashMap<Integer, long[]> byMonth = new HashMap<>();
+
+    /**
+     * Constructs the aggregates for a store and computes them from its rows.
+     *
+     * @param store The store to aggregate.
+     */
+    public ExpenseAggregates(ExpenseStore store) {
+        this.store = store;
+        rebuild();
+    }
+
+    /**
+     * Adds a row to every aggregate.
+     *
+     * @param epochDay     The row's date as an epoch day.
+     * @param amountCents  The row's amount in cents.
+     * @param categoryCode The row's category code.
+     */
+    public void onAdd(int epochDay, long amountCents, int categoryCode) {
+        totalCents += amountCents;
+        totalCount++;
+
+        ensureCategory(categoryCode);
+        addToCategory(categoryCode, amountCents);
+
+        bump(byDay, epochDay, amountCents, 1);
+        bump(byMonth, monthKey(epochDay), amountCents, 1);
+    }
+
+    /**
+     * Adds a block of rows that were just appended to the store. The day
+     * and month rollups are bumped once per run of rows with the same date
+     * rather than once per row, so a batch in date order touches each map
+     * entry once. A batch that makes up at least half of the store is
+     * cheaper to fold in with {@link #rebuild()}.
+     *
+     * @param fromRow The first appended row; every row after it is new too.
+     */
+    public void onAddAll(int fromRow) {
+        int size = store.size();
+        if ((long) (size - fromRow) * 2 >= size) {
+            rebuild();
+            return;
+        }
+        ensureCategory(store.categoryCount());
+        int runDay = 0;
+        long runCents = 0;
+        int runCount = 0;
+        for (int i = fromRow; i < size; i++) {
+            int day = store.dayAt(i);
+            long cents = store.centsAt(i);
+            addToCategory(store.categoryCodeAt(i), cents);
+            totalCents += cents;
+            if (runCount > 0 && day != runDay) {
+                bump(byDay, runDay, runCents, runCount);
+                bump(byMonth, monthKey(runDay), runCents, runCount);
+                runCents = 0;
+                runCount = 0;
+            }
+            runDay = day;
+            runCents += cents;
+            runCount++;
+        }
+        if (runCount > 0) {
+            bump(byDay, runDay, runCents, runCount);
+            bump(byMonth, monthKey(runDay), runCents, runCount);
+        }
+        totalCount += size - fromRow;
+    }
+
+    private void addToCategory(int categoryCode, long amountCents) {
+        if (categoryCount[categoryCode] == 0) {
+            categoryMin[categoryCode] = amountCents;
+            categoryMax[categoryCode] = amountCents;
+            categoryExtremesStale[categoryCode] = false;
+        } else if (!categoryExtremesStale[categoryCode]) {
+            categoryMin[categoryCode] = Math.min(categoryMin[categoryCode], amountCents);
+            categoryMax[categoryCode] = Math.max(categoryMax[categoryCode], amountCents);
+        }
+        categorySum[categoryCode] += amountCents;
+        categoryCount[categoryCode]++;
+    }
+
+    /**
+     * Removes a row from every aggregate.
+     *
+     * @param epochDay     The row's date as an epoch day.
+     * @param amountCents  The row's amount in cents.
+     * @param categoryCode The row's category code.
+     */
+    public void onRemove(int epochDay, long amountCents, int categoryCode) {
+        totalCents -= amountCents;
+        totalCount--;
+
+        categorySum[categoryCode] -= amountCents;
+        categoryCount[categoryCode]--;
+        if (amountCents == categoryMin[categoryCode] || amountCents == categoryMax[categoryCode]) {
+            categoryExtremesStale[categoryCode] = true;
+        }
+
+        bump(byDay, epochDay, -amountCents, -1);
+        bump(byMonth, monthKey(epochDay), -amountCents, -1);
+    }
+
+    /**
+     * Recomputes every aggregate from the live rows of the store in a single pass. Day sums are
+     * accumulated in a flat array over the store's date span and only copied
+     * into the rollup maps once per distinct day.
+     */
+    public void rebuild() {
+        totalCents = 0;
+        totalCount = 0;
+        Arrays.fill(categorySum, 0);
+        Arrays.fill(categoryCount, 0);
+        Arrays.fill(categoryExtremesStale, false);
+        byDay.clear();
+        byMonth.clear();
+
+        int size = store.size();
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (!store.isDeleted(i)) {
+                minDay = Math.min(minDay, store.dayAt(i));
+                maxDay = Math.max(maxDay, store.dayAt(i));
+            }
+        }
+        if (store.liveCount() == 0 || (long) maxDay - minDay >= MAX_REBUILD_SPAN_DAYS) {
+            for (int i = 0; i < size; i++) {
+                if (!store.isDeleted(i)) {
+                    onAdd(store.dayAt(i), store.centsAt(i), store.categoryCodeAt(i));
+                }
+            }
+            return;
+        }
+
+        ensureCategory(store.categoryCount());
+        long[] daySums = new long[maxDay - minDay + 1];
+        int[] dayCounts = new int[daySums.length];
+        for (int i = 0; i < size; i++) {
+            if (store.isDeleted(i)) {
+                continue;
+            }
+            long cents = store.centsAt(i);
+            int code = store.categoryCodeAt(i);
+            if (categoryCount[code] == 0) {
+                categoryMin[code] = cents;
+                categoryMax[code] = cents;
+            } else {
+                categoryMin[code] = Math.min(categoryMin[code], cents);
+                categoryMax[code] = Math.max(categoryMax[code], cents);
+            }
+            categorySum[code] += cents;
+            categoryCount[code]++;
+            totalCents += cents;
+            daySums[store.dayAt(i) - minDay] += cents;
+            dayCounts[store.dayAt(i) - minDay]++;
+        }
+        totalCount = store.liveCount();
+        for (int d = 0; d < daySums.length; d++) {
+            if (dayCounts[d] > 0) {
+                bump(byDay, minDay + d, daySums[d], dayCounts[d]);
+                bump(byMonth, monthKey(minDay + d), daySums[d], dayCounts[d]);
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of all rows.
+     *
+     * @return The total in cents.
+     */
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return The row count.
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the sum of one category.
+     *
+     * @param categoryCode The category code.
+     * @return The total in cents.
+     */
+    public long getCategorySum(int categoryCode) {
+        return categoryCode < categorySum.length ? categorySum[categoryCode] : 0;
+    }
+
+    /**
+     * Returns the number of rows in one category.
+     *
+     * @param categoryCode The category code.
+     * @return The row count.
+     */
+    public int getCategoryCount(int categoryCode) {
+        return categoryCode < categoryCount.length ? categoryCount[categoryCode] : 0;
+    }
+
+    /**
+     * Returns the smallest amount in one category.
+     *
+     * @param categoryCode The category code.
+     * @return The minimum in cents, or 0 if the category has no rows.
+     */
+    public long getCategoryMin(int categoryCode) {
+        if (getCategoryCount(categoryCode) == 0) {
+            return 0;
+        }
+        refreshExtremes(categoryCode);
+        return categoryMin[categoryCode];
+    }
+
+    /**
+     * Returns the largest amount in one category.
+     *
+     * @param categoryCode The category code.
+     * @return The maximum in cents, or 0 if the category has no rows.
+     */
+    public long getCategoryMax(int categoryCode) {
+        if (getCategoryCount(categoryCode) == 0) {
+            return 0;
+        }
+        refreshExtremes(categoryCode);
+        return categoryMax[categoryCode];
+    }
+
+    /**
+     * Returns the sum of one day.
+     *
+     * @param epochDay The date as an epoch day.
+     * @return The total in cents.
+     */
+    public long getDaySum(int epochDay) {
+        long[] entry = byDay.get(epochDay);
+        return entry == null ? 0 : entry[0];
+    }
+
+    /**
+     * Returns the sum of one calendar month.
+     *
+     * @param year  The year.
+     * @param month The month, from 1 to 12.
+     * @return The total in cents.
+     */
+    public long getMonthSum(int year, int month) {
+        long[] entry = byMonth.get(year * 12 + month - 1);
+        return entry == null ? 0 : entry[0];
+    }
+
+    /**
+     * Returns the number of rows in one calendar month.
+     *
+     * @param year  The year.
+     * @param month The month, from 1 to 12.
+     * @return The row count.
+     */
+    public long getMonthCount(int year, int month) {
+        long[] entry = byMonth.get(year * 12 + month - 1);
+        return entry == null ? 0 : entry[1];
+    }
+
+    private void refreshExtremes(int categoryCode) {
+        if (!categoryExtremesStale[categoryCode]) {
+            return;
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < store.size(); i++) {
+            if (store.categoryCodeAt(i) == categoryCode && !store.isDeleted(i)) {
+                long cents = store.centsAt(i);
+                min = Math.min(min, cents);
+                max = Math.max(max, cents);
+            }
+        }
+        categoryMin[categoryCode] = min;
+        categoryMax[categoryCode] = max;
+        categoryExtremesStale[categoryCode] = false;
+    }
+
+    private void ensureCategory(int categoryCode) {
+        if (categoryCode < categorySum.length) {
+            return;
+        }
+        int newLength = Math.max(categoryCode + 1, categorySum.length * 2);
+        categorySum = Arrays.copyOf(categorySum, newLength);
+        categoryCount = Arrays.copyOf(categoryCount, newLength);
+        categoryMin = Arrays.copyOf(categoryMin, newLength);
+        categoryMax = Arrays.copyOf(categoryMax, newLength);
+        categoryExtremesStale = Arrays.copyOf(categoryExtremesStale, newLength);
+    }
+
+    private static void bump(HashMap<Integer, long[]> rollup, int key, long cents, int count) {
+        long[] entry = rollup.computeIfAbsent(key, k -> new long[2]);
+        entry[0] += cents;
+        entry[1] += count;
+        if (entry[1] == 0) {
+            rollup.remove(key);
+        }
+    }
+
+    /**
+     * Returns the month number (year * 12 + month - 1) of an epoch day.
+     *
+     * @param epochDay The date as an epoch day.
+     * @return The month key.
+     */
+    public static int monthKey(int epochDay) {
+        return ExpenseDates.monthKey(epochDay);
+    }
+}
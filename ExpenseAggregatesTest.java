@@ -0,0 +1,62 @@
+/**
+ * Test class for ExpenseAggregates to validate running totals and rollups.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseAggregatesTest {
+
+    public static void main(String[] args) {
+        // 1. Test Running Totals
+        testRunningTotals();
+
+        // 2. Test Min/Max After Delete
+        testExtremesAfterDelete();
+
+        // 3. Test Rounding Drift
+        testNoDrift();
+    }
+
+    // Test Running Totals
+    private static void testRunningTotals() {
+        System.out.println("\n=== Testing Running Totals ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-01", 50.0, "Food");
+        tracker.addExpense("2024-01-01", 20.0, "Transport");
+        tracker.addExpense("2024-02-10", 30.0, "Food");
+        System.out.println("Total: $" + tracker.getTotalExpenses() + " (Expected: 100.0)");
+        System.out.println("Food: $" + tracker.getTotalByCategory("Food") + " (Expected: 80.0)");
+        System.out.println("Food count: " + tracker.getCountByCategory("Food") + " (Expected: 2)");
+        System.out.println("2024-01-01: $" + tracker.getTotalByDate("2024-01-01") + " (Expected: 70.0)");
+        System.out.println("February 2024: $" + tracker.getTotalByMonth(2024, 2) + " (Expected: 30.0)");
+        tracker.deleteExpense(0);
+        System.out.println("Total after delete: $" + tracker.getTotalExpenses() + " (Expected: 50.0)");
+        System.out.println("January after delete: $" + tracker.getTotalByMonth(2024, 1) + " (Expected: 20.0)");
+    }
+
+    // Test Min/Max After Delete
+    private static void testExtremesAfterDelete() {
+        System.out.println("\n=== Testing Min/Max After Delete ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-01", 5.0, "Food");
+        tracker.addExpense("2024-01-02", 15.0, "Food");
+        tracker.addExpense("2024-01-03", 10.0, "Food");
+        System.out.println("Min: $" + tracker.getMinByCategory("Food") + " (Expected: 5.0)");
+        System.out.println("Max: $" + tracker.getMaxByCategory("Food") + " (Expected: 15.0)");
+        tracker.deleteExpense(1);
+        tracker.deleteExpense(0);
+        System.out.println("Min after delete: $" + tracker.getMinByCategory("Food") + " (Expected: 10.0)");
+        System.out.println("Max after delete: $" + tracker.getMaxByCategory("Food") + " (Expected: 10.0)");
+    }
+
+    // Test Rounding Drift
+    private static void testNoDrift() {
+        System.out.println("\n=== Testing Rounding Drift ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        for (int i = 0; i < 1_000_000; i++) {
+            tracker.addExpense("2024-01-01", 0.1, "Food");
+        }
+        System.out.println("Total of 1,000,000 x $0.10: $" + tracker.getTotalExpenses() + " (Expected: 100000.0)");
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Test class for the batch addExpenses API to validate that it matches
+ * adding the same rows one at a time, and that invalid rows are rejected
+ * with the reasons addExpense would give.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseBatchTest {
+
+    private static final String[] CATEGORIES = { "Food", "Rent", "Travel", "Books", "Fuel" };
+
+    public static void main(String[] args) {
+        // 1. Test Rejections
+        testRejections();
+
+        // 2. Test Parity With Single Adds
+        testParity(20_000, 5_000); // Small batches on a big store: incremental index updates
+        testParity(0, 20_000); // One batch into an empty store: full rebuild
+
+        // 3. Test Iterator Overload
+        testIterator();
+    }
+
+    // Test Rejections
+    private static void testRejections() {
+        System.out.println("\n=== Testing Rejections ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        String[] dates = { "2024-01-01", "", "2024-02-30", "2024-03-01", "2024-03-02", "not-a-date", "2024-03-03",
+                "2024-03-04", "2024-03-05" };
+        double[] amounts = { 10.0, 5.0, 5.0, -1.0, 5.0, 5.0, 2.5, Double.NaN, Double.POSITIVE_INFINITY };
+        String[] categories = { "Food", "Food", "Food", "Food", " ", "Food", "Rent", "Food", "Food" };
+        ExpenseTracker.BatchResult result = tracker.addExpenses(dates, amounts, categories);
+        System.out.println(result + " (Expected: Added 2 expenses, rejected 7)");
+        for (int i = 0; i < result.getRejected(); i++) {
+            System.out.println("Row " + result.getRejectedRow(i) + ": " + result.getReason(i));
+        }
+        System.out.println("Expected: rows 1 empty date, 2 and 5 bad format, 3 negative amount, 4 empty category, "
+                + "7 and 8 not finite");
+        System.out.println("Total: " + tracker.getTotalExpenses() + " (Expected: 12.5)");
+        try {
+            tracker.addExpenses(new String[1], new double[2], new String[1]);
+            System.out.println("❌ Mismatched columns were accepted");
+        } catch (IllegalArgumentException e) {
+            System.out.println("✅ Mismatched columns rejected: " + e.getMessage());
+        }
+    }
+
+    // Test Parity With Single Adds
+    private static void testParity(int existingRows, int batchRows) {
+        System.out.println("\n=== Testing Parity: " + existingRows + " existing rows, batch of " + batchRows + " ===");
+        Random random = new Random(existingRows + batchRows);
+        ExpenseTracker single = new ExpenseTracker();
+        ExpenseTracker batch = new ExpenseTracker();
+        for (int i = 0; i < existingRows; i++) {
+            String date = randomDate(random);
+            double amount = random.nextInt(10_000) / 100.0;
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            single.addExpense(date, amount, category);
+            batch.addExpense(date, amount, category);
+        }
+        String[] dates = new String[batchRows];
+        double[] amounts = new double[batchRows];
+        String[] categories = new String[batchRows];
+        for (int i = 0; i < batchRows; i++) {
+            dates[i] = randomDate(random);
+            amounts[i] = random.nextInt(10_000) / 100.0;
+            categories[i] = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            single.addExpense(dates[i], amounts[i], categories[i]);
+        }
+        ExpenseTracker.BatchResult result = batch.addExpenses(dates, amounts, categories);
+        System.out.println(result + " (Expected: Added " + batchRows + " expenses, rejected 0)");
+
+        boolean same = single.getTotalExpenses() == batch.getTotalExpenses();
+        for (String category : CATEGORIES) {
+            same &= single.getTotalByCategory(category) == batch.getTotalByCategory(category)
+                    && single.getCountByCategory(category) == batch.getCountByCategory(category)
+                    && single.getMinByCategory(category) == batch.getMinByCategory(category)
+                    && single.getMaxByCategory(category) == batch.getMaxByCategory(category)
+                    && single.searchByCategory(category).size() == batch.searchByCategory(category).size();
+        }
+        for (int month = 1; month <= 12; month++) {
+            same &= single.getTotalByMonth(2024, month) == batch.getTotalByMonth(2024, month);
+        }
+        for (int i = 0; i < 100; i++) {
+            String date = randomDate(random);
+            double amount = random.nextInt(10_000) / 100.0;
+            same &= single.searchByDate(date).size() == batch.searchByDate(date).size()
+                    && single.getTotalByDate(date) == batch.getTotalByDate(date)
+                    && single.searchByAmount(amount).size() == batch.searchByAmount(amount).size();
+        }
+        same &= single.getExpensesInDateRange("2024-03-01", "2024-06-30").size() == batch
+                .getExpensesInDateRange("2024-03-01", "2024-06-30").size();
+        System.out.println((same ? "✅" : "❌") + " Totals, aggregates and searches match single adds");
+    }
+
+    // Test Iterator Overload
+    private static void testIterator() {
+        System.out.println("\n=== Testing Iterator Overload ===");
+        ArrayList<Expense> expenses = new ArrayList<>();
+        expenses.add(new Expense("2024-05-01", 40.0, "Fuel"));
+        expenses.add(new Expense("2024-05-02", 60.0, "Fuel"));
+        ExpenseTracker tracker = new ExpenseTracker();
+        ExpenseTracker.BatchResult result = tracker.addExpenses(expenses.iterator());
+        System.out.println(result + " (Expected: Added 2 expenses, rejected 0)");
+        System.out.println("Fuel total: " + tracker.getTotalByCategory("Fuel") + " (Expected: 100.0)");
+    }
+
+    private static String randomDate(Random random) {
+        return String.format("2024-%02d-%02d", 1 + random.nextInt(12), 1 + random.nextInt(28));
+    }
+}
@@ -0,0 +1,638 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes a compressed columnar file format for an
+ * {@link ExpenseStore}, meant for archives: several times smaller than the
+ * text format and faster to read back, and able to skip the parts of a file
+ * a load does not need.
+ *
+ * <p>Rows are written in date order, in blocks of {@link #BLOCK_ROWS}. Each
+ * block holds its three columns encoded separately:</p>
+ * <ul>
+ *   <li>dates as the first day followed by the gap to each next day, as
+ *       varints; sorted dates make most gaps 0 or 1, one byte each;</li>
+ *   <li>amounts as varints of whole cents, two or three bytes for typical
+ *       amounts instead of eight;</li>
+ *   <li>categories as codes into the file's dictionary, either run-length
+ *       encoded or bit-packed at the fewest bits that hold every code,
+ *       whichever is smaller for the block.</li>
+ * </ul>
+ *
+ * <p>Each block starts with its row count, date and amount range, a bitmap
+ * of the categories it holds, its length and a checksum, so a load filtered
+ * by date or category skips blocks that cannot match without decoding (or
+ * checksumming) them.</p>
+ *
+ * <pre>
+ * int    magic            "EXPC"
+ * int    version          1
+ * int    rowCount
+ * int    blockCount
+ * int    categoryCount
+ * per category: int byteLength, UTF-8 bytes
+ * int    crc32            of the header above
+ * per block:
+ *   int    rows
+ *   int    minDay, maxDay
+ *   long   minCents, maxCents
+ *   long[] categoryBitmap  (categoryCount + 63) / 64 words
+ *   int    payloadLength
+ *   int    crc32           of the block header above and the payload
+ *   payload: dates, amounts, category encoding byte and codes
+ * </pre>
+ *
+ * Fixed-width values are little-endian.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseColumnFile {
+
+    /** The four bytes "EXPC" read as a big-endian int. */
+    public static final int MAGIC = 0x45585043;
+
+    /** The current format version. */
+    public static final int VERSION = 1;
+
+    /** Rows per block: small enough to skip finely, large enough to amortize each block's header. */
+    public static final int BLOCK_ROWS = 8192;
+
+    private static final byte CODES_RLE = 0;
+    private static final byte CODES_PACKED = 1;
+
+    /**
+     * What a load read and what it was able to skip.
+     */
+    public static final class ReadStats {
+        private final int rows;
+        private final int blocksRead;
+        private final int blocksSkipped;
+        private final long bytes;
+
+        private ReadStats(int rows, int blocksRead, int blocksSkipped, long bytes) {
+            this.rows = rows;
+            this.blocksRead = blocksRead;
+            this.blocksSkipped = blocksSkipped;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the number of rows loaded.
+         *
+         * @return The row count.
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Returns the number of blocks decoded.
+         *
+         * @return The block count.
+         */
+        public int getBlocksRead() {
+            return blocksRead;
+        }
+
+        /**
+         * Returns the number of blocks skipped by their date and category statistics.
+         *
+         * @return The block count.
+         */
+        public int getBlocksSkipped() {
+            return blocksSkipped;
+        }
+
+        /**
+         * Returns the number of bytes of the file that were decoded.
+         *
+         * @return The byte count, headers included.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Loaded %d rows from %d blocks (%d skipped, %.1f KB decoded)", rows, blocksRead,
+                    blocksSkipped, bytes / 1024.0);
+        }
+    }
+
+    private ExpenseColumnFile() {
+    }
+
+    // ---------------------------------------------------------------------
+    // Writing
+
+    /**
+     * Writes every live row of a store to a column file, replacing the file
+     * only once the new one is complete.
+     *
+     * @param store    The store to write.
+     * @param filename The column file.
+     * @return The number of bytes written.
+     * @throws IOException if the file cannot be written.
+     */
+    public static long save(ExpenseStore store, String filename) throws IOException {
+        int[] rows = sortedRows(store);
+        int categories = store.categoryCount();
+        int blocks = (rows.length + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        Encoder out = new Encoder(1 << 16);
+        out.putInt(Integer.reverseBytes(MAGIC)); // Stored as the bytes 'E','X','P','C'
+        out.putInt(VERSION);
+        out.putInt(rows.length);
+        out.putInt(blocks);
+        out.putInt(categories);
+        for (int code = 0; code < categories; code++) {
+            byte[] name = store.categoryName(code).getBytes(StandardCharsets.UTF_8);
+            out.putInt(name.length);
+            out.put(name, name.length);
+        }
+        out.putInt((int) out.crc(0));
+
+        // Written beside the target and moved over it, so a failed save leaves the old file intact
+        Path file = Paths.get(filename);
+        Path tmp = Paths.get(filename + ".tmp");
+        long written;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            written = out.writeTo(channel);
+            Encoder payload = new Encoder(BLOCK_ROWS * 8);
+            int codeBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, categories - 1));
+            int words = (categories + 63) / 64;
+            for (int block = 0; block < blocks; block++) {
+                int from = block * BLOCK_ROWS;
+                int to = Math.min(rows.length, from + BLOCK_ROWS);
+                payload.reset();
+                encodeBlock(store, rows, from, to, codeBits, payload);
+
+                long minCents = Long.MAX_VALUE;
+                long maxCents = Long.MIN_VALUE;
+                long[] bitmap = new long[words];
+                for (int i = from; i < to; i++) {
+                    long cents = store.centsAt(rows[i]);
+                    minCents = Math.min(minCents, cents);
+                    maxCents = Math.max(maxCents, cents);
+                    int code = store.categoryCodeAt(rows[i]);
+                    bitmap[code >>> 6] |= 1L << code;
+                }
+                out.reset();
+                out.putInt(to - from);
+                out.putInt(store.dayAt(rows[from]));
+                out.putInt(store.dayAt(rows[to - 1]));
+                out.putLong(minCents);
+                out.putLong(maxCents);
+                for (long word : bitmap) {
+                    out.putLong(word);
+                }
+                out.putInt(payload.size());
+                CRC32 crc = new CRC32();
+                crc.update(out.bytes, 0, out.size());
+                crc.update(payload.bytes, 0, payload.size());
+                out.putInt((int) crc.getValue());
+                written += out.writeTo(channel);
+                written += payload.writeTo(channel);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * Returns the live rows ordered by date, keeping rows of the same day in
+     * their stored order, by a counting sort over the days present.
+     */
+    private static int[] sortedRows(ExpenseStore store) {
+        int live = store.liveCount();
+        int[] rows = new int[live];
+        if (live == 0) {
+            return rows;
+        }
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        for (int row = 0; row < store.size(); row++) {
+            if (!store.isDeleted(row)) {
+                minDay = Math.min(minDay, store.dayAt(row));
+                maxDay = Math.max(maxDay, store.dayAt(row));
+            }
+        }
+        long span = (long) maxDay - minDay + 1;
+        if (span > 4L * live + 1024) { // Sparse dates: comparing is cheaper than counting
+            Integer[] boxed = new Integer[live];
+            for (int row = 0, i = 0; row < store.size(); row++) {
+                if (!store.isDeleted(row)) {
+                    boxed[i++] = row;
+                }
+            }
+            Arrays.sort(boxed, (a, b) -> Integer.compare(store.dayAt(a), store.dayAt(b))); // Stable
+            for (int i = 0; i < live; i++) {
+                rows[i] = boxed[i];
+            }
+            return rows;
+        }
+        int[] starts = new int[(int) span + 1];
+        for (int row = 0; row < store.size(); row++) {
+            if (!store.isDeleted(row)) {
+                starts[store.dayAt(row) - minDay + 1]++;
+            }
+        }
+        for (int d = 1; d < starts.length; d++) {
+            starts[d] += starts[d - 1];
+        }
+        for (int row = 0; row < store.size(); row++) {
+            if (!store.isDeleted(row)) {
+                rows[starts[store.dayAt(row) - minDay]++] = row;
+            }
+        }
+        return rows;
+    }
+
+    private static void encodeBlock(ExpenseStore store, int[] rows, int from, int to, int codeBits, Encoder out) {
+        int previous = store.dayAt(rows[from]);
+        out.putVarint(((previous << 1) ^ (previous >> 31)) & 0xFFFFFFFFL); // Zigzag: days before 1970 are negative
+        for (int i = from + 1; i < to; i++) {
+            int day = store.dayAt(rows[i]);
+            out.putVarint(day - previous);
+            previous = day;
+        }
+        for (int i = from; i < to; i++) {
+            out.putVarint(store.centsAt(rows[i]));
+        }
+        // Count the runs to see whether run-length encoding beats bit-packing for this block
+        int runs = 1;
+        for (int i = from + 1; i < to; i++) {
+            if (store.categoryCodeAt(rows[i]) != store.categoryCodeAt(rows[i - 1])) {
+                runs++;
+            }
+        }
+        long packedBytes = ((long) (to - from) * codeBits + 7) / 8;
+        if (runs * 2L <= packedBytes) {
+            out.putByte(CODES_RLE);
+            int run = 1;
+            for (int i = from + 1; i <= to; i++) {
+                if (i < to && store.categoryCodeAt(rows[i]) == store.categoryCodeAt(rows[i - 1])) {
+                    run++;
+                    continue;
+                }
+                out.putVarint(store.categoryCodeAt(rows[i - 1]));
+                out.putVarint(run);
+                run = 1;
+            }
+            return;
+        }
+        out.putByte(CODES_PACKED);
+        long bits = 0;
+        int held = 0;
+        for (int i = from; i < to; i++) {
+            bits |= (long) store.categoryCodeAt(rows[i]) << held;
+            held += codeBits;
+            while (held >= 8) {
+                out.putByte((byte) bits);
+                bits >>>= 8;
+                held -= 8;
+            }
+        }
+        if (held > 0) {
+            out.putByte((byte) bits);
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Reading
+
+    /**
+     * Replaces the contents of a store with every row of a column file.
+     *
+     * @param store    The store to fill.
+     * @param filename The column file.
+     * @return What was read.
+     * @throws IOException if the file cannot be read, is not a column file, or fails a checksum.
+     */
+    public static ReadStats load(ExpenseStore store, String filename) throws IOException {
+        return load(store, filename, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Replaces the contents of a store with the rows of a column file that
+     * fall in a date range and, optionally, a set of categories. Blocks
+     * whose statistics rule them out are skipped without being decoded.
+     *
+     * @param store      The store to fill.
+     * @param filename   The column file.
+     * @param startDay   The first epoch day to load (inclusive).
+     * @param endDay     The last epoch day to load (inclusive).
+     * @param categories The category names to load, or null for all.
+     * @return What was read and skipped.
+     * @throws IOException if the file cannot be read, is not a column file, or fails a checksum.
+     */
+    public static ReadStats load(ExpenseStore store, String filename, int startDay, int endDay, String[] categories)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < 24 || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Not a valid column file: " + filename);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (Integer.reverseBytes(buffer.getInt(0)) != MAGIC) {
+                throw new IOException("Not a column file: " + filename);
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported column file version " + version + " in " + filename);
+            }
+            int rowCount = buffer.getInt(8);
+            int blocks = buffer.getInt(12);
+            int categoryCount = buffer.getInt(16);
+            // Checked before anything is sized from them; every name takes at least 4 bytes, every block 36
+            if (rowCount < 0 || blocks < 0 || blocks > fileSize / 36 || categoryCount < 0
+                    || categoryCount > (fileSize - 24) / 4) {
+                throw new IOException("Column file header is corrupt in " + filename);
+            }
+            int position = 20;
+            String[] names = new String[categoryCount];
+            for (int code = 0; code < categoryCount; code++) {
+                int length = buffer.getInt(position);
+                if (length < 0 || position + 4L + length > fileSize) {
+                    throw new IOException("Column file header is corrupt in " + filename);
+                }
+                byte[] name = new byte[length];
+                buffer.get(position + 4, name);
+                names[code] = new String(name, StandardCharsets.UTF_8);
+                position += 4 + length;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(0).limit(position));
+            if ((int) crc.getValue() != buffer.getInt(position)) {
+                throw new IOException("Column file header checksum mismatch in " + filename);
+            }
+            position += 4;
+
+            store.clear();
+            int[] remap = new int[categoryCount];
+            boolean[] wanted = new boolean[categoryCount];
+            for (int code = 0; code < categoryCount; code++) {
+                remap[code] = store.encodeCategory(names[code]);
+                wanted[code] = categories == null;
+            }
+            if (categories != null) {
+                for (String category : categories) {
+                    for (int code = 0; code < categoryCount; code++) {
+                        wanted[code] |= names[code].equals(category);
+                    }
+                }
+            }
+            if (categories == null && startDay == Integer.MIN_VALUE && endDay == Integer.MAX_VALUE) {
+                store.ensureCapacity(rowCount);
+            }
+
+            int codeBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, categoryCount - 1));
+            int words = (categoryCount + 63) / 64;
+            int headerBytes = 4 + 8 + 16 + 8 * words;
+            int[] days = new int[BLOCK_ROWS];
+            long[] cents = new long[BLOCK_ROWS];
+            int[] codes = new int[BLOCK_ROWS];
+            byte[] payload = new byte[BLOCK_ROWS * 16];
+            int rows = 0;
+            int read = 0;
+            int skipped = 0;
+            long decoded = position;
+            for (int block = 0; block < blocks; block++) {
+                if (position + headerBytes + 8L > fileSize) {
+                    throw new IOException("Column file is truncated in " + filename);
+                }
+                int count = buffer.getInt(position);
+                int length = buffer.getInt(position + headerBytes);
+                long end = position + headerBytes + 8L + length; // A corrupt length must not wrap around
+                if (count < 1 || count > BLOCK_ROWS || length < 0 || end > fileSize) {
+                    throw new IOException("Column file block " + block + " is corrupt in " + filename);
+                }
+                int next = (int) end;
+                if (buffer.getInt(position + 4) > endDay || buffer.getInt(position + 8) < startDay
+                        || !anyWanted(buffer, position + 28, words, wanted)) {
+                    skipped++;
+                    position = next;
+                    continue;
+                }
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                buffer.get(position + headerBytes + 8, payload, 0, length);
+                crc.reset();
+                crc.update(buffer.duplicate().position(position).limit(position + headerBytes + 4));
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != buffer.getInt(position + headerBytes + 4)) {
+                    throw new IOException("Column file block " + block + " checksum mismatch in " + filename);
+                }
+                decodeBlock(payload, length, count, codeBits, categoryCount, days, cents, codes, filename);
+                int kept = 0;
+                for (int i = 0; i < count; i++) {
+                    if (days[i] >= startDay && days[i] <= endDay && wanted[codes[i]]) {
+                        days[kept] = days[i];
+                        cents[kept] = cents[i];
+                        codes[kept++] = remap[codes[i]];
+                    }
+                }
+                store.addAll(days, cents, codes, kept);
+                rows += kept;
+                read++;
+                decoded += headerBytes + 8 + length;
+                position = next;
+            }
+            if (categories == null && startDay == Integer.MIN_VALUE && endDay == Integer.MAX_VALUE
+                    && rows != rowCount) {
+                throw new IOException("Column file row count does not match its header in " + filename);
+            }
+            return new ReadStats(rows, read, skipped, decoded);
+        }
+    }
+
+    private static boolean anyWanted(ByteBuffer buffer, int bitmapAt, int words, boolean[] wanted) {
+        for (int w = 0; w < words; w++) {
+            long word = buffer.getLong(bitmapAt + 8 * w);
+            while (word != 0) {
+                int code = w * 64 + Long.numberOfTrailingZeros(word);
+                if (code < wanted.length && wanted[code]) {
+                    return true;
+                }
+                word &= word - 1;
+            }
+        }
+        return false;
+    }
+
+    private static void decodeBlock(byte[] in, int length, int count, int codeBits, int categoryCount, int[] days,
+            long[] cents, int[] codes, String filename) throws IOException {
+        Decoder decoder = new Decoder(in, length);
+        int first = (int) decoder.varint();
+        int day = (first >>> 1) ^ -(first & 1);
+        days[0] = day;
+        for (int i = 1; i < count; i++) {
+            day += (int) decoder.varint();
+            days[i] = day;
+        }
+        for (int i = 0; i < count; i++) {
+            cents[i] = decoder.varint();
+        }
+        byte encoding = decoder.nextByte();
+        if (encoding == CODES_RLE) {
+            for (int i = 0; i < count;) {
+                int code = (int) decoder.varint();
+                long run = decoder.varint();
+                if (run < 1 || run > count - i) {
+                    throw new IOException("Column file category runs are corrupt in " + filename);
+                }
+                Arrays.fill(codes, i, i + (int) run, code);
+                i += (int) run;
+            }
+        } else if (encoding == CODES_PACKED) {
+            long bits = 0;
+            int held = 0;
+            int mask = (1 << codeBits) - 1;
+            for (int i = 0; i < count; i++) {
+                while (held < codeBits) {
+                    bits |= (decoder.nextByte() & 0xFFL) << held;
+                    held += 8;
+                }
+                codes[i] = (int) bits & mask;
+                bits >>>= codeBits;
+                held -= codeBits;
+            }
+        } else {
+            throw new IOException("Unknown category encoding " + encoding + " in " + filename);
+        }
+        for (int i = 0; i < count; i++) {
+            if (codes[i] < 0 || codes[i] >= categoryCount) {
+                throw new IOException("Column file category code out of range in " + filename);
+            }
+        }
+        if (decoder.position != length) {
+            throw new IOException("Column file block length does not match its contents in " + filename);
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Byte buffers
+
+    /**
+     * A growable little-endian byte buffer with varint support.
+     */
+    private static final class Encoder {
+        byte[] bytes;
+        private int size;
+
+        Encoder(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void putByte(byte value) {
+            ensure(1);
+            bytes[size++] = value;
+        }
+
+        void put(byte[] values, int length) {
+            ensure(length);
+            System.arraycopy(values, 0, bytes, size, length);
+            size += length;
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            for (int i = 0; i < 4; i++) {
+                bytes[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                bytes[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        /** Writes an unsigned LEB128 varint: seven bits per byte, high bit set on all but the last. */
+        void putVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        long crc(int from) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, from, size - from);
+            return crc.getValue();
+        }
+
+        long writeTo(FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Reads varints and bytes from a block's payload.
+     */
+    private static final class Decoder {
+        private final byte[] bytes;
+        private final int length;
+        int position;
+
+        Decoder(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        byte nextByte() throws IOException {
+            if (position >= length) {
+                throw new IOException("Column file block ends early");
+            }
+            return bytes[position++];
+        }
+
+        long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = nextByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Column file varint is too long");
+        }
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+/**
+ * Test class for ExpenseColumnFile to validate round trips, awkward values,
+ * skipping blocks by date and category, detection of corrupt files and bad
+ * dates, and size and speed against the text format.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseColumnFileTest {
+
+    public static void main(String[] args) throws IOException {
+        // 1. Test Round Trip
+        testRoundTrip();
+
+        // 2. Test Awkward Values
+        testAwkwardValues();
+
+        // 3. Test Skipping Blocks
+        testSkipping();
+
+        // 4. Test Corruption Is Detected
+        testCorruption();
+
+        // 5. Test Size and Speed Against the Text Format
+        testAgainstText();
+    }
+
+    private static boolean sameRows(ArrayList<Expense> actual, ArrayList<Expense> expected) {
+        if (actual.size() != expected.size()) {
+            return false;
+        }
+        for (int i = 0; i < actual.size(); i++) {
+            Expense a = actual.get(i);
+            Expense b = expected.get(i);
+            if (a.getEpochDay() != b.getEpochDay() || a.getCents() != b.getCents()
+                    || !a.getCategory().equals(b.getCategory())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Test Round Trip
+    private static void testRoundTrip() {
+        System.out.println("\n=== Testing Round Trip ===");
+        String file = "roundtrip.expc";
+        ExpenseTracker source = new ExpenseTracker(new ExpenseDataGenerator(40).generateStore(300_000));
+        source.deleteExpense(0);
+        source.deleteExpense(1_000);
+        source.saveColumnFile(file);
+        ExpenseTracker loaded = new ExpenseTracker();
+        loaded.addExpense("2024-01-01", 1.0, "Replaced");
+        loaded.loadColumnFile(file);
+        // Rows come back in date order, same-day rows in the order they were stored
+        ArrayList<Expense> expected = source.query().orderBy(Expense.BY_DATE).list();
+        System.out.println((sameRows(loaded.cursorAll().toList(), expected) ? "✅" : "❌")
+                + " Every row matches the source in date order: " + expected.size() + " (Expected: 299998)");
+        System.out.println("Totals equal: " + (ExpenseStore.toCents(loaded.getTotalExpenses()) == ExpenseStore
+                .toCents(source.getTotalExpenses())) + " (Expected: true)");
+        System.out.println("Replaced category gone: " + loaded.getCountByCategory("Replaced") + " (Expected: 0)");
+        System.out.println("Timed as column file operations: "
+                + source.getMetrics().getLatency(ExpenseMetrics.Operation.SAVE_COLUMN_FILE).getCount() + ", "
+                + loaded.getMetrics().getLatency(ExpenseMetrics.Operation.LOAD_COLUMN_FILE).getCount()
+                + " (Expected: 1, 1)");
+        System.out.println("Temporary file left behind: " + new File(file + ".tmp").exists() + " (Expected: false)");
+        new File(file).delete();
+    }
+
+    // Test Awkward Values
+    private static void testAwkwardValues() {
+        System.out.println("\n=== Testing Awkward Values ===");
+        String file = "awkward.expc";
+        ExpenseTracker empty = new ExpenseTracker();
+        empty.saveColumnFile(file);
+        ExpenseTracker loaded = new ExpenseTracker();
+        loaded.loadColumnFile(file);
+        System.out.println("Rows from an empty file: " + loaded.cursorAll().remaining() + " (Expected: 0)");
+
+        ExpenseTracker source = new ExpenseTracker();
+        source.addExpense("1901-12-13", 0.0, "Früh, \"alt\"");
+        source.addExpense("1969-12-31", 0.01, "Café");
+        source.addExpense("2999-12-31", 92_233_720_368.54, "Big");
+        for (int i = 0; i < 300; i++) {
+            source.addExpense("2024-06-15", i, "Category " + i); // Many distinct codes in one block
+        }
+        source.saveColumnFile(file);
+        loaded.loadColumnFile(file);
+        System.out.println((sameRows(loaded.cursorAll().toList(), source.query().orderBy(Expense.BY_DATE).list())
+                ? "✅" : "❌") + " Old dates, zero and huge amounts, non-ASCII and 300 categories survive");
+        System.out.println("First row: " + loaded.cursorAll().toList().get(0) + " (Expected: 1901-12-13, 0.00)");
+        new File(file).delete();
+    }
+
+    // Test Skipping Blocks
+    private static void testSkipping() {
+        System.out.println("\n=== Testing Skipping Blocks ===");
+        String file = "skipping.expc";
+        ExpenseTracker source = new ExpenseTracker(new ExpenseDataGenerator(41).generateStore(500_000));
+        source.addExpense("2016-03-10", 900.0, "Sabbatical"); // A category in one block only
+        source.saveColumnFile(file);
+
+        ExpenseTracker loaded = new ExpenseTracker();
+        loaded.loadColumnFile(file, "2020-06-01", "2020-06-30");
+        System.out.println((sameRows(loaded.cursorAll().toList(), source.query().between("2020-06-01", "2020-06-30")
+                .orderBy(Expense.BY_DATE).list()) ? "✅" : "❌") + " June 2020 only: "
+                + loaded.cursorAll().remaining() + " rows");
+        System.out.println("Decoded " + loaded.getLastLoadStats().getBytes() / 1024 + " KB of "
+                + new File(file).length() / 1024 + " KB");
+
+        loaded.loadColumnFile(file, null, null, "Sabbatical");
+        System.out.println("Sabbatical rows: " + loaded.cursorAll().toList() + " (Expected: one 900.00 row)");
+        System.out.println("Decoded " + loaded.getLastLoadStats().getBytes() / 1024 + " KB (Expected: one block)");
+
+        loaded.loadColumnFile(file, "2019-01-01", "2019-12-31", "Travel", "Rent");
+        long expected = source.query().between("2019-01-01", "2019-12-31").inCategories("Travel", "Rent").count();
+        System.out.println("Travel and Rent in 2019: " + loaded.cursorAll().remaining() + " (Expected: " + expected + ")");
+        new File(file).delete();
+    }
+
+    // Test Corruption Is Detected
+    private static void testCorruption() throws IOException {
+        System.out.println("\n=== Testing Corruption Is Detected ===");
+        String file = "corrupt.expc";
+        ExpenseTracker source = new ExpenseTracker(new ExpenseDataGenerator(42).generateStore(50_000));
+        source.saveColumnFile(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long at = raf.length() / 2;
+            raf.seek(at);
+            int value = raf.read();
+            raf.seek(at);
+            raf.write(value ^ 0x10);
+        }
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-01", 5.0, "Kept");
+        tracker.loadColumnFile(file);
+        System.out.println("Rows after the failed load: " + tracker.cursorAll().remaining()
+                + " (Expected: 1, after a checksum error)");
+
+        // Sizes read before any checksum must fail as IOException, not as unchecked exceptions
+        source.saveColumnFile(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(16);
+            raf.writeInt(-1); // Category count
+        }
+        loadCorrupt(file, "negative category count");
+        source.saveColumnFile(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            ByteBuffer header = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            raf.getChannel().read(header, 0);
+            int categories = header.getInt(16);
+            int position = 20;
+            for (int code = 0; code < categories; code++) {
+                position += 4 + header.getInt(position);
+            }
+            position += 4; // Header checksum
+            raf.seek(position + 4 + 8 + 16 + 8 * ((categories + 63) / 64));
+            raf.writeInt(Integer.reverseBytes(Integer.MAX_VALUE - 8)); // First block's payload length
+        }
+        loadCorrupt(file, "huge payload length");
+
+        tracker.loadColumnFile(file, "2024-02-30", null);
+        System.out.println("Rows after an unparseable start date: " + tracker.cursorAll().remaining()
+                + " (Expected: 1, after a date error)");
+        new File(file).delete();
+    }
+
+    private static void loadCorrupt(String file, String damage) {
+        try {
+            ExpenseColumnFile.load(new ExpenseStore(), file);
+            System.out.println("❌ Loaded a file with a " + damage);
+        } catch (IOException e) {
+            System.out.println("✅ " + damage + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println("❌ " + damage + ": " + e);
+        }
+    }
+
+    // Test Size and Speed Against the Text Format
+    private static void testAgainstText() {
+        System.out.println("\n=== Testing Size and Speed Against the Text Format ===");
+        String text = "compare.csv";
+        String columns = "compare.expc";
+        ExpenseTracker source = new ExpenseTracker(new ExpenseDataGenerator(43).generateStore(1_000_000));
+        long textWrite = Long.MAX_VALUE;
+        long columnWrite = Long.MAX_VALUE;
+        long textRead = Long.MAX_VALUE;
+        long columnRead = Long.MAX_VALUE;
+        ExpenseTracker loaded = new ExpenseTracker();
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            source.saveToFile(text);
+            textWrite = Math.min(textWrite, System.nanoTime() - start);
+            start = System.nanoTime();
+            source.saveColumnFile(columns);
+            columnWrite = Math.min(columnWrite, System.nanoTime() - start);
+            start = System.nanoTime();
+            loaded.loadFromFile(text);
+            textRead = Math.min(textRead, System.nanoTime() - start);
+            start = System.nanoTime();
+            loaded.loadColumnFile(columns);
+            columnRead = Math.min(columnRead, System.nanoTime() - start);
+        }
+        long textBytes = new File(text).length();
+        long columnBytes = new File(columns).length();
+        System.out.printf("%-8s %12s %10s %10s%n", "Format", "Bytes", "Write ms", "Read ms");
+        System.out.printf("%-8s %12d %10.1f %10.1f%n", "Text", textBytes, textWrite / 1e6, textRead / 1e6);
+        System.out.printf("%-8s %12d %10.1f %10.1f%n", "Columns", columnBytes, columnWrite / 1e6, columnRead / 1e6);
+        System.out.printf("%s Column file is %.1fx smaller (Expected: at least 4x)%n",
+                textBytes >= 4 * columnBytes ? "✅" : "❌", (double) textBytes / columnBytes);
+        System.out.println((columnRead < textRead ? "✅" : "❌") + " Column file reads faster");
+        new File(text).delete();
+        new File(columns).delete();
+    }
+}
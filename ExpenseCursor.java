@@ -0,0 +1,297 @@
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A forward-only cursor over the rows matched by a query. The cursor reads
+ * the primitive columns of the store directly, so counting, summing or
+ * reading the first page of a large result never builds the full list of
+ * {@link Expense} objects; an Expense is only created when {@link #get()},
+ * {@link #nextPage(int)}, {@link #stream()} or {@link #toList()} asks for one.
+ *
+ * <pre>
+ * ExpenseCursor cursor = tracker.cursorByCategory("Food").skip(40).limit(20);
+ * while (cursor.next()) {
+ *     System.out.println(cursor.getDate() + " " + cursor.getAmount());
+ * }
+ * </pre>
+ *
+ * <p>Like {@link ExpenseRange}, a cursor reads the tracker as it is and must
+ * not be used after the tracker changes.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseCursor {
+
+    private final ExpenseStore store;
+    private final IntList rows;        // Row ids to visit, or null
+    private final DateIndex dateIndex; // Date index whose positions are visited, or null
+    private int pos;                   // Next position to visit
+    private int end;                   // Last position (exclusive)
+    private int row = -1;              // Current row id
+
+    private ExpenseCursor(ExpenseStore store, IntList rows, DateIndex dateIndex, int from, int to) {
+        this.store = store;
+        this.rows = rows;
+        this.dateIndex = dateIndex;
+        this.pos = from;
+        this.end = Math.max(from, to);
+    }
+
+    /**
+     * Returns a cursor over every live row of a store, in insertion order.
+     *
+     * @param store The store to read.
+     * @return The cursor.
+     */
+    static ExpenseCursor ofAll(ExpenseStore store) {
+        if (store.deletedCount() == 0) {
+            return new ExpenseCursor(store, null, null, 0, store.size());
+        }
+        IntList live = new IntList(store.liveCount());
+        for (int row = 0; row < store.size(); row++) {
+            if (!store.isDeleted(row)) {
+                live.add(row);
+            }
+        }
+        return ofRows(store, live);
+    }
+
+    /**
+     * Returns a cursor over a list of row ids.
+     *
+     * @param store The store to read.
+     * @param rows  The row ids, or null for none.
+     * @return The cursor.
+     */
+    static ExpenseCursor ofRows(ExpenseStore store, IntList rows) {
+        return new ExpenseCursor(store, rows, null, 0, rows == null ? 0 : rows.size());
+    }
+
+    /**
+     * Returns a cursor over positions [from, to) of a date index, in date order.
+     *
+     * @param store     The store to read.
+     * @param dateIndex The date index the positions refer to.
+     * @param from      The first position (inclusive).
+     * @param to        The last position (exclusive).
+     * @return The cursor.
+     */
+    static ExpenseCursor ofDateRange(ExpenseStore store, DateIndex dateIndex, int from, int to) {
+        return new ExpenseCursor(store, null, dateIndex, from, to);
+    }
+
+    /**
+     * Returns a cursor that matches nothing.
+     *
+     * @param store The store the cursor belongs to.
+     * @return The cursor.
+     */
+    static ExpenseCursor empty(ExpenseStore store) {
+        return new ExpenseCursor(store, null, null, 0, 0);
+    }
+
+    private int rowAt(int position) {
+        if (rows != null) {
+            return rows.get(position);
+        }
+        return dateIndex != null ? dateIndex.rowAt(position) : position;
+    }
+
+    /**
+     * Moves to the next matching row.
+     *
+     * @return True if there is a current row, false once the cursor is exhausted.
+     */
+    public boolean next() {
+        if (pos >= end) {
+            row = -1;
+            return false;
+        }
+        row = rowAt(pos++);
+        return true;
+    }
+
+    /**
+     * Skips over matching rows, as the offset of a page.
+     *
+     * @param count The number of rows to skip.
+     * @return This cursor.
+     */
+    public ExpenseCursor skip(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Skip count must not be negative: " + count);
+        }
+        pos = (int) Math.min(end, (long) pos + count);
+        return this;
+    }
+
+    /**
+     * Stops the cursor after at most the given number of further rows, as
+     * the size of a page.
+     *
+     * @param count The maximum number of rows left to visit.
+     * @return This cursor.
+     */
+    public ExpenseCursor limit(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + count);
+        }
+        end = (int) Math.min(end, (long) pos + count);
+        return this;
+    }
+
+    /**
+     * Returns the number of rows the cursor has not visited yet. Nothing is
+     * scanned, since every source knows its size up front.
+     *
+     * @return The remaining row count.
+     */
+    public int remaining() {
+        return end - pos;
+    }
+
+    /**
+     * Returns the store row id of the current row.
+     *
+     * @return The row id.
+     */
+    public int row() {
+        checkCurrent();
+        return row;
+    }
+
+    /**
+     * Returns the date of the current row as an epoch day.
+     *
+     * @return The epoch day.
+     */
+    public int epochDay() {
+        checkCurrent();
+        return store.dayAt(row);
+    }
+
+    /**
+     * Returns the amount of the current row in cents.
+     *
+     * @return The amount in cents.
+     */
+    public long cents() {
+        checkCurrent();
+        return store.centsAt(row);
+    }
+
+    /**
+     * Returns the dictionary code of the current row's category.
+     *
+     * @return The category code.
+     */
+    public int categoryCode() {
+        checkCurrent();
+        return store.categoryCodeAt(row);
+    }
+
+    /**
+     * Returns the date of the current row.
+     *
+     * @return The date (YYYY-MM-DD).
+     */
+    public String getDate() {
+        return ExpenseStore.fromEpochDay(epochDay());
+    }
+
+    /**
+     * Returns the amount of the current row.
+     *
+     * @return The amount.
+     */
+    public double getAmount() {
+        return ExpenseStore.fromCents(cents());
+    }
+
+    /**
+     * Returns the category of the current row. The name is shared with the
+     * store's dictionary, so no string is created.
+     *
+     * @return The category.
+     */
+    public String getCategory() {
+        return store.categoryName(categoryCode());
+    }
+
+    /**
+     * Materializes the current row.
+     *
+     * @return The expense.
+     */
+    public Expense get() {
+        checkCurrent();
+        return store.get(row);
+    }
+
+    /**
+     * Sums the amounts of the remaining rows, leaving the cursor exhausted.
+     *
+     * @return The total in cents.
+     */
+    public long sumCents() {
+        long total = 0;
+        for (; pos < end; pos++) {
+            total += store.centsAt(rowAt(pos));
+        }
+        row = -1;
+        return total;
+    }
+
+    /**
+     * Materializes up to the given number of rows and moves past them, for
+     * reading a result page at a time.
+     *
+     * @param pageSize The maximum number of expenses to return.
+     * @return The next page, empty once the cursor is exhausted.
+     */
+    public ArrayList<Expense> nextPage(int pageSize) {
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("Page size must not be negative: " + pageSize);
+        }
+        int pageEnd = (int) Math.min(end, (long) pos + pageSize);
+        ArrayList<Expense> page = new ArrayList<>(pageEnd - pos);
+        for (; pos < pageEnd; pos++) {
+            page.add(store.get(rowAt(pos)));
+        }
+        row = -1;
+        return page;
+    }
+
+    /**
+     * Materializes every remaining row, leaving the cursor exhausted.
+     *
+     * @return The remaining expenses, in cursor order.
+     */
+    public ArrayList<Expense> toList() {
+        return nextPage(remaining());
+    }
+
+    /**
+     * Returns a lazy stream over the remaining rows, leaving the cursor
+     * exhausted. Expenses are created only as the stream pulls them, so
+     * short-circuiting operations such as findFirst or limit stop early.
+     *
+     * @return The stream of expenses, in cursor order.
+     */
+    public Stream<Expense> stream() {
+        int from = pos;
+        pos = end;
+        row = -1;
+        return IntStream.range(from, end).mapToObj(position -> store.get(rowAt(position)));
+    }
+
+    private void checkCurrent() {
+        if (row < 0) {
+            throw new NoSuchElementException("No current row; call next() first");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.stream.Collectors;
+
+/**
+ * Test class for ExpenseCursor to validate lazy, paged query results.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseCursorTest {
+
+    public static void main(String[] args) {
+        ExpenseTracker tracker = new ExpenseTracker();
+        for (int i = 1; i <= 25; i++) {
+            tracker.addExpense(String.format("2024-01-%02d", i), i, i % 5 == 0 ? "Rent" : "Food");
+        }
+
+        // 1. Test Column Access
+        testColumns(tracker);
+
+        // 2. Test Paging
+        testPaging(tracker);
+
+        // 3. Test Streams
+        testStreams(tracker);
+    }
+
+    // Test Column Access
+    private static void testColumns(ExpenseTracker tracker) {
+        System.out.println("\n=== Testing Column Access ===");
+        ExpenseCursor cursor = tracker.cursorByCategory("Rent");
+        System.out.println("Remaining: " + cursor.remaining() + " (Expected: 5)");
+        StringBuilder amounts = new StringBuilder();
+        while (cursor.next()) {
+            amounts.append(cursor.getAmount()).append(' ');
+        }
+        System.out.println("Rent amounts: " + amounts + "(Expected: 5.0 10.0 15.0 20.0 25.0)");
+        System.out.println("Food cents: " + tracker.cursorByCategory("Food").sumCents() + " (Expected: 25000)");
+        System.out.println("Unknown category: " + tracker.cursorByCategory("Travel").remaining() + " (Expected: 0)");
+        System.out.println("Invalid date: " + tracker.cursorByDate("2024-13-01").remaining() + " (Expected: 0)");
+    }
+
+    // Test Paging
+    private static void testPaging(ExpenseTracker tracker) {
+        System.out.println("\n=== Testing Paging ===");
+        ExpenseCursor cursor = tracker.viewDateRange("2024-01-01", "2024-01-31").cursor();
+        int pages = 0;
+        while (cursor.remaining() > 0) {
+            System.out.println("Page " + ++pages + ": " + cursor.nextPage(10).size() + " expenses");
+        }
+        System.out.println("Pages: " + pages + " (Expected: 3, the last holding 5)");
+        System.out.println("Offset 20, limit 10: " + tracker.cursorAll().skip(20).limit(10).toList().size()
+                + " (Expected: 5)");
+        ExpenseCursor third = tracker.cursorAll().skip(2).limit(1);
+        third.next();
+        System.out.println("Third expense: " + third.getDate() + " " + third.getCategory()
+                + " (Expected: 2024-01-03 Food)");
+    }
+
+    // Test Streams
+    private static void testStreams(ExpenseTracker tracker) {
+        System.out.println("\n=== Testing Streams ===");
+        System.out.println("First Food over $20: " + tracker.cursorByCategory("Food").stream()
+                .filter(e -> e.getAmount() > 20).findFirst().map(Expense::getDate).orElse("none")
+                + " (Expected: 2024-01-21)");
+        System.out.println("Dates on 2024-01-07: " + tracker.cursorByDate("2024-01-07").stream()
+                .map(Expense::getCategory).collect(Collectors.toList()) + " (Expected: [Food])");
+    }
+}
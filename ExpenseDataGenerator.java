@@ -0,0 +1,127 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates reproducible synthetic expense data for benchmarks. Categories
+ * follow a Zipf distribution, so a few categories hold most of the rows as
+ * in real spending data; amounts are log-normal and dates are spread over a
+ * fixed span of years.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseDataGenerator {
+
+    /** The category names, most frequent first. */
+    public static final String[] CATEGORIES = { "Groceries", "Food", "Transport", "Rent", "Utilities", "Shopping",
+            "Entertainment", "Health", "Travel", "Insurance", "Education", "Gifts", "Subscriptions", "Pets",
+            "Clothing", "Fitness", "Childcare", "Charity", "Taxes", "Repairs" };
+
+    /** The Zipf exponent used by default; 1.0 gives the top category about 28% of the rows. */
+    public static final double DEFAULT_SKEW = 1.0;
+
+    /** The first generated date, 2015-01-01, as an epoch day. */
+    public static final int START_DAY = ExpenseStore.toEpochDay("2015-01-01");
+
+    /** The number of distinct days dates are drawn from (ten years). */
+    public static final int SPAN_DAYS = 3653;
+
+    private final Random random;
+    private final double[] cumulative;
+
+    /**
+     * Constructs a generator with the default category skew.
+     *
+     * @param seed The random seed; the same seed gives the same data.
+     */
+    public ExpenseDataGenerator(long seed) {
+        this(seed, DEFAULT_SKEW);
+    }
+
+    /**
+     * Constructs a generator.
+     *
+     * @param seed The random seed; the same seed gives the same data.
+     * @param skew The Zipf exponent of the category distribution; 0 is uniform.
+     */
+    public ExpenseDataGenerator(long seed, double skew) {
+        random = new Random(seed);
+        cumulative = new double[CATEGORIES.length];
+        double total = 0;
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            total += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    /**
+     * Returns a random date as an epoch day.
+     *
+     * @return The epoch day.
+     */
+    public int nextDay() {
+        return START_DAY + random.nextInt(SPAN_DAYS);
+    }
+
+    /**
+     * Returns a random amount in cents, log-normal around $20 and at least one cent.
+     *
+     * @return The amount in cents.
+     */
+    public long nextCents() {
+        return Math.max(1, Math.round(2000 * Math.exp(random.nextGaussian())));
+    }
+
+    /**
+     * Returns a random category index into {@link #CATEGORIES}.
+     *
+     * @return The category index.
+     */
+    public int nextCategory() {
+        int pos = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(pos < 0 ? -pos - 1 : pos, CATEGORIES.length - 1);
+    }
+
+    /**
+     * Generates rows straight into a new store, skipping string parsing.
+     *
+     * @param rows The number of rows.
+     * @return The filled store.
+     */
+    public ExpenseStore generateStore(int rows) {
+        ExpenseStore store = new ExpenseStore();
+        int[] codes = new int[CATEGORIES.length];
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            codes[i] = store.encodeCategory(CATEGORIES[i]);
+        }
+        store.ensureCapacity(rows);
+        for (int i = 0; i < rows; i++) {
+            store.add(nextDay(), nextCents(), codes[nextCategory()]);
+        }
+        return store;
+    }
+
+    /**
+     * Writes rows to a text file in the format read by loadFromFile.
+     *
+     * @param filename The file to write.
+     * @param rows     The number of rows.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeFile(String filename, int rows) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename), 1 << 16)) {
+            for (int i = 0; i < rows; i++) {
+                writer.write(ExpenseStore.fromEpochDay(nextDay()) + "," + ExpenseStore.fromCents(nextCents()) + ","
+                        + CATEGORIES[nextCategory()]);
+                writer.newLine();
+            }
+        }
+    }
+}
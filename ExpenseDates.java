@@ -0,0 +1,208 @@
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Converts between YYYY-MM-DD dates and epoch days (days since 1970-01-01)
+ * with plain integer arithmetic, so parsing and formatting allocate nothing
+ * beyond the resulting string. Shared by {@link Expense}, the store and the
+ * file loader so every path accepts exactly the same dates.
+ *
+ * <p>The parser takes a four-digit year and a one- or two-digit month and
+ * day, so 2024-1-5 and 2024-01-05 are the same date. Leading and trailing
+ * whitespace is ignored. Dates are checked against the proleptic Gregorian
+ * calendar; 2023-02-29 is rejected.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class ExpenseDates {
+
+    /** Returned by the parsers when the text is not a valid date. */
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    private ExpenseDates() {
+    }
+
+    /**
+     * Parses a date to an epoch day.
+     *
+     * @param date The date string.
+     * @return The epoch day, or {@link #INVALID} if the date is null or malformed.
+     */
+    public static int parse(String date) {
+        if (date == null) {
+            return INVALID;
+        }
+        int start = 0;
+        int end = date.length();
+        while (start < end && date.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && date.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int field = 0;
+        int fieldDigits = 0;
+        for (int i = start; i < end; i++) {
+            char c = date.charAt(i);
+            if (c == '-') {
+                if (field == 2 || !validWidth(field, fieldDigits)) {
+                    return INVALID;
+                }
+                field++;
+                fieldDigits = 0;
+            } else if (c >= '0' && c <= '9') {
+                fieldDigits++;
+                if (field == 0) {
+                    year = year * 10 + (c - '0');
+                } else if (field == 1) {
+                    month = month * 10 + (c - '0');
+                } else {
+                    day = day * 10 + (c - '0');
+                }
+            } else {
+                return INVALID;
+            }
+        }
+        return field == 2 && validWidth(field, fieldDigits) ? ofValid(year, month, day) : INVALID;
+    }
+
+    /**
+     * Parses a date held as ASCII bytes, such as a field of a memory-mapped
+     * file, to an epoch day.
+     *
+     * @param buffer The bytes.
+     * @param start  The first byte of the field (inclusive).
+     * @param end    The last byte of the field (exclusive).
+     * @return The epoch day, or {@link #INVALID} if the field is malformed.
+     */
+    public static int parse(ByteBuffer buffer, int start, int end) {
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int field = 0;
+        int fieldDigits = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '-') {
+                if (field == 2 || !validWidth(field, fieldDigits)) {
+                    return INVALID;
+                }
+                field++;
+                fieldDigits = 0;
+            } else if (b >= '0' && b <= '9') {
+                fieldDigits++;
+                if (field == 0) {
+                    year = year * 10 + (b - '0');
+                } else if (field == 1) {
+                    month = month * 10 + (b - '0');
+                } else {
+                    day = day * 10 + (b - '0');
+                }
+            } else {
+                return INVALID;
+            }
+        }
+        return field == 2 && validWidth(field, fieldDigits) ? ofValid(year, month, day) : INVALID;
+    }
+
+    private static boolean validWidth(int field, int digits) {
+        return field == 0 ? digits == 4 : digits >= 1 && digits <= 2;
+    }
+
+    private static int ofValid(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * Returns the number of days in a month.
+     *
+     * @param year  The year.
+     * @param month The month (1-12).
+     * @return The number of days.
+     */
+    public static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Converts a proleptic Gregorian date to days since 1970-01-01 without
+     * allocating (Howard Hinnant's days_from_civil).
+     *
+     * @param year  The year.
+     * @param month The month (1-12).
+     * @param day   The day of the month.
+     * @return The epoch day.
+     */
+    public static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns the month number (year * 12 + month - 1) of an epoch day, the
+     * inverse of days_from_civil cut short after the month.
+     *
+     * @param epochDay The date as an epoch day.
+     * @return The month key.
+     */
+    public static int monthKey(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153; // 0 = March
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * Formats an epoch day as YYYY-MM-DD.
+     *
+     * @param epochDay The epoch day.
+     * @return The date string.
+     */
+    public static String format(int epochDay) {
+        int monthKey = monthKey(epochDay);
+        int year = Math.floorDiv(monthKey, 12);
+        int month = monthKey - year * 12 + 1;
+        if (year < 0 || year > 9999) {
+            return LocalDate.ofEpochDay(epochDay).toString(); // Signed or five-digit years
+        }
+        int day = epochDay - epochDay(year, month, 1) + 1;
+        char[] text = { (char) ('0' + year / 1000), (char) ('0' + year / 100 % 10), (char) ('0' + year / 10 % 10),
+                (char) ('0' + year % 10), '-', (char) ('0' + month / 10), (char) ('0' + month % 10), '-',
+                (char) ('0' + day / 10), (char) ('0' + day % 10) };
+        return new String(text);
+    }
+}
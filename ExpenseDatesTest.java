@@ -0,0 +1,74 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Test class for ExpenseDates to validate parsing and formatting against
+ * java.time, and the handling of unpadded and malformed dates.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseDatesTest {
+
+    public static void main(String[] args) {
+        // 1. Test Parity With java.time
+        testParity();
+
+        // 2. Test Unpadded and Malformed Dates
+        testLenientParsing();
+
+        // 3. Test Date Ranges in the Tracker
+        testTrackerRanges();
+    }
+
+    // Test Parity With java.time
+    private static void testParity() {
+        System.out.println("\n=== Testing Parity With java.time ===");
+        int mismatches = 0;
+        int first = (int) LocalDate.of(1600, 1, 1).toEpochDay();
+        int last = (int) LocalDate.of(2400, 12, 31).toEpochDay();
+        for (int day = first; day <= last; day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            String text = date.toString();
+            ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+            if (!ExpenseDates.format(day).equals(text) || ExpenseDates.parse(text) != day
+                    || ExpenseDates.parse(bytes, 0, bytes.limit()) != day
+                    || ExpenseDates.monthKey(day) != date.getYear() * 12 + date.getMonthValue() - 1) {
+                mismatches++;
+            }
+        }
+        System.out.println((mismatches == 0 ? "✅" : "❌") + " Mismatched days from 1600 to 2400: " + mismatches);
+    }
+
+    // Test Unpadded and Malformed Dates
+    private static void testLenientParsing() {
+        System.out.println("\n=== Testing Unpadded and Malformed Dates ===");
+        int expected = (int) LocalDate.of(2024, 1, 5).toEpochDay();
+        String[] same = { "2024-1-5", "2024-01-5", "2024-1-05", " 2024-01-05\t" };
+        for (String text : same) {
+            System.out.println((ExpenseDates.parse(text) == expected ? "✅" : "❌") + " '" + text + "' is 2024-01-05");
+        }
+        String[] invalid = { "", "2024", "2024-01", "24-01-05", "2024-13-01", "2024-00-10", "2023-02-29",
+                "2024-01-32", "2024-001-05", "2024-01-05-", "2024/01/05", "2024-01-05x", null };
+        for (String text : invalid) {
+            System.out.println((ExpenseDates.parse(text) == ExpenseDates.INVALID ? "✅" : "❌") + " '" + text
+                    + "' is rejected");
+        }
+        System.out.println("Leap day: " + ExpenseDates.format(ExpenseDates.parse("2024-2-29"))
+                + " (Expected: 2024-02-29)");
+    }
+
+    // Test Date Ranges in the Tracker
+    private static void testTrackerRanges() {
+        System.out.println("\n=== Testing Date Ranges in the Tracker ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-1-5", 10.0, "Food");
+        tracker.addExpense("2024-01-20", 20.0, "Food");
+        tracker.addExpense("2024-2-1", 40.0, "Food");
+        System.out.println("Jan 1 to Jan 31: " + tracker.getExpensesInDateRange("2024-1-1", "2024-1-31").size()
+                + " (Expected: 2)");
+        System.out.println("On 2024-01-05: " + tracker.searchByDate("2024-01-05").size() + " (Expected: 1)");
+    }
+}
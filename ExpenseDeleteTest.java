@@ -0,0 +1,182 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Test class for tombstone deletes to validate that deleted rows disappear
+ * from every search, scan and aggregate, that compaction keeps the results
+ * and stable ids intact, and that bulk deletes stay fast.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseDeleteTest {
+
+    private static final String[] CATEGORIES = { "Food", "Rent", "Travel", "Books" };
+
+    public static void main(String[] args) {
+        // 1. Test Parity With a List Model
+        testModelParity();
+
+        // 2. Test Stable Ids
+        testStableIds();
+
+        // 3. Test Journal Replay
+        testJournalReplay();
+
+        // 4. Test Bulk Delete Speed
+        testBulkDelete();
+
+        // 5. Test Bulk Delete of One Common Amount
+        testCommonAmountDelete();
+    }
+
+    // Test Parity With a List Model
+    private static void testModelParity() {
+        System.out.println("\n=== Testing Parity With a List Model ===");
+        Random random = new Random(18);
+        ExpenseTracker tracker = new ExpenseTracker();
+        ArrayList<Expense> model = new ArrayList<>();
+        int mismatches = 0;
+        for (int step = 0; step < 4_000; step++) {
+            if (model.isEmpty() || random.nextInt(3) > 0) {
+                Expense expense = new Expense(String.format("2024-%02d-%02d", 1 + random.nextInt(3),
+                        1 + random.nextInt(28)), random.nextInt(500) / 4.0, CATEGORIES[random.nextInt(4)]);
+                tracker.addExpense(expense.getDate(), expense.getAmount(), expense.getCategory());
+                model.add(expense);
+            } else {
+                int index = random.nextInt(model.size());
+                tracker.deleteExpense(index);
+                model.remove(index);
+            }
+            if (step % 400 == 399) {
+                mismatches += compare(tracker, model) ? 0 : 1;
+            }
+        }
+        System.out.println((mismatches == 0 ? "✅" : "❌") + " Checkpoints that differ from the model: " + mismatches);
+    }
+
+    private static boolean compare(ExpenseTracker tracker, ArrayList<Expense> model) {
+        long total = 0;
+        long foodTotal = 0;
+        int february = 0;
+        int atLeast100 = 0;
+        for (Expense expense : model) {
+            total += expense.getCents();
+            foodTotal += expense.getCategory().equals("Food") ? expense.getCents() : 0;
+            february += expense.getDate().startsWith("2024-02") ? 1 : 0;
+            atLeast100 += expense.getCents() >= 10_000 ? 1 : 0;
+        }
+        ArrayList<Expense> all = tracker.cursorAll().toList();
+        boolean same = all.size() == model.size();
+        for (int i = 0; same && i < all.size(); i++) {
+            same = all.get(i).getEpochDay() == model.get(i).getEpochDay()
+                    && all.get(i).getCents() == model.get(i).getCents()
+                    && all.get(i).getCategory().equals(model.get(i).getCategory());
+        }
+        long reportCents = 0;
+        for (ExpenseReport.Row row : tracker.generateReport(false, ExpenseReport.Period.ALL).getRows()) {
+            reportCents += ExpenseStore.toCents(row.getSum());
+        }
+        return same && ExpenseStore.toCents(tracker.getTotalExpenses()) == total
+                && ExpenseStore.toCents(tracker.getTotalByCategory("Food")) == foodTotal
+                && tracker.cursorByCategory("Food").sumCents() == foodTotal
+                && tracker.getExpensesInDateRange("2024-02-01", "2024-02-29").size() == february
+                && tracker.query().amountAtLeast(100).count() == atLeast100
+                && reportCents == total;
+    }
+
+    // Test Stable Ids
+    private static void testStableIds() {
+        System.out.println("\n=== Testing Stable Ids ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        for (int i = 1; i <= 8; i++) {
+            tracker.addExpense("2024-01-0" + i, i, "Food");
+        }
+        long sixth = tracker.getExpenseId(5);
+        tracker.deleteExpense(0);
+        tracker.deleteExpense(0);
+        tracker.deleteExpense(0); // Three of eight deleted: past the compaction threshold
+        System.out.println("Id of index 2 after deletes: " + tracker.getExpenseId(2) + " (Expected: " + sixth + ")");
+        System.out.println("Deleted by id: " + tracker.deleteById(sixth) + " (Expected: true)");
+        System.out.println("Deleted again: " + tracker.deleteById(sixth) + " (Expected: false)");
+        System.out.println("Remaining: " + tracker.cursorAll().toList());
+        System.out.println("Expected: 2024-01-04, 2024-01-05, 2024-01-07, 2024-01-08");
+        System.out.println("Total: " + tracker.getTotalExpenses() + " (Expected: 24.0)");
+    }
+
+    // Test Journal Replay
+    private static void testJournalReplay() {
+        System.out.println("\n=== Testing Journal Replay ===");
+        String base = "delete_test.bin";
+        String log = "delete_test.journal";
+        new File(base).delete();
+        new File(log).delete();
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.openJournal(base, log, ExpenseJournal.SyncPolicy.NONE, 1);
+        for (int i = 1; i <= 6; i++) {
+            tracker.addExpense("2024-02-0" + i, 10 * i, "Rent");
+        }
+        long fifth = tracker.getExpenseId(4);
+        tracker.deleteExpense(1);
+        tracker.deleteById(fifth);
+        tracker.closeJournal();
+
+        ExpenseTracker recovered = new ExpenseTracker();
+        recovered.openJournal(base, log, ExpenseJournal.SyncPolicy.NONE, 1);
+        System.out.println("Recovered total: " + recovered.getTotalExpenses() + " (Expected: 140.0)");
+        System.out.println("Recovered rows: " + recovered.cursorAll().remaining() + " (Expected: 4)");
+        recovered.closeJournal();
+        new File(base).delete();
+        new File(log).delete();
+    }
+
+    // Test Bulk Delete Speed
+    private static void testBulkDelete() {
+        System.out.println("\n=== Testing Bulk Delete Speed ===");
+        int rows = 2_000_000;
+        int deletes = 100_000;
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(18).generateStore(rows));
+        double before = tracker.getTotalExpenses();
+        Random random = new Random(18);
+        long start = System.nanoTime();
+        for (int i = 0; i < deletes; i++) {
+            tracker.deleteExpense(random.nextInt(rows - i));
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Deleted " + deletes + " of " + rows + " rows in " + millis + " ms");
+        System.out.println((tracker.cursorAll().remaining() == rows - deletes ? "✅" : "❌") + " Remaining rows: "
+                + tracker.cursorAll().remaining());
+        System.out.println((tracker.getTotalExpenses() < before ? "✅" : "❌") + " Total went down");
+    }
+
+    // Test Bulk Delete of One Common Amount
+    private static void testCommonAmountDelete() {
+        System.out.println("\n=== Testing Bulk Delete of One Common Amount ===");
+        int rows = 400_000;
+        int deletes = 90_000; // Stays under the compaction threshold, so the amount index is maintained
+        String[] dates = new String[rows];
+        double[] amounts = new double[rows];
+        String[] categories = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            dates[i] = String.format("2024-%02d-%02d", 1 + i % 12, 1 + i % 28);
+            amounts[i] = 10.0;
+            categories[i] = CATEGORIES[i % 4];
+        }
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpenses(dates, amounts, categories);
+        tracker.searchByAmount(10.0); // Reads the amount index once before the deletes
+        long start = System.nanoTime();
+        for (int i = 0; i < deletes; i++) {
+            tracker.deleteExpense((rows - deletes) / 2); // Always a row in the middle of the amount's list
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println((millis < 2_000 ? "✅" : "❌") + " Deleted " + deletes + " rows of one amount in " + millis
+                + " ms");
+        System.out.println("Rows at 10.00: " + tracker.searchByAmount(10.0).size() + " (Expected: " + (rows - deletes)
+                + ")");
+        System.out.println("Rows from 5.00 to 20.00: " + tracker.query().amountAtLeast(5).amountAtMost(20).count() + " (Expected: "
+                + (rows - deletes) + ")");
+    }
+}
@@ -0,0 +1,498 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads {@code date,amount,category} text files into an {@link ExpenseStore}
+ * without going through {@code readLine}, {@code String.split} or
+ * {@code Double.parseDouble} on the common path. The file is memory-mapped
+ * in chunks that end on a newline, and each field is parsed straight from the
+ * bytes: dates to epoch days, amounts to cents, and categories to dictionary
+ * codes through a byte-keyed table, so a category name is decoded to a
+ * {@code String} only the first time it is seen.
+ *
+ * <p>Lines are accepted or skipped exactly as the original line-by-line
+ * loader did: a line without exactly three comma-separated fields, or whose
+ * fields fail {@link Expense} validation, is reported and skipped, while an
+ * amount that is not a number stops the load with a
+ * {@link NumberFormatException} after the rows before it were stored.</p>
+ *
+ * <p>{@link #loadParallel} parses the chunks on a fork-join pool and merges
+ * them in file order, so its result and its messages match {@link #load}.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseFileLoader {
+
+    /** Default size of each mapped chunk. */
+    public static final int DEFAULT_CHUNK_BYTES = 64 << 20;
+
+    /** Smallest chunk handed to a worker in parallel mode. */
+    private static final int MIN_PARALLEL_CHUNK_BYTES = 1 << 20;
+
+    /** Chunks per worker in parallel mode, so uneven chunks even out. */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private ExpenseFileLoader() {
+    }
+
+    /**
+     * Replaces the contents of the store with the rows of a file.
+     *
+     * @param filename The file to load.
+     * @param store    The store to fill; it is cleared once the file is open.
+     * @return Row, byte and timing figures for the load.
+     * @throws IOException           if the file cannot be read.
+     * @throws NumberFormatException if an amount is not a number; rows before it are kept.
+     */
+    public static LoadStats load(String filename, ExpenseStore store) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            store.clear();
+            long fileSize = channel.size();
+            long position = 0;
+            while (position < fileSize) {
+                long end = chunkEnd(channel, position, Math.min(fileSize, position + DEFAULT_CHUNK_BYTES), fileSize);
+                Chunk chunk = parse(channel, position, end);
+                chunk.mergeInto(store);
+                position = end;
+            }
+            return new LoadStats(store.size(), fileSize, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Replaces the contents of the store with the rows of a file, parsing
+     * newline-aligned chunks of the file concurrently.
+     *
+     * @param filename    The file to load.
+     * @param store       The store to fill; it is cleared once the file is open.
+     * @param parallelism The number of worker threads.
+     * @return Row, byte and timing figures for the load.
+     * @throws IOException           if the file cannot be read.
+     * @throws NumberFormatException if an amount is not a number; rows before it are kept.
+     */
+    public static LoadStats loadParallel(String filename, ExpenseStore store, int parallelism) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            store.clear();
+            long fileSize = channel.size();
+            long chunkBytes = Math.max(MIN_PARALLEL_CHUNK_BYTES, fileSize / ((long) parallelism * CHUNKS_PER_WORKER) + 1);
+            chunkBytes = Math.min(chunkBytes, DEFAULT_CHUNK_BYTES);
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                ArrayList<Future<Chunk>> chunks = new ArrayList<>();
+                long position = 0;
+                while (position < fileSize) {
+                    long chunkStart = position;
+                    long chunkEnd = chunkEnd(channel, position, Math.min(fileSize, position + chunkBytes), fileSize);
+                    chunks.add(pool.submit(() -> parse(channel, chunkStart, chunkEnd)));
+                    position = chunkEnd;
+                }
+                // Merge strictly in file order; an error in one chunk discards every later chunk.
+                for (Future<Chunk> chunk : chunks) {
+                    join(chunk).mergeInto(store);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            return new LoadStats(store.size(), fileSize, System.nanoTime() - start);
+        }
+    }
+
+    private static Chunk join(Future<Chunk> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to parse chunk", e.getCause());
+        }
+    }
+
+    /**
+     * Finds the end of a chunk: the byte after the first newline at or past
+     * the proposed end, or the end of the file.
+     *
+     * @param channel  The file.
+     * @param start    The start of the chunk.
+     * @param proposed The proposed end of the chunk.
+     * @param fileSize The size of the file.
+     * @return The chunk end.
+     * @throws IOException if the file cannot be read.
+     */
+    static long chunkEnd(FileChannel channel, long start, long proposed, long fileSize) throws IOException {
+        if (proposed >= fileSize) {
+            return fileSize;
+        }
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long position = Math.max(start, proposed - 1);
+        while (position < fileSize) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Parses the lines in [start, end) of a file into a chunk. The range must
+     * start at the beginning of a line and end just after a newline or at the
+     * end of the file.
+     *
+     * @param channel The file.
+     * @param start   The first byte of the range.
+     * @param end     The byte after the range.
+     * @return The parsed chunk.
+     * @throws IOException if the file cannot be mapped.
+     */
+    static Chunk parse(FileChannel channel, long start, long end) throws IOException {
+        Chunk chunk = new Chunk();
+        long position = start;
+        while (position < end) {
+            // A single mapping is limited to 2 GB; large chunks are mapped in pieces.
+            long pieceEnd = end - position > Integer.MAX_VALUE ? chunkEnd(channel, position,
+                    position + Integer.MAX_VALUE - 65536, end) : end;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, pieceEnd - position);
+            if (!chunk.parseLines(buffer)) {
+                break;
+            }
+            position = pieceEnd;
+        }
+        return chunk;
+    }
+
+    /**
+     * The rows parsed from one range of a file, held in column buffers with
+     * categories coded against the chunk's own small dictionary.
+     */
+    static class Chunk {
+        int[] days = new int[1024];
+        long[] cents = new long[1024];
+        int[] codes = new int[1024];
+        int size;
+
+        final ArrayList<String> categories = new ArrayList<>();
+        private final CategoryTable table = new CategoryTable();
+
+        // Skipped lines, reported in file order when the chunk is merged
+        final ArrayList<String> skipped = new ArrayList<>();
+
+        // The number format error that ended the chunk, if any.
+        NumberFormatException error;
+
+        /**
+         * Parses every line in the buffer.
+         *
+         * @param buffer The bytes to parse.
+         * @return False if parsing stopped on a number format error.
+         */
+        boolean parseLines(ByteBuffer buffer) {
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int next = lineEnd + 1;
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (!parseLine(buffer, lineStart, lineEnd)) {
+                    return false;
+                }
+                lineStart = next;
+            }
+            return true;
+        }
+
+        private boolean parseLine(ByteBuffer buffer, int start, int end) {
+            // String.split drops trailing empty fields, so trailing commas do not count.
+            int fieldsEnd = end;
+            while (fieldsEnd > start && buffer.get(fieldsEnd - 1) == ',') {
+                fieldsEnd--;
+            }
+            int firstComma = -1;
+            int secondComma = -1;
+            int commas = 0;
+            for (int i = start; i < fieldsEnd; i++) {
+                if (buffer.get(i) == ',') {
+                    commas++;
+                    if (commas == 1) {
+                        firstComma = i;
+                    } else if (commas == 2) {
+                        secondComma = i;
+                    }
+                }
+            }
+            if (fieldsEnd == start || commas != 2) {
+                skip(buffer, start, end);
+                return true;
+            }
+
+            long amountCents;
+            try {
+                amountCents = parseCents(buffer, firstComma + 1, secondComma);
+            } catch (NumberFormatException e) {
+                error = e;
+                return false;
+            }
+            int day = ExpenseDates.parse(buffer, start, firstComma);
+            if (amountCents < 0 || day == ExpenseDates.INVALID || isBlank(buffer, secondComma + 1, fieldsEnd)) {
+                skip(buffer, start, end);
+                return true;
+            }
+            int code = table.lookup(buffer, secondComma + 1, fieldsEnd, categories);
+
+            if (size == days.length) {
+                int newCapacity = size * 2;
+                days = Arrays.copyOf(days, newCapacity);
+                cents = Arrays.copyOf(cents, newCapacity);
+                codes = Arrays.copyOf(codes, newCapacity);
+            }
+            days[size] = day;
+            cents[size] = amountCents;
+            codes[size] = code;
+            size++;
+            return true;
+        }
+
+        private void skip(ByteBuffer buffer, int start, int end) {
+            skipped.add(decode(buffer, start, end));
+        }
+
+        /**
+         * Appends the chunk's rows to a store, reporting skipped lines in file
+         * order, and rethrows the chunk's number format error if it had one.
+         *
+         * @param store The store to append to.
+         */
+        void mergeInto(ExpenseStore store) {
+            for (String line : skipped) {
+                System.err.println("Skipping malformed line: " + line);
+            }
+            int[] remap = new int[categories.size()];
+            for (int i = 0; i < remap.length; i++) {
+                remap[i] = store.encodeCategory(categories.get(i));
+            }
+            for (int i = 0; i < size; i++) {
+                codes[i] = remap[codes[i]];
+            }
+            store.addAll(days, cents, codes, size);
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Parses an amount field to cents. Plain decimals with at most two
+     * fraction digits are parsed from the bytes; anything else falls back to
+     * {@link Double#parseDouble} so the accepted syntax is unchanged. NaN and
+     * infinite amounts come back as -1, so the line is skipped like a negative one.
+     */
+    private static long parseCents(ByteBuffer buffer, int start, int end) {
+        long whole = 0;
+        int pos = start;
+        while (pos < end && pos - start < 9 && isDigit(buffer.get(pos))) {
+            whole = whole * 10 + (buffer.get(pos++) - '0');
+        }
+        if (pos > start) {
+            if (pos == end) {
+                return whole * 100;
+            }
+            if (buffer.get(pos) == '.' && end - pos - 1 <= 2) {
+                long fraction = 0;
+                int digits = 0;
+                for (int i = pos + 1; i < end && isDigit(buffer.get(i)); i++) {
+                    fraction = fraction * 10 + (buffer.get(i) - '0');
+                    digits++;
+                }
+                if (pos + 1 + digits == end) {
+                    return whole * 100 + (digits == 1 ? fraction * 10 : fraction);
+                }
+            }
+        }
+        double amount = Double.parseDouble(decode(buffer, start, end));
+        return Double.isFinite(amount) ? ExpenseStore.toCents(amount) : -1;
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((buffer.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Open-addressing table from category bytes to chunk-local codes. A hit
+     * compares bytes in place and allocates nothing.
+     */
+    private static class CategoryTable {
+        private byte[][] keys = new byte[64][];
+        private int[] codes = new int[64];
+        private int size;
+
+        int lookup(ByteBuffer buffer, int start, int end, ArrayList<String> names) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = keys.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], buffer, start, end)) {
+                    return codes[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            byte[] key = new byte[end - start];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = buffer.get(start + i);
+            }
+            int code = names.size();
+            names.add(new String(key, StandardCharsets.UTF_8));
+            keys[slot] = key;
+            codes[slot] = code;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return code;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+            if (key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow() {
+            byte[][] oldKeys = keys;
+            int[] oldCodes = codes;
+            keys = new byte[oldKeys.length * 2][];
+            codes = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) {
+                    continue;
+                }
+                int hash = 1;
+                for (byte b : oldKeys[i]) {
+                    hash = 31 * hash + b;
+                }
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                codes[slot] = oldCodes[i];
+            }
+        }
+    }
+
+    /**
+     * Row, byte and timing figures for one load.
+     */
+    public static class LoadStats {
+        private final int rows;
+        private final long bytes;
+        private final long nanos;
+
+        /**
+         * Constructs the figures for a load.
+         *
+         * @param rows  The number of rows stored.
+         * @param bytes The number of bytes read.
+         * @param nanos The elapsed time in nanoseconds.
+         */
+        public LoadStats(int rows, long bytes, long nanos) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.nanos = Math.max(1, nanos);
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns the load rate in rows per second.
+         *
+         * @return Rows per second.
+         */
+        public double getRowsPerSecond() {
+            return rows * 1e9 / nanos;
+        }
+
+        /**
+         * Returns the load rate in megabytes (2^20 bytes) per second.
+         *
+         * @return Megabytes per second.
+         */
+        public double getMegabytesPerSecond() {
+            return bytes * 1e9 / nanos / (1 << 20);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Loaded %d rows (%d bytes) in %.1f ms: %.0f rows/s, %.1f MB/s",
+                    rows, bytes, nanos / 1e6, getRowsPerSecond(), getMegabytesPerSecond());
+        }
+    }
+}
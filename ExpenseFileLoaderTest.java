@@ -0,0 +1,97 @@
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Test class for ExpenseFileLoader to validate byte-level parsing and
+ * malformed-line handling.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseFileLoaderTest {
+
+    public static void main(String[] args) throws IOException {
+        // 1. Test Well-Formed Lines
+        testWellFormed();
+
+        // 2. Test Malformed Lines
+        testMalformed();
+
+        // 3. Test Invalid Number
+        testInvalidNumber();
+
+        // 4. Test Parallel Load Matches Serial Load
+        testParallelParity();
+    }
+
+    // Test Well-Formed Lines
+    private static void testWellFormed() throws IOException {
+        System.out.println("\n=== Testing Well-Formed Lines ===");
+        writeFile("loader_ok.txt", "2024-01-01,50.0,Food\r\n2024-01-02,0.29,Transport\n2024-01-03,7,Food,,\n"
+                + "2024-01-04,1.5e1,Rent\n2024-01-05, 12.345 ,Food");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.loadFromFile("loader_ok.txt");
+        tracker.viewExpenses();
+        System.out.println("Expected: 50.00 Food, 0.29 Transport, 7.00 Food, 15.00 Rent, 12.35 Food");
+        System.out.println("Food total: $" + tracker.getTotalByCategory("Food") + " (Expected: 69.35)");
+        System.out.println("Rows/s reported: " + (tracker.getLastLoadStats().getRowsPerSecond() > 0));
+    }
+
+    // Test Malformed Lines
+    private static void testMalformed() throws IOException {
+        System.out.println("\n=== Testing Malformed Lines ===");
+        writeFile("loader_bad.txt", "2024-01-01,50.0,Food\n\n2024-01-02,20.0\n2024-13-01,5.0,Food\n"
+                + "2024-01-03,-5.0,Food\n2024-01-04,5.0,  \n2024-01-05,5.0,Food,Extra\n2024-01-06,30.0,Food\n"
+                + "2024-01-07,NaN,Food\n2024-01-08,Infinity,Food\n");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.loadFromFile("loader_bad.txt");
+        tracker.viewExpenses();
+        System.out.println("Expected: 2 rows kept and 8 'Skipping malformed line' messages on stderr");
+    }
+
+    // Test Invalid Number
+    private static void testInvalidNumber() throws IOException {
+        System.out.println("\n=== Testing Invalid Number ===");
+        writeFile("loader_nan.txt", "2024-01-01,50.0,Food\n2024-01-02,abc,Food\n2024-01-03,30.0,Food\n");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.loadFromFile("loader_nan.txt");
+        tracker.viewExpenses();
+        System.out.println("Expected: load stops at line 2 with 1 row kept");
+    }
+
+    // Test Parallel Load Matches Serial Load
+    private static void testParallelParity() throws IOException {
+        System.out.println("\n=== Testing Parallel Load Matches Serial Load ===");
+        StringBuilder content = new StringBuilder();
+        String[] categories = { "Food", "Transport", "Rent", "Groceries", "Travel" };
+        for (int i = 0; i < 200_000; i++) {
+            content.append(String.format("2024-%02d-%02d,%d.%02d,%s%n", i % 12 + 1, i % 28 + 1, i % 500, i % 100,
+                    categories[(i * 7) % categories.length]));
+            if (i % 50_000 == 0) {
+                content.append("not,a valid line\n");
+            }
+        }
+        writeFile("loader_parallel.txt", content.toString());
+
+        ExpenseStore serial = new ExpenseStore();
+        ExpenseStore parallel = new ExpenseStore();
+        System.out.println(ExpenseFileLoader.load("loader_parallel.txt", serial));
+        System.out.println(ExpenseFileLoader.loadParallel("loader_parallel.txt", parallel, 4));
+
+        boolean same = serial.size() == parallel.size();
+        for (int i = 0; same && i < serial.size(); i++) {
+            same = serial.dayAt(i) == parallel.dayAt(i) && serial.centsAt(i) == parallel.centsAt(i)
+                    && serial.categoryName(serial.categoryCodeAt(i))
+                            .equals(parallel.categoryName(parallel.categoryCodeAt(i)));
+        }
+        System.out.println((same ? "✅" : "❌") + " Parallel rows match serial rows: " + parallel.size()
+                + " (Expected: 200000)");
+    }
+
+    private static void writeFile(String filename, String content) throws IOException {
+        try (FileWriter writer = new FileWriter(filename)) {
+            writer.write(content);
+        }
+    }
+}
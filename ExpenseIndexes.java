@@ -0,0 +1,393 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Secondary indexes over an {@link ExpenseStore}: a row bitmap per category
+ * code, a {@link DateIndex} ordered by date, and an ordered index from
+ * amount to rows. Bitmaps and row lists are in ascending row order so lookups
+ * return rows in the same order as a full scan would.
+ *
+ * <p>Category codes are dense dictionary ids, so the bitmaps sit in an array
+ * indexed by code, and filters over several categories are a bitwise OR.</p>
+ *
+ * <p>Removals from the amount index are deferred like those of the
+ * {@link DateIndex}: a deleted row is only marked, and an amount's list
+ * drops its marked rows in one pass the next time it is read. Deleting many
+ * rows with a common amount therefore costs one sweep of its list instead of
+ * one shift per delete.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseIndexes {
+
+    private BitSet[] byCategory = new BitSet[0]; // Row bitmap per category code, or null
+    private int[] categoryCounts = new int[0];  // Set bits in each bitmap
+    private int categories;                     // Codes with at least one row
+    private final DateIndex byDate = new DateIndex();
+    private final TreeMap<Long, IntList> byAmount = new TreeMap<>();
+    private final BitSet amountRemoved = new BitSet();          // Deleted rows still in their amount's list
+    private final TreeSet<Long> staleAmounts = new TreeSet<>(); // Amounts whose lists hold such rows
+
+    // Maintenance statistics for addExpense
+    private long addCount;
+    private long addNanos;
+
+    /**
+     * Records a row that was just appended to the store.
+     *
+     * @param row          The row id.
+     * @param epochDay     The row's date as an epoch day.
+     * @param amountCents  The row's amount in cents.
+     * @param categoryCode The row's category code.
+     */
+    public void onAdd(int row, int epochDay, long amountCents, int categoryCode) {
+        long start = System.nanoTime();
+        categoryBits(categoryCode).set(row);
+        categoryCounts[categoryCode]++;
+        byDate.add(row, epochDay);
+        byAmount.computeIfAbsent(amountCents, k -> new IntList()).add(row);
+        addNanos += System.nanoTime() - start;
+        addCount++;
+    }
+
+    /**
+     * Records a block of rows that were just appended to the store. Rows are grouped by
+     * amount first so the amount index is touched once per distinct amount.
+     * A batch that makes up at least half of the store is indexed with
+     * {@link #rebuild(ExpenseStore)} instead.
+     *
+     * @param store   The store the rows were appended to.
+     * @param fromRow The first appended row; every row after it is new too.
+     */
+    public void onAddAll(ExpenseStore store, int fromRow) {
+        int size = store.size();
+        if ((long) (size - fromRow) * 2 >= size) {
+            rebuild(store);
+            return;
+        }
+        long start = System.nanoTime();
+        AmountGroups amounts = new AmountGroups();
+        int[] amountGroup = new int[size - fromRow];
+        for (int row = fromRow; row < size; row++) {
+            int code = store.categoryCodeAt(row);
+            categoryBits(code).set(row);
+            categoryCounts[code]++;
+            byDate.add(row, store.dayAt(row));
+            amountGroup[row - fromRow] = amounts.group(store.centsAt(row));
+        }
+        IntList[] amountLists = new IntList[amounts.size()];
+        for (int g = 0; g < amountLists.length; g++) {
+            amountLists[g] = byAmount.computeIfAbsent(amounts.amount(g), k -> new IntList());
+        }
+        for (int row = fromRow; row < size; row++) {
+            amountLists[amountGroup[row - fromRow]].add(row);
+        }
+        addNanos += System.nanoTime() - start;
+        addCount += size - fromRow;
+    }
+
+    /**
+     * Forgets a row that was just deleted from the store. Deleted rows keep
+     * their ids, so no other entry changes; the date and amount entries are
+     * dropped by the next lookup that reads them.
+     *
+     * @param row          The deleted row id.
+     * @param epochDay     The deleted row's date as an epoch day.
+     * @param amountCents  The deleted row's amount in cents.
+     * @param categoryCode The deleted row's category code.
+     */
+    public void onRemove(int row, int epochDay, long amountCents, int categoryCode) {
+        BitSet bits = categoryBitmap(categoryCode);
+        if (bits != null && bits.get(row)) {
+            bits.clear(row);
+            if (--categoryCounts[categoryCode] == 0) {
+                byCategory[categoryCode] = null;
+                categories--;
+            }
+        }
+        byDate.remove(row, epochDay);
+        if (!amountRemoved.get(row) && byAmount.containsKey(amountCents)) {
+            amountRemoved.set(row);
+            staleAmounts.add(amountCents);
+        }
+    }
+
+    /**
+     * Drops the deleted rows from the lists of every stale amount in a range,
+     * and drops lists left empty.
+     */
+    private void dropRemovedAmounts(long minCents, long maxCents) {
+        if (staleAmounts.isEmpty()) {
+            return;
+        }
+        Iterator<Long> stale = staleAmounts.subSet(minCents, true, maxCents, true).iterator();
+        while (stale.hasNext()) {
+            Long amount = stale.next();
+            IntList rows = byAmount.get(amount);
+            rows.removeAll(amountRemoved);
+            if (rows.isEmpty()) {
+                byAmount.remove(amount);
+            }
+            stale.remove();
+        }
+        if (staleAmounts.isEmpty()) {
+            amountRemoved.clear(); // Every marked row has been dropped from its list
+        }
+    }
+
+    /**
+     * Drops every entry and re-indexes all live rows of the store. Amount lists
+     * are sized by a counting pass first, so no per-row map lookups or boxing
+     * happen; this is what keeps bulk loads cheap.
+     *
+     * @param store The store to index.
+     */
+    public void rebuild(ExpenseStore store) {
+        clear();
+        int size = store.size();
+
+        AmountGroups amounts = new AmountGroups();
+        for (int i = 0; i < size; i++) {
+            if (!store.isDeleted(i)) {
+                amounts.count(store.centsAt(i));
+            }
+        }
+        IntList[] amountRows = amounts.createLists();
+        for (int g = 0; g < amountRows.length; g++) {
+            byAmount.put(amounts.amount(g), amountRows[g]);
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (store.isDeleted(i)) {
+                continue;
+            }
+            int code = store.categoryCodeAt(i);
+            categoryBits(code).set(i);
+            categoryCounts[code]++;
+            amountRows[amounts.group(store.centsAt(i))].add(i);
+            byDate.add(i, store.dayAt(i));
+        }
+    }
+
+    /**
+     * Applies every deferred removal and pending sort now. Lookups do this
+     * on demand, which changes the indexes; once prepared, the indexes can be
+     * read from several threads at once until the next change.
+     */
+    public void prepare() {
+        byDate.prepare();
+        dropRemovedAmounts(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void clear() {
+        Arrays.fill(byCategory, null);
+        Arrays.fill(categoryCounts, 0);
+        categories = 0;
+        byDate.clear();
+        byAmount.clear();
+        amountRemoved.clear();
+        staleAmounts.clear();
+    }
+
+    /**
+     * Returns the row bitmap of a category. The bitmap is the index itself
+     * and must not be modified.
+     *
+     * @param categoryCode The category code.
+     * @return The bitmap with a bit set for each matching row, or null if there are none.
+     */
+    public BitSet categoryBitmap(int categoryCode) {
+        return categoryCode >= 0 && categoryCode < byCategory.length ? byCategory[categoryCode] : null;
+    }
+
+    /**
+     * Returns the number of rows in a category without touching its bitmap.
+     *
+     * @param categoryCode The category code.
+     * @return The row count.
+     */
+    public int countForCategory(int categoryCode) {
+        return categoryCode >= 0 && categoryCode < categoryCounts.length ? categoryCounts[categoryCode] : 0;
+    }
+
+    /**
+     * Returns the rows in a category as a list, decoded from its bitmap.
+     *
+     * @param categoryCode The category code.
+     * @return The matching rows in ascending order, or null if there are none.
+     */
+    public IntList rowsForCategory(int categoryCode) {
+        BitSet bits = categoryBitmap(categoryCode);
+        if (bits == null) {
+            return null;
+        }
+        IntList rows = new IntList(categoryCounts[categoryCode]);
+        for (int row = bits.nextSetBit(0); row >= 0; row = bits.nextSetBit(row + 1)) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the date-ordered index.
+     *
+     * @return The date index.
+     */
+    public DateIndex dateIndex() {
+        return byDate;
+    }
+
+    /**
+     * Returns the rows with an amount.
+     *
+     * @param amountCents The amount in cents.
+     * @return The matching rows in ascending order, or null if there are none.
+     */
+    public IntList rowsForAmount(long amountCents) {
+        dropRemovedAmounts(amountCents, amountCents);
+        return byAmount.get(amountCents);
+    }
+
+    /**
+     * Returns the row lists for an inclusive range of amounts, in ascending
+     * amount order. The map is a view of the index, not a copy.
+     *
+     * @param minCents The smallest amount in cents.
+     * @param maxCents The largest amount in cents, not below minCents.
+     * @return The row lists keyed by amount.
+     */
+    public NavigableMap<Long, IntList> rowsForAmountRange(long minCents, long maxCents) {
+        dropRemovedAmounts(minCents, maxCents);
+        return byAmount.subMap(minCents, true, maxCents, true);
+    }
+
+    /**
+     * Returns the number of rows indexed since creation.
+     *
+     * @return The count of onAdd calls.
+     */
+    public long getAddCount() {
+        return addCount;
+    }
+
+    /**
+     * Returns the average time spent updating the indexes per added row.
+     *
+     * @return The average cost in nanoseconds, or 0 if nothing was added.
+     */
+    public double getAverageAddNanos() {
+        return addCount == 0 ? 0.0 : (double) addNanos / addCount;
+    }
+
+    /**
+     * Returns a one-line summary of index sizes and maintenance cost.
+     *
+     * @return The report text.
+     */
+    public String report() {
+        dropRemovedAmounts(Long.MIN_VALUE, Long.MAX_VALUE);
+        return String.format("Indexes: %d categories, %d dated rows, %d amounts; %d adds at %.1f ns/add",
+                categories, byDate.size(), byAmount.size(), addCount, getAverageAddNanos());
+    }
+
+    /**
+     * Open-addressing table that groups rows by amount during a rebuild,
+     * counting rows per distinct amount without boxing.
+     */
+    private static class AmountGroups {
+        private long[] keys = new long[1024];
+        private int[] groups = new int[1024];
+        private boolean[] used = new boolean[1024];
+        private long[] amounts = new long[64]; // Distinct amount of each group, in first-seen order
+        private int[] counts = new int[64];
+        private int size;
+
+        void count(long amount) {
+            int group = group(amount); // May grow counts, so look it up first
+            counts[group]++;
+        }
+
+        int group(long amount) {
+            int mask = keys.length - 1;
+            int slot = (int) (amount ^ (amount >>> 32)) * 0x9E3779B9 >>> 7 & mask;
+            while (used[slot]) {
+                if (keys[slot] == amount) {
+                    return groups[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == amounts.length) {
+                amounts = Arrays.copyOf(amounts, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            amounts[size] = amount;
+            used[slot] = true;
+            keys[slot] = amount;
+            groups[slot] = size;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        long amount(int group) {
+            return amounts[group];
+        }
+
+        int size() {
+            return size;
+        }
+
+        IntList[] createLists() {
+            IntList[] lists = new IntList[size];
+            for (int g = 0; g < size; g++) {
+                lists[g] = new IntList(counts[g]);
+            }
+            return lists;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldGroups = groups;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            groups = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    long amount = oldKeys[i];
+                    int slot = (int) (amount ^ (amount >>> 32)) * 0x9E3779B9 >>> 7 & mask;
+                    while (used[slot]) {
+                        slot = (slot + 1) & mask;
+                    }
+                    used[slot] = true;
+                    keys[slot] = amount;
+                    groups[slot] = oldGroups[i];
+                }
+            }
+        }
+    }
+
+    private BitSet categoryBits(int code) {
+        if (code >= byCategory.length) {
+            int capacity = Math.max(code + 1, byCategory.length * 2);
+            byCategory = Arrays.copyOf(byCategory, capacity);
+            categoryCounts = Arrays.copyOf(categoryCounts, capacity);
+        }
+        if (byCategory[code] == null) {
+            byCategory[code] = new BitSet();
+            categories++;
+        }
+        return byCategory[code];
+    }
+}
@@ -0,0 +1,326 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of expense adds and deletes. Each change is
+ * appended as a small checksummed record instead of rewriting every expense,
+ * and records are written to disk in groups.
+ *
+ * <pre>
+ * header:  int magic "EXPJ", int version, long baseChecksum
+ * add:     byte 1, int epochDay, long cents, int nameLength, UTF-8 name, int crc32
+ * delete:  byte 2, int index, int crc32
+ * </pre>
+ *
+ * <p>The header names the snapshot the log applies to by that snapshot's
+ * checksum (0 for an empty base). Compaction writes a new snapshot before it
+ * starts a new log, so a crash in between leaves a log whose base no longer
+ * matches; recovery then ignores it rather than applying its records twice.
+ * Recovery also stops at the first torn or corrupt record and truncates the
+ * log there.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseJournal implements Closeable {
+
+    /** The four bytes "EXPJ" read as a big-endian int. */
+    public static final int MAGIC = 0x4558504A;
+
+    /** The current format version. */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 16;
+    private static final byte ADD = 1;
+    private static final byte DELETE = 2;
+
+    /**
+     * When appended records are forced to stable storage.
+     */
+    public enum SyncPolicy {
+        /** Leave flushing to the operating system; fastest, may lose recent batches on power loss. */
+        NONE,
+        /** Force the log to disk once per group commit. */
+        BATCH,
+        /** Write and force every record as it is appended. */
+        ALWAYS
+    }
+
+    /**
+     * Receives the records of a log during recovery.
+     */
+    public interface Handler {
+        /**
+         * Applies a logged add.
+         *
+         * @param epochDay The date as an epoch day.
+         * @param cents    The amount in cents.
+         * @param category The category name.
+         */
+        void add(int epochDay, long cents, String category);
+
+        /**
+         * Applies a logged delete.
+         *
+         * @param index The index that was deleted.
+         */
+        void delete(int index);
+    }
+
+    private final Path path;
+    private final SyncPolicy policy;
+    private final int batchSize;
+    private FileChannel channel;
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private int pendingRecords;
+    private final CRC32 crc = new CRC32();
+
+    private ExpenseJournal(Path path, FileChannel channel, SyncPolicy policy, int batchSize) {
+        this.path = path;
+        this.channel = channel;
+        this.policy = policy;
+        this.batchSize = policy == SyncPolicy.ALWAYS ? 1 : Math.max(1, batchSize);
+    }
+
+    /**
+     * Replays a log on top of a base and opens it for appending. A log that
+     * is missing or belongs to a different base is replaced by an empty one.
+     *
+     * @param filename     The log file.
+     * @param baseChecksum The checksum of the snapshot the caller loaded, or 0 for none.
+     * @param handler      Receives every valid record, in order.
+     * @param policy       When appended records are forced to disk.
+     * @param batchSize    How many records make up a group commit.
+     * @return The open log, positioned after the last valid record.
+     * @throws IOException if the log cannot be read or created.
+     */
+    public static ExpenseJournal recover(String filename, long baseChecksum, Handler handler, SyncPolicy policy,
+            int batchSize) throws IOException {
+        Path path = Paths.get(filename);
+        long validEnd = -1;
+        if (Files.exists(path)) {
+            validEnd = replay(path, baseChecksum, handler);
+        }
+        if (validEnd < 0) {
+            createEmpty(path, baseChecksum);
+            validEnd = HEADER_BYTES;
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        channel.truncate(validEnd); // Drop a torn tail left by a crash
+        channel.position(validEnd);
+        return new ExpenseJournal(path, channel, policy, batchSize);
+    }
+
+    /**
+     * Reads every valid record of a log.
+     *
+     * @return The offset after the last valid record, or -1 if the log does not apply to this base.
+     */
+    private static long replay(Path path, long baseChecksum, Handler handler) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                || buffer.getLong() != baseChecksum) {
+            return -1;
+        }
+        CRC32 check = new CRC32();
+        long validEnd = buffer.position();
+        try {
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                byte type = buffer.get();
+                if (type == ADD) {
+                    int day = buffer.getInt();
+                    long cents = buffer.getLong();
+                    int length = buffer.getInt();
+                    if (length < 0 || length > buffer.remaining()) {
+                        break;
+                    }
+                    byte[] name = new byte[length];
+                    buffer.get(name);
+                    if (!checksumMatches(check, buffer, start)) {
+                        break;
+                    }
+                    handler.add(day, cents, new String(name, StandardCharsets.UTF_8));
+                } else if (type == DELETE) {
+                    int index = buffer.getInt();
+                    if (!checksumMatches(check, buffer, start)) {
+                        break;
+                    }
+                    handler.delete(index);
+                } else {
+                    break;
+                }
+                validEnd = buffer.position();
+            }
+        } catch (BufferUnderflowException e) {
+            // Torn final record; everything before it is kept
+        }
+        return validEnd;
+    }
+
+    private static boolean checksumMatches(CRC32 check, ByteBuffer buffer, int start) {
+        int end = buffer.position();
+        check.reset();
+        check.update(buffer.array(), start, end - start);
+        return buffer.getInt() == (int) check.getValue();
+    }
+
+    private static void createEmpty(Path path, long baseChecksum) throws IOException {
+        Path tmp = Paths.get(path + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(baseChecksum).flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Appends an add record.
+     *
+     * @param epochDay The date as an epoch day.
+     * @param cents    The amount in cents.
+     * @param category The category name.
+     * @throws IOException if a group commit fails.
+     */
+    public synchronized void logAdd(int epochDay, long cents, String category) throws IOException {
+        byte[] name = category.getBytes(StandardCharsets.UTF_8);
+        int start = reserve(1 + 4 + 8 + 4 + name.length + 4);
+        pending.put(ADD).putInt(epochDay).putLong(cents).putInt(name.length).put(name);
+        endRecord(start);
+    }
+
+    /**
+     * Appends a delete record.
+     *
+     * @param index The index being deleted.
+     * @throws IOException if a group commit fails.
+     */
+    public synchronized void logDelete(int index) throws IOException {
+        int start = reserve(1 + 4 + 4);
+        pending.put(DELETE).putInt(index);
+        endRecord(start);
+    }
+
+    /**
+     * Writes every pending record and, unless the policy is NONE, forces the
+     * log to disk. If this fails the records stay pending, so a later commit
+     * writes them again.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    public synchronized void commit() throws IOException {
+        if (pendingRecords == 0) {
+            return;
+        }
+        long offset = -1;
+        pending.flip();
+        int end = pending.limit();
+        try {
+            offset = channel.position();
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            if (policy != SyncPolicy.NONE) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                // Take back what reached the file, so the whole group is pending again
+                channel.truncate(offset);
+                channel.position(offset);
+                pending.limit(pending.capacity()).position(end);
+            } catch (IOException | IllegalArgumentException notUndone) {
+                pending.compact(); // Keep only the bytes that never reached the file
+            }
+            throw e;
+        }
+        pending.clear();
+        pendingRecords = 0;
+    }
+
+    /**
+     * Starts a new, empty log on top of a new base snapshot. Pending records
+     * are discarded, since the new base already contains them.
+     *
+     * @param baseChecksum The checksum of the new base snapshot.
+     * @throws IOException if the new log cannot be created.
+     */
+    public synchronized void reset(long baseChecksum) throws IOException {
+        pending.clear();
+        pendingRecords = 0;
+        channel.close();
+        createEmpty(path, baseChecksum);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        channel.position(HEADER_BYTES);
+    }
+
+    /**
+     * Returns the size of the log on disk, not counting pending records.
+     *
+     * @return The size in bytes.
+     * @throws IOException if the size cannot be read.
+     */
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Commits pending records and closes the log.
+     *
+     * @throws IOException if the final commit fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            commit();
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private int reserve(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        return pending.position();
+    }
+
+    private void endRecord(int start) throws IOException {
+        crc.reset();
+        crc.update(pending.array(), start, pending.position() - start);
+        pending.putInt((int) crc.getValue());
+        int length = pending.position() - start;
+        if (++pendingRecords >= batchSize) {
+            try {
+                commit();
+            } catch (IOException e) {
+                // The caller reports this record as not added, so it must never reach the log
+                if (pending.position() >= length) {
+                    pending.position(pending.position() - length);
+                    pendingRecords--;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for ExpenseJournal to validate journal mode, compaction, crash
+ * recovery and failed group commits.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseJournalTest {
+
+    private static final String BASE = "journal_base.bin";
+    private static final String LOG = "journal.log";
+
+    public static void main(String[] args) throws IOException {
+        new File(BASE).delete();
+        new File(LOG).delete();
+
+        // 1. Test Replay Without Compaction
+        testReplay();
+
+        // 2. Test Compaction
+        testCompaction();
+
+        // 3. Test Torn Tail
+        testTornTail();
+
+        // 4. Test Background Compaction During Loads
+        testBackgroundCompaction();
+
+        // 5. Test a Failed Group Commit
+        testFailedCommit();
+    }
+
+    // Test Replay Without Compaction
+    private static void testReplay() {
+        System.out.println("\n=== Testing Replay Without Compaction ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.BATCH, 2);
+        tracker.addExpense("2024-01-01", 50.0, "Food");
+        tracker.addExpense("2024-01-02", 20.0, "Transport");
+        tracker.addExpense("2024-01-03", 30.0, "Groceries");
+        tracker.deleteExpense(1);
+        tracker.closeJournal();
+
+        ExpenseTracker recovered = new ExpenseTracker();
+        recovered.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.BATCH, 2);
+        recovered.viewExpenses();
+        System.out.println("Total: $" + recovered.getTotalExpenses() + " (Expected: 80.0)");
+        recovered.closeJournal();
+    }
+
+    // Test Compaction
+    private static void testCompaction() {
+        System.out.println("\n=== Testing Compaction ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.NONE, 100);
+        tracker.compactJournal();
+        System.out.println("Journal bytes after compaction: " + new File(LOG).length() + " (Expected: 16)");
+        tracker.addExpense("2024-02-01", 5.0, "Food");
+        tracker.closeJournal();
+
+        ExpenseTracker recovered = new ExpenseTracker();
+        recovered.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.NONE, 100);
+        System.out.println("Total: $" + recovered.getTotalExpenses() + " (Expected: 85.0)");
+        recovered.closeJournal();
+    }
+
+    // Test Torn Tail
+    private static void testTornTail() throws IOException {
+        System.out.println("\n=== Testing Torn Tail ===");
+        try (FileOutputStream out = new FileOutputStream(LOG, true)) {
+            out.write(new byte[] { 1, 0, 0, 0x4B }); // The start of an add record cut off by a crash
+        }
+        ExpenseTracker recovered = new ExpenseTracker();
+        recovered.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.ALWAYS, 1);
+        System.out.println("Total: $" + recovered.getTotalExpenses() + " (Expected: 85.0)");
+        recovered.addExpense("2024-02-02", 15.0, "Food");
+        recovered.closeJournal();
+
+        ExpenseTracker again = new ExpenseTracker();
+        again.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.ALWAYS, 1);
+        System.out.println("Total after append past torn tail: $" + again.getTotalExpenses() + " (Expected: 100.0)");
+        again.closeJournal();
+    }
+
+    // Test Background Compaction During Loads
+    private static void testBackgroundCompaction() {
+        System.out.println("\n=== Testing Background Compaction During Loads ===");
+        String columns = "journal_load.expc";
+        ExpenseTracker source = new ExpenseTracker(new ExpenseDataGenerator(8).generateStore(100_000));
+        source.saveColumnFile(columns);
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.NONE, 100);
+        tracker.startJournalCompaction(1, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 20; i++) {
+            // Each load replaces the store while the compactor keeps snapshotting it
+            tracker.loadColumnFile(columns, i % 2 == 0 ? null : "2020-01-01", null);
+            tracker.deleteExpense(0);
+            tracker.compact();
+        }
+        tracker.loadColumnFile(columns);
+        tracker.addExpense("2024-02-03", 2.5, "Food");
+        tracker.closeJournal();
+
+        ExpenseTracker recovered = new ExpenseTracker();
+        recovered.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.NONE, 100);
+        long expected = ExpenseStore.toCents(source.getTotalExpenses()) + 250;
+        System.out.println((ExpenseStore.toCents(recovered.getTotalExpenses()) == expected ? "✅" : "❌")
+                + " Recovered total matches the last load plus one add");
+        recovered.closeJournal();
+        new File(columns).delete();
+    }
+
+    // Test a Failed Group Commit
+    private static void testFailedCommit() {
+        System.out.println("\n=== Testing a Failed Group Commit ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.BATCH, 3);
+        double before = tracker.getTotalExpenses();
+        tracker.addExpense("2024-03-01", 1.0, "Food");
+        tracker.addExpense("2024-03-02", 2.0, "Food"); // Both still pending
+        try {
+            Field journalField = ExpenseTracker.class.getDeclaredField("journal");
+            journalField.setAccessible(true);
+            Object journal = journalField.get(tracker);
+            Field channelField = ExpenseJournal.class.getDeclaredField("channel");
+            channelField.setAccessible(true);
+            FileChannel channel = (FileChannel) channelField.get(journal);
+            long end = channel.position();
+            channel.close(); // The disk goes away under the journal
+
+            tracker.addExpense("2024-03-03", 4.0, "Food"); // Triggers the commit, which fails
+            ExpenseTracker.BatchResult batch = tracker.addExpenses(new String[] { "2024-03-04", "2024-03-05" },
+                    new double[] { 8.0, 16.0 }, new String[] { "Food", "Food" });
+            System.out.println("Batch rows added: " + batch.getAccepted() + " (Expected: 0)");
+
+            FileChannel reopened = FileChannel.open(Paths.get(LOG), StandardOpenOption.WRITE, StandardOpenOption.READ);
+            reopened.position(end);
+            channelField.set(journal, reopened); // The disk comes back
+        } catch (ReflectiveOperationException | IOException e) {
+            System.out.println("❌ " + e);
+            return;
+        }
+        tracker.addExpense("2024-03-06", 32.0, "Food");
+        System.out.println("Added in memory: " + (tracker.getTotalExpenses() - before) + " (Expected: 35.0)");
+        tracker.closeJournal();
+
+        ExpenseTracker recovered = new ExpenseTracker();
+        recovered.openJournal(BASE, LOG, ExpenseJournal.SyncPolicy.BATCH, 3);
+        System.out.println((recovered.getTotalExpenses() == tracker.getTotalExpenses() ? "✅" : "❌")
+                + " Replay matches memory: $" + recovered.getTotalExpenses());
+        recovered.closeJournal();
+    }
+}
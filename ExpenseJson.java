@@ -0,0 +1,307 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Just enough JSON for {@link ExpenseServer}: a strict recursive-descent
+ * parser for request bodies and helpers for writing response values, so the
+ * server needs no library beyond the JDK.
+ *
+ * <p>Objects parse to LinkedHashMap&lt;String, Object&gt;, arrays to
+ * ArrayList&lt;Object&gt;, numbers to Double, and strings, booleans and null
+ * to their Java counterparts.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class ExpenseJson {
+
+    private static final int MAX_DEPTH = 64;
+
+    private final String text;
+    private int pos;
+
+    private ExpenseJson(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a JSON document.
+     *
+     * @param text The document.
+     * @return The parsed value.
+     * @throws IllegalArgumentException if the text is not valid JSON.
+     */
+    public static Object parse(String text) {
+        ExpenseJson parser = new ExpenseJson(text);
+        Object value = parser.value(0);
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) {
+            throw parser.error("Unexpected trailing characters");
+        }
+        return value;
+    }
+
+    private Object value(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw error("Nesting too deep");
+        }
+        skipWhitespace();
+        if (pos >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+                return object(depth);
+            case '[':
+                return array(depth);
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return number();
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private LinkedHashMap<String, Object> object(int depth) {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        pos++; // {
+        skipWhitespace();
+        if (peek('}')) {
+            pos++;
+            return result;
+        }
+        while (true) {
+            skipWhitespace();
+            if (!peek('"')) {
+                throw error("Expected a string key");
+            }
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            result.put(key, value(depth + 1));
+            skipWhitespace();
+            if (peek(',')) {
+                pos++;
+            } else {
+                expect('}');
+                return result;
+            }
+        }
+    }
+
+    private ArrayList<Object> array(int depth) {
+        ArrayList<Object> result = new ArrayList<>();
+        pos++; // [
+        skipWhitespace();
+        if (peek(']')) {
+            pos++;
+            return result;
+        }
+        while (true) {
+            result.add(value(depth + 1));
+            skipWhitespace();
+            if (peek(',')) {
+                pos++;
+            } else {
+                expect(']');
+                return result;
+            }
+        }
+    }
+
+    private String string() {
+        pos++; // Opening quote
+        StringBuilder out = null;
+        int start = pos;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '"') {
+                String value = out == null ? text.substring(start, pos) : out.append(text, start, pos).toString();
+                pos++;
+                return value;
+            }
+            if (c < 0x20) {
+                throw error("Control character in string");
+            }
+            if (c != '\\') {
+                pos++;
+                continue;
+            }
+            if (out == null) {
+                out = new StringBuilder();
+            }
+            out.append(text, start, pos);
+            if (++pos >= text.length()) {
+                break;
+            }
+            char escape = text.charAt(pos++);
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    out.append(escape);
+                    break;
+                case 'b':
+                    out.append('\b');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw error("Truncated \\u escape");
+                    }
+                    try {
+                        out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid \\u escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    throw error("Invalid escape '\\" + escape + "'");
+            }
+            start = pos;
+        }
+        throw error("Unterminated string");
+    }
+
+    private Double number() {
+        int start = pos;
+        if (peek('-')) {
+            pos++;
+        }
+        while (pos < text.length() && "0123456789.eE+-".indexOf(text.charAt(pos)) >= 0) {
+            pos++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("Invalid number");
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!text.startsWith(word, pos)) {
+            throw error("Invalid literal");
+        }
+        pos += word.length();
+        return value;
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean peek(char c) {
+        return pos < text.length() && text.charAt(pos) == c;
+    }
+
+    private void expect(char c) {
+        if (!peek(c)) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON at position " + pos + ": " + message);
+    }
+
+    // ---------------------------------------------------------------------
+    // Writing
+
+    /**
+     * Appends a string as a quoted, escaped JSON string.
+     *
+     * @param out   Where to append.
+     * @param value The string, or null for JSON null.
+     * @return The builder.
+     */
+    public static StringBuilder appendString(StringBuilder out, String value) {
+        if (value == null) {
+            return out.append("null");
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+
+    /**
+     * Appends an amount in cents as an exact decimal number with two
+     * fraction digits, e.g. 1234 as 12.34.
+     *
+     * @param out   Where to append.
+     * @param cents The amount in cents, not negative.
+     * @return The builder.
+     */
+    public static StringBuilder appendCents(StringBuilder out, long cents) {
+        long fraction = cents % 100;
+        return out.append(cents / 100).append('.').append(fraction < 10 ? "0" : "").append(fraction);
+    }
+
+    /**
+     * Appends one expense as a JSON object.
+     *
+     * @param out      Where to append.
+     * @param epochDay The date as an epoch day.
+     * @param cents    The amount in cents.
+     * @param category The category.
+     * @return The builder.
+     */
+    public static StringBuilder appendExpense(StringBuilder out, int epochDay, long cents, String category) {
+        out.append("{\"date\":\"").append(ExpenseDates.format(epochDay)).append("\",\"amount\":");
+        appendCents(out, cents).append(",\"category\":");
+        return appendString(out, category).append('}');
+    }
+}
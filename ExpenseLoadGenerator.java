@@ -0,0 +1,298 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A load generator for {@link ExpenseServer}: a number of client threads
+ * each send requests back to back from a weighted mix of adds, searches,
+ * range queries and totals, and the latency of every request is recorded
+ * per endpoint. It reports requests per second and p50/p99/max latency, and
+ * counts the requests the server refused with 503.
+ *
+ * <p>Without --url it starts a server in the same process over generated
+ * expenses, so a single command measures the whole stack.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseLoadGenerator {
+
+    private static final String[] KINDS = { "add", "search", "range", "totals" };
+
+    private final String baseUrl;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final LinkedHashMap<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final LinkedHashMap<String, LongAdder> failures = new LinkedHashMap<>();
+    private final LatencyHistogram overall = new LatencyHistogram();
+    private final LongAdder refused = new LongAdder();
+
+    /**
+     * Summary of one run.
+     */
+    public static final class Result {
+        private final long requests;
+        private final long refused;
+        private final long failures;
+        private final double seconds;
+        private final String report;
+
+        private Result(long requests, long refused, long failures, double seconds, String report) {
+            this.requests = requests;
+            this.refused = refused;
+            this.failures = failures;
+            this.seconds = seconds;
+            this.report = report;
+        }
+
+        /**
+         * Returns the number of requests that got any response.
+         *
+         * @return The request count, including refused ones.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Returns the number of requests refused with 503.
+         *
+         * @return The refused count.
+         */
+        public long getRefused() {
+            return refused;
+        }
+
+        /**
+         * Returns the number of requests that failed other than by a 503.
+         *
+         * @return The failure count.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * Returns the throughput of the run.
+         *
+         * @return Requests per second.
+         */
+        public double getRequestsPerSecond() {
+            return seconds == 0 ? 0.0 : requests / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return report;
+        }
+    }
+
+    /**
+     * Constructs a load generator.
+     *
+     * @param baseUrl The server's address, such as http://localhost:8080.
+     */
+    public ExpenseLoadGenerator(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        for (String kind : KINDS) {
+            latencies.put(kind, new LatencyHistogram());
+            failures.put(kind, new LongAdder());
+        }
+    }
+
+    /**
+     * Sends requests from several threads and reports the latencies.
+     *
+     * @param threads  The number of client threads.
+     * @param requests The total number of requests.
+     * @param weights  The relative share of add, search, range and totals requests.
+     * @param seed     The random seed for the request mix and contents.
+     * @return The summary.
+     * @throws InterruptedException if interrupted while waiting for the clients.
+     */
+    public Result run(int threads, int requests, int[] weights, long seed) throws InterruptedException {
+        if (weights.length != KINDS.length) {
+            throw new IllegalArgumentException("Expected " + KINDS.length + " weights: add, search, range, totals");
+        }
+        int totalWeight = 0;
+        for (int weight : weights) {
+            totalWeight += weight;
+        }
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        AtomicLong remaining = new AtomicLong(requests);
+        CountDownLatch done = new CountDownLatch(threads);
+        int weightSum = totalWeight;
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(seed + t);
+            Thread thread = new Thread(() -> {
+                try {
+                    while (remaining.getAndDecrement() > 0) {
+                        send(pick(random, weights, weightSum), random);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "expense-load-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return summarize(seconds);
+    }
+
+    private static String pick(Random random, int[] weights, int weightSum) {
+        int r = random.nextInt(weightSum);
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return KINDS[i];
+            }
+        }
+        return KINDS[KINDS.length - 1];
+    }
+
+    private void send(String kind, Random random) {
+        String category = ExpenseDataGenerator.CATEGORIES[random.nextInt(ExpenseDataGenerator.CATEGORIES.length)];
+        String day = ExpenseDates.format(ExpenseDataGenerator.START_DAY + random.nextInt(ExpenseDataGenerator.SPAN_DAYS));
+        HttpRequest.Builder request;
+        switch (kind) {
+            case "add":
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/expenses"))
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"date\":\"" + day + "\",\"amount\":"
+                                + (1 + random.nextInt(50_000)) / 100.0 + ",\"category\":\"" + category + "\"}"));
+                break;
+            case "search":
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/search?date=" + day));
+                break;
+            case "range":
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/range?start=" + day + "&end="
+                        + ExpenseDates.format(ExpenseDates.parse(day) + 30) + "&category=" + category
+                        + "&order=amount&desc&limit=20"));
+                break;
+            default:
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/totals?category=" + category));
+        }
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            long nanos = System.nanoTime() - start;
+            latencies.get(kind).record(nanos);
+            overall.record(nanos);
+            if (response.statusCode() == 503) {
+                refused.increment();
+            } else if (response.statusCode() >= 400) {
+                failures.get(kind).increment();
+            }
+        } catch (IOException e) {
+            failures.get(kind).increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.get(kind).increment();
+        }
+    }
+
+    private Result summarize(double seconds) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-8s %10s %10s %10s %10s %10s %8s%n", "Endpoint", "Requests", "req/s", "p50 ms",
+                "p99 ms", "max ms", "Errors"));
+        long requests = 0;
+        long failed = 0;
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram latency = entry.getValue();
+            long count = latency.getCount();
+            long errors = failures.get(entry.getKey()).sum();
+            requests += count;
+            failed += errors;
+            if (count == 0 && errors == 0) {
+                continue;
+            }
+            out.append(row(entry.getKey(), count, seconds, latency, errors));
+        }
+        out.append(row("all", requests, seconds, overall, failed));
+        out.append(String.format("%d requests in %.2f s, %d refused with 503%n", requests, seconds, refused.sum()));
+        return new Result(requests, refused.sum(), failed, seconds, out.toString());
+    }
+
+    private static String row(String name, long count, double seconds, LatencyHistogram latency, long errors) {
+        return String.format("%-8s %10d %10.0f %10.3f %10.3f %10.3f %8d%n", name, count, count / seconds,
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6, errors);
+    }
+
+    /**
+     * Runs a load test from the command line.
+     *
+     * @param args --url=http://host:port (or --rows=N to serve N generated
+     *             expenses in process), --threads=16, --requests=20000,
+     *             --mix=add:25,search:25,range:25,totals:25, --seed=1.
+     * @throws Exception if the in-process server cannot start or the run is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int rows = 1_000_000;
+        int threads = 16;
+        int requests = 20_000;
+        int[] weights = { 25, 25, 25, 25 };
+        long seed = 1;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--url=")) {
+                url = value;
+            } else if (arg.startsWith("--rows=")) {
+                rows = Integer.parseInt(value);
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(value);
+            } else if (arg.startsWith("--requests=")) {
+                requests = Integer.parseInt(value);
+            } else if (arg.startsWith("--mix=")) {
+                weights = new int[KINDS.length];
+                for (String part : value.split(",")) {
+                    String[] kv = part.split(":");
+                    int kind = List.of(KINDS).indexOf(kv[0].trim());
+                    if (kind < 0 || kv.length != 2) {
+                        System.err.println("Mix entries must be add, search, range or totals with a weight: " + part);
+                        return;
+                    }
+                    weights[kind] = Integer.parseInt(kv[1].trim());
+                }
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(value);
+            } else {
+                System.err.println("Unknown option: " + arg);
+                return;
+            }
+        }
+        ExpenseServer server = null;
+        if (url == null) {
+            ExpenseServer.enableNoDelay();
+            server = new ExpenseServer(new ExpenseTracker(new ExpenseDataGenerator(seed).generateStore(rows)));
+            server.start(0);
+            url = "http://localhost:" + server.getPort();
+            System.out.println("Started an in-process server with " + rows + " expenses at " + url);
+        }
+        try {
+            ExpenseLoadGenerator generator = new ExpenseLoadGenerator(url);
+            generator.run(threads, Math.min(requests, 2_000), weights, seed); // Warm up
+            generator = new ExpenseLoadGenerator(url);
+            System.out.print(generator.run(threads, requests, weights, seed + 1));
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the operations of one
+ * {@link ExpenseTracker}: how often each operation ran and how long it took,
+ * rows and bytes moved by loads and saves, rows scanned versus returned by
+ * searches and queries, and how many lookups an index answered.
+ *
+ * <p>Counters are LongAdders and latencies go into {@link LatencyHistogram}s,
+ * so recording never locks and concurrent readers see no contention. When
+ * metrics are switched off, with {@link #setEnabled(boolean)} or the
+ * {@code expense.metrics.disabled} system property, each instrumented call
+ * costs one volatile read and nothing is recorded.</p>
+ *
+ * <p>The metrics can be published as a JMX MBean with {@link #register} and
+ * printed periodically with {@link #startReporting}.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseMetrics implements ExpenseMetricsMBean {
+
+    /**
+     * The timed tracker operations.
+     */
+    public enum Operation {
+        ADD, ADD_BATCH, DELETE, SEARCH_DATE, SEARCH_CATEGORY, SEARCH_AMOUNT, DATE_RANGE, QUERY, REPORT,
+        LOAD_FILE, SAVE_FILE, LOAD_SNAPSHOT, SAVE_SNAPSHOT, LOAD_COLUMN_FILE, SAVE_COLUMN_FILE
+    }
+
+    /**
+     * Where a lookup found its rows.
+     */
+    public enum Source {
+        FULL_SCAN("full scan"),
+        DATE_INDEX("date index"),
+        CATEGORY_INDEX("category index"),
+        AMOUNT_INDEX("amount index");
+
+        private final String label;
+
+        Source(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Source[] SOURCES = Source.values();
+
+    private volatile boolean enabled = !Boolean.getBoolean("expense.metrics.disabled");
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] lookups = new LongAdder[SOURCES.length];
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder rowsReturned = new LongAdder();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private ScheduledExecutorService reporter;
+    private ObjectName registeredName;
+
+    /**
+     * Constructs an empty set of metrics.
+     */
+    public ExpenseMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // ---------------------------------------------------------------------
+    // Recording
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return The start time to pass to {@link #stop}, or 0 when disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the latency of an operation started with {@link #start}.
+     *
+     * @param operation The operation.
+     * @param start     The value returned by start().
+     */
+    public void stop(Operation operation, long start) {
+        if (start != 0L && enabled) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records one lookup: where its rows came from, how many rows it
+     * examined and how many it returned.
+     *
+     * @param source   The index or scan that produced the candidate rows.
+     * @param scanned  The rows examined.
+     * @param returned The rows returned.
+     */
+    public void recordLookup(Source source, long scanned, long returned) {
+        if (enabled) {
+            lookups[source.ordinal()].increment();
+            rowsScanned.add(scanned);
+            rowsReturned.add(returned);
+        }
+    }
+
+    /**
+     * Records a load from a file or snapshot.
+     *
+     * @param rows  The rows read.
+     * @param bytes The bytes read.
+     */
+    public void recordRead(long rows, long bytes) {
+        if (enabled) {
+            rowsRead.add(rows);
+            bytesRead.add(bytes);
+        }
+    }
+
+    /**
+     * Records a save to a file or snapshot.
+     *
+     * @param rows  The rows written.
+     * @param bytes The bytes written.
+     */
+    public void recordWrite(long rows, long bytes) {
+        if (enabled) {
+            rowsWritten.add(rows);
+            bytesWritten.add(bytes);
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Reading
+
+    /**
+     * Returns the latency histogram of an operation.
+     *
+     * @param operation The operation.
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * Returns how many lookups found their rows through a source.
+     *
+     * @param source The index or scan.
+     * @return The lookup count.
+     */
+    public long getLookups(Source source) {
+        return lookups[source.ordinal()].sum();
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead.sum();
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public double getIndexHitRate() {
+        long all = 0;
+        for (LongAdder adder : lookups) {
+            all += adder.sum();
+        }
+        return all == 0 ? 0.0 : (double) (all - getLookups(Source.FULL_SCAN)) / all;
+    }
+
+    @Override
+    public long getCount(String operation) {
+        return getLatency(Operation.valueOf(operation)).getCount();
+    }
+
+    @Override
+    public double getMeanMicros(String operation) {
+        return getLatency(Operation.valueOf(operation)).getMean() / 1e3;
+    }
+
+    @Override
+    public double getPercentileMicros(String operation, double percentile) {
+        return getLatency(Operation.valueOf(operation)).getPercentile(percentile) / 1e3;
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram latency : latencies) {
+            latency.reset();
+        }
+        for (LongAdder adder : lookups) {
+            adder.reset();
+        }
+        rowsScanned.reset();
+        rowsReturned.reset();
+        rowsRead.reset();
+        rowsWritten.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder out = new StringBuilder();
+        String nl = System.lineSeparator();
+        out.append("Expense metrics").append(enabled ? "" : " (disabled)").append(nl);
+        out.append(String.format(Locale.ROOT, "%-14s %10s %10s %10s %10s %10s%n", "Operation", "Count", "Mean us",
+                "p50 us", "p99 us", "Max us"));
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram latency = latencies[operation.ordinal()];
+            if (latency.getCount() > 0) {
+                out.append(String.format(Locale.ROOT, "%-14s %10d %10.1f %10.1f %10.1f %10.1f%n", operation,
+                        latency.getCount(), latency.getMean() / 1e3, latency.getPercentile(50) / 1e3,
+                        latency.getPercentile(99) / 1e3, latency.getMax() / 1e3));
+            }
+        }
+        out.append("Lookups:");
+        for (Source source : SOURCES) {
+            out.append(' ').append(source.label).append('=').append(getLookups(source));
+        }
+        out.append(String.format(Locale.ROOT, " (index hit rate %.1f%%)%n", getIndexHitRate() * 100));
+        out.append("Rows scanned: ").append(getRowsScanned()).append(", returned: ").append(getRowsReturned())
+                .append(nl);
+        out.append("Read: ").append(getRowsRead()).append(" rows, ").append(getBytesRead()).append(" bytes; written: ")
+                .append(getRowsWritten()).append(" rows, ").append(getBytesWritten()).append(" bytes");
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+
+    // ---------------------------------------------------------------------
+    // Publishing
+
+    /**
+     * Registers these metrics with the platform MBean server under
+     * {@code ExpenseTracker:type=Metrics,name=<name>}, replacing any earlier
+     * registration of this instance.
+     *
+     * @param name The name that tells this tracker's metrics apart.
+     */
+    public synchronized void register(String name) {
+        unregister();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("ExpenseTracker:type=Metrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            registeredName = objectName;
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the MBean registered by {@link #register}, if any.
+     */
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            System.err.println("Error unregistering metrics MBean: " + e.getMessage());
+        }
+        registeredName = null;
+    }
+
+    /**
+     * Prints the report periodically on a background thread.
+     *
+     * @param period The time between reports.
+     * @param unit   The unit of the period.
+     * @param out    Where to print.
+     */
+    public synchronized void startReporting(long period, TimeUnit unit, PrintStream out) {
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "expense-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> out.println(getReport()), period, period, unit);
+    }
+
+    /**
+     * Stops periodic reporting.
+     */
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+}
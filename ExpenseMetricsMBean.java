@@ -0,0 +1,112 @@
+/**
+ * The JMX management interface of {@link ExpenseMetrics}, so tools such as
+ * JConsole or VisualVM can read a tracker's counters and latencies.
+ * Operation names are those of {@link ExpenseMetrics.Operation}, e.g.
+ * "LOAD_FILE".
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public interface ExpenseMetricsMBean {
+
+    /**
+     * Returns whether metrics are being recorded.
+     *
+     * @return True if recording.
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns recording on or off.
+     *
+     * @param enabled True to record.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the rows examined by searches, queries and reports.
+     *
+     * @return The row count.
+     */
+    long getRowsScanned();
+
+    /**
+     * Returns the rows handed back by searches, queries and reports.
+     *
+     * @return The row count.
+     */
+    long getRowsReturned();
+
+    /**
+     * Returns the rows read by file and snapshot loads.
+     *
+     * @return The row count.
+     */
+    long getRowsRead();
+
+    /**
+     * Returns the rows written by file and snapshot saves.
+     *
+     * @return The row count.
+     */
+    long getRowsWritten();
+
+    /**
+     * Returns the bytes read by file and snapshot loads.
+     *
+     * @return The byte count.
+     */
+    long getBytesRead();
+
+    /**
+     * Returns the bytes written by file and snapshot saves.
+     *
+     * @return The byte count.
+     */
+    long getBytesWritten();
+
+    /**
+     * Returns the share of lookups answered by an index rather than a full scan.
+     *
+     * @return The hit rate between 0 and 1, or 0 if nothing was looked up.
+     */
+    double getIndexHitRate();
+
+    /**
+     * Returns how many times an operation ran.
+     *
+     * @param operation The operation name.
+     * @return The count.
+     */
+    long getCount(String operation);
+
+    /**
+     * Returns the mean latency of an operation.
+     *
+     * @param operation The operation name.
+     * @return The mean in microseconds.
+     */
+    double getMeanMicros(String operation);
+
+    /**
+     * Returns a latency percentile of an operation.
+     *
+     * @param operation  The operation name.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency in microseconds.
+     */
+    double getPercentileMicros(String operation, double percentile);
+
+    /**
+     * Returns every counter and latency as text.
+     *
+     * @return The report.
+     */
+    String getReport();
+
+    /**
+     * Resets every counter and latency to zero.
+     */
+    void reset();
+}
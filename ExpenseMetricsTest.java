@@ -0,0 +1,183 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Test class for ExpenseMetrics to validate the latency histogram, the
+ * counters recorded by tracker operations, the JMX MBean, periodic reports
+ * and the disable switch.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseMetricsTest {
+
+    public static void main(String[] args) throws Exception {
+        // 1. Test Latency Histogram
+        testHistogram();
+
+        // 2. Test Operation Counters
+        testCounters();
+
+        // 3. Test JMX MBean
+        testMBean();
+
+        // 4. Test Periodic Report
+        testReporting();
+
+        // 5. Test Disable Switch
+        testDisabled();
+    }
+
+    // Test Latency Histogram
+    private static void testHistogram() {
+        System.out.println("\n=== Testing Latency Histogram ===");
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000L); // 1 us to 10 ms
+        }
+        System.out.println("Count: " + histogram.getCount() + " (Expected: 10000)");
+        System.out.println("Mean: " + histogram.getMean() + " (Expected: 5000500.0)");
+        System.out.println("Max: " + histogram.getMax() + " (Expected: 10000000)");
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        System.out.println((Math.abs(p50 - 5_000_000) <= 5_000_000 * 0.04 ? "✅" : "❌") + " p50 within 4%: " + p50);
+        System.out.println((Math.abs(p99 - 9_900_000) <= 9_900_000 * 0.04 ? "✅" : "❌") + " p99 within 4%: " + p99);
+        boolean exact = true;
+        for (long value : new long[] { 0, 1, 31, 32, 63, 64, 1_000_003, Long.MAX_VALUE / 4 }) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upper = LatencyHistogram.upperBound(bucket);
+            exact &= value <= upper && upper - value <= Math.max(1, value / 32);
+        }
+        System.out.println((exact ? "✅" : "❌") + " Every value lands in a bucket at most 1/32 wide");
+        histogram.reset();
+        System.out.println("After reset: " + histogram.getCount() + ", p99 " + histogram.getPercentile(99)
+                + " (Expected: 0, p99 0)");
+    }
+
+    // Test Operation Counters
+    private static void testCounters() {
+        System.out.println("\n=== Testing Operation Counters ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        for (int i = 1; i <= 20; i++) {
+            tracker.addExpense("2024-01-" + (i < 10 ? "0" + i : i), i, i % 2 == 0 ? "Food" : "Rent");
+        }
+        tracker.deleteExpense(0);
+        ExpenseMetrics metrics = tracker.getMetrics();
+        System.out.println("ADD count: " + metrics.getLatency(ExpenseMetrics.Operation.ADD).getCount() + " (Expected: 20)");
+        System.out.println("DELETE count: " + metrics.getLatency(ExpenseMetrics.Operation.DELETE).getCount()
+                + " (Expected: 1)");
+        try {
+            tracker.addExpense("2024-02-30", 1.0, "Food");
+        } catch (IllegalArgumentException e) {
+            System.out.println("ADD count after a rejected add: "
+                    + metrics.getLatency(ExpenseMetrics.Operation.ADD).getCount() + " (Expected: 21)");
+        }
+
+        tracker.searchByCategory("Food"); // 10 rows from the category index
+        tracker.getExpensesInDateRange("2024-01-05", "2024-01-09"); // 5 rows from the date index
+        // Rent 15, 17, 19: on 19 rows the planner scans the amount column instead of using an index
+        long scannedBefore = metrics.getRowsScanned();
+        tracker.query().amountAtLeast(15).inCategories("Rent").count();
+        System.out.println("Rows scanned by the amount column scan: " + (metrics.getRowsScanned() - scannedBefore)
+                + " (Expected: 20, every row once)");
+        System.out.println("Category lookups: " + metrics.getLookups(ExpenseMetrics.Source.CATEGORY_INDEX)
+                + " (Expected: 1)");
+        System.out.println("Date lookups: " + metrics.getLookups(ExpenseMetrics.Source.DATE_INDEX) + " (Expected: 1)");
+        System.out.println("Rows returned: " + metrics.getRowsReturned() + " (Expected: 18)");
+        System.out.println((metrics.getRowsScanned() >= metrics.getRowsReturned() ? "✅" : "❌")
+                + " Rows scanned (" + metrics.getRowsScanned() + ") at least rows returned");
+
+        tracker.generateReport(true, ExpenseReport.Period.ALL);
+        System.out.println("Full scans: " + metrics.getLookups(ExpenseMetrics.Source.FULL_SCAN) + " (Expected: 2)");
+        System.out.printf("Index hit rate: %.2f (Expected: 0.50)%n", metrics.getIndexHitRate());
+
+        String file = "metrics_test.csv";
+        tracker.saveToFile(file);
+        long size = new File(file).length();
+        tracker.loadFromFile(file);
+        System.out.println("Rows written/read: " + metrics.getRowsWritten() + "/" + metrics.getRowsRead()
+                + " (Expected: 19/19)");
+        System.out.println((metrics.getBytesWritten() == size && metrics.getBytesRead() == size ? "✅" : "❌")
+                + " Bytes written and read match the file size (" + size + ")");
+        System.out.println("LOAD_FILE count: " + metrics.getLatency(ExpenseMetrics.Operation.LOAD_FILE).getCount()
+                + " (Expected: 1)");
+        new File(file).delete();
+    }
+
+    // Test JMX MBean
+    private static void testMBean() throws Exception {
+        System.out.println("\n=== Testing JMX MBean ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-02-01", 5, "Books");
+        tracker.searchByAmount(5);
+        tracker.getMetrics().register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("ExpenseTracker:type=Metrics,name=\"test\"");
+        System.out.println("Registered: " + server.isRegistered(name) + " (Expected: true)");
+        System.out.println("RowsReturned: " + server.getAttribute(name, "RowsReturned") + " (Expected: 1)");
+        System.out.println("IndexHitRate: " + server.getAttribute(name, "IndexHitRate") + " (Expected: 1.0)");
+        System.out.println("ADD count: " + server.invoke(name, "getCount", new Object[] { "ADD" },
+                new String[] { String.class.getName() }) + " (Expected: 1)");
+        server.invoke(name, "reset", null, null);
+        System.out.println("RowsReturned after reset: " + server.getAttribute(name, "RowsReturned") + " (Expected: 0)");
+        tracker.getMetrics().unregister();
+        System.out.println("Registered after unregister: " + server.isRegistered(name) + " (Expected: false)");
+    }
+
+    // Test Periodic Report
+    private static void testReporting() throws Exception {
+        System.out.println("\n=== Testing Periodic Report ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-03-01", 7, "Travel");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, true, "UTF-8");
+        tracker.getMetrics().startReporting(20, TimeUnit.MILLISECONDS, out);
+        Thread.sleep(200);
+        tracker.getMetrics().stopReporting();
+        String text = buffer.toString("UTF-8");
+        int reports = text.split("Expense metrics", -1).length - 1;
+        System.out.println((reports >= 2 ? "✅" : "❌") + " Reports printed: " + reports);
+        System.out.println((text.contains("ADD ") ? "✅" : "❌") + " Report lists the ADD operation");
+        System.out.println(tracker.getMetrics().getReport());
+    }
+
+    // Test Disable Switch
+    private static void testDisabled() {
+        System.out.println("\n=== Testing Disable Switch ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.getMetrics().setEnabled(false);
+        tracker.addExpense("2024-04-01", 1, "Food");
+        tracker.searchByCategory("Food");
+        tracker.query().inCategories("Food").list();
+        ExpenseMetrics metrics = tracker.getMetrics();
+        System.out.println("ADD count: " + metrics.getLatency(ExpenseMetrics.Operation.ADD).getCount()
+                + ", rows returned: " + metrics.getRowsReturned() + " (Expected: 0, rows returned: 0)");
+        System.out.println(metrics.getReport().split(System.lineSeparator())[0] + " (Expected: Expense metrics (disabled))");
+
+        int calls = 5_000_000;
+        double off = 0;
+        double on = 0;
+        for (int round = 0; round < 3; round++) { // The first rounds warm up both paths
+            metrics.setEnabled(false);
+            off = timeStartStop(metrics, calls);
+            metrics.setEnabled(true);
+            on = timeStartStop(metrics, calls);
+        }
+        System.out.printf("Timing one operation: %.1f ns enabled, %.1f ns disabled%n", on, off);
+        System.out.println((off < on ? "✅" : "❌") + " Disabled metrics cost less than enabled ones");
+    }
+
+    private static double timeStartStop(ExpenseMetrics metrics, int calls) {
+        long begin = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            metrics.stop(ExpenseMetrics.Operation.SEARCH_DATE, metrics.start());
+        }
+        return (double) (System.nanoTime() - begin) / calls;
+    }
+}
@@ -0,0 +1,1035 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * A query over an {@link ExpenseTracker} that combines several criteria: a
+ * date range, a set of categories, amount bounds, a sort order and a limit.
+ *
+ * <pre>
+ * ArrayList&lt;Expense&gt; bigFood = tracker.query()
+ *         .between("2024-03-01", "2024-03-31")
+ *         .inCategories("Food")
+ *         .amountAtLeast(100)
+ *         .orderBy(Expense.BY_AMOUNT).descending()
+ *         .limit(10)
+ *         .list();
+ * </pre>
+ *
+ * <p>When the query runs, a planner estimates how many rows each usable
+ * index would produce: the date index, the category index and the amount
+ * index. Each estimate is exact or bounded, and none requires a scan. The
+ * smallest source wins unless a full scan is cheaper, with an index row
+ * costed as a few scan rows. The remaining criteria are checked on the
+ * primitive columns, so rows that fail them are never materialized.
+ * {@link #explain()} describes the chosen plan without running the query,
+ * and each run records its latency, source and rows examined versus
+ * returned in the tracker's {@link ExpenseMetrics}.</p>
+ *
+ * <p>Without {@link #orderBy}, results come in the order the expenses were
+ * added, as with the searchBy methods. Expense.BY_DATE and Expense.BY_AMOUNT
+ * sort on the primitive columns; any other comparator sorts the materialized
+ * expenses. Ties keep the order the expenses were added, also when
+ * descending. A query reads the tracker as it is when a terminal method is
+ * called and can be run again after the tracker changes.</p>
+ *
+ * <p>With a column order and a limit, as in {@link #top} and
+ * {@link #bottom}, the query never sorts every match. If the date or amount
+ * index is already in the requested order and few rows are expected to be
+ * skipped, the planner walks it and stops after the limit; otherwise the
+ * matches go through a bounded heap, in O(n log k) rather than
+ * O(n log n). {@link #page()} and {@link #after} page through a sorted
+ * result by keyset, resuming after the last row of the previous page.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseQuery {
+
+    /**
+     * The ways the planner can produce candidate rows.
+     */
+    private enum Access {
+        FULL_SCAN("full scan", ExpenseMetrics.Source.FULL_SCAN),
+        DATE_INDEX("date index", ExpenseMetrics.Source.DATE_INDEX),
+        CATEGORY_INDEX("category index", ExpenseMetrics.Source.CATEGORY_INDEX),
+        AMOUNT_INDEX("amount index", ExpenseMetrics.Source.AMOUNT_INDEX);
+
+        private final String label;
+        private final ExpenseMetrics.Source source;
+
+        Access(String label, ExpenseMetrics.Source source) {
+            this.label = label;
+            this.source = source;
+        }
+    }
+
+    /**
+     * The cost of producing one row through an index relative to one row of
+     * a full scan: index rows are read out of order and usually merged.
+     */
+    private static final int INDEX_ROW_COST = 4;
+
+    /**
+     * The cost of one row visited by an ordered index walk that is not the
+     * chosen source: the rows come in random row order and each is checked
+     * against every criterion, so they cost twice an index row.
+     */
+    private static final int WALK_ROW_COST = 2 * INDEX_ROW_COST;
+
+    /**
+     * A place in a sorted result: the sort key and stable id of a row. A
+     * query given a position with {@link #after} returns only the rows that
+     * sort after it, so pages stay consistent while rows are added or deleted.
+     */
+    public static final class Position {
+        private final long key;
+        private final long id;
+
+        /**
+         * Constructs a position.
+         *
+         * @param key The row's sort key: its epoch day or its amount in cents.
+         * @param id  The row's stable id.
+         */
+        public Position(long key, long id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        /**
+         * Parses a position written by {@link #toString()}.
+         *
+         * @param text The position as "key:id".
+         * @return The position.
+         * @throws IllegalArgumentException if the text is not a position.
+         */
+        public static Position parse(String text) {
+            int colon = text == null ? -1 : text.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Position must be in key:id format: " + text);
+            }
+            try {
+                return new Position(Long.parseLong(text.substring(0, colon)), Long.parseLong(text.substring(colon + 1)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Position must be in key:id format: " + text);
+            }
+        }
+
+        /**
+         * Returns the sort key.
+         *
+         * @return The epoch day or amount in cents.
+         */
+        public long getKey() {
+            return key;
+        }
+
+        /**
+         * Returns the stable id.
+         *
+         * @return The id.
+         */
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return key + ":" + id;
+        }
+    }
+
+    /**
+     * One page of a sorted result and the position to continue from.
+     */
+    public static final class Page {
+        private final ArrayList<Expense> expenses;
+        private final Position next;
+
+        private Page(ArrayList<Expense> expenses, Position next) {
+            this.expenses = expenses;
+            this.next = next;
+        }
+
+        /**
+         * Returns the expenses on this page.
+         *
+         * @return The expenses, in sort order.
+         */
+        public ArrayList<Expense> getExpenses() {
+            return expenses;
+        }
+
+        /**
+         * Returns where the next page starts.
+         *
+         * @return The position to pass to {@link ExpenseQuery#after}, or null on the last page.
+         */
+        public Position getNext() {
+            return next;
+        }
+
+        /**
+         * Returns whether another page may follow.
+         *
+         * @return True if the page was full.
+         */
+        public boolean hasNext() {
+            return next != null;
+        }
+    }
+
+    private final ExpenseStore store;
+    private final ExpenseIndexes indexes;
+    private final ExpenseMetrics metrics;
+    private long examined; // Rows checked by the current run, for the metrics
+
+    // Criteria
+    private int startDay = Integer.MIN_VALUE;
+    private int endDay = Integer.MAX_VALUE;
+    private Set<String> categories; // Null for any category
+    private long minCents = 0;
+    private long maxCents = Long.MAX_VALUE;
+    private Comparator<Expense> order; // Null for insertion order
+    private boolean descending;
+    private int limit = Integer.MAX_VALUE;
+    private Position after; // Keyset position to resume after, or null
+
+    /**
+     * Constructs a query matching every expense of a tracker's store.
+     *
+     * @param store   The store holding the rows.
+     * @param indexes The indexes over the store.
+     * @param metrics Where each run records its latency and row counts.
+     */
+    ExpenseQuery(ExpenseStore store, ExpenseIndexes indexes, ExpenseMetrics metrics) {
+        this.store = store;
+        this.indexes = indexes;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Restricts the query to a date range. Either bound may be null to leave
+     * that end of the range open.
+     *
+     * @param startDate The start date (inclusive), or null.
+     * @param endDate   The end date (inclusive), or null.
+     * @return This query.
+     */
+    public ExpenseQuery between(String startDate, String endDate) {
+        startDay = startDate == null ? Integer.MIN_VALUE : ExpenseStore.toEpochDay(startDate);
+        endDay = endDate == null ? Integer.MAX_VALUE : ExpenseStore.toEpochDay(endDate);
+        return this;
+    }
+
+    /**
+     * Restricts the query to one or more categories.
+     *
+     * @param names The category names to accept.
+     * @return This query.
+     */
+    public ExpenseQuery inCategories(String... names) {
+        categories = new LinkedHashSet<>(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * Restricts the query to amounts of at least the given value.
+     *
+     * @param amount The smallest accepted amount (inclusive).
+     * @return This query.
+     */
+    public ExpenseQuery amountAtLeast(double amount) {
+        minCents = ExpenseStore.toCents(amount);
+        return this;
+    }
+
+    /**
+     * Restricts the query to amounts of at most the given value.
+     *
+     * @param amount The largest accepted amount (inclusive).
+     * @return This query.
+     */
+    public ExpenseQuery amountAtMost(double amount) {
+        maxCents = ExpenseStore.toCents(amount);
+        return this;
+    }
+
+    /**
+     * Sorts the results, for example by Expense.BY_DATE or Expense.BY_AMOUNT.
+     *
+     * @param comparator The sort order.
+     * @return This query.
+     */
+    public ExpenseQuery orderBy(Comparator<Expense> comparator) {
+        order = comparator;
+        return this;
+    }
+
+    /**
+     * Reverses the sort order given to {@link #orderBy}.
+     *
+     * @return This query.
+     */
+    public ExpenseQuery descending() {
+        descending = true;
+        return this;
+    }
+
+    /**
+     * Returns at most the given number of results.
+     *
+     * @param count The maximum number of results.
+     * @return This query.
+     */
+    public ExpenseQuery limit(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + count);
+        }
+        limit = count;
+        return this;
+    }
+
+    /**
+     * Returns the largest results in an order, for example the 50 largest
+     * amounts with top(50, Expense.BY_AMOUNT).
+     *
+     * @param count The number of results.
+     * @param comparator The order to rank by.
+     * @return This query.
+     */
+    public ExpenseQuery top(int count, Comparator<Expense> comparator) {
+        orderBy(comparator);
+        descending = true;
+        return limit(count);
+    }
+
+    /**
+     * Returns the smallest results in an order, for example the 10 oldest
+     * expenses with bottom(10, Expense.BY_DATE).
+     *
+     * @param count The number of results.
+     * @param comparator The order to rank by.
+     * @return This query.
+     */
+    public ExpenseQuery bottom(int count, Comparator<Expense> comparator) {
+        orderBy(comparator);
+        descending = false;
+        return limit(count);
+    }
+
+    /**
+     * Returns only the results that sort after a position, as returned by
+     * {@link Page#getNext()}. Needs Expense.BY_DATE or Expense.BY_AMOUNT order.
+     *
+     * @param position The last position already seen, or null to start at the beginning.
+     * @return This query.
+     */
+    public ExpenseQuery after(Position position) {
+        after = position;
+        return this;
+    }
+
+    /**
+     * Runs the query and materializes the results.
+     *
+     * @return The matching expenses.
+     */
+    public ArrayList<Expense> list() {
+        long start = start();
+        Plan plan = plan();
+        ArrayList<Expense> result = list(plan);
+        finish(plan, result.size(), start);
+        return result;
+    }
+
+    private ArrayList<Expense> list(Plan plan) {
+        if (plan.order == null || isColumnOrder(plan.order)) {
+            return cursor(plan).toList();
+        }
+        // Arbitrary comparator: sort the materialized expenses
+        ArrayList<Expense> result = ExpenseCursor.ofRows(store, collect(plan, Integer.MAX_VALUE)).toList();
+        result.sort(descending ? plan.order.reversed() : plan.order);
+        if (result.size() > limit) {
+            result.subList(limit, result.size()).clear();
+        }
+        return result;
+    }
+
+    /**
+     * Runs the query and returns a cursor over the results, so they can be
+     * read a page at a time or from the primitive columns.
+     *
+     * @return A cursor over the matching expenses.
+     */
+    public ExpenseCursor cursor() {
+        long start = start();
+        Plan plan = plan();
+        if (plan.order != null && !isColumnOrder(plan.order)) {
+            throw new UnsupportedOperationException(
+                    "Cursors support Expense.BY_DATE and Expense.BY_AMOUNT order only");
+        }
+        ExpenseCursor cursor = cursor(plan);
+        finish(plan, cursor.remaining(), start);
+        return cursor;
+    }
+
+    /**
+     * Runs the query and counts the results without materializing any expense.
+     *
+     * @return The number of matching expenses, at most the limit.
+     */
+    public int count() {
+        long start = start();
+        Plan plan = plan();
+        int count = collect(plan, limit).size();
+        finish(plan, count, start);
+        return count;
+    }
+
+    /**
+     * Runs the query and sums the amounts of the results without
+     * materializing any expense. With a limit and a sort order, only the
+     * first rows in that order are summed.
+     *
+     * @return The total in cents.
+     */
+    public long sumCents() {
+        long start = start();
+        Plan plan = plan();
+        long total = 0;
+        int rows;
+        if (plan.order == null || limit == Integer.MAX_VALUE) {
+            ExpenseCursor cursor = ExpenseCursor.ofRows(store, collect(plan, limit));
+            rows = cursor.remaining();
+            total = cursor.sumCents();
+        } else if (!isColumnOrder(plan.order)) {
+            ArrayList<Expense> result = list(plan);
+            rows = result.size();
+            for (Expense expense : result) {
+                total += expense.getCents();
+            }
+        } else {
+            ExpenseCursor cursor = cursor(plan);
+            rows = cursor.remaining();
+            total = cursor.sumCents();
+        }
+        finish(plan, rows, start);
+        return total;
+    }
+
+    /**
+     * Runs the query and returns one page of at most the limit rows, with
+     * the position the next page starts from. Needs Expense.BY_DATE or
+     * Expense.BY_AMOUNT order.
+     *
+     * @return The page.
+     */
+    public Page page() {
+        long start = start();
+        Plan plan = plan();
+        if (plan.order == null || !isColumnOrder(plan.order)) {
+            throw new UnsupportedOperationException("Pages need Expense.BY_DATE or Expense.BY_AMOUNT order");
+        }
+        ExpenseCursor cursor = cursor(plan);
+        ArrayList<Expense> expenses = new ArrayList<>(cursor.remaining());
+        int last = -1;
+        while (cursor.next()) {
+            expenses.add(cursor.get());
+            last = cursor.row();
+        }
+        finish(plan, expenses.size(), start);
+        Position next = null;
+        if (last >= 0 && expenses.size() == limit) {
+            next = new Position(plan.order == Expense.BY_DATE ? store.dayAt(last) : store.centsAt(last),
+                    store.idAt(last));
+        }
+        return new Page(expenses, next);
+    }
+
+    private long start() {
+        examined = 0;
+        return metrics.start();
+    }
+
+    private void finish(Plan plan, int returned, long start) {
+        if (!plan.empty) {
+            metrics.recordLookup(plan.access.source, examined, returned);
+        }
+        metrics.stop(ExpenseMetrics.Operation.QUERY, start);
+    }
+
+    /**
+     * Describes how the query would run, without running it.
+     *
+     * @return The criteria, the candidate sources with their estimated row
+     *         counts, and the chosen access path, filters, sort and limit.
+     */
+    public String explain() {
+        Plan plan = plan();
+        StringBuilder out = new StringBuilder("Query:");
+        if (startDay != Integer.MIN_VALUE || endDay != Integer.MAX_VALUE) {
+            out.append(" date ").append(day(startDay)).append("..").append(day(endDay)).append(';');
+        }
+        if (categories != null) {
+            out.append(" category in ").append(categories).append(';');
+        }
+        if (minCents > 0 || maxCents != Long.MAX_VALUE) {
+            out.append(" amount ").append(ExpenseStore.fromCents(minCents)).append("..")
+                    .append(maxCents == Long.MAX_VALUE ? "*" : String.valueOf(ExpenseStore.fromCents(maxCents)))
+                    .append(';');
+        }
+        out.append(System.lineSeparator());
+        if (plan.empty) {
+            return out.append("Plan: empty result (").append(plan.emptyReason).append(')').toString();
+        }
+        out.append("Candidates:");
+        for (Access access : Access.values()) {
+            if (plan.estimates[access.ordinal()] >= 0) {
+                out.append(' ').append(access.label).append('=').append(plan.estimates[access.ordinal()])
+                        .append(plan.bounded[access.ordinal()] ? "+" : "");
+            }
+        }
+        out.append(System.lineSeparator()).append("Plan: ").append(plan.access.label);
+        if (plan.access == Access.FULL_SCAN && plan.checkAmount) {
+            out.append(" (").append(ScanKernels.get().name()).append(" amount kernel)");
+        }
+        if (plan.access != Access.FULL_SCAN && plan.estimates[plan.access.ordinal()] >= 0) {
+            out.append(" (").append(plan.estimates[plan.access.ordinal()]).append(" rows)");
+        }
+        ArrayList<String> filters = new ArrayList<>();
+        if (plan.checkDate) {
+            filters.add("date");
+        }
+        if (plan.checkCategory) {
+            filters.add("category");
+        }
+        if (plan.checkAmount) {
+            filters.add("amount");
+        }
+        out.append(" -> filter ").append(filters.isEmpty() ? "none" : String.join(", ", filters)).append(" on columns");
+        if (after != null) {
+            out.append(" -> after ").append(after);
+        }
+        if (plan.order == null) {
+            out.append(plan.access == Access.DATE_INDEX || plan.multipleLists ? " -> sort by row id" : "");
+        } else if (plan.walk) {
+            out.append(plan.order == Expense.BY_DATE ? " -> date" : " -> amount").append(" order from index")
+                    .append(descending ? " descending" : "");
+        } else if (isColumnOrder(plan.order) && limit != Integer.MAX_VALUE) {
+            out.append(" -> top ").append(limit).append(" by heap on columns").append(descending ? " descending" : "");
+        } else {
+            out.append(" -> sort ").append(isColumnOrder(plan.order) ? "on columns" : "materialized expenses")
+                    .append(descending ? " descending" : "");
+        }
+        if (limit != Integer.MAX_VALUE) {
+            out.append(" -> limit ").append(limit);
+        }
+        return out.toString();
+    }
+
+    // ---------------------------------------------------------------------
+    // Planning
+
+    /**
+     * The chosen access path and everything needed to run it.
+     */
+    private static class Plan {
+        boolean empty;
+        String emptyReason;
+        Access access = Access.FULL_SCAN;
+        long[] estimates = new long[Access.values().length];
+        boolean[] bounded = new boolean[Access.values().length]; // Estimate stopped at a cap
+        boolean[] allowedCodes; // Accepted category codes, or null for any
+        int dateFrom;           // Date index positions, when the date range is bounded
+        int dateTo;
+        boolean multipleLists;  // The source yields several row lists that must be merged
+        boolean checkDate;
+        boolean checkCategory;
+        boolean checkAmount;
+        boolean checkAfter;     // Drop rows that do not sort after the keyset position
+        boolean walk;           // Walk the date or amount index in the requested order
+        int startDay;           // The criteria, narrowed by the keyset position
+        int endDay;
+        long minCents;
+        long maxCents;
+        Comparator<Expense> order;
+    }
+
+    private Plan plan() {
+        Plan plan = new Plan();
+        plan.order = order;
+        Arrays.fill(plan.estimates, -1);
+        plan.startDay = startDay;
+        plan.endDay = endDay;
+        plan.minCents = minCents;
+        plan.maxCents = maxCents;
+        if (after != null) {
+            if (order == null || !isColumnOrder(order)) {
+                throw new UnsupportedOperationException(
+                        "Keyset positions need Expense.BY_DATE or Expense.BY_AMOUNT order");
+            }
+            narrowToPosition(plan);
+            plan.checkAfter = true;
+        }
+        int size = store.size();
+        boolean dateBounded = plan.startDay != Integer.MIN_VALUE || plan.endDay != Integer.MAX_VALUE;
+        boolean amountBounded = plan.minCents > 0 || plan.maxCents != Long.MAX_VALUE;
+
+        if (plan.startDay > plan.endDay || plan.minCents > plan.maxCents || limit == 0) {
+            plan.empty = true;
+            plan.emptyReason = limit == 0 ? "limit 0" : "contradictory bounds";
+            return plan;
+        }
+
+        long bestCost = size;
+        plan.estimates[Access.FULL_SCAN.ordinal()] = size;
+
+        if (categories != null) {
+            plan.allowedCodes = new boolean[store.categoryCount()];
+            long rows = 0;
+            int lists = 0;
+            for (String name : categories) {
+                int code = store.findCategory(name);
+                if (code >= 0 && !plan.allowedCodes[code]) {
+                    plan.allowedCodes[code] = true;
+                    rows += indexes.countForCategory(code);
+                    lists++;
+                }
+            }
+            if (lists == 0) {
+                plan.empty = true;
+                plan.emptyReason = "no such category";
+                return plan;
+            }
+            plan.estimates[Access.CATEGORY_INDEX.ordinal()] = rows;
+            if (rows * INDEX_ROW_COST < bestCost) {
+                bestCost = rows * INDEX_ROW_COST;
+                plan.access = Access.CATEGORY_INDEX;
+                plan.multipleLists = false; // Bitmaps are merged by OR and stay in row order
+            }
+        }
+
+        if (dateBounded) {
+            DateIndex dateIndex = indexes.dateIndex();
+            plan.dateFrom = dateIndex.lowerBound(plan.startDay);
+            plan.dateTo = Math.max(plan.dateFrom, dateIndex.upperBound(plan.endDay));
+            long rows = plan.dateTo - plan.dateFrom;
+            plan.estimates[Access.DATE_INDEX.ordinal()] = rows;
+            if (rows * INDEX_ROW_COST < bestCost) {
+                bestCost = rows * INDEX_ROW_COST;
+                plan.access = Access.DATE_INDEX;
+                plan.multipleLists = false;
+            }
+        }
+
+        if (amountBounded) {
+            // Count list sizes only until the amount index can no longer win
+            long rows = 0;
+            int lists = 0;
+            for (IntList list : indexes.rowsForAmountRange(plan.minCents, plan.maxCents).values()) {
+                rows += list.size();
+                lists++;
+                if (rows * INDEX_ROW_COST >= bestCost) {
+                    plan.bounded[Access.AMOUNT_INDEX.ordinal()] = true;
+                    break;
+                }
+            }
+            plan.estimates[Access.AMOUNT_INDEX.ordinal()] = rows;
+            if (rows * INDEX_ROW_COST < bestCost) {
+                bestCost = rows * INDEX_ROW_COST;
+                plan.access = Access.AMOUNT_INDEX;
+                plan.multipleLists = lists > 1;
+            }
+        }
+
+        if (order != null && isColumnOrder(order)) {
+            planOrderedWalk(plan, dateBounded, amountBounded, bestCost);
+        }
+
+        plan.checkDate = dateBounded && plan.access != Access.DATE_INDEX;
+        plan.checkCategory = categories != null && plan.access != Access.CATEGORY_INDEX;
+        plan.checkAmount = amountBounded && plan.access != Access.AMOUNT_INDEX;
+        return plan;
+    }
+
+    /**
+     * Narrows the sort column's bounds to the keyset position, so the
+     * planner sees how few rows remain; ties at the position itself are
+     * settled by stable id when rows are checked.
+     */
+    private void narrowToPosition(Plan plan) {
+        if (order == Expense.BY_DATE) {
+            int day = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, after.key));
+            if (descending) {
+                plan.endDay = Math.min(plan.endDay, day);
+            } else {
+                plan.startDay = Math.max(plan.startDay, day);
+            }
+        } else if (descending) {
+            plan.maxCents = Math.min(plan.maxCents, after.key);
+        } else {
+            plan.minCents = Math.max(plan.minCents, after.key);
+        }
+    }
+
+    /**
+     * Decides whether to walk the index that is already in the requested
+     * order instead of collecting every match and sorting it. The walk is
+     * free when that index is the chosen source anyway; otherwise it pays
+     * off when the limit is reached after few rows. Assuming matches are
+     * spread evenly, that takes limit * ordered / matching rows, where
+     * matching is the smallest estimate any source gave.
+     */
+    private void planOrderedWalk(Plan plan, boolean dateBounded, boolean amountBounded, long bestCost) {
+        Access source = order == Expense.BY_DATE ? Access.DATE_INDEX : Access.AMOUNT_INDEX;
+        if (plan.access == source) {
+            plan.walk = true;
+            return;
+        }
+        if (limit == Integer.MAX_VALUE) {
+            return;
+        }
+        long ordered;
+        if (source == Access.DATE_INDEX) {
+            ordered = dateBounded ? plan.dateTo - plan.dateFrom : store.liveCount();
+        } else {
+            boolean exact = amountBounded && !plan.bounded[Access.AMOUNT_INDEX.ordinal()];
+            ordered = exact ? plan.estimates[Access.AMOUNT_INDEX.ordinal()] : store.liveCount();
+        }
+        long matching = ordered;
+        for (int i = 0; i < plan.estimates.length; i++) {
+            if (plan.estimates[i] >= 0 && !plan.bounded[i]) { // A bounded estimate is only a lower bound
+                matching = Math.min(matching, plan.estimates[i]);
+            }
+        }
+        long walked = Math.min(ordered, (long) limit * ordered / Math.max(1, matching));
+        if (walked * WALK_ROW_COST < bestCost) {
+            plan.access = source;
+            plan.walk = true;
+            plan.multipleLists = source == Access.AMOUNT_INDEX; // Unordered runs still need row order
+            if (source == Access.DATE_INDEX && !dateBounded) {
+                plan.dateFrom = 0;
+                plan.dateTo = indexes.dateIndex().size();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Execution
+
+    private boolean matches(Plan plan, int row) {
+        examined++;
+        if (plan.checkDate) {
+            int day = store.dayAt(row);
+            if (day < plan.startDay || day > plan.endDay) {
+                return false;
+            }
+        }
+        if (plan.checkCategory && !plan.allowedCodes[store.categoryCodeAt(row)]) {
+            return false;
+        }
+        if (plan.checkAmount) {
+            long cents = store.centsAt(row);
+            if (cents < plan.minCents || cents > plan.maxCents) {
+                return false;
+            }
+        }
+        return !plan.checkAfter || isAfterPosition(plan, row);
+    }
+
+    /**
+     * Checks that a row sorts after the keyset position. Ties on the key
+     * keep the order the expenses were added, also when descending, so they
+     * are settled by stable id, which grows in that order.
+     */
+    private boolean isAfterPosition(Plan plan, int row) {
+        long key = plan.order == Expense.BY_DATE ? store.dayAt(row) : store.centsAt(row);
+        if (key != after.key) {
+            return descending ? key < after.key : key > after.key;
+        }
+        return store.idAt(row) > after.id;
+    }
+
+    /**
+     * Collects the matching rows in insertion order. When the source already
+     * yields rows in that order, collection stops at the cap.
+     */
+    private IntList collect(Plan plan, int cap) {
+        return collect(plan, cap, true);
+    }
+
+    /**
+     * Collects the matching rows, in insertion order only if asked: callers
+     * that sort the rows themselves skip the merge by row id. Without row
+     * order the cap applies only to sources that are already in row order.
+     */
+    private IntList collect(Plan plan, int cap, boolean rowOrder) {
+        IntList result = new IntList();
+        if (plan.empty) {
+            return result;
+        }
+        switch (plan.access) {
+            case CATEGORY_INDEX:
+                BitSet rows = categoryRows(plan);
+                for (int row = rows.nextSetBit(0); row >= 0 && result.size() < cap; row = rows.nextSetBit(row + 1)) {
+                    if (matches(plan, row)) {
+                        result.add(row);
+                    }
+                }
+                break;
+            case AMOUNT_INDEX:
+                for (IntList list : indexes.rowsForAmountRange(plan.minCents, plan.maxCents).values()) {
+                    collectList(plan, list, result, plan.multipleLists ? Integer.MAX_VALUE : cap);
+                }
+                break;
+            case DATE_INDEX:
+                DateIndex dateIndex = indexes.dateIndex();
+                for (int pos = plan.dateFrom; pos < plan.dateTo; pos++) {
+                    int row = dateIndex.rowAt(pos);
+                    if (matches(plan, row)) {
+                        result.add(row);
+                    }
+                }
+                break;
+            default:
+                if (plan.checkAmount) {
+                    // Filter the amount column with the scan kernels first, then check the rest per row
+                    long scanned = examined + store.size();
+                    collectList(plan, store.selectAmountRange(plan.minCents, plan.maxCents), result, cap);
+                    examined = scanned; // The kernel saw every row; checking its hits is not a second scan
+                    break;
+                }
+                for (int row = 0, size = store.size(); row < size && result.size() < cap; row++) {
+                    if (!store.isDeleted(row) && matches(plan, row)) {
+                        result.add(row);
+                    }
+                }
+        }
+        if (rowOrder && (plan.access == Access.DATE_INDEX || plan.multipleLists)) {
+            int[] rows = toArray(result);
+            Arrays.sort(rows);
+            return truncate(rows, cap);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the rows of every allowed category: the index bitmap itself
+     * for one category, or the OR of their bitmaps for several.
+     */
+    private BitSet categoryRows(Plan plan) {
+        BitSet union = null;
+        boolean shared = false;
+        for (int code = 0; code < plan.allowedCodes.length; code++) {
+            BitSet bits = plan.allowedCodes[code] ? indexes.categoryBitmap(code) : null;
+            if (bits == null) {
+                continue;
+            }
+            if (union == null) {
+                union = bits;
+                shared = true;
+            } else {
+                if (shared) {
+                    union = (BitSet) union.clone(); // Never modify the index's own bitmap
+                    shared = false;
+                }
+                union.or(bits);
+            }
+        }
+        return union == null ? new BitSet() : union;
+    }
+
+    private void collectList(Plan plan, IntList rows, IntList result, int cap) {
+        if (rows == null) {
+            return;
+        }
+        for (int i = 0; i < rows.size() && result.size() < cap; i++) {
+            int row = rows.get(i);
+            if (matches(plan, row)) {
+                result.add(row);
+            }
+        }
+    }
+
+    /**
+     * Runs a plan whose order, if any, is on a column, and returns a cursor
+     * over the sorted and limited rows.
+     */
+    private ExpenseCursor cursor(Plan plan) {
+        if (plan.order == null || plan.empty) {
+            return ExpenseCursor.ofRows(store, collect(plan, limit));
+        }
+        if (plan.walk) {
+            return ExpenseCursor.ofRows(store, walk(plan));
+        }
+        int[] rows = toArray(collect(plan, Integer.MAX_VALUE, false)); // Ties are ordered by the packed row id
+        int[] sorted = selectOnColumns(rows, plan.order == Expense.BY_DATE, limit);
+        if (sorted == null) {
+            // Amounts too large to pack into a sort key; fall back to boxed keys
+            Integer[] boxed = Arrays.stream(rows).boxed().toArray(Integer[]::new);
+            Comparator<Integer> byCents = Comparator.comparingLong(store::centsAt);
+            Arrays.sort(boxed, descending ? byCents.reversed() : byCents);
+            sorted = Arrays.stream(boxed).mapToInt(Integer::intValue).toArray();
+        }
+        return ExpenseCursor.ofRows(store, truncate(sorted, limit));
+    }
+
+    /**
+     * Walks the date or amount index in the requested order, keeping the
+     * matching rows until the limit is reached. Within one key the index
+     * holds rows in the order they were added, and that order is kept in
+     * both directions.
+     */
+    private IntList walk(Plan plan) {
+        IntList result = new IntList();
+        if (plan.access == Access.AMOUNT_INDEX) {
+            NavigableMap<Long, IntList> range = indexes.rowsForAmountRange(plan.minCents, plan.maxCents);
+            for (IntList list : (descending ? range.descendingMap() : range).values()) {
+                collectList(plan, list, result, limit);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+            return result;
+        }
+        DateIndex dateIndex = indexes.dateIndex();
+        if (!descending) {
+            for (int pos = plan.dateFrom; pos < plan.dateTo && result.size() < limit; pos++) {
+                int row = dateIndex.rowAt(pos);
+                if (matches(plan, row)) {
+                    result.add(row);
+                }
+            }
+            return result;
+        }
+        // Newest day first, but each day's rows in the order they were added
+        int end = plan.dateTo;
+        while (end > plan.dateFrom && result.size() < limit) {
+            int day = store.dayAt(dateIndex.rowAt(end - 1));
+            int begin = end - 1;
+            while (begin > plan.dateFrom && store.dayAt(dateIndex.rowAt(begin - 1)) == day) {
+                begin--;
+            }
+            for (int pos = begin; pos < end && result.size() < limit; pos++) {
+                int row = dateIndex.rowAt(pos);
+                if (matches(plan, row)) {
+                    result.add(row);
+                }
+            }
+            end = begin;
+        }
+        return result;
+    }
+
+    /**
+     * Sorts rows by date or amount, packing each key with its row id into a
+     * long so a primitive sort keeps ties in row order. Only the first count
+     * rows are wanted, so when that is fewer than all of them, a bounded
+     * max-heap keeps the count smallest keys in O(n log count) and only
+     * those are sorted.
+     *
+     * @return The first count rows in order, or null if some amount does not
+     *         fit the packed key.
+     */
+    private int[] selectOnColumns(int[] rows, boolean byDate, int count) {
+        int k = Math.min(count, rows.length);
+        boolean bounded = k < rows.length;
+        long[] keys = new long[bounded ? k : rows.length];
+        int size = 0;
+        for (int row : rows) {
+            long key;
+            if (byDate) {
+                key = (long) store.dayAt(row) - Integer.MIN_VALUE;
+            } else {
+                key = store.centsAt(row);
+                if (key > Integer.MAX_VALUE) {
+                    return null;
+                }
+            }
+            if (descending) {
+                key = 0xFFFFFFFFL - key;
+            }
+            key = key << 31 | row;
+            if (!bounded) {
+                keys[size++] = key;
+            } else if (size < k) {
+                keys[size] = key;
+                siftUp(keys, size++);
+            } else if (key < keys[0]) {
+                keys[0] = key;
+                siftDown(keys, k);
+            }
+        }
+        Arrays.sort(keys, 0, size);
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = (int) (keys[i] & Integer.MAX_VALUE);
+        }
+        return sorted;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= key) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long key = heap[0];
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < size) {
+            if (child + 1 < size && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (key >= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    private static boolean isColumnOrder(Comparator<Expense> comparator) {
+        return comparator == Expense.BY_DATE || comparator == Expense.BY_AMOUNT;
+    }
+
+    private static int[] toArray(IntList list) {
+        int[] values = new int[list.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = list.get(i);
+        }
+        return values;
+    }
+
+    private static IntList truncate(int[] rows, int cap) {
+        int count = Math.min(rows.length, cap);
+        IntList result = new IntList(count);
+        for (int i = 0; i < count; i++) {
+            result.add(rows[i]);
+        }
+        return result;
+    }
+
+    private static String day(int epochDay) {
+        if (epochDay == Integer.MIN_VALUE || epochDay == Integer.MAX_VALUE) {
+            return "*";
+        }
+        return ExpenseStore.fromEpochDay(epochDay);
+    }
+}
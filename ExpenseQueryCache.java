@@ -0,0 +1,289 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least-recently-used cache of materialized search results, so
+ * dashboards that repeat the same date-range and category searches between
+ * writes get a copy of the earlier list instead of materializing every
+ * expense again.
+ *
+ * <p>Each entry remembers the date range or category it was computed for.
+ * A write only evicts the entries it could change: a row added or deleted
+ * on a given day and category evicts the date ranges that contain the day
+ * and the entry for that category, and nothing else. A bulk load replaces
+ * everything, so it flushes the cache.</p>
+ *
+ * <p>The cache is bounded both by its number of entries and by an estimate
+ * of the memory the cached lists hold; the least recently used entries are
+ * evicted first. A result too large to fit on its own is not cached.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseQueryCache {
+
+    /** Estimated heap held per cached row: the Expense object and its slot in the list. */
+    private static final long BYTES_PER_ROW = 40;
+    /** Estimated heap held per entry apart from its rows. */
+    private static final long BYTES_PER_ENTRY = 128;
+
+    /**
+     * What a cached result was computed for: a day range or a category code.
+     */
+    private static final class Key {
+        private final int startDay;
+        private final int endDay;
+        private final int category; // -1 for a date range
+
+        private Key(int startDay, int endDay, int category) {
+            this.startDay = startDay;
+            this.endDay = endDay;
+            this.category = category;
+        }
+
+        private boolean affectedBy(int minDay, int maxDay, boolean[] categories) {
+            if (category >= 0) {
+                return category < categories.length && categories[category];
+            }
+            return startDay <= maxDay && minDay <= endDay;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return startDay == key.startDay && endDay == key.endDay && category == key.category;
+        }
+
+        @Override
+        public int hashCode() {
+            return (startDay * 31 + endDay) * 31 + category;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, ArrayList<Expense>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxEntries The most results to keep.
+     * @param maxBytes   The most estimated heap bytes the cached results may hold.
+     */
+    public ExpenseQueryCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Cache limits must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    // ---------------------------------------------------------------------
+    // Lookups
+
+    /**
+     * Returns a copy of the cached expenses in a day range.
+     *
+     * @param startDay The first epoch day (inclusive).
+     * @param endDay   The last epoch day (inclusive).
+     * @return A new list, or null on a miss.
+     */
+    public synchronized ArrayList<Expense> getDateRange(int startDay, int endDay) {
+        return get(new Key(startDay, endDay, -1));
+    }
+
+    /**
+     * Caches the expenses in a day range.
+     *
+     * @param startDay The first epoch day (inclusive).
+     * @param endDay   The last epoch day (inclusive).
+     * @param result   The expenses; a copy is kept.
+     */
+    public synchronized void putDateRange(int startDay, int endDay, ArrayList<Expense> result) {
+        put(new Key(startDay, endDay, -1), result);
+    }
+
+    /**
+     * Returns a copy of the cached expenses in a category.
+     *
+     * @param category The category code.
+     * @return A new list, or null on a miss.
+     */
+    public synchronized ArrayList<Expense> getCategory(int category) {
+        return get(new Key(0, 0, category));
+    }
+
+    /**
+     * Caches the expenses in a category.
+     *
+     * @param category The category code.
+     * @param result   The expenses; a copy is kept.
+     */
+    public synchronized void putCategory(int category, ArrayList<Expense> result) {
+        put(new Key(0, 0, category), result);
+    }
+
+    private ArrayList<Expense> get(Key key) {
+        ArrayList<Expense> cached = entries.get(key);
+        if (cached == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(cached); // Callers may modify what they get back
+    }
+
+    private void put(Key key, ArrayList<Expense> result) {
+        long size = sizeOf(result);
+        if (maxEntries == 0 || size > maxBytes) {
+            return;
+        }
+        ArrayList<Expense> old = entries.put(key, new ArrayList<>(result));
+        if (old != null) {
+            bytes -= sizeOf(old);
+        }
+        bytes += size;
+        Iterator<ArrayList<Expense>> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= sizeOf(eldest.next());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(ArrayList<Expense> result) {
+        return BYTES_PER_ENTRY + result.size() * BYTES_PER_ROW;
+    }
+
+    // ---------------------------------------------------------------------
+    // Invalidation
+
+    /**
+     * Evicts the entries a written row could change.
+     *
+     * @param epochDay The row's day.
+     * @param category The row's category code.
+     */
+    public synchronized void invalidate(int epochDay, int category) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        boolean[] categories = new boolean[category + 1];
+        categories[category] = true;
+        invalidate(epochDay, epochDay, categories);
+    }
+
+    /**
+     * Evicts the entries a block of written rows could change: the date
+     * ranges that overlap the block's days and the block's categories.
+     *
+     * @param minDay     The block's earliest day.
+     * @param maxDay     The block's latest day.
+     * @param categories Which category codes occur in the block.
+     */
+    public synchronized void invalidate(int minDay, int maxDay, boolean[] categories) {
+        Iterator<Map.Entry<Key, ArrayList<Expense>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, ArrayList<Expense>> entry = it.next();
+            if (entry.getKey().affectedBy(minDay, maxDay, categories)) {
+                bytes -= sizeOf(entry.getValue());
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Evicts every entry, for writes that replace the data wholesale.
+     */
+    public synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+        bytes = 0;
+    }
+
+    // ---------------------------------------------------------------------
+    // Statistics
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return The hit count.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups the cache could not answer.
+     *
+     * @return The miss count.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the share of lookups answered from the cache.
+     *
+     * @return The hit rate between 0 and 1, or 0 if nothing was looked up.
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the number of entries dropped to stay within the limits.
+     *
+     * @return The eviction count.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries dropped because a write could change them.
+     *
+     * @return The invalidation count.
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the number of cached results.
+     *
+     * @return The entry count.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated heap held by the cached results.
+     *
+     * @return The estimate in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Query cache: %d entries (~%d KB), %d hits, %d misses (%.1f%% hit rate), "
+                + "%d evictions, %d invalidations", entries.size(), bytes / 1024, hits, misses, getHitRate() * 100,
+                evictions, invalidations);
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Test class for ExpenseQueryCache to validate hits and misses, precise
+ * invalidation on writes, flushing on loads, the entry and memory bounds,
+ * and the speed-up on repeated searches.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseQueryCacheTest {
+
+    public static void main(String[] args) {
+        // 1. Test Hits and Misses
+        testHitsAndMisses();
+
+        // 2. Test Precise Invalidation
+        testInvalidation();
+
+        // 3. Test Load Flushes the Cache
+        testLoadFlush();
+
+        // 4. Test Eviction Bounds
+        testEviction();
+
+        // 5. Test Repeated Search Speed
+        testSpeed();
+    }
+
+    private static ExpenseTracker sampleTracker() {
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-05", 10.0, "Food");
+        tracker.addExpense("2024-01-10", 20.0, "Rent");
+        tracker.addExpense("2024-02-03", 30.0, "Food");
+        tracker.addExpense("2024-02-20", 40.0, "Travel");
+        return tracker;
+    }
+
+    // Test Hits and Misses
+    private static void testHitsAndMisses() {
+        System.out.println("\n=== Testing Hits and Misses ===");
+        ExpenseTracker tracker = sampleTracker();
+        ExpenseQueryCache cache = tracker.getQueryCache();
+        ArrayList<Expense> first = tracker.searchByCategory("Food");
+        ArrayList<Expense> second = tracker.searchByCategory("Food");
+        System.out.println("Hits/misses: " + cache.getHits() + "/" + cache.getMisses() + " (Expected: 1/1)");
+        System.out.println((first.equals(second) ? "✅" : "❌") + " Cached result equals the computed one");
+        second.clear(); // Callers get their own copy
+        System.out.println("Food rows after caller cleared its copy: " + tracker.searchByCategory("Food").size()
+                + " (Expected: 2)");
+        tracker.getExpensesInDateRange("2024-01-01", "2024-01-31");
+        tracker.getExpensesInDateRange("2024-01-01", "2024-01-31");
+        tracker.searchByDate("2024-02-03");
+        tracker.searchByDate("2024-02-03");
+        System.out.println(cache + " (Expected: 3 entries, 4 hits, 3 misses)");
+        tracker.searchByCategory("Unknown");
+        tracker.searchByDate("not a date");
+        System.out.println("Entries after unknown category and bad date: " + cache.size() + " (Expected: 3)");
+    }
+
+    // Test Precise Invalidation
+    private static void testInvalidation() {
+        System.out.println("\n=== Testing Precise Invalidation ===");
+        ExpenseTracker tracker = sampleTracker();
+        ExpenseQueryCache cache = tracker.getQueryCache();
+        tracker.searchByCategory("Food");
+        tracker.searchByCategory("Rent");
+        tracker.getExpensesInDateRange("2024-01-01", "2024-01-31");
+        tracker.getExpensesInDateRange("2024-02-01", "2024-02-29");
+
+        tracker.addExpense("2024-01-20", 5.0, "Food");
+        System.out.println("Invalidated by a January Food add: " + cache.getInvalidations() + " (Expected: 2)");
+        System.out.println("Food rows: " + tracker.searchByCategory("Food").size() + " (Expected: 3)");
+        System.out.println("January rows: " + tracker.getExpensesInDateRange("2024-01-01", "2024-01-31").size()
+                + " (Expected: 3)");
+        long hits = cache.getHits();
+        tracker.searchByCategory("Rent");
+        tracker.getExpensesInDateRange("2024-02-01", "2024-02-29");
+        System.out.println("Rent and February still cached: " + (cache.getHits() - hits) + " hits (Expected: 2)");
+
+        tracker.deleteExpense(3); // Travel on 2024-02-20
+        System.out.println("February rows after delete: " + tracker.getExpensesInDateRange("2024-02-01", "2024-02-29")
+                .size() + " (Expected: 1)");
+        hits = cache.getHits();
+        tracker.searchByCategory("Food");
+        tracker.searchByCategory("Rent");
+        System.out.println("Food and Rent untouched by the Travel delete: " + (cache.getHits() - hits)
+                + " hits (Expected: 2)");
+
+        tracker.addExpenses(new String[] { "2024-03-01", "2024-03-02" }, new double[] { 1, 2 },
+                new String[] { "Rent", "Books" });
+        System.out.println("Rent rows after batch: " + tracker.searchByCategory("Rent").size() + " (Expected: 2)");
+        hits = cache.getHits();
+        tracker.searchByCategory("Food");
+        tracker.getExpensesInDateRange("2024-01-01", "2024-01-31");
+        System.out.println("Food and January untouched by the March batch: " + (cache.getHits() - hits)
+                + " hits (Expected: 2)");
+    }
+
+    // Test Load Flushes the Cache
+    private static void testLoadFlush() {
+        System.out.println("\n=== Testing Load Flushes the Cache ===");
+        String file = "cache_test.csv";
+        ExpenseTracker source = new ExpenseTracker();
+        source.addExpense("2024-05-01", 99.0, "Food");
+        source.saveToFile(file);
+        ExpenseTracker tracker = sampleTracker();
+        tracker.searchByCategory("Food");
+        tracker.searchByCategory("Rent");
+        tracker.loadFromFile(file);
+        System.out.println("Entries after load: " + tracker.getQueryCache().size() + " (Expected: 0)");
+        System.out.println("Food after load: " + tracker.searchByCategory("Food") + " (Expected: 99.00 on 2024-05-01)");
+        new File(file).delete();
+    }
+
+    // Test Eviction Bounds
+    private static void testEviction() {
+        System.out.println("\n=== Testing Eviction Bounds ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        for (int day = 1; day <= 28; day++) {
+            tracker.addExpense(String.format("2024-06-%02d", day), day, "Food");
+        }
+        tracker.setQueryCache(3, 1L << 20);
+        ExpenseQueryCache cache = tracker.getQueryCache();
+        tracker.searchByDate("2024-06-01");
+        tracker.searchByDate("2024-06-02");
+        tracker.searchByDate("2024-06-03");
+        tracker.searchByDate("2024-06-01"); // Now the most recently used
+        tracker.searchByDate("2024-06-04"); // Evicts 2024-06-02, the least recently used
+        long misses = cache.getMisses();
+        tracker.searchByDate("2024-06-01");
+        tracker.searchByDate("2024-06-02");
+        System.out.println("Evictions: " + cache.getEvictions() + ", new misses: " + (cache.getMisses() - misses)
+                + " (Expected: 2, new misses: 1)");
+
+        tracker.setQueryCache(100, 1_000); // Room for a few small results, not the whole month
+        cache = tracker.getQueryCache();
+        tracker.getExpensesInDateRange("2024-06-01", "2024-06-28");
+        System.out.println("Cached the 28-row month in 1,000 bytes: " + cache.size() + " (Expected: 0)");
+        for (int day = 1; day <= 10; day++) {
+            tracker.searchByDate(String.format("2024-06-%02d", day));
+        }
+        System.out.println((cache.getBytes() <= 1_000 && cache.getEvictions() > 0 ? "✅" : "❌")
+                + " Stayed within the byte bound: " + cache);
+
+        tracker.setQueryCache(0, 0);
+        tracker.searchByDate("2024-06-01");
+        System.out.println("Entries with caching off: " + tracker.getQueryCache().size() + " (Expected: 0)");
+    }
+
+    // Test Repeated Search Speed
+    private static void testSpeed() {
+        System.out.println("\n=== Testing Repeated Search Speed ===");
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(20).generateStore(1_000_000));
+        String category = tracker.cursorAll().toList().get(0).getCategory();
+        int repeats = 50;
+        tracker.setQueryCache(0, 0);
+        long uncached = timeSearches(tracker, category, repeats);
+        tracker.setQueryCache(256, 256L << 20);
+        long cached = timeSearches(tracker, category, repeats);
+        System.out.printf("%d searches for %s (%d rows): %.1f ms uncached, %.1f ms cached%n", repeats, category,
+                tracker.getCountByCategory(category), uncached / 1e6, cached / 1e6);
+        System.out.println((cached < uncached ? "✅" : "❌") + " Cached searches are faster");
+        System.out.println(tracker.getQueryCache());
+    }
+
+    private static long timeSearches(ExpenseTracker tracker, String category, int repeats) {
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            tracker.searchByCategory(category);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Test class for ExpenseQuery to validate multi-criteria queries, plan
+ * choice and sort order.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseQueryTest {
+
+    public static void main(String[] args) {
+        // 1. Test Combined Criteria
+        testCombined();
+
+        // 2. Test Plan Choice
+        testPlans();
+
+        // 3. Test Parity With a Brute-Force Filter
+        testParity();
+    }
+
+    // Test Combined Criteria
+    private static void testCombined() {
+        System.out.println("\n=== Testing Combined Criteria ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-03-02", 120.0, "Food");
+        tracker.addExpense("2024-03-05", 80.0, "Food");
+        tracker.addExpense("2024-03-09", 300.0, "Food");
+        tracker.addExpense("2024-02-28", 500.0, "Food");
+        tracker.addExpense("2024-03-10", 150.0, "Rent");
+        tracker.addExpense("2024-03-11", 120.0, "Food");
+
+        ExpenseQuery foodOver100InMarch = tracker.query().between("2024-03-01", "2024-03-31")
+                .inCategories("Food").amountAtLeast(100);
+        System.out.println("Food over $100 in March: " + foodOver100InMarch.list());
+        System.out.println("Expected: 2024-03-02 ($120), 2024-03-09 ($300), 2024-03-11 ($120)");
+        System.out.println("Count: " + foodOver100InMarch.count() + ", cents: " + foodOver100InMarch.sumCents()
+                + " (Expected: 3, 54000)");
+        System.out.println("Largest two: "
+                + foodOver100InMarch.orderBy(Expense.BY_AMOUNT).descending().limit(2).list());
+        System.out.println("Expected: 2024-03-09 ($300), 2024-03-02 ($120)");
+        System.out.println("Latest by date: " + tracker.query().orderBy(Expense.BY_DATE).descending().limit(1).list()
+                + " (Expected: 2024-03-11)");
+        System.out.println("By category name: " + tracker.query().orderBy(Comparator.comparing(Expense::getCategory))
+                .descending().limit(1).list() + " (Expected: Rent)");
+        System.out.println("Unknown category: " + tracker.query().inCategories("Travel").count() + " (Expected: 0)");
+    }
+
+    // Test Plan Choice
+    private static void testPlans() {
+        System.out.println("\n=== Testing Plan Choice ===");
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(7).generateStore(100_000));
+        System.out.println(tracker.query().between("2020-06-01", "2020-06-07").inCategories("Groceries").explain());
+        System.out.println("Expected plan: date index");
+        System.out.println(tracker.query().inCategories("Repairs").amountAtLeast(10).explain());
+        System.out.println("Expected plan: category index");
+        System.out.println(tracker.query().amountAtLeast(1000).orderBy(Expense.BY_AMOUNT).limit(5).explain());
+        System.out.println("Expected plan: amount index");
+        System.out.println(tracker.query().amountAtLeast(1).explain());
+        System.out.println("Expected plan: full scan");
+    }
+
+    // Test Parity With a Brute-Force Filter
+    private static void testParity() {
+        System.out.println("\n=== Testing Parity With a Brute-Force Filter ===");
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(11).generateStore(20_000));
+        ArrayList<Expense> all = tracker.cursorAll().toList();
+        Random random = new Random(3);
+        int mismatches = 0;
+        for (int i = 0; i < 200; i++) {
+            int startDay = ExpenseDataGenerator.START_DAY + random.nextInt(ExpenseDataGenerator.SPAN_DAYS);
+            int endDay = startDay + random.nextInt(400);
+            String category = ExpenseDataGenerator.CATEGORIES[random.nextInt(ExpenseDataGenerator.CATEGORIES.length)];
+            double min = random.nextInt(50);
+            double max = min + random.nextInt(100);
+            String start = ExpenseStore.fromEpochDay(startDay);
+            String end = ExpenseStore.fromEpochDay(endDay);
+
+            ArrayList<Expense> expected = new ArrayList<>();
+            for (Expense expense : all) {
+                if (expense.getDate().compareTo(start) >= 0 && expense.getDate().compareTo(end) <= 0
+                        && (i % 2 == 0 || expense.getCategory().equals(category))
+                        && expense.getAmount() >= min && expense.getAmount() <= max) {
+                    expected.add(expense);
+                }
+            }
+            ExpenseQuery query = tracker.query().between(start, end).amountAtLeast(min).amountAtMost(max);
+            if (i % 2 != 0) {
+                query.inCategories(category);
+            }
+            Comparator<Expense> order = i % 3 == 0 ? Expense.BY_AMOUNT : Expense.BY_DATE;
+            expected.sort(order);
+            ArrayList<Expense> actual = query.orderBy(order).list();
+            if (!expected.toString().equals(actual.toString())) {
+                mismatches++;
+            }
+        }
+        System.out.println((mismatches == 0 ? "✅" : "❌") + " Mismatched queries: " + mismatches + " of 200");
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view over a contiguous slice of a {@link DateIndex}. Nothing
+ * is copied when the view is created; {@link Expense} objects are built one
+ * at a time as the view is read. The view reflects the tracker as it was
+ * when the view was taken and must not be used after the tracker changes.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseRange implements Iterable<Expense> {
+
+    private final ExpenseStore store;
+    private final DateIndex index;
+    private final int from; // First position in date order (inclusive)
+    private final int to;   // Last position in date order (exclusive)
+
+    /**
+     * Constructs a view over positions [from, to) of a date index.
+     *
+     * @param store The store holding the rows.
+     * @param index The date index the positions refer to.
+     * @param from  The first position (inclusive).
+     * @param to    The last position (exclusive).
+     */
+    public ExpenseRange(ExpenseStore store, DateIndex index, int from, int to) {
+        this.store = store;
+        this.index = index;
+        this.from = from;
+        this.to = Math.max(from, to);
+    }
+
+    /**
+     * Returns the number of expenses in the range.
+     *
+     * @return The size.
+     */
+    public int size() {
+        return to - from;
+    }
+
+    /**
+     * Returns true if the range holds no expenses.
+     *
+     * @return True if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    /**
+     * Returns the store row id at a position in the range.
+     *
+     * @param i The position in the range, from 0 to size() - 1.
+     * @return The row id.
+     */
+    public int rowAt(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + size());
+        }
+        return index.rowAt(from + i);
+    }
+
+    /**
+     * Materializes the expense at a position in the range.
+     *
+     * @param i The position in the range, from 0 to size() - 1.
+     * @return The expense.
+     */
+    public Expense get(int i) {
+        return store.get(rowAt(i));
+    }
+
+    /**
+     * Sums the amounts in the range without materializing any expense.
+     *
+     * @return The total in cents.
+     */
+    public long sumCents() {
+        long total = 0;
+        for (int pos = from; pos < to; pos++) {
+            total += store.centsAt(index.rowAt(pos));
+        }
+        return total;
+    }
+
+    /**
+     * Returns a cursor over the range, for reading it in pages or from the
+     * primitive columns.
+     *
+     * @return A cursor positioned before the first expense.
+     */
+    public ExpenseCursor cursor() {
+        return ExpenseCursor.ofDateRange(store, index, from, to);
+    }
+
+    /**
+     * Returns an iterator over the expenses in date order.
+     *
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<Expense> iterator() {
+        return new Iterator<Expense>() {
+            private int pos = from;
+
+            @Override
+            public boolean hasNext() {
+                return pos < to;
+            }
+
+            @Override
+            public Expense next() {
+                if (pos >= to) {
+                    throw new NoSuchElementException();
+                }
+                return store.get(index.rowAt(pos++));
+            }
+        };
+    }
+}
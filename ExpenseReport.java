@@ -0,0 +1,520 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A group-by report over every expense: rows grouped by category, by a
+ * calendar period, or by both, with the count, sum, average, minimum,
+ * maximum and chosen percentiles of each group.
+ *
+ * <p>The report is computed in a single pass over the columns. The rows are
+ * split into ranges on a fork-join pool; each task builds partial aggregates
+ * in a primitive hash table keyed by (category, period), and partials are
+ * merged pairwise as tasks complete. Percentiles are exact: each group keeps
+ * its amounts, and they are sorted once after the merge.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseReport {
+
+    /** Below this many rows a task aggregates its range instead of splitting it. */
+    private static final int SPLIT_THRESHOLD = 1 << 16;
+
+    /**
+     * The calendar period rows are grouped by.
+     */
+    public enum Period {
+        /** No grouping by date. */
+        ALL,
+        /** One group per day. */
+        DAY,
+        /** One group per ISO week, starting on Monday. */
+        WEEK,
+        /** One group per calendar month. */
+        MONTH,
+        /** One group per calendar year. */
+        YEAR;
+
+        /**
+         * Returns the bucket number of an epoch day.
+         *
+         * @param epochDay The date as an epoch day.
+         * @return The bucket.
+         */
+        int bucket(int epochDay) {
+            switch (this) {
+                case DAY:
+                    return epochDay;
+                case WEEK:
+                    return Math.floorDiv(epochDay + 3, 7); // 1970-01-01 was a Thursday
+                case MONTH:
+                    return ExpenseAggregates.monthKey(epochDay);
+                case YEAR:
+                    return Math.floorDiv(ExpenseAggregates.monthKey(epochDay), 12);
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Returns a readable label for a bucket number.
+         *
+         * @param bucket The bucket.
+         * @return The label, e.g. 2024-03-05, 2024-W10, 2024-03 or 2024.
+         */
+        String label(int bucket) {
+            switch (this) {
+                case DAY:
+                    return ExpenseStore.fromEpochDay(bucket);
+                case WEEK:
+                    LocalDate monday = LocalDate.ofEpochDay(bucket * 7L - 3);
+                    return String.format("%d-W%02d", monday.get(IsoFields.WEEK_BASED_YEAR),
+                            monday.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+                case MONTH:
+                    return String.format("%d-%02d", Math.floorDiv(bucket, 12), Math.floorMod(bucket, 12) + 1);
+                case YEAR:
+                    return String.valueOf(bucket);
+                default:
+                    return "All";
+            }
+        }
+    }
+
+    /**
+     * One group of the report.
+     */
+    public static final class Row {
+        private final String category;
+        private final String period;
+        private final long count;
+        private final long sumCents;
+        private final long minCents;
+        private final long maxCents;
+        private final long[] percentileCents;
+
+        private Row(String category, String period, long count, long sumCents, long minCents, long maxCents,
+                long[] percentileCents) {
+            this.category = category;
+            this.period = period;
+            this.count = count;
+            this.sumCents = sumCents;
+            this.minCents = minCents;
+            this.maxCents = maxCents;
+            this.percentileCents = percentileCents;
+        }
+
+        /**
+         * Returns the category of the group.
+         *
+         * @return The category, or "All" when the report is not grouped by category.
+         */
+        public String getCategory() {
+            return category;
+        }
+
+        /**
+         * Returns the period of the group.
+         *
+         * @return The period label, or "All" when the report is not grouped by date.
+         */
+        public String getPeriod() {
+            return period;
+        }
+
+        /**
+         * Returns the number of expenses in the group.
+         *
+         * @return The count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the total amount of the group.
+         *
+         * @return The sum.
+         */
+        public double getSum() {
+            return ExpenseStore.fromCents(sumCents);
+        }
+
+        /**
+         * Returns the average amount of the group.
+         *
+         * @return The average.
+         */
+        public double getAverage() {
+            return sumCents / 100.0 / count;
+        }
+
+        /**
+         * Returns the smallest amount of the group.
+         *
+         * @return The minimum.
+         */
+        public double getMin() {
+            return ExpenseStore.fromCents(minCents);
+        }
+
+        /**
+         * Returns the largest amount of the group.
+         *
+         * @return The maximum.
+         */
+        public double getMax() {
+            return ExpenseStore.fromCents(maxCents);
+        }
+
+        /**
+         * Returns a percentile of the group's amounts, using the nearest-rank method.
+         *
+         * @param i The position of the percentile in the list the report was computed with.
+         * @return The amount at that percentile.
+         */
+        public double getPercentile(int i) {
+            return ExpenseStore.fromCents(percentileCents[i]);
+        }
+    }
+
+    private final boolean byCategory;
+    private final Period period;
+    private final double[] percentiles;
+    private final List<Row> rows;
+
+    private ExpenseReport(boolean byCategory, Period period, double[] percentiles, List<Row> rows) {
+        this.byCategory = byCategory;
+        this.period = period;
+        this.percentiles = percentiles;
+        this.rows = rows;
+    }
+
+    /**
+     * Computes a report over every row of a store.
+     *
+     * @param store       The store to read.
+     * @param byCategory  True to group by category.
+     * @param period      The calendar period to group by.
+     * @param parallelism The number of threads to aggregate with.
+     * @param percentiles Percentiles to compute for each group, each between 0 and 100.
+     * @return The report, with rows ordered by category and then period.
+     */
+    public static ExpenseReport compute(ExpenseStore store, boolean byCategory, Period period, int parallelism,
+            double... percentiles) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        for (double p : percentiles) {
+            if (p < 0 || p > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100: " + p);
+            }
+        }
+        AggregateTask root = new AggregateTask(store, byCategory, period, percentiles.length > 0, 0, store.size());
+        Partial total;
+        if (parallelism == 1 || store.size() <= SPLIT_THRESHOLD) {
+            total = root.compute();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                total = pool.invoke(root);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        return new ExpenseReport(byCategory, period, percentiles.clone(), total.toRows(store, period, percentiles));
+    }
+
+    /**
+     * Returns the groups of the report, ordered by category and then period.
+     *
+     * @return The rows.
+     */
+    public List<Row> getRows() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * Writes the report as CSV, with a header line naming each column.
+     *
+     * @param filename The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void exportCsv(String filename) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+            writer.write("category,period,count,sum,avg,min,max");
+            for (double p : percentiles) {
+                writer.write(",p" + formatPercentile(p));
+            }
+            writer.newLine();
+            for (Row row : rows) {
+                writer.write(csvField(row.category) + "," + row.period + "," + row.count + ","
+                        + String.format(Locale.ROOT, "%.2f,%.2f,%.2f,%.2f", row.getSum(), row.getAverage(),
+                                row.getMin(), row.getMax()));
+                for (int i = 0; i < percentiles.length; i++) {
+                    writer.write(String.format(Locale.ROOT, ",%.2f", row.getPercentile(i)));
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Formats the report as a table.
+     *
+     * @return The table.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-16s %-10s %8s %12s %10s %10s %10s", "Category", "Period", "Count", "Sum", "Avg",
+                "Min", "Max"));
+        for (double p : percentiles) {
+            out.append(String.format(" %10s", "p" + formatPercentile(p)));
+        }
+        out.append(System.lineSeparator());
+        for (Row row : rows) {
+            out.append(String.format("%-16s %-10s %8d %12.2f %10.2f %10.2f %10.2f", row.category, row.period,
+                    row.count, row.getSum(), row.getAverage(), row.getMin(), row.getMax()));
+            for (int i = 0; i < percentiles.length; i++) {
+                out.append(String.format(" %10.2f", row.getPercentile(i)));
+            }
+            out.append(System.lineSeparator());
+        }
+        return out.append(rows.size()).append(" groups by ").append(byCategory ? "category and " : "")
+                .append(period.name().toLowerCase(Locale.ROOT)).toString();
+    }
+
+    private static String formatPercentile(double p) {
+        return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p);
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Aggregates a range of rows, splitting it in half while it is large.
+     */
+    private static class AggregateTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final ExpenseStore store;
+        private final boolean byCategory;
+        private final Period period;
+        private final boolean keepValues;
+        private final int from;
+        private final int to;
+
+        AggregateTask(ExpenseStore store, boolean byCategory, Period period, boolean keepValues, int from, int to) {
+            this.store = store;
+            this.byCategory = byCategory;
+            this.period = period;
+            this.keepValues = keepValues;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from > SPLIT_THRESHOLD && getPool() != null) {
+                int mid = (from + to) >>> 1;
+                AggregateTask left = new AggregateTask(store, byCategory, period, keepValues, from, mid);
+                AggregateTask right = new AggregateTask(store, byCategory, period, keepValues, mid, to);
+                left.fork();
+                Partial merged = right.compute();
+                return left.join().mergeFrom(merged);
+            }
+            Partial partial = new Partial(keepValues);
+            int lastDay = Integer.MIN_VALUE;
+            int lastBucket = 0;
+            for (int row = from; row < to; row++) {
+                if (store.isDeleted(row)) {
+                    continue;
+                }
+                int day = store.dayAt(row);
+                if (day != lastDay) { // Month and year buckets need a calendar conversion
+                    lastDay = day;
+                    lastBucket = period.bucket(day);
+                }
+                int code = byCategory ? store.categoryCodeAt(row) : -1;
+                partial.add((long) code << 32 | (lastBucket & 0xFFFFFFFFL), store.centsAt(row));
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * Partial aggregates for some rows: a primitive open-addressing table
+     * from packed (category, bucket) keys to groups with parallel stat arrays.
+     */
+    private static class Partial {
+        private final boolean keepValues;
+        private long[] slotKeys = new long[256];
+        private int[] slotGroups = new int[256];
+        private boolean[] used = new boolean[256];
+        private long[] keys = new long[64];
+        private long[] counts = new long[64];
+        private long[] sums = new long[64];
+        private long[] mins = new long[64];
+        private long[] maxs = new long[64];
+        private long[][] values;
+        private int size;
+
+        Partial(boolean keepValues) {
+            this.keepValues = keepValues;
+            values = keepValues ? new long[64][] : null;
+        }
+
+        void add(long key, long cents) {
+            int g = group(key);
+            long n = counts[g]++;
+            sums[g] += cents;
+            if (n == 0 || cents < mins[g]) {
+                mins[g] = cents;
+            }
+            if (n == 0 || cents > maxs[g]) {
+                maxs[g] = cents;
+            }
+            if (keepValues) {
+                long[] groupValues = values[g];
+                if (n == groupValues.length) {
+                    values[g] = groupValues = Arrays.copyOf(groupValues, (int) n * 2);
+                }
+                groupValues[(int) n] = cents;
+            }
+        }
+
+        /**
+         * Folds another partial into this one.
+         *
+         * @return This partial.
+         */
+        Partial mergeFrom(Partial other) {
+            for (int o = 0; o < other.size; o++) {
+                int g = group(other.keys[o]);
+                long n = counts[g];
+                if (n == 0 || other.mins[o] < mins[g]) {
+                    mins[g] = other.mins[o];
+                }
+                if (n == 0 || other.maxs[o] > maxs[g]) {
+                    maxs[g] = other.maxs[o];
+                }
+                counts[g] += other.counts[o];
+                sums[g] += other.sums[o];
+                if (keepValues) {
+                    long[] merged = Arrays.copyOf(values[g], (int) counts[g]);
+                    System.arraycopy(other.values[o], 0, merged, (int) n, (int) other.counts[o]);
+                    values[g] = merged;
+                }
+            }
+            return this;
+        }
+
+        private int group(long key) {
+            int mask = slotKeys.length - 1;
+            int slot = hash(key) & mask;
+            while (used[slot]) {
+                if (slotKeys[slot] == key) {
+                    return slotGroups[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == keys.length) {
+                int capacity = size * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                sums = Arrays.copyOf(sums, capacity);
+                mins = Arrays.copyOf(mins, capacity);
+                maxs = Arrays.copyOf(maxs, capacity);
+                if (keepValues) {
+                    values = Arrays.copyOf(values, capacity);
+                }
+            }
+            keys[size] = key;
+            if (keepValues) {
+                values[size] = new long[8];
+            }
+            used[slot] = true;
+            slotKeys[slot] = key;
+            slotGroups[slot] = size;
+            if (++size * 2 > slotKeys.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        private static int hash(long key) {
+            return (int) (key ^ (key >>> 32)) * 0x9E3779B9 >>> 7;
+        }
+
+        private void grow() {
+            long[] oldKeys = slotKeys;
+            int[] oldGroups = slotGroups;
+            boolean[] oldUsed = used;
+            slotKeys = new long[oldKeys.length * 2];
+            slotGroups = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            int mask = slotKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (used[slot]) {
+                        slot = (slot + 1) & mask;
+                    }
+                    used[slot] = true;
+                    slotKeys[slot] = oldKeys[i];
+                    slotGroups[slot] = oldGroups[i];
+                }
+            }
+        }
+
+        /**
+         * Turns the groups into report rows, sorted by category name and then period.
+         */
+        List<Row> toRows(ExpenseStore store, Period period, double[] percentiles) {
+            Integer[] order = new Integer[size];
+            for (int g = 0; g < size; g++) {
+                order[g] = g;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int byName = categoryOf(store, keys[a]).compareTo(categoryOf(store, keys[b]));
+                return byName != 0 ? byName : Integer.compare((int) keys[a], (int) keys[b]);
+            });
+            List<Row> rows = new ArrayList<>(size);
+            for (int g : order) {
+                long[] percentileCents = new long[percentiles.length];
+                if (keepValues) {
+                    long[] sorted = values[g];
+                    int n = (int) counts[g];
+                    Arrays.sort(sorted, 0, n);
+                    for (int i = 0; i < percentiles.length; i++) {
+                        int rank = (int) Math.ceil(percentiles[i] / 100.0 * n);
+                        percentileCents[i] = sorted[Math.max(0, rank - 1)];
+                    }
+                }
+                rows.add(new Row(categoryOf(store, keys[g]), period.label((int) keys[g]), counts[g], sums[g], mins[g],
+                        maxs[g], percentileCents));
+            }
+            return rows;
+        }
+
+        private static String categoryOf(ExpenseStore store, long key) {
+            int code = (int) (key >> 32);
+            return code < 0 ? "All" : store.categoryName(code);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Test class for ExpenseReport to validate group-by reports, percentiles,
+ * parallel merging and CSV export.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseReportTest {
+
+    public static void main(String[] args) throws IOException {
+        // 1. Test Category x Month Report
+        testCategoryByMonth();
+
+        // 2. Test Parallel Parity
+        testParallelParity();
+
+        // 3. Test CSV Export
+        testCsvExport();
+    }
+
+    // Test Category x Month Report
+    private static void testCategoryByMonth() {
+        System.out.println("\n=== Testing Category x Month Report ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-05", 10.0, "Food");
+        tracker.addExpense("2024-01-20", 30.0, "Food");
+        tracker.addExpense("2024-01-31", 20.0, "Food");
+        tracker.addExpense("2024-02-01", 100.0, "Food");
+        tracker.addExpense("2024-01-15", 500.0, "Rent");
+        System.out.println(tracker.generateReport(true, ExpenseReport.Period.MONTH, 50));
+        System.out.println("Expected: Food 2024-01 3 60.00 avg 20.00 min 10.00 max 30.00 p50 20.00; "
+                + "Food 2024-02 1 100.00; Rent 2024-01 1 500.00");
+        System.out.println(tracker.generateReport(false, ExpenseReport.Period.WEEK));
+        System.out.println("Expected: 2024-W01 $10, 2024-W03 $530, 2024-W05 $120");
+    }
+
+    // Test Parallel Parity
+    private static void testParallelParity() {
+        System.out.println("\n=== Testing Parallel Parity ===");
+        ExpenseStore store = new ExpenseDataGenerator(5).generateStore(500_000);
+        for (ExpenseReport.Period period : ExpenseReport.Period.values()) {
+            String serial = ExpenseReport.compute(store, true, period, 1, 50, 99).toString();
+            String parallel = ExpenseReport.compute(store, true, period, 4, 50, 99).toString();
+            System.out.println((serial.equals(parallel) ? "✅" : "❌") + " " + period + " serial and parallel match");
+        }
+        List<ExpenseReport.Row> rows = ExpenseReport.compute(store, true, ExpenseReport.Period.ALL, 4).getRows();
+        long count = 0;
+        double sum = 0;
+        for (ExpenseReport.Row row : rows) {
+            count += row.getCount();
+            sum += row.getSum();
+        }
+        System.out.println((count == store.size() ? "✅" : "❌") + " Rows across groups: " + count);
+        System.out.println((Math.abs(sum - ExpenseStore.fromCents(store.sumCents())) < 0.01 ? "✅" : "❌")
+                + " Sum across groups matches the store total");
+    }
+
+    // Test CSV Export
+    private static void testCsvExport() throws IOException {
+        System.out.println("\n=== Testing CSV Export ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2023-12-31", 12.5, "Food, Drinks");
+        tracker.addExpense("2024-06-01", 7.5, "Food, Drinks");
+        File file = new File("report_test.csv");
+        tracker.generateReport(true, ExpenseReport.Period.YEAR, 90).exportCsv(file.getPath());
+        for (String line : Files.readAllLines(file.toPath())) {
+            System.out.println(line);
+        }
+        System.out.println("Expected: header with p90, then \"Food, Drinks\" rows for 2023 and 2024");
+        file.delete();
+    }
+}
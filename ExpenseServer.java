@@ -0,0 +1,729 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lightweight HTTP server exposing an {@link ExpenseTracker} as JSON
+ * endpoints, built on the JDK's own HttpServer so it needs no dependencies.
+ *
+ * <table>
+ *   <caption>Endpoints</caption>
+ *   <tr><td>POST /expenses</td><td>Adds one expense: {"date":..,"amount":..,"category":..}</td></tr>
+ *   <tr><td>POST /expenses/bulk</td><td>Adds an array of expenses, reporting each rejected one</td></tr>
+ *   <tr><td>GET /search</td><td>By date=, category= or amount=, paged like /range</td></tr>
+ *   <tr><td>GET /range</td><td>start=, end=, category=, min=, max=, order=date|amount, desc, limit=, after=</td></tr>
+ *   <tr><td>GET /report</td><td>by=category, period=all|day|week|month|year, percentiles=50,90</td></tr>
+ *   <tr><td>GET /totals</td><td>The overall total, or one category's with category=</td></tr>
+ *   <tr><td>GET /metrics</td><td>Tracker and per-endpoint latencies as plain text</td></tr>
+ * </table>
+ *
+ * <p>The tracker is not thread-safe, so every call into it holds one lock.
+ * Requests are kept short under that lock: /search and /range copy out one
+ * page of at most {@link #MAX_PAGE_ROWS} rows, in date order unless
+ * order=amount, and encode it as JSON with chunked encoding after the lock
+ * is released. When more rows match, the response carries a next position
+ * to pass back as after= for the following page.</p>
+ *
+ * <p>Single adds are batched by flat combining, as in
+ * {@link ConcurrentExpenseTracker}: each request queues its validated
+ * expense and takes the lock, and whoever holds it adds every queued
+ * expense as one block, so concurrent adds share the index and aggregate
+ * updates.</p>
+ *
+ * <p>At most a fixed number of requests are in flight at once; beyond that
+ * the server answers 503 with Retry-After instead of queueing without
+ * bound, and request bodies over 16 MB are refused with 413. A limit=
+ * above {@link #MAX_PAGE_ROWS} is refused with 400, since pages are built
+ * while the lock is held.</p>
+ *
+ * <p>Headers and body are sent as separate writes, so with Nagle's
+ * algorithm on every response waits about 40 ms for the client's delayed
+ * ACK. {@link #main} turns it off through {@link #enableNoDelay()};
+ * programs that embed the server should call that at startup, or run with
+ * {@code -Dsun.net.httpserver.nodelay=true}.</p>
+ *
+ * <p>Each request runs on its own virtual thread when the JDK has them
+ * (21 and later), and on a cached pool of platform threads otherwise.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseServer {
+
+    /** Default limit on requests being handled at once. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    /** Largest and default page size of GET /search and /range; larger results are paged with after=. */
+    public static final int MAX_PAGE_ROWS = 10_000;
+    private static final int MAX_BODY_BYTES = 16 << 20;
+    private static final int FLUSH_CHARS = 64 << 10; // Streamed responses are written in chunks of about this size
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final ExpenseTracker tracker;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentLinkedQueue<PendingAdd> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final LinkedHashMap<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder addBatches = new LongAdder();
+    private final LongAdder batchedAdds = new LongAdder();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * A queued single add, applied by whichever request holds the lock.
+     */
+    private static final class PendingAdd {
+        final Expense expense;
+        String error; // Why the tracker rejected it, if it did
+        volatile boolean done;
+
+        PendingAdd(Expense expense) {
+            this.expense = expense;
+        }
+    }
+
+    /**
+     * A request that was not valid, answered with its status and message.
+     */
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Rows copied out of the tracker so they can be encoded without the lock.
+     */
+    private static final class Rows {
+        int count;
+        int[] days = new int[16];
+        long[] cents = new long[16];
+        String[] categories = new String[16];
+
+        void add(int day, long amount, String category) {
+            if (count == days.length) {
+                days = Arrays.copyOf(days, count * 2);
+                cents = Arrays.copyOf(cents, count * 2);
+                categories = Arrays.copyOf(categories, count * 2);
+            }
+            days[count] = day;
+            cents[count] = amount;
+            categories[count++] = category;
+        }
+
+        static Rows of(List<Expense> expenses) {
+            Rows rows = new Rows();
+            for (Expense expense : expenses) {
+                rows.add(expense.getEpochDay(), expense.getCents(), expense.getCategory());
+            }
+            return rows;
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    /**
+     * Constructs a server for a tracker with the default in-flight limit.
+     *
+     * @param tracker The tracker to serve; it must not be used elsewhere while the server runs.
+     */
+    public ExpenseServer(ExpenseTracker tracker) {
+        this(tracker, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Constructs a server for a tracker.
+     *
+     * @param tracker     The tracker to serve; it must not be used elsewhere while the server runs.
+     * @param maxInFlight The most requests handled at once before answering 503.
+     */
+    public ExpenseServer(ExpenseTracker tracker, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("In-flight limit must be positive: " + maxInFlight);
+        }
+        this.tracker = tracker;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    // ---------------------------------------------------------------------
+    // Lifecycle
+
+    /**
+     * Starts listening.
+     *
+     * @param port The port, or 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server is already running");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        route("/expenses", "POST", this::addOne);
+        route("/expenses/bulk", "POST", this::addBulk);
+        route("/search", "GET", this::search);
+        route("/range", "GET", this::range);
+        route("/report", "GET", this::report);
+        route("/totals", "GET", this::totals);
+        route("/metrics", "GET", this::metrics);
+        server.start();
+    }
+
+    /**
+     * Stops listening, giving requests in flight up to a second to finish.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port.
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("Server is not running");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of requests refused because too many were in flight.
+     *
+     * @return The count of 503 responses.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of blocks single adds were combined into.
+     *
+     * @return The count of batches applied to the tracker.
+     */
+    public long getAddBatchCount() {
+        return addBatches.sum();
+    }
+
+    /**
+     * Uses virtual threads through reflection so the server still builds
+     * and runs on JDKs that do not have them.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "expense-http-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void route(String path, String method, Handler handler) {
+        LatencyHistogram latency = new LatencyHistogram();
+        synchronized (latencies) {
+            latencies.put(method + " " + path, latency);
+        }
+        server.createContext(path, exchange -> {
+            long start = System.nanoTime();
+            if (!inFlight.tryAcquire()) {
+                rejected.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 503, "Too many requests in flight");
+                exchange.close();
+                return;
+            }
+            try {
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    throw new HttpError(404, "Not found: " + exchange.getRequestURI().getPath());
+                }
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    throw new HttpError(405, "Use " + method + " for " + path);
+                }
+                handler.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+            } catch (HttpError e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (IllegalArgumentException | UnsupportedOperationException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (IOException e) {
+                errors.increment(); // Usually the client went away mid-response
+            } catch (RuntimeException e) {
+                errors.increment();
+                System.err.println("Error handling " + path + ": " + e);
+                sendError(exchange, 500, "Internal error");
+            } finally {
+                exchange.close();
+                inFlight.release();
+                latency.record(System.nanoTime() - start);
+            }
+        });
+    }
+
+    // ---------------------------------------------------------------------
+    // Endpoints
+
+    private void addOne(HttpExchange exchange, Map<String, String> params) throws IOException {
+        Object body = ExpenseJson.parse(readBody(exchange));
+        if (!(body instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        Map<?, ?> fields = (Map<?, ?>) body;
+        PendingAdd add = new PendingAdd(new Expense(string(fields, "date"), amount(fields), string(fields, "category")));
+        pendingAdds.add(add);
+        lock.lock();
+        try {
+            if (!add.done) {
+                applyPendingAdds();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (add.error != null) {
+            throw new HttpError(500, add.error);
+        }
+        send(exchange, 201, "{\"added\":1}");
+    }
+
+    /**
+     * Adds every queued single add as one block; called holding the lock.
+     */
+    private void applyPendingAdds() {
+        ArrayList<PendingAdd> batch = new ArrayList<>();
+        PendingAdd add;
+        while ((add = pendingAdds.poll()) != null) {
+            batch.add(add);
+        }
+        ArrayList<Expense> expenses = new ArrayList<>(batch.size());
+        for (PendingAdd pending : batch) {
+            expenses.add(pending.expense);
+        }
+        ExpenseTracker.BatchResult result = tracker.addExpenses(expenses.iterator());
+        for (int i = 0; i < result.getRejected(); i++) {
+            batch.get(result.getRejectedRow(i)).error = result.getReason(i);
+        }
+        addBatches.increment();
+        batchedAdds.add(batch.size());
+        for (PendingAdd pending : batch) {
+            pending.done = true;
+        }
+    }
+
+    private void addBulk(HttpExchange exchange, Map<String, String> params) throws IOException {
+        Object body = ExpenseJson.parse(readBody(exchange));
+        if (!(body instanceof List)) {
+            throw new IllegalArgumentException("Expected a JSON array of expenses");
+        }
+        List<?> items = (List<?>) body;
+        int count = items.size();
+        String[] dates = new String[count];
+        double[] amounts = new double[count];
+        String[] categories = new String[count];
+        HashMap<Integer, String> malformed = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            try {
+                if (!(items.get(i) instanceof Map)) {
+                    throw new IllegalArgumentException("Expected a JSON object");
+                }
+                Map<?, ?> fields = (Map<?, ?>) items.get(i);
+                dates[i] = string(fields, "date");
+                amounts[i] = amount(fields);
+                categories[i] = string(fields, "category");
+            } catch (IllegalArgumentException e) {
+                malformed.put(i, e.getMessage());
+                dates[i] = null; // Rejected by addExpenses, reported with the reason above
+            }
+        }
+        ExpenseTracker.BatchResult result;
+        lock.lock();
+        try {
+            result = tracker.addExpenses(dates, amounts, categories);
+        } finally {
+            lock.unlock();
+        }
+        StringBuilder out = new StringBuilder("{\"accepted\":").append(result.getAccepted()).append(",\"rejected\":[");
+        for (int i = 0; i < result.getRejected(); i++) {
+            int row = result.getRejectedRow(i);
+            out.append(i == 0 ? "" : ",").append("{\"index\":").append(row).append(",\"reason\":");
+            ExpenseJson.appendString(out, malformed.getOrDefault(row, result.getReason(i))).append('}');
+        }
+        send(exchange, result.getRejected() == 0 ? 201 : 200, out.append("]}").toString());
+    }
+
+    private void search(HttpExchange exchange, Map<String, String> params) throws IOException {
+        ExpenseQuery.Page page;
+        lock.lock();
+        try {
+            ExpenseQuery query = tracker.query();
+            if (params.containsKey("date")) {
+                query.between(params.get("date"), params.get("date"));
+            } else if (params.containsKey("category")) {
+                query.inCategories(params.get("category"));
+            } else if (params.containsKey("amount")) {
+                double amount = number(params, "amount");
+                query.amountAtLeast(amount).amountAtMost(amount);
+            } else {
+                throw new IllegalArgumentException("Search needs date, category or amount");
+            }
+            page = page(query, params);
+        } finally {
+            lock.unlock();
+        }
+        streamExpenses(exchange, Rows.of(page.getExpenses()), page.getNext());
+    }
+
+    private void range(HttpExchange exchange, Map<String, String> params) throws IOException {
+        ExpenseQuery.Page page;
+        lock.lock();
+        try {
+            ExpenseQuery query = tracker.query().between(params.get("start"), params.get("end"));
+            if (params.containsKey("category")) {
+                query.inCategories(params.get("category").split(","));
+            }
+            if (params.containsKey("min")) {
+                query.amountAtLeast(number(params, "min"));
+            }
+            if (params.containsKey("max")) {
+                query.amountAtMost(number(params, "max"));
+            }
+            page = page(query, params);
+        } finally {
+            lock.unlock();
+        }
+        streamExpenses(exchange, Rows.of(page.getExpenses()), page.getNext());
+    }
+
+    /**
+     * Runs a query as one page, applying the order=, desc, limit= and after=
+     * parameters; called holding the lock.
+     */
+    private static ExpenseQuery.Page page(ExpenseQuery query, Map<String, String> params) {
+        String order = params.getOrDefault("order", "date");
+        if (!order.equals("date") && !order.equals("amount")) {
+            throw new IllegalArgumentException("Order must be date or amount: " + order);
+        }
+        query.orderBy(order.equals("date") ? Expense.BY_DATE : Expense.BY_AMOUNT);
+        if (params.containsKey("desc") && !"false".equals(params.get("desc"))) {
+            query.descending();
+        }
+        int limit = MAX_PAGE_ROWS;
+        if (params.containsKey("limit")) {
+            double requested = number(params, "limit");
+            if (requested < 1 || requested > MAX_PAGE_ROWS) {
+                throw new IllegalArgumentException("Limit must be from 1 to " + MAX_PAGE_ROWS
+                        + "; page through larger results with after=");
+            }
+            limit = (int) requested;
+        }
+        query.limit(limit);
+        if (params.containsKey("after")) {
+            query.after(ExpenseQuery.Position.parse(params.get("after")));
+        }
+        return query.page(); // Never more than MAX_PAGE_ROWS rows, however many match
+    }
+
+    private void report(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String by = params.getOrDefault("by", "none");
+        if (!by.equals("category") && !by.equals("none")) {
+            throw new IllegalArgumentException("Report can only be grouped by category: " + by);
+        }
+        ExpenseReport.Period period;
+        try {
+            period = ExpenseReport.Period.valueOf(params.getOrDefault("period", "all").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Period must be all, day, week, month or year: " + params.get("period"));
+        }
+        double[] percentiles = new double[0];
+        if (params.containsKey("percentiles") && !params.get("percentiles").isEmpty()) {
+            String[] parts = params.get("percentiles").split(",");
+            percentiles = new double[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                percentiles[i] = parseNumber("percentiles", parts[i].trim());
+            }
+        }
+        ExpenseReport result;
+        lock.lock();
+        try {
+            result = tracker.generateReport(by.equals("category"), period, percentiles);
+        } finally {
+            lock.unlock();
+        }
+        StringBuilder out = new StringBuilder("{\"rows\":[");
+        boolean first = true;
+        for (ExpenseReport.Row row : result.getRows()) {
+            out.append(first ? "" : ",").append('{');
+            first = false;
+            if (by.equals("category")) {
+                ExpenseJson.appendString(out.append("\"category\":"), row.getCategory()).append(',');
+            }
+            if (period != ExpenseReport.Period.ALL) {
+                ExpenseJson.appendString(out.append("\"period\":"), row.getPeriod()).append(',');
+            }
+            out.append("\"count\":").append(row.getCount());
+            ExpenseJson.appendCents(out.append(",\"sum\":"), ExpenseStore.toCents(row.getSum()));
+            out.append(",\"average\":").append(row.getAverage());
+            out.append(",\"min\":").append(row.getMin()).append(",\"max\":").append(row.getMax());
+            if (percentiles.length > 0) {
+                out.append(",\"percentiles\":{");
+                for (int i = 0; i < percentiles.length; i++) {
+                    out.append(i == 0 ? "" : ",").append('"').append(percentiles[i]).append("\":")
+                            .append(row.getPercentile(i));
+                }
+                out.append('}');
+            }
+            out.append('}');
+        }
+        send(exchange, 200, out.append("]}").toString());
+    }
+
+    private void totals(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String category = params.get("category");
+        StringBuilder out = new StringBuilder("{");
+        lock.lock();
+        try {
+            if (category == null) {
+                ExpenseJson.appendCents(out.append("\"total\":"), ExpenseStore.toCents(tracker.getTotalExpenses()));
+            } else {
+                ExpenseJson.appendString(out.append("\"category\":"), category);
+                ExpenseJson.appendCents(out.append(",\"total\":"),
+                        ExpenseStore.toCents(tracker.getTotalByCategory(category)));
+                out.append(",\"count\":").append(tracker.getCountByCategory(category));
+            }
+        } finally {
+            lock.unlock();
+        }
+        send(exchange, 200, out.append('}').toString());
+    }
+
+    private void metrics(HttpExchange exchange, Map<String, String> params) throws IOException {
+        StringBuilder out = new StringBuilder(tracker.getMetrics().getReport());
+        out.append(String.format("%nServer: %d/%d in flight, %d rejected (503), %d errors, "
+                + "%d single adds in %d batches%n", maxInFlight - inFlight.availablePermits(), maxInFlight,
+                rejected.sum(), errors.sum(), batchedAdds.sum(), addBatches.sum()));
+        out.append(String.format("%-22s %10s %10s %10s %10s%n", "Endpoint", "Requests", "p50 us", "p99 us", "max us"));
+        synchronized (latencies) {
+            for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+                LatencyHistogram latency = entry.getValue();
+                out.append(String.format("%-22s %10d %10.1f %10.1f %10.1f%n", entry.getKey(), latency.getCount(),
+                        latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3, latency.getMax() / 1e3));
+            }
+        }
+        byte[] bytes = out.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    // ---------------------------------------------------------------------
+    // Requests and responses
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && Long.parseLong(length.trim()) > MAX_BODY_BYTES) {
+            throw new HttpError(413, "Request body over " + (MAX_BODY_BYTES >> 20) + " MB");
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.write(buffer, 0, read);
+                if (body.size() > MAX_BODY_BYTES) { // Chunked uploads have no length to check up front
+                    throw new HttpError(413, "Request body over " + (MAX_BODY_BYTES >> 20) + " MB");
+                }
+            }
+        }
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        HashMap<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static String string(Map<?, ?> fields, String name) {
+        Object value = fields.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException("Field " + name + " must be a string");
+        }
+        return (String) value; // Missing fields are reported by the tracker's own validation
+    }
+
+    private static double amount(Map<?, ?> fields) {
+        Object value = fields.get("amount");
+        if (!(value instanceof Double) || !Double.isFinite((Double) value)) {
+            throw new IllegalArgumentException("Field amount must be a number");
+        }
+        return (Double) value;
+    }
+
+    private static double number(Map<String, String> params, String name) {
+        return parseNumber(name, params.get(name));
+    }
+
+    private static double parseNumber(String name, String text) {
+        try {
+            double value = Double.parseDouble(text);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new NumberFormatException();
+            }
+            return value;
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be a number: " + text);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) {
+        StringBuilder out = new StringBuilder("{\"error\":");
+        ExpenseJson.appendString(out, message).append('}');
+        try {
+            send(exchange, status, out.toString());
+        } catch (IOException e) {
+            errors.increment(); // Headers already sent or the client went away
+        }
+    }
+
+    /**
+     * Writes rows as {"count":n,"expenses":[...],"next":"key:id"} with
+     * chunked encoding, a piece at a time, so a large result never exists
+     * as one string.
+     */
+    private static void streamExpenses(HttpExchange exchange, Rows rows, ExpenseQuery.Position next)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        StringBuilder out = new StringBuilder(Math.min(FLUSH_CHARS + 256, 256 + rows.count * 64));
+        out.append("{\"count\":").append(rows.count).append(",\"expenses\":[");
+        for (int i = 0; i < rows.count; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            ExpenseJson.appendExpense(out, rows.days[i], rows.cents[i], rows.categories[i]);
+            if (out.length() >= FLUSH_CHARS) {
+                body.write(out.toString().getBytes(StandardCharsets.UTF_8));
+                out.setLength(0);
+            }
+        }
+        out.append(']');
+        if (next != null) {
+            out.append(",\"next\":\"").append(next).append('"');
+        }
+        body.write(out.append('}').toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // ---------------------------------------------------------------------
+    // Command line
+
+    /**
+     * Turns off Nagle's algorithm for the JDK's HttpServer by setting the
+     * JDK-internal {@code sun.net.httpserver.nodelay} property, unless it is
+     * already set. The property is process-wide and read once, when the first
+     * server is created, so call this at startup.
+     */
+    public static void enableNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Runs a server until the process is stopped.
+     *
+     * @param args --port=8080, --max-in-flight=256, and --load=file.csv or
+     *             --snapshot=file to start from saved expenses.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        enableNoDelay();
+        int port = 8080;
+        int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        ExpenseTracker tracker = new ExpenseTracker();
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(value);
+            } else if (arg.startsWith("--max-in-flight=")) {
+                maxInFlight = Integer.parseInt(value);
+            } else if (arg.startsWith("--load=")) {
+                tracker.loadFromFile(value);
+            } else if (arg.startsWith("--snapshot=")) {
+                tracker.loadSnapshot(value);
+            } else {
+                System.err.println("Unknown option: " + arg);
+                return;
+            }
+        }
+        ExpenseServer server = new ExpenseServer(tracker, maxInFlight);
+        server.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("Expense server listening on port " + server.getPort() + " with "
+                + tracker.cursorAll().remaining() + " expenses");
+    }
+}
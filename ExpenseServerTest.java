@@ -0,0 +1,292 @@
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test class for ExpenseServer to validate the JSON parser, each endpoint,
+ * combined single adds, paging of large results, backpressure, and the
+ * load generator's report.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseServerTest {
+
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    public static void main(String[] args) throws Exception {
+        ExpenseServer.enableNoDelay(); // Before any server is created, as ExpenseServer.main does
+
+        // 1. Test JSON Parsing and Escaping
+        testJson();
+
+        // 2. Test Endpoints
+        testEndpoints();
+
+        // 3. Test Concurrent Adds Are Combined
+        testCombinedAdds();
+
+        // 4. Test Paging a Large Result
+        testPaging();
+
+        // 5. Test Backpressure
+        testBackpressure();
+
+        // 6. Test the Load Generator
+        testLoadGenerator();
+    }
+
+    private static HttpResponse<String> get(String base, String path) throws Exception {
+        return CLIENT.send(HttpRequest.newBuilder(URI.create(base + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> post(String base, String path, String body) throws Exception {
+        return CLIENT.send(HttpRequest.newBuilder(URI.create(base + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // Test JSON Parsing and Escaping
+    private static void testJson() {
+        System.out.println("\n=== Testing JSON Parsing and Escaping ===");
+        Object parsed = ExpenseJson.parse(" {\"a\": [1, 2.5, -3e2], \"b\": \"x\\\"y\\u0041\", \"c\": null, \"d\": true} ");
+        System.out.println("Parsed: " + parsed + " (Expected: {a=[1.0, 2.5, -300.0], b=x\"yA, c=null, d=true})");
+        String[] invalid = { "{\"a\":1,}", "[1 2]", "\"unterminated", "{a:1}", "01x", "" };
+        int rejected = 0;
+        for (String text : invalid) {
+            try {
+                ExpenseJson.parse(text);
+            } catch (IllegalArgumentException e) {
+                rejected++;
+            }
+        }
+        System.out.println("Rejected invalid documents: " + rejected + " of " + invalid.length + " (Expected: 6)");
+        StringBuilder out = new StringBuilder();
+        ExpenseJson.appendString(out, "Tab\there \"quoted\" \\ \u0001");
+        System.out.println("Escaped: " + out + " (Expected: \"Tab\\there \\\"quoted\\\" \\\\ \\u0001\")");
+        System.out.println("Round trip: " + ExpenseJson.parse(out.toString()).equals("Tab\there \"quoted\" \\ \u0001")
+                + " (Expected: true)");
+        StringBuilder amount = new StringBuilder();
+        ExpenseJson.appendCents(amount, 1205);
+        System.out.println("1205 cents: " + amount + " (Expected: 12.05)");
+    }
+
+    // Test Endpoints
+    private static void testEndpoints() throws Exception {
+        System.out.println("\n=== Testing Endpoints ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        ExpenseServer server = new ExpenseServer(tracker);
+        server.start(0);
+        String base = "http://localhost:" + server.getPort();
+        try {
+            HttpResponse<String> added = post(base, "/expenses",
+                    "{\"date\":\"2024-03-01\",\"amount\":12.5,\"category\":\"Food\"}");
+            System.out.println("Add: " + added.statusCode() + " " + added.body() + " (Expected: 201 {\"added\":1})");
+            HttpResponse<String> invalid = post(base, "/expenses",
+                    "{\"date\":\"2024-13-01\",\"amount\":1,\"category\":\"Food\"}");
+            System.out.println("Invalid date: " + invalid.statusCode() + " " + invalid.body()
+                    + " (Expected: 400 with the date error)");
+            System.out.println("Malformed JSON: " + post(base, "/expenses", "{\"date\":").statusCode()
+                    + " (Expected: 400)");
+            System.out.println("Wrong method: " + get(base, "/expenses").statusCode() + " (Expected: 405)");
+
+            HttpResponse<String> bulk = post(base, "/expenses/bulk", "[{\"date\":\"2024-03-02\",\"amount\":40,"
+                    + "\"category\":\"Rent\"},{\"date\":\"2024-03-03\",\"amount\":-1,\"category\":\"Food\"},"
+                    + "{\"date\":\"2024-03-04\",\"amount\":\"7\",\"category\":\"Food\"},"
+                    + "{\"date\":\"2024-03-05\",\"amount\":7.25,\"category\":\"Food \\\"Court\\\"\"}]");
+            System.out.println("Bulk: " + bulk.statusCode() + " " + bulk.body());
+            System.out.println("Expected: 200, accepted 2, index 1 negative, index 2 amount must be a number");
+
+            System.out.println("Search by date: " + get(base, "/search?date=2024-03-01").body()
+                    + " (Expected: 1 Food expense of 12.50)");
+            System.out.println("Search by category: " + get(base, "/search?category=Food%20%22Court%22").body()
+                    + " (Expected: the 7.25 expense with its quotes escaped)");
+            System.out.println("Search without criteria: " + get(base, "/search").statusCode() + " (Expected: 400)");
+
+            HttpResponse<String> range = get(base, "/range?start=2024-03-01&end=2024-03-31&order=amount&desc&limit=2");
+            System.out.println("Range page: " + range.body());
+            System.out.println("Expected: 40.00 then 12.50 with a next position");
+            String next = (String) ((Map<?, ?>) ExpenseJson.parse(range.body())).get("next");
+            System.out.println("Next page: " + get(base, "/range?start=2024-03-01&end=2024-03-31&order=amount&desc"
+                    + "&limit=2&after=" + next).body() + " (Expected: only 7.25, no next)");
+            System.out.println("Bad order: " + get(base, "/range?order=category").statusCode() + " (Expected: 400)");
+            System.out.println("Huge page: " + get(base, "/range?order=amount&limit=2000000000").statusCode()
+                    + " (Expected: 400)");
+            System.out.println("Infinite amount: " + post(base, "/expenses",
+                    "{\"date\":\"2024-03-06\",\"amount\":1e999,\"category\":\"Food\"}").statusCode()
+                    + " (Expected: 400)");
+
+            HttpResponse<String> report = get(base, "/report?by=category&percentiles=50");
+            Map<?, ?> reportJson = (Map<?, ?>) ExpenseJson.parse(report.body());
+            System.out.println("Report groups: " + ((List<?>) reportJson.get("rows")).size() + " (Expected: 3)");
+            System.out.println("Totals: " + get(base, "/totals").body() + " (Expected: {\"total\":59.75})");
+            System.out.println("Food totals: " + get(base, "/totals?category=Food").body()
+                    + " (Expected: total 12.50, count 1)");
+            String metrics = get(base, "/metrics").body();
+            System.out.println((metrics.contains("POST /expenses") && metrics.contains("Server:") ? "✅" : "❌")
+                    + " Metrics list the tracker and endpoint latencies");
+            System.out.println("Unknown path: " + get(base, "/expenses/other").statusCode() + " (Expected: 404)");
+        } finally {
+            server.stop();
+        }
+    }
+
+    // Test Concurrent Adds Are Combined
+    private static void testCombinedAdds() throws Exception {
+        System.out.println("\n=== Testing Concurrent Adds Are Combined ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        ExpenseServer server = new ExpenseServer(tracker);
+        server.start(0);
+        String base = "http://localhost:" + server.getPort();
+        int threads = 16;
+        int perThread = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    int failed = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        String body = String.format("{\"date\":\"2024-01-%02d\",\"amount\":1.5,\"category\":\"C%d\"}",
+                                1 + i % 28, thread);
+                        failed += post(base, "/expenses", body).statusCode() == 201 ? 0 : 1;
+                    }
+                    return failed;
+                }));
+            }
+            int failed = 0;
+            for (Future<Integer> result : results) {
+                failed += result.get();
+            }
+            HttpResponse<String> totals = get(base, "/totals");
+            System.out.println("Failed adds: " + failed + " (Expected: 0)");
+            System.out.println("Total: " + totals.body() + " (Expected: {\"total\":4800.00})");
+            System.out.println((threads * perThread) + " adds applied in " + server.getAddBatchCount()
+                    + " batches (Expected: at most " + (threads * perThread) + ", fewer under contention)");
+        } finally {
+            pool.shutdown();
+            server.stop();
+        }
+    }
+
+    // Test Paging a Large Result
+    private static void testPaging() throws Exception {
+        System.out.println("\n=== Testing Paging a Large Result ===");
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(22).generateStore(200_000));
+        ExpenseServer server = new ExpenseServer(tracker);
+        server.start(0);
+        String base = "http://localhost:" + server.getPort();
+        try {
+            HttpResponse<String> response = get(base, "/range");
+            Map<?, ?> json = (Map<?, ?>) ExpenseJson.parse(response.body());
+            System.out.println("Transfer-Encoding: " + response.headers().firstValue("Transfer-Encoding").orElse("none")
+                    + " (Expected: chunked)");
+            System.out.println("First page: " + ((List<?>) json.get("expenses")).size() + " rows, next "
+                    + (json.get("next") != null) + " (Expected: " + ExpenseServer.MAX_PAGE_ROWS + " rows, next true)");
+            System.out.printf("Body: %.1f MB%n", response.body().length() / 1e6);
+
+            int rows = 0;
+            int pages = 0;
+            boolean bounded = true;
+            String next = null;
+            do {
+                json = (Map<?, ?>) ExpenseJson.parse(get(base, "/range" + (next == null ? "" : "?after=" + next)).body());
+                int count = ((List<?>) json.get("expenses")).size();
+                bounded &= count <= ExpenseServer.MAX_PAGE_ROWS;
+                rows += count;
+                pages++;
+                next = (String) json.get("next");
+            } while (next != null);
+            System.out.println(((rows == 200_000 && bounded) ? "✅" : "❌") + " Paged through " + rows + " rows in "
+                    + pages + " pages (Expected: 200000 in 20 or 21)");
+
+            int groceries = tracker.getCountByCategory("Groceries");
+            json = (Map<?, ?>) ExpenseJson.parse(get(base, "/search?category=Groceries").body());
+            System.out.println("Category search page: " + ((List<?>) json.get("expenses")).size() + " rows, next "
+                    + (json.get("next") != null) + " (Expected: " + Math.min(groceries, ExpenseServer.MAX_PAGE_ROWS)
+                    + " rows, next " + (groceries > ExpenseServer.MAX_PAGE_ROWS) + ")");
+        } finally {
+            server.stop();
+        }
+    }
+
+    // Test Backpressure
+    private static void testBackpressure() throws Exception {
+        System.out.println("\n=== Testing Backpressure ===");
+        ExpenseServer server = new ExpenseServer(new ExpenseTracker(), 1);
+        server.start(0);
+        String base = "http://localhost:" + server.getPort();
+        try {
+            // A slow client holds the only slot by sending only part of its body
+            Socket slow = new Socket("localhost", server.getPort());
+            byte[] expense = "{\"date\":\"2024-01-01\",\"amount\":1,\"category\":\"Food\"}"
+                    .getBytes(StandardCharsets.US_ASCII);
+            OutputStream upload = slow.getOutputStream();
+            upload.write(("POST /expenses HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + expense.length
+                    + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            upload.write(expense, 0, 10);
+            upload.flush();
+            Thread.sleep(100); // Until the server is waiting for the rest
+            HttpResponse<String> refused = get(base, "/totals");
+            System.out.println("While busy: " + refused.statusCode() + ", Retry-After "
+                    + refused.headers().firstValue("Retry-After").orElse("missing") + " (Expected: 503, Retry-After 1)");
+            upload.write(expense, 10, expense.length - 10);
+            upload.flush();
+            System.out.println("Slow add: " + new BufferedReader(new InputStreamReader(slow.getInputStream(),
+                    StandardCharsets.US_ASCII)).readLine() + " (Expected: HTTP/1.1 201 Created)");
+            slow.close();
+            HttpResponse<String> accepted = null;
+            for (int attempt = 0; attempt < 50; attempt++) { // The slot frees once the server finishes writing
+                accepted = get(base, "/totals");
+                if (accepted.statusCode() != 503) {
+                    break;
+                }
+                Thread.sleep(20);
+            }
+            System.out.println("After the slow client finished: " + accepted.statusCode() + " (Expected: 200)");
+            System.out.println("Rejected count: " + server.getRejectedCount() + " (Expected: at least 1)");
+
+            // Refused from the Content-Length header alone, before any of the body is read
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                socket.getOutputStream().write(("POST /expenses/bulk HTTP/1.1\r\nHost: localhost\r\n"
+                        + "Content-Length: " + (17 << 20) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                String status = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.US_ASCII)).readLine();
+                System.out.println("17 MB bulk body: " + status + " (Expected: HTTP/1.1 413)");
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    // Test the Load Generator
+    private static void testLoadGenerator() throws Exception {
+        System.out.println("\n=== Testing the Load Generator ===");
+        ExpenseServer server = new ExpenseServer(new ExpenseTracker(new ExpenseDataGenerator(24).generateStore(100_000)));
+        server.start(0);
+        try {
+            ExpenseLoadGenerator generator = new ExpenseLoadGenerator("http://localhost:" + server.getPort());
+            ExpenseLoadGenerator.Result result = generator.run(8, 4_000, new int[] { 25, 25, 25, 25 }, 1);
+            System.out.print(result);
+            System.out.println((result.getRequests() == 4_000 && result.getFailures() == 0 ? "✅" : "❌")
+                    + " All requests answered without errors");
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the binary snapshot format of an {@link ExpenseStore}.
+ * A snapshot is the store's columns written as they sit in memory, so loading
+ * one is a memory map, a checksum and three bulk copies rather than a parse.
+ *
+ * <pre>
+ * int    magic            "EXPS"
+ * int    version          1
+ * int    rowCount
+ * int    categoryCount
+ * per category: int byteLength, UTF-8 bytes
+ * zero padding up to a multiple of 8 bytes
+ * long[] cents            rowCount entries
+ * int[]  epochDays        rowCount entries
+ * int[]  categoryCodes    rowCount entries, indexes into the dictionary above
+ * long   crc32            of every byte before it
+ * </pre>
+ *
+ * All values are little-endian.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseSnapshot {
+
+    /** The four bytes "EXPS" read as a big-endian int. */
+    public static final int MAGIC = 0x45585053;
+
+    /** The current format version. */
+    public static final int VERSION = 1;
+
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private ExpenseSnapshot() {
+    }
+
+    /**
+     * Writes every row of a store to a snapshot file. The rows go to a
+     * temporary file beside it that is then moved over the old snapshot, so
+     * a crash or error mid-save leaves the old snapshot intact.
+     *
+     * @param store    The store to write.
+     * @param filename The snapshot file.
+     * @return The number of bytes written.
+     * @throws IOException if the file cannot be written.
+     */
+    public static long save(ExpenseStore store, String filename) throws IOException {
+        Path tmp = Paths.get(filename + ".tmp");
+        long written;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotWriter writer = new SnapshotWriter(channel);
+            int rows = store.liveCount();
+            int categories = store.categoryCount();
+
+            writer.putInt(Integer.reverseBytes(MAGIC)); // Stored as the bytes 'E','X','P','S'
+            writer.putInt(VERSION);
+            writer.putInt(rows);
+            writer.putInt(categories);
+            for (int code = 0; code < categories; code++) {
+                byte[] name = store.categoryName(code).getBytes(StandardCharsets.UTF_8);
+                writer.putInt(name.length);
+                writer.put(name);
+            }
+            while (writer.written() % 8 != 0) {
+                writer.put(new byte[] { 0 });
+            }
+            for (int i = 0; i < store.size(); i++) {
+                if (!store.isDeleted(i)) {
+                    writer.putLong(store.centsAt(i));
+                }
+            }
+            for (int i = 0; i < store.size(); i++) {
+                if (!store.isDeleted(i)) {
+                    writer.putInt(store.dayAt(i));
+                }
+            }
+            for (int i = 0; i < store.size(); i++) {
+                if (!store.isDeleted(i)) {
+                    writer.putInt(store.categoryCodeAt(i));
+                }
+            }
+            writer.finish();
+            channel.force(true);
+            written = writer.written();
+        }
+        Files.move(tmp, Paths.get(filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * Replaces the contents of a store with the rows of a snapshot file. The
+     * file is memory-mapped and fully validated before the store is touched.
+     *
+     * @param store    The store to fill.
+     * @param filename The snapshot file.
+     * @return The number of rows loaded.
+     * @throws IOException if the file cannot be read, is not a snapshot, or fails its checksum.
+     */
+    public static int load(ExpenseStore store, String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < 24 || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Not a valid snapshot file: " + filename);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (Integer.reverseBytes(buffer.getInt(0)) != MAGIC) {
+                throw new IOException("Not a snapshot file: " + filename);
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + filename);
+            }
+            int checksumAt = (int) fileSize - 8;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(0).limit(checksumAt));
+            if (crc.getValue() != buffer.getLong(checksumAt)) {
+                throw new IOException("Snapshot checksum mismatch in " + filename);
+            }
+
+            int rows = buffer.getInt(8);
+            int categories = buffer.getInt(12);
+            int position = 16;
+            String[] names = new String[categories];
+            for (int code = 0; code < categories; code++) {
+                int length = buffer.getInt(position);
+                byte[] name = new byte[length];
+                buffer.get(position + 4, name);
+                names[code] = new String(name, StandardCharsets.UTF_8);
+                position += 4 + length;
+            }
+            position = (position + 7) & ~7;
+            if ((long) position + 16L * rows != checksumAt) {
+                throw new IOException("Snapshot size does not match its row count in " + filename);
+            }
+
+            store.clear();
+            int[] remap = new int[categories];
+            for (int code = 0; code < categories; code++) {
+                remap[code] = store.encodeCategory(names[code]);
+            }
+            int centsAt = position;
+            int daysAt = centsAt + 8 * rows;
+            int codesAt = daysAt + 4 * rows;
+            store.loadColumns(rows, sliceAt(buffer, daysAt).asIntBuffer(), sliceAt(buffer, centsAt).asLongBuffer(),
+                    sliceAt(buffer, codesAt).asIntBuffer(), remap);
+            return rows;
+        }
+    }
+
+    /**
+     * Reads the checksum trailer of a snapshot file without validating it.
+     * The write-ahead log uses it to tell which snapshot it belongs to.
+     *
+     * @param filename The snapshot file.
+     * @return The stored CRC32 value.
+     * @throws IOException if the file cannot be read.
+     */
+    public static long readChecksum(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(trailer, channel.size() - 8);
+            return trailer.getLong(0);
+        }
+    }
+
+    private static ByteBuffer sliceAt(ByteBuffer buffer, int position) {
+        return buffer.duplicate().position(position).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Buffers little-endian values and writes them to a channel, keeping a
+     * running CRC32 of everything written.
+     */
+    private static class SnapshotWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+        private long written;
+
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRoom(4);
+            buffer.putInt(value);
+            written += 4;
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRoom(8);
+            buffer.putLong(value);
+            written += 8;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length;) {
+                ensureRoom(1);
+                int count = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+            written += bytes.length;
+        }
+
+        long written() {
+            return written;
+        }
+
+        /**
+         * Writes the checksum trailer and flushes the buffer.
+         */
+        void finish() throws IOException {
+            flush();
+            buffer.putLong(crc.getValue());
+            written += 8;
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensureRoom(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
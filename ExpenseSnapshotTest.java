@@ -0,0 +1,78 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Test class for ExpenseSnapshot to validate the binary snapshot format and
+ * that saving replaces a snapshot atomically.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseSnapshotTest {
+
+    public static void main(String[] args) throws IOException {
+        // 1. Test Round Trip
+        testRoundTrip();
+
+        // 2. Test Corrupt File
+        testCorruptFile();
+
+        // 3. Test a Failed Save Keeps the Old Snapshot
+        testFailedSave();
+    }
+
+    // Test Round Trip
+    private static void testRoundTrip() {
+        System.out.println("\n=== Testing Round Trip ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-01", 50.0, "Food");
+        tracker.addExpense("2024-01-02", 20.25, "Café");
+        tracker.addExpense("2023-12-31", 30.0, "Food");
+        tracker.saveSnapshot("test_snapshot.bin");
+
+        ExpenseTracker loaded = new ExpenseTracker();
+        loaded.addExpense("2020-01-01", 1.0, "Stale");
+        loaded.loadSnapshot("test_snapshot.bin");
+        loaded.viewExpenses();
+        System.out.println("Expected: the three rows above, in insertion order");
+        System.out.println("Total: $" + loaded.getTotalExpenses() + " (Expected: 100.25)");
+        System.out.println("Food: $" + loaded.getTotalByCategory("Food") + " (Expected: 80.0)");
+        System.out.println("December 2023: " + loaded.viewMonth(2023, 12).size() + " (Expected: 1)");
+    }
+
+    // Test Corrupt File
+    private static void testCorruptFile() throws IOException {
+        System.out.println("\n=== Testing Corrupt File ===");
+        try (RandomAccessFile file = new RandomAccessFile("test_snapshot.bin", "rw")) {
+            file.seek(file.length() - 12);
+            file.write(0x7F);
+        }
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-01", 5.0, "Food");
+        tracker.loadSnapshot("test_snapshot.bin");
+        System.out.println("Rows kept after failed load: $" + tracker.getTotalExpenses() + " (Expected: 5.0)");
+    }
+
+    // Test a Failed Save Keeps the Old Snapshot
+    private static void testFailedSave() {
+        System.out.println("\n=== Testing a Failed Save Keeps the Old Snapshot ===");
+        String file = "atomic_snapshot.bin";
+        ExpenseTracker tracker = new ExpenseTracker();
+        tracker.addExpense("2024-01-01", 7.0, "Food");
+        tracker.saveSnapshot(file);
+        System.out.println("Temporary file left behind: " + new File(file + ".tmp").exists() + " (Expected: false)");
+
+        File blocker = new File(file + ".tmp");
+        blocker.mkdir(); // The temporary file cannot be created, so the save fails
+        tracker.addExpense("2024-01-02", 3.0, "Food");
+        tracker.saveSnapshot(file);
+        blocker.delete();
+
+        ExpenseTracker loaded = new ExpenseTracker();
+        loaded.loadSnapshot(file);
+        System.out.println("Total after the failed save: $" + loaded.getTotalExpenses() + " (Expected: 7.0)");
+        new File(file).delete();
+    }
+}
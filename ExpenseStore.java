@@ -0,0 +1,577 @@
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columnar storage engine for expense records. Instead of keeping one
+ * {@link Expense} object per row, each field lives in its own primitive array:
+ * dates as epoch days, amounts as whole cents and categories as ids from the
+ * store's {@link CategoryDictionary}. {@link Expense} objects are only created
+ * when a row is handed out through {@link #get(int)}.
+ *
+ * <p>Deleting a row only marks it with a tombstone, so later rows keep their
+ * positions and a delete costs O(log n). Row ids passed to the column
+ * accessors are physical and include deleted rows; scans skip the deleted
+ * ones. {@link #compact()} drops them for good. Each row also has a stable
+ * id that survives compaction, for callers that keep references to rows.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseStore {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final ScanKernels KERNELS = ScanKernels.get(); // Column scans, vectorized when available
+
+    // Columns
+    private int[] days;          // Date of each row as days since 1970-01-01
+    private long[] cents;        // Amount of each row in cents
+    private int[] categoryCodes; // Category of each row as a dictionary code
+    private int size;            // Number of rows in use, deleted ones included
+
+    // Tombstones
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private FenwickTree live;    // 1 per live row, 0 per deleted row; null until the first delete
+
+    // Stable ids: row i has id firstId + i until a compaction makes the ids sparse
+    private long firstId;
+    private long[] ids;          // Id of each row once sparse, ascending; null while dense
+
+    private final CategoryDictionary categories;
+
+    /**
+     * Constructs an empty store with a category dictionary of its own.
+     */
+    public ExpenseStore() {
+        this(new CategoryDictionary());
+    }
+
+    /**
+     * Constructs an empty store that encodes categories with a given
+     * dictionary, which other stores may share.
+     *
+     * @param categories The dictionary that assigns category codes.
+     */
+    public ExpenseStore(CategoryDictionary categories) {
+        this.categories = categories;
+        days = new int[DEFAULT_CAPACITY];
+        cents = new long[DEFAULT_CAPACITY];
+        categoryCodes = new int[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Appends a row to the store.
+     *
+     * @param date     The date of the expense (YYYY-MM-DD).
+     * @param amount   The amount spent.
+     * @param category The category of the expense.
+     * @throws IllegalArgumentException if the date is not a valid YYYY-MM-DD date.
+     */
+    public void add(String date, double amount, String category) {
+        add(toEpochDay(date), toCents(amount), encodeCategory(category));
+    }
+
+    /**
+     * Appends a row whose fields are already encoded.
+     *
+     * @param epochDay     The date as days since 1970-01-01.
+     * @param amountCents  The amount in cents.
+     * @param categoryCode A code previously returned by {@link #encodeCategory(String)}.
+     */
+    public void add(int epochDay, long amountCents, int categoryCode) {
+        ensureCapacity(size + 1);
+        days[size] = epochDay;
+        cents[size] = amountCents;
+        categoryCodes[size] = categoryCode;
+        size++;
+        appended(size - 1);
+    }
+
+    /**
+     * Appends a block of rows whose fields are already encoded.
+     *
+     * @param epochDays     The dates as days since 1970-01-01.
+     * @param amountCents   The amounts in cents.
+     * @param categoryCodes Codes previously returned by {@link #encodeCategory(String)}.
+     * @param count         The number of rows to copy from the start of each array.
+     */
+    public void addAll(int[] epochDays, long[] amountCents, int[] categoryCodes, int count) {
+        ensureCapacity(size + count);
+        System.arraycopy(epochDays, 0, days, size, count);
+        System.arraycopy(amountCents, 0, cents, size, count);
+        System.arraycopy(categoryCodes, 0, this.categoryCodes, size, count);
+        size += count;
+        appended(size - count);
+    }
+
+    /**
+     * Appends a block of rows read straight from column buffers, such as the
+     * memory-mapped columns of a snapshot file.
+     *
+     * @param count         The number of rows to read.
+     * @param epochDays     The dates as days since 1970-01-01.
+     * @param amountCents   The amounts in cents.
+     * @param categoryCodes The categories as codes in the caller's dictionary.
+     * @param remap         Maps the caller's category codes to this store's codes.
+     */
+    public void loadColumns(int count, IntBuffer epochDays, LongBuffer amountCents, IntBuffer categoryCodes,
+            int[] remap) {
+        ensureCapacity(size + count);
+        epochDays.get(days, size, count);
+        amountCents.get(cents, size, count);
+        categoryCodes.get(this.categoryCodes, size, count);
+        for (int i = size; i < size + count; i++) {
+            this.categoryCodes[i] = remap[this.categoryCodes[i]];
+        }
+        size += count;
+        appended(size - count);
+    }
+
+    // Gives rows [from, size) their ids and live flags
+    private void appended(int from) {
+        if (ids != null) {
+            long next = from == 0 ? firstId : ids[from - 1] + 1;
+            for (int i = from; i < size; i++) {
+                ids[i] = next++;
+            }
+        }
+        if (live != null) {
+            for (int i = from; i < size; i++) {
+                live.append(1);
+            }
+        }
+    }
+
+    /**
+     * Marks a row as deleted. The row keeps its position and its values
+     * until {@link #compact()}; scans and {@link #liveCount()} skip it.
+     *
+     * @param row The row to delete.
+     * @return True if the row was live, false if it was already deleted.
+     */
+    public boolean delete(int row) {
+        checkRow(row);
+        if (deleted.get(row)) {
+            return false;
+        }
+        if (live == null) {
+            live = new FenwickTree(size);
+        }
+        deleted.set(row);
+        deletedCount++;
+        live.add(row, -1);
+        return true;
+    }
+
+    /**
+     * Returns true if a row has been deleted.
+     *
+     * @param row The row to check.
+     * @return True if deleted.
+     */
+    public boolean isDeleted(int row) {
+        return deletedCount != 0 && deleted.get(row);
+    }
+
+    /**
+     * Returns the number of deleted rows still held by the store.
+     *
+     * @return The deleted row count.
+     */
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Returns the number of live rows.
+     *
+     * @return The row count, deleted rows excluded.
+     */
+    public int liveCount() {
+        return size - deletedCount;
+    }
+
+    /**
+     * Returns the physical row of the live row at a position, counting live
+     * rows only, as a list of the expenses would number them.
+     *
+     * @param position The position among live rows, from 0.
+     * @return The row id.
+     */
+    public int rowAtPosition(int position) {
+        if (position < 0 || position >= liveCount()) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of bounds for size " + liveCount());
+        }
+        return deletedCount == 0 ? position : live.select(position);
+    }
+
+    /**
+     * Returns the position of a live row among the live rows.
+     *
+     * @param row The row id.
+     * @return The number of live rows before it.
+     */
+    public int positionOf(int row) {
+        return deletedCount == 0 ? row : live.prefixSum(row);
+    }
+
+    /**
+     * Returns the stable id of a row. Ids increase with insertion order and
+     * never change, even when compaction moves the row.
+     *
+     * @param row The row id.
+     * @return The stable id.
+     */
+    public long idAt(int row) {
+        return ids == null ? firstId + row : ids[row];
+    }
+
+    /**
+     * Finds the row holding a stable id.
+     *
+     * @param id The stable id.
+     * @return The row id, or -1 if no live row has that id.
+     */
+    public int findRowById(long id) {
+        int row;
+        if (ids == null) {
+            row = id >= firstId && id - firstId < size ? (int) (id - firstId) : -1;
+        } else {
+            row = Arrays.binarySearch(ids, 0, size, id);
+        }
+        return row < 0 || isDeleted(row) ? -1 : row;
+    }
+
+    /**
+     * Drops every deleted row, moving later rows down. Row ids change, so
+     * indexes over the store must be rebuilt afterwards; stable ids do not.
+     *
+     * @return The number of rows dropped.
+     */
+    public int compact() {
+        int dropped = deletedCount;
+        if (dropped == 0) {
+            return 0;
+        }
+        if (ids == null) {
+            ids = new long[days.length];
+            for (int i = 0; i < size; i++) {
+                ids[i] = firstId + i;
+            }
+        }
+        int to = 0;
+        for (int from = 0; from < size; from++) {
+            if (!deleted.get(from)) {
+                days[to] = days[from];
+                cents[to] = cents[from];
+                categoryCodes[to] = categoryCodes[from];
+                ids[to] = ids[from];
+                to++;
+            }
+        }
+        if (to == 0) {
+            firstId = ids[size - 1] + 1; // Keep ids increasing across the now empty store
+            ids = null;
+        }
+        size = to;
+        deleted.clear();
+        deletedCount = 0;
+        live = null;
+        return dropped;
+    }
+
+    /**
+     * Removes every row. The category dictionary is kept, and stable ids
+     * keep counting up so ids of removed rows are never reused.
+     */
+    public void clear() {
+        firstId = size == 0 ? firstId : idAt(size - 1) + 1;
+        ids = null;
+        size = 0;
+        deleted.clear();
+        deletedCount = 0;
+        live = null;
+    }
+
+    /**
+     * Returns the number of rows in the store, deleted rows included; use
+     * {@link #liveCount()} for the number of expenses.
+     *
+     * @return The row count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the store holds no live rows.
+     *
+     * @return True if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return liveCount() == 0;
+    }
+
+    /**
+     * Materializes the row at the given position as an {@link Expense}.
+     *
+     * @param row The row to read.
+     * @return A new Expense holding the row's values.
+     */
+    public Expense get(int row) {
+        checkRow(row);
+        return new Expense(days[row], cents[row], categories.name(categoryCodes[row]));
+    }
+
+    /**
+     * Returns the epoch day of the given row.
+     *
+     * @param row The row to read.
+     * @return The date as days since 1970-01-01.
+     */
+    public int dayAt(int row) {
+        return days[row];
+    }
+
+    /**
+     * Returns the amount of the given row in cents.
+     *
+     * @param row The row to read.
+     * @return The amount in cents.
+     */
+    public long centsAt(int row) {
+        return cents[row];
+    }
+
+    /**
+     * Returns the category code of the given row.
+     *
+     * @param row The row to read.
+     * @return The category code.
+     */
+    public int categoryCodeAt(int row) {
+        return categoryCodes[row];
+    }
+
+    /**
+     * Returns the dictionary code for a category, adding it if it is new.
+     *
+     * @param category The category name.
+     * @return The category's code.
+     */
+    public int encodeCategory(String category) {
+        return categories.encode(category);
+    }
+
+    /**
+     * Returns the dictionary code for a category without adding it.
+     *
+     * @param category The category name.
+     * @return The category's code, or -1 if the category has never been stored.
+     */
+    public int findCategory(String category) {
+        return categories.find(category);
+    }
+
+    /**
+     * Returns the number of categories in the dictionary. Codes run from 0
+     * to categoryCount() - 1; some of them may have no rows, because they
+     * were deleted, cleared away or added through a shared dictionary.
+     *
+     * @return The category count.
+     */
+    public int categoryCount() {
+        return categories.size();
+    }
+
+    /**
+     * Returns the category name for a dictionary code.
+     *
+     * @param code The category code.
+     * @return The category name.
+     */
+    public String categoryName(int code) {
+        return categories.name(code);
+    }
+
+    /**
+     * Returns the dictionary that assigns this store's category codes.
+     *
+     * @return The category dictionary.
+     */
+    public CategoryDictionary categories() {
+        return categories;
+    }
+
+    /**
+     * Sums the amounts of all live rows.
+     *
+     * @return The total in cents.
+     */
+    public long sumCents() {
+        long total = KERNELS.sum(cents, 0, size);
+        for (int row = deleted.nextSetBit(0); row >= 0; row = deleted.nextSetBit(row + 1)) {
+            total -= cents[row]; // Cheaper than masking the scan while few rows are deleted
+        }
+        return total;
+    }
+
+    /**
+     * Sums the amounts of all live rows in one category.
+     *
+     * @param categoryCode The category code to match.
+     * @return The total in cents.
+     */
+    public long sumCentsByCategory(int categoryCode) {
+        long total = KERNELS.sumWhereEquals(cents, categoryCodes, categoryCode, 0, size);
+        for (int row = deleted.nextSetBit(0); row >= 0; row = deleted.nextSetBit(row + 1)) {
+            if (categoryCodes[row] == categoryCode) {
+                total -= cents[row];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Counts the rows in one category by scanning the code column.
+     *
+     * @param categoryCode The category code to match.
+     * @return The number of rows.
+     */
+    public int countByCategory(int categoryCode) {
+        int count = KERNELS.countEquals(categoryCodes, categoryCode, 0, size);
+        for (int row = deleted.nextSetBit(0); row >= 0; row = deleted.nextSetBit(row + 1)) {
+            if (categoryCodes[row] == categoryCode) {
+                count--;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Scans the amount column for rows within an inclusive range.
+     *
+     * @param minCents The smallest amount in cents.
+     * @param maxCents The largest amount in cents.
+     * @return The matching rows in ascending order.
+     */
+    public IntList selectAmountRange(long minCents, long maxCents) {
+        int[] rows = new int[size];
+        return new IntList(rows, dropDeleted(rows, KERNELS.selectRange(cents, minCents, maxCents, 0, size, rows)));
+    }
+
+    /**
+     * Scans the category column for rows in one category.
+     *
+     * @param categoryCode The category code to match.
+     * @return The matching rows in ascending order.
+     */
+    public IntList selectCategory(int categoryCode) {
+        int[] rows = new int[size];
+        return new IntList(rows, dropDeleted(rows, KERNELS.selectEquals(categoryCodes, categoryCode, 0, size, rows)));
+    }
+
+    // Removes deleted rows from the first count row ids, returning how many are left
+    private int dropDeleted(int[] rows, int count) {
+        if (deletedCount == 0) {
+            return count;
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            rows[kept] = rows[i];
+            kept += deleted.get(rows[i]) ? 0 : 1;
+        }
+        return kept;
+    }
+
+    /**
+     * Makes sure the columns can hold at least the given number of rows.
+     *
+     * @param capacity The required number of rows.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= days.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, days.length + (days.length >> 1));
+        days = Arrays.copyOf(days, newCapacity);
+        cents = Arrays.copyOf(cents, newCapacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, newCapacity);
+        if (ids != null) {
+            ids = Arrays.copyOf(ids, newCapacity);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * Converts a YYYY-MM-DD date to days since 1970-01-01.
+     *
+     * @param date The date string.
+     * @return The epoch day.
+     * @throws IllegalArgumentException if the date cannot be parsed.
+     */
+    public static int toEpochDay(String date) {
+        int epochDay = ExpenseDates.parse(date);
+        if (epochDay == ExpenseDates.INVALID) {
+            throw new IllegalArgumentException("Date must be in YYYY-MM-DD format: " + date);
+        }
+        return epochDay;
+    }
+
+    /**
+     * Returns true if a string is null or holds only characters that
+     * {@link String#trim()} would remove, without creating a trimmed copy.
+     *
+     * @param text The string to check.
+     * @return True if blank.
+     */
+    public static boolean isBlank(String text) {
+        if (text == null) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts days since 1970-01-01 back to a YYYY-MM-DD date.
+     *
+     * @param epochDay The epoch day.
+     * @return The date string.
+     */
+    public static String fromEpochDay(int epochDay) {
+        return ExpenseDates.format(epochDay);
+    }
+
+    /**
+     * Converts an amount to whole cents, rounding to the nearest cent.
+     *
+     * @param amount The amount.
+     * @return The amount in cents.
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * 100.0);
+    }
+
+    /**
+     * Converts whole cents back to an amount.
+     *
+     * @param amountCents The amount in cents.
+     * @return The amount.
+     */
+    public static double fromCents(long amountCents) {
+        return amountCents / 100.0;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Test class for ExpenseStore to validate the columnar storage engine.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseStoreTest {
+
+    public static void main(String[] args) {
+        // 1. Test Encoding Round Trip
+        testRoundTrip();
+
+        // 2. Test Category Dictionary
+        testCategoryDictionary();
+
+        // 3. Test Remove and Sums
+        testRemoveAndSums();
+    }
+
+    // Test Encoding Round Trip
+    private static void testRoundTrip() {
+        System.out.println("\n=== Testing Encoding Round Trip ===");
+        ExpenseStore store = new ExpenseStore();
+        store.add("2024-02-29", 19.99, "Food");
+        Expense expense = store.get(0);
+        System.out.println(expense);
+        System.out.println("Expected Output: Expense [Date: 2024-02-29, Amount: $19.99, Category: Food]");
+        System.out.println("Cents: " + store.centsAt(0) + " (Expected: 1999)");
+
+        try {
+            store.add("29/02/2024", 19.99, "Food");
+            System.out.println("❌ Invalid date accepted");
+        } catch (IllegalArgumentException e) {
+            System.out.println("✅ Caught invalid date: " + e.getMessage());
+        }
+    }
+
+    // Test Category Dictionary
+    private static void testCategoryDictionary() {
+        System.out.println("\n=== Testing Category Dictionary ===");
+        ExpenseStore store = new ExpenseStore();
+        for (int i = 0; i < 100; i++) {
+            store.add("2024-01-01", 1.0, i % 2 == 0 ? "Food" : "Transport");
+        }
+        System.out.println("Rows: " + store.size() + " (Expected: 100)");
+        System.out.println("Food code: " + store.findCategory("Food") + " (Expected: 0)");
+        System.out.println("Transport code: " + store.findCategory("Transport") + " (Expected: 1)");
+        System.out.println("Unknown code: " + store.findCategory("Travel") + " (Expected: -1)");
+    }
+
+    // Test Remove and Sums
+    private static void testRemoveAndSums() {
+        System.out.println("\n=== Testing Remove and Sums ===");
+        ExpenseStore store = new ExpenseStore();
+        store.add("2024-01-01", 50.0, "Food");
+        store.add("2024-01-02", 20.0, "Transport");
+        store.add("2024-01-03", 30.0, "Food");
+        store.delete(1);
+        System.out.println("Live rows: " + store.liveCount() + " of " + store.size() + " (Expected: 2 of 3)");
+        System.out.println("Total cents: " + store.sumCents() + " (Expected: 8000)");
+        System.out.println("Food cents: " + store.sumCentsByCategory(store.findCategory("Food")) + " (Expected: 8000)");
+        System.out.println("Transport count: " + store.countByCategory(store.findCategory("Transport"))
+                + " (Expected: 0)");
+        store.compact();
+        System.out.println("Rows after compaction: " + store.size() + " (Expected: 2)");
+        System.out.println("Second row: " + store.get(1));
+        System.out.println("Second row id: " + store.idAt(1) + " (Expected: 2)");
+    }
+}
@@ -33,12 +33,28 @@ public class ExpenseTest {
             System.out.println("✅ Caught invalid date: " + e.getMessage());
         }
 
+        try {
+            new Expense("2024-02-30", 50.0, "Food");
+            System.out.println("❌ Accepted an impossible date");
+        } catch (IllegalArgumentException e) {
+            System.out.println("✅ Caught invalid date format: " + e.getMessage());
+        }
+
         try {
             Expense invalidAmount = new Expense("2024-01-01", -10.0, "Food");
         } catch (IllegalArgumentException e) {
             System.out.println("✅ Caught negative amount: " + e.getMessage());
         }
 
+        for (double amount : new double[] { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY }) {
+            try {
+                new Expense("2024-01-01", amount, "Food");
+                System.out.println("❌ Accepted amount " + amount);
+            } catch (IllegalArgumentException e) {
+                System.out.println("✅ Caught non-finite amount: " + e.getMessage());
+            }
+        }
+
         try {
             Expense invalidCategory = new Expense("2024-01-01", 50.0, "");
         } catch (IllegalArgumentException e) {
@@ -53,6 +69,9 @@ public class ExpenseTest {
         System.out.println("Date: " + expense.getDate() + " (Expected: 2024-01-02)");
         System.out.println("Amount: $" + expense.getAmount() + " (Expected: 75.5)");
         System.out.println("Category: " + expense.getCategory() + " (Expected: Transport)");
+        Expense unpadded = new Expense(" 2024-1-5 ", 0.1 + 0.2, "Transport");
+        System.out.println("Unpadded date: " + unpadded.getDate() + " (Expected: 2024-01-05)");
+        System.out.println("Cents: " + unpadded.getCents() + " (Expected: 30)");
     }
 
     // Test toString Method
@@ -70,6 +89,7 @@ public class ExpenseTest {
         expenses.add(new Expense("2024-01-03", 100.0, "Groceries"));
         expenses.add(new Expense("2024-01-01", 50.0, "Food"));
         expenses.add(new Expense("2024-01-02", 75.0, "Transport"));
+        expenses.add(new Expense("2024-1-10", 75.25, "Transport")); // Sorts after 2024-01-03 by date, not text
 
         System.out.println("\nSorting by Date:");
         Collections.sort(expenses, Expense.BY_DATE);
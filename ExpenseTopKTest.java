@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test class for top-K queries to validate them against a full sort, keyset
+ * pagination across writes, per-category ranking, and the speed-up over
+ * sorting every match.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseTopKTest {
+
+    public static void main(String[] args) {
+        // 1. Test Parity With a Full Sort
+        testParity();
+
+        // 2. Test Plans
+        testPlans();
+
+        // 3. Test Keyset Pagination
+        testPagination();
+
+        // 4. Test Per-Category Top-K
+        testPerCategory();
+
+        // 5. Test Speed Against Sort-and-Truncate
+        testSpeed();
+    }
+
+    // Test Parity With a Full Sort
+    private static void testParity() {
+        System.out.println("\n=== Testing Parity With a Full Sort ===");
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(21).generateStore(50_000));
+        ArrayList<Expense> all = tracker.cursorAll().toList();
+        String[] categories = { "Groceries", "Rent", "Travel", "Repairs" };
+        Random random = new Random(21);
+        int mismatches = 0;
+        int queries = 300;
+        for (int q = 0; q < queries; q++) {
+            Comparator<Expense> order = random.nextBoolean() ? Expense.BY_DATE : Expense.BY_AMOUNT;
+            boolean largest = random.nextBoolean();
+            int k = 1 + random.nextInt(q % 3 == 0 ? 5_000 : 60);
+            ExpenseQuery query = tracker.query();
+            ArrayList<Expense> expected = new ArrayList<>(all);
+            if (random.nextBoolean()) {
+                String month = String.format("2020-%02d", 1 + random.nextInt(12));
+                query.between(month + "-01", month + "-28");
+                expected.removeIf(e -> e.getDate().compareTo(month + "-01") < 0 || e.getDate().compareTo(month + "-28") > 0);
+            }
+            if (random.nextInt(3) == 0) {
+                String category = categories[random.nextInt(categories.length)];
+                query.inCategories(category);
+                expected.removeIf(e -> !e.getCategory().equals(category));
+            }
+            if (random.nextInt(3) == 0) {
+                double min = random.nextInt(200);
+                query.amountAtLeast(min);
+                expected.removeIf(e -> e.getAmount() < min);
+            }
+            // A stable sort keeps ties in the order the expenses were added, also when descending
+            expected.sort(largest ? order.reversed() : order);
+            if (expected.size() > k) {
+                expected.subList(k, expected.size()).clear();
+            }
+            ArrayList<Expense> actual = (largest ? query.top(k, order) : query.bottom(k, order)).list();
+            mismatches += same(actual, expected) ? 0 : 1;
+        }
+        System.out.println((mismatches == 0 ? "✅" : "❌") + " Mismatched queries: " + mismatches + " of " + queries);
+    }
+
+    private static boolean same(ArrayList<Expense> actual, ArrayList<Expense> expected) {
+        if (actual.size() != expected.size()) {
+            return false;
+        }
+        for (int i = 0; i < actual.size(); i++) {
+            Expense a = actual.get(i);
+            Expense b = expected.get(i);
+            if (a.getEpochDay() != b.getEpochDay() || a.getCents() != b.getCents()
+                    || !a.getCategory().equals(b.getCategory())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Test Plans
+    private static void testPlans() {
+        System.out.println("\n=== Testing Plans ===");
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(21).generateStore(100_000));
+        System.out.println(tracker.query().top(50, Expense.BY_AMOUNT).explain());
+        System.out.println("Expected plan: amount index -> filter none on columns -> amount order from index descending -> limit 50");
+        System.out.println(tracker.query().between("2020-01-01", "2020-03-31").top(50, Expense.BY_AMOUNT).explain());
+        System.out.println("Expected plan: amount index -> filter date on columns -> amount order from index descending -> limit 50");
+        System.out.println(tracker.query().inCategories("Travel").top(10, Expense.BY_DATE).explain());
+        System.out.println("Expected plan: date index -> filter category on columns -> date order from index descending -> limit 10");
+        System.out.println(tracker.query().inCategories("Travel").amountAtLeast(900).top(10, Expense.BY_DATE).explain());
+        System.out.println("Expected plan: amount index (6 rows) -> filter category on columns -> top 10 by heap on columns descending -> limit 10");
+    }
+
+    // Test Keyset Pagination
+    private static void testPagination() {
+        System.out.println("\n=== Testing Keyset Pagination ===");
+        ExpenseTracker tracker = new ExpenseTracker();
+        for (int i = 0; i < 10; i++) {
+            tracker.addExpense("2024-05-0" + (1 + i % 3), 10 * (i % 4), "Food"); // Many ties on both keys
+        }
+        ArrayList<Expense> sorted = tracker.query().orderBy(Expense.BY_AMOUNT).descending().list();
+        ArrayList<Expense> paged = new ArrayList<>();
+        ExpenseQuery.Position next = null;
+        int pages = 0;
+        do {
+            ExpenseQuery.Page page = tracker.query().top(3, Expense.BY_AMOUNT).after(next).page();
+            paged.addAll(page.getExpenses());
+            next = page.getNext();
+            pages++;
+        } while (next != null);
+        System.out.println("Pages: " + pages + " (Expected: 4)");
+        System.out.println((same(paged, sorted) ? "✅" : "❌") + " Pages concatenate to the sorted result");
+
+        ExpenseQuery.Page first = tracker.query().bottom(4, Expense.BY_DATE).page();
+        System.out.println("First page: " + first.getExpenses().size() + " ending at " + first.getNext().toString());
+        tracker.deleteExpense(0); // A row already shown on the first page
+        tracker.addExpense("2024-04-30", 1, "Food"); // Sorts before the position: not on later pages
+        ExpenseQuery.Page second = tracker.query().bottom(4, Expense.BY_DATE)
+                .after(ExpenseQuery.Position.parse(first.getNext().toString())).page();
+        System.out.println("Second page: " + second.getExpenses());
+        System.out.println("Expected: 2024-05-02 x3 then 2024-05-03, nothing before 2024-05-02");
+        try {
+            tracker.query().after(first.getNext()).list();
+            System.out.println("❌ Keyset position without a column order was accepted");
+        } catch (UnsupportedOperationException e) {
+            System.out.println("✅ Rejected: " + e.getMessage());
+        }
+    }
+
+    // Test Per-Category Top-K
+    private static void testPerCategory() {
+        System.out.println("\n=== Testing Per-Category Top-K ===");
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(22).generateStore(1_000_000));
+        long start = System.nanoTime();
+        LinkedHashMap<String, ArrayList<Expense>> top = tracker.topByCategory(5, Expense.BY_AMOUNT, true);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        int mismatches = 0;
+        for (Map.Entry<String, ArrayList<Expense>> entry : top.entrySet()) {
+            ArrayList<Expense> expected = tracker.searchByCategory(entry.getKey());
+            expected.sort(Expense.BY_AMOUNT.reversed());
+            mismatches += same(entry.getValue(), new ArrayList<>(expected.subList(0, Math.min(5, expected.size()))))
+                    ? 0 : 1;
+        }
+        System.out.println("Ranked " + top.size() + " categories in " + millis + " ms");
+        System.out.println((mismatches == 0 ? "✅" : "❌") + " Categories that differ from a full sort: " + mismatches);
+        LinkedHashMap<String, ArrayList<Expense>> oldest = tracker.topByCategory(2, Expense.BY_DATE, false);
+        System.out.println("Oldest per category, first: " + oldest.entrySet().iterator().next());
+    }
+
+    // Test Speed Against Sort-and-Truncate
+    private static void testSpeed() {
+        System.out.println("\n=== Testing Speed Against Sort-and-Truncate ===");
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(23).generateStore(3_000_000));
+        ArrayList<Expense> quarter = null;
+        ArrayList<Expense> top = null;
+        long sortNanos = Long.MAX_VALUE;
+        long topNanos = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            quarter = tracker.getExpensesInDateRange("2020-01-01", "2020-03-31");
+            quarter.sort(Expense.BY_AMOUNT.reversed());
+            quarter.subList(50, quarter.size()).clear();
+            sortNanos = Math.min(sortNanos, System.nanoTime() - start);
+            tracker.getQueryCache().clear();
+
+            start = System.nanoTime();
+            top = tracker.query().between("2020-01-01", "2020-03-31").top(50, Expense.BY_AMOUNT).list();
+            topNanos = Math.min(topNanos, System.nanoTime() - start);
+        }
+        System.out.printf("50 largest in a quarter: %.1f ms by sort, %.1f ms by top-K%n", sortNanos / 1e6, topNanos / 1e6);
+        System.out.println((same(top, quarter) ? "✅" : "❌") + " Same 50 expenses");
+
+        long start = System.nanoTime();
+        ArrayList<Expense> overall = tracker.query().top(50, Expense.BY_AMOUNT).list();
+        System.out.printf("50 largest overall from the amount index: %.2f ms (%d rows)%n",
+                (System.nanoTime() - start) / 1e6, overall.size());
+    }
+}
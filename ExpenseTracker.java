@@ -1,12 +1,25 @@
 
 import java.io.FileWriter; // To write data to a file
-import java.io.FileReader; // To read data from a file
 import java.io.BufferedWriter; // To write data efficiently
 import java.io.File;
-import java.io.BufferedReader; // To read data efficiently
 import java.io.IOException; // To handle file I/O exceptions
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages a list of expenses, allowing operations such as adding, viewing,
@@ -18,14 +31,102 @@ import java.util.Scanner;
  */
 public class ExpenseTracker {
 
+    // Deleted rows are compacted away once they make up this share of the store
+    private static final double COMPACTION_RATIO = 0.25;
+    private static final int CACHE_ENTRIES = 256; // Default query cache bounds
+    private static final long CACHE_BYTES = 64L << 20;
+    private static final int PARALLEL_TOP_THRESHOLD = 100_000; // Rows below which per-category top-K runs on one thread
+
     // Attributes
-    private ArrayList<Expense> expenses; // List to store Expense objects
+    private final ExpenseStore store; // Columnar storage for expense rows
+    private final ExpenseIndexes indexes = new ExpenseIndexes(); // Lookup indexes over the store
+    private final ExpenseAggregates aggregates; // Running totals over the store
+    private ExpenseFileLoader.LoadStats lastLoadStats; // Throughput of the most recent load
+    private final ExpenseMetrics metrics = new ExpenseMetrics(); // Latencies and row counts per operation
+    private ExpenseQueryCache cache = new ExpenseQueryCache(CACHE_ENTRIES, CACHE_BYTES); // Repeated search results
+
+    // Write-ahead journal, when enabled
+    private volatile ExpenseJournal journal;
+    private String journalBaseFile;
+    private ScheduledExecutorService compactor;
 
     /**
-     * Constructor to initialize the expense list.
+     * The outcome of a batch add: how many rows were added, and the position
+     * and reason of each row that was rejected.
+     */
+    public static class BatchResult {
+        private int accepted;
+        private final IntList rejectedRows = new IntList();
+        private final ArrayList<String> reasons = new ArrayList<>();
+
+        private BatchResult() {
+        }
+
+        private void reject(int row, String reason) {
+            rejectedRows.add(row);
+            reasons.add(reason);
+        }
+
+        /**
+         * Returns the number of rows that were added.
+         * 
+         * @return The accepted count.
+         */
+        public int getAccepted() {
+            return accepted;
+        }
+
+        /**
+         * Returns the number of rows that were rejected.
+         * 
+         * @return The rejected count.
+         */
+        public int getRejected() {
+            return rejectedRows.size();
+        }
+
+        /**
+         * Returns the position in the batch of a rejected row.
+         * 
+         * @param i The rejection, from 0 to getRejected() - 1.
+         * @return The row's position in the input.
+         */
+        public int getRejectedRow(int i) {
+            return rejectedRows.get(i);
+        }
+
+        /**
+         * Returns why a row was rejected.
+         * 
+         * @param i The rejection, from 0 to getRejected() - 1.
+         * @return The reason, as the single-row addExpense would have reported it.
+         */
+        public String getReason(int i) {
+            return reasons.get(i);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Added %d expenses, rejected %d", accepted, rejectedRows.size());
+        }
+    }
+
+    /**
+     * Constructor to initialize an empty tracker.
      */
     public ExpenseTracker() {
-        expenses = new ArrayList<>();
+        this(new ExpenseStore());
+    }
+
+    /**
+     * Constructor to initialize the tracker on top of a given store.
+     * 
+     * @param store The storage engine holding the expense rows.
+     */
+    public ExpenseTracker(ExpenseStore store) {
+        this.store = store;
+        this.aggregates = new ExpenseAggregates(store);
+        indexes.rebuild(store);
     }
 
     /**
@@ -36,49 +137,281 @@ public class ExpenseTracker {
      * @param category The category of the expense.
      */
     public void addExpense(String date, double amount, String category) {
-        Expense expense = new Expense(date, amount, category);
-        expenses.add(expense);
+        long start = metrics.start();
+        try {
+            Expense expense = new Expense(date, amount, category); // Parses and validates once
+            int day = expense.getEpochDay();
+            long cents = expense.getCents();
+            ExpenseJournal log = journal;
+            if (log == null) {
+                appendRow(day, cents, category);
+                return;
+            }
+            synchronized (log) {
+                try {
+                    log.logAdd(day, cents, category);
+                } catch (IOException e) {
+                    System.err.println("Error writing to journal, expense not added: " + e.getMessage());
+                    return;
+                }
+                appendRow(day, cents, category);
+            }
+        } finally {
+            metrics.stop(ExpenseMetrics.Operation.ADD, start); // Failed adds count too
+        }
+    }
+
+    private void appendRow(int epochDay, long cents, String category) {
+        store.add(epochDay, cents, store.encodeCategory(category));
+        int row = store.size() - 1;
+        indexes.onAdd(row, epochDay, cents, store.categoryCodeAt(row));
+        aggregates.onAdd(epochDay, cents, store.categoryCodeAt(row));
+        cache.invalidate(epochDay, store.categoryCodeAt(row));
+    }
+
+    /**
+     * Adds a batch of expenses given as columns. Every row is checked with
+     * the same rules as {@link #addExpense}; invalid rows are reported in the
+     * result instead of throwing, and the valid ones are added together, with
+     * the indexes and aggregates updated once for the whole batch.
+     * 
+     * @param dates      The dates (YYYY-MM-DD).
+     * @param amounts    The amounts.
+     * @param categories The categories.
+     * @return Which rows were added and why the others were rejected.
+     * @throws IllegalArgumentException if the arrays differ in length.
+     */
+    public BatchResult addExpenses(String[] dates, double[] amounts, String[] categories) {
+        int count = dates.length;
+        if (amounts.length != count || categories.length != count) {
+            throw new IllegalArgumentException("Column arrays must have the same length");
+        }
+        long start = metrics.start();
+        BatchResult result = new BatchResult();
+        int[] days = new int[count];
+        long[] cents = new long[count];
+        int[] accepted = new int[count];
+        int valid = 0;
+        for (int i = 0; i < count; i++) {
+            String reason = null;
+            if (ExpenseStore.isBlank(dates[i])) {
+                reason = "Date cannot be null or empty";
+            } else if (!Double.isFinite(amounts[i])) {
+                reason = "Amount must be a finite number: " + amounts[i];
+            } else if (amounts[i] < 0) {
+                reason = "Amount cannot be negative";
+            } else if (ExpenseStore.isBlank(categories[i])) {
+                reason = "Category cannot be null or empty";
+            } else if ((days[valid] = ExpenseDates.parse(dates[i])) == ExpenseDates.INVALID) {
+                reason = "Date must be in YYYY-MM-DD format: " + dates[i];
+            }
+            if (reason != null) {
+                result.reject(i, reason);
+                continue;
+            }
+            cents[valid] = ExpenseStore.toCents(amounts[i]);
+            accepted[valid++] = i;
+        }
+        int[] codes = new int[valid];
+        for (int i = 0; i < valid; i++) {
+            codes[i] = store.encodeCategory(categories[accepted[i]]);
+        }
+        appendRows(days, cents, codes, accepted, valid, result);
+        metrics.stop(ExpenseMetrics.Operation.ADD_BATCH, start);
+        return result;
+    }
+
+    /**
+     * Adds a batch of expenses from an iterator. Expense objects are already
+     * validated, so their encoded fields are copied straight into columns and
+     * added as one block, as by {@link #addExpenses(String[], double[], String[])}.
+     * 
+     * @param expenses The expenses to add.
+     * @return Which rows were added; only a journal failure can reject rows.
+     */
+    public BatchResult addExpenses(Iterator<Expense> expenses) {
+        long start = metrics.start();
+        int[] days = new int[16];
+        long[] cents = new long[16];
+        int[] codes = new int[16];
+        int count = 0;
+        while (expenses.hasNext()) {
+            Expense expense = expenses.next();
+            if (count == days.length) {
+                days = Arrays.copyOf(days, count * 2);
+                cents = Arrays.copyOf(cents, count * 2);
+                codes = Arrays.copyOf(codes, count * 2);
+            }
+            days[count] = expense.getEpochDay();
+            cents[count] = expense.getCents();
+            codes[count++] = store.encodeCategory(expense.getCategory());
+        }
+        int[] accepted = new int[count];
+        for (int i = 0; i < count; i++) {
+            accepted[i] = i;
+        }
+        BatchResult result = new BatchResult();
+        appendRows(days, cents, codes, accepted, count, result);
+        metrics.stop(ExpenseMetrics.Operation.ADD_BATCH, start);
+        return result;
+    }
+
+    private void appendRows(int[] days, long[] cents, int[] codes, int[] accepted, int count, BatchResult result) {
+        ExpenseJournal log = journal;
+        if (log == null) {
+            appendBlock(days, cents, codes, count);
+            result.accepted += count;
+            return;
+        }
+        synchronized (log) {
+            int logged = 0;
+            try {
+                for (; logged < count; logged++) {
+                    log.logAdd(days[logged], cents[logged], store.categoryName(codes[logged]));
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing to journal, " + (count - logged) + " expenses not added: "
+                        + e.getMessage());
+                for (int i = logged; i < count; i++) {
+                    result.reject(accepted[i], "Error writing to journal");
+                }
+            }
+            // Rows handed to the journal are applied, so memory matches what a replay would rebuild
+            appendBlock(days, cents, codes, logged);
+            result.accepted += logged;
+        }
+    }
+
+    private void appendBlock(int[] days, long[] cents, int[] codes, int count) {
+        int first = store.size();
+        store.addAll(days, cents, codes, count);
+        indexes.onAddAll(store, first);
+        aggregates.onAddAll(first);
+        if (count > 0 && cache.size() > 0) {
+            int minDay = Integer.MAX_VALUE;
+            int maxDay = Integer.MIN_VALUE;
+            boolean[] categories = new boolean[store.categoryCount()];
+            for (int i = 0; i < count; i++) {
+                minDay = Math.min(minDay, days[i]);
+                maxDay = Math.max(maxDay, days[i]);
+                categories[codes[i]] = true;
+            }
+            cache.invalidate(minDay, maxDay, categories);
+        }
     }
 
     /**
      * Displays all expenses in the tracker.
      */
     public void viewExpenses() {
-        if (expenses.isEmpty()) {
+        if (store.isEmpty()) {
             System.out.println("No expenses to display");
             return;
         }
-        for (int i = 0; i < expenses.size(); i++) {
-            System.out.println(expenses.get(i));
+        for (int i = 0; i < store.size(); i++) {
+            if (!store.isDeleted(i)) {
+                System.out.println(store.get(i));
+            }
         }
     }
 
     /**
-     * Deletes an expense by its index.
+     * Deletes an expense by its index. Later expenses move down one index,
+     * as in a list, but the row itself is only marked deleted, so a delete
+     * takes O(log n) however large the tracker is.
      * 
      * @param index The index of the expense to delete.
      */
     public void deleteExpense(int index) {
 
-        if (index >= 0 && index < expenses.size()) {
-            expenses.remove(index);
+        if (index >= 0 && index < store.liveCount()) {
+            deleteRow(store.rowAtPosition(index), index);
         } else {
             System.out.println("Invalid index. Cannot delete expense.");
         }
     }
 
+    /**
+     * Deletes an expense by its stable id. Unlike an index, an id keeps
+     * pointing at the same expense however many others are deleted.
+     * 
+     * @param id The id returned by {@link #getExpenseId(int)}.
+     * @return True if the expense was deleted, false if no expense has that id.
+     */
+    public boolean deleteById(long id) {
+        int row = store.findRowById(id);
+        if (row < 0) {
+            return false;
+        }
+        return deleteRow(row, store.positionOf(row));
+    }
+
+    /**
+     * Returns the stable id of the expense at an index. Ids never change,
+     * even when later deletes and compactions move the expense; they are not
+     * kept in saved files, so they last for the life of this tracker.
+     * 
+     * @param index The index of the expense.
+     * @return The expense's id.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public long getExpenseId(int index) {
+        return store.idAt(store.rowAtPosition(index));
+    }
+
+    private boolean deleteRow(int row, int position) {
+        long start = metrics.start();
+        try {
+            ExpenseJournal log = journal;
+            if (log == null) {
+                removeRow(row);
+                return true;
+            }
+            synchronized (log) {
+                try {
+                    log.logDelete(position); // Replay deletes by position, as deleteExpense numbers them
+                } catch (IOException e) {
+                    System.err.println("Error writing to journal, expense not deleted: " + e.getMessage());
+                    return false;
+                }
+                removeRow(row);
+            }
+            return true;
+        } finally {
+            metrics.stop(ExpenseMetrics.Operation.DELETE, start); // Failed deletes count too
+        }
+    }
+
+    private void removeRow(int row) {
+        indexes.onRemove(row, store.dayAt(row), store.centsAt(row), store.categoryCodeAt(row));
+        aggregates.onRemove(store.dayAt(row), store.centsAt(row), store.categoryCodeAt(row));
+        cache.invalidate(store.dayAt(row), store.categoryCodeAt(row));
+        store.delete(row);
+        if (store.deletedCount() > store.size() * COMPACTION_RATIO) {
+            compact();
+        }
+    }
+
+    /**
+     * Drops deleted rows from storage and rebuilds the indexes over the
+     * remaining ones. Runs by itself once deleted rows pass a quarter of the
+     * store, so the cost is spread over the deletes that made it necessary.
+     */
+    public void compact() {
+        synchronized (storeLock()) {
+            if (store.compact() > 0) {
+                indexes.rebuild(store);
+            }
+        }
+    }
+
     /**
      * Calculates and returns the total amount of all expenses.
      * 
      * @return The total sum of all expenses.
      */
     public double getTotalExpenses() {
-
-        double total = 0.0;
-        for (int i = 0; i < expenses.size(); i++) {
-            total += expenses.get(i).getAmount();
-        }
-        return total;
+        return ExpenseStore.fromCents(aggregates.getTotalCents());
     }
 
     /**
@@ -87,17 +420,23 @@ public class ExpenseTracker {
      * @param filename The name of the file where expenses will be saved.
      */
     public void saveToFile(String filename) {
-
+        long start = metrics.start();
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            for (Expense expense : expenses) {
-                writer.write(expense.getDate() + "," + expense.getAmount() + "," + expense.getCategory());
+            for (int i = 0; i < store.size(); i++) {
+                if (store.isDeleted(i)) {
+                    continue;
+                }
+                writer.write(ExpenseStore.fromEpochDay(store.dayAt(i)) + "," + ExpenseStore.fromCents(store.centsAt(i))
+                        + "," + store.categoryName(store.categoryCodeAt(i)));
                 writer.newLine(); // Move to the next line for each expense
             }
-            System.out.println("Expenses saved successfully to " + filename);
         } catch (IOException e) {
             System.err.println("Error in saving to file: " + e.getMessage());
+            return;
         }
-
+        metrics.recordWrite(store.liveCount(), new File(filename).length());
+        metrics.stop(ExpenseMetrics.Operation.SAVE_FILE, start);
+        System.out.println("Expenses saved successfully to " + filename);
     }
 
     /**
@@ -106,31 +445,331 @@ public class ExpenseTracker {
      * @param filename The name of the file to load expenses from.
      */
     public void loadFromFile(String filename) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            expenses.clear(); // Clear existing data to avoid duplicates
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(","); // Split line by commas
-                if (parts.length != 3) {
-                    System.err.println("Skipping malformed line: " + line);
-                    continue;
+        loadFromFile(filename, 1);
+    }
+
+    /**
+     * Loads expenses from a file into the tracker, parsing the file on several
+     * threads. The result is identical to a single-threaded load.
+     * 
+     * @param filename    The name of the file to load expenses from.
+     * @param parallelism The number of threads to parse with.
+     */
+    public void loadFromFile(String filename, int parallelism) {
+        long start = metrics.start();
+        synchronized (storeLock()) {
+            try {
+                // Clears existing data once the file is open, then parses it straight from mapped bytes
+                lastLoadStats = parallelism > 1 ? ExpenseFileLoader.loadParallel(filename, store, parallelism)
+                        : ExpenseFileLoader.load(filename, store);
+                metrics.recordRead(lastLoadStats.getRows(), lastLoadStats.getBytes());
+                System.out.println("Expenses loaded successfully from " + filename);
+                System.out.println(lastLoadStats);
+            } catch (IOException e) {
+                System.err.println("Error loading from file: " + e.getMessage());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number format in file: " + e.getMessage());
+            } finally {
+                // Rebuild indexes and aggregates in one pass over whatever was loaded
+                indexes.rebuild(store);
+                aggregates.rebuild();
+                cache.clear();
+                foldJournalAfterLoad();
+                metrics.stop(ExpenseMetrics.Operation.LOAD_FILE, start);
+            }
+        }
+    }
+
+    /**
+     * Saves all expenses to a binary snapshot file, which loads much faster
+     * than the text format.
+     * 
+     * @param filename The name of the snapshot file.
+     */
+    public void saveSnapshot(String filename) {
+        try {
+            long start = metrics.start();
+            long bytes = ExpenseSnapshot.save(store, filename);
+            metrics.recordWrite(store.liveCount(), bytes);
+            metrics.stop(ExpenseMetrics.Operation.SAVE_SNAPSHOT, start);
+            System.out.println("Snapshot of " + store.liveCount() + " expenses (" + bytes + " bytes) saved to " + filename);
+        } catch (IOException e) {
+            System.err.println("Error in saving snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads expenses from a binary snapshot file written by {@link #saveSnapshot}.
+     * The tracker is left unchanged if the file is missing or corrupt.
+     * 
+     * @param filename The name of the snapshot file.
+     */
+    public void loadSnapshot(String filename) {
+        try {
+            long start = System.nanoTime();
+            long timer = metrics.start();
+            int rows;
+            synchronized (storeLock()) {
+                rows = ExpenseSnapshot.load(store, filename);
+                indexes.rebuild(store);
+                aggregates.rebuild();
+                cache.clear();
+                foldJournalAfterLoad();
+            }
+            metrics.recordRead(rows, new File(filename).length());
+            metrics.stop(ExpenseMetrics.Operation.LOAD_SNAPSHOT, timer);
+            System.out.printf("Snapshot of %d expenses loaded from %s in %.1f ms%n", rows, filename,
+                    (System.nanoTime() - start) / 1e6);
+        } catch (IOException e) {
+            System.err.println("Error loading snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves all expenses to a compressed column file, several times smaller
+     * than the text format. Rows are written in date order.
+     *
+     * @param filename The name of the column file.
+     */
+    public void saveColumnFile(String filename) {
+        try {
+            long start = metrics.start();
+            long bytes = ExpenseColumnFile.save(store, filename);
+            metrics.recordWrite(store.liveCount(), bytes);
+            metrics.stop(ExpenseMetrics.Operation.SAVE_COLUMN_FILE, start);
+            System.out.println(store.liveCount() + " expenses (" + bytes + " bytes) saved to " + filename);
+        } catch (IOException e) {
+            System.err.println("Error in saving column file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads every expense from a column file written by {@link #saveColumnFile}.
+     *
+     * @param filename The name of the column file.
+     */
+    public void loadColumnFile(String filename) {
+        loadColumnFile(filename, null, null);
+    }
+
+    /**
+     * Loads the expenses from a column file that fall in a date range and,
+     * if any are given, a set of categories, skipping the blocks of the file
+     * that hold none of them. The tracker is left unchanged if the file is
+     * missing or corrupt or a date cannot be parsed.
+     *
+     * @param filename   The name of the column file.
+     * @param startDate  The start date (inclusive), or null.
+     * @param endDate    The end date (inclusive), or null.
+     * @param categories The categories to load; none to load every category.
+     */
+    public void loadColumnFile(String filename, String startDate, String endDate, String... categories) {
+        int startDay;
+        int endDay;
+        try {
+            startDay = startDate == null ? Integer.MIN_VALUE : ExpenseStore.toEpochDay(startDate);
+            endDay = endDate == null ? Integer.MAX_VALUE : ExpenseStore.toEpochDay(endDate);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error loading column file: " + e.getMessage());
+            return;
+        }
+        ExpenseStore loaded = new ExpenseStore(store.categories());
+        long start = System.nanoTime();
+        long timer = metrics.start();
+        ExpenseColumnFile.ReadStats stats;
+        try {
+            stats = ExpenseColumnFile.load(loaded, filename, startDay, endDay,
+                    categories.length == 0 ? null : categories);
+        } catch (IOException e) {
+            System.err.println("Error loading column file: " + e.getMessage());
+            return;
+        }
+        // Decoded into a scratch store first, so a corrupt block cannot leave a partial load behind
+        synchronized (storeLock()) {
+            store.clear();
+            store.ensureCapacity(loaded.size());
+            for (int row = 0; row < loaded.size(); row++) {
+                store.add(loaded.dayAt(row), loaded.centsAt(row), loaded.categoryCodeAt(row));
+            }
+            indexes.rebuild(store);
+            aggregates.rebuild();
+            cache.clear();
+            foldJournalAfterLoad();
+        }
+        lastLoadStats = new ExpenseFileLoader.LoadStats(stats.getRows(), stats.getBytes(), System.nanoTime() - start);
+        metrics.recordRead(stats.getRows(), stats.getBytes());
+        metrics.stop(ExpenseMetrics.Operation.LOAD_COLUMN_FILE, timer);
+        System.out.println(stats + " from " + filename);
+    }
+
+    /**
+     * Turns on journal mode. The tracker is first recovered from the base
+     * snapshot (if it exists) plus every valid record in the journal; after
+     * that, each addExpense and deleteExpense appends a record to the journal
+     * instead of requiring a full save.
+     * 
+     * @param baseFile    The snapshot file the journal is folded into on compaction.
+     * @param journalFile The journal file.
+     * @param policy      When journal records are forced to disk.
+     * @param batchSize   How many records are written together in one group commit.
+     */
+    public void openJournal(String baseFile, String journalFile, ExpenseJournal.SyncPolicy policy, int batchSize) {
+        closeJournal(); // Also stops the compactor, so recovery below has the store to itself
+        try {
+            long baseChecksum = 0;
+            if (fileExists(baseFile)) {
+                ExpenseSnapshot.load(store, baseFile);
+                baseChecksum = ExpenseSnapshot.readChecksum(baseFile);
+            } else {
+                store.clear();
+            }
+            int[] replayed = new int[1];
+            ExpenseJournal opened = ExpenseJournal.recover(journalFile, baseChecksum, new ExpenseJournal.Handler() {
+                @Override
+                public void add(int epochDay, long cents, String category) {
+                    store.add(epochDay, cents, store.encodeCategory(category));
+                    replayed[0]++;
                 }
-                if (parts.length == 3) {
-                    String date = parts[0];
-                    double amount = Double.parseDouble(parts[1]); // Correct conversion
-                    String category = parts[2];
-                    expenses.add(new Expense(date, amount, category));
+
+                @Override
+                public void delete(int index) {
+                    if (index >= 0 && index < store.liveCount()) {
+                        store.delete(store.rowAtPosition(index));
+                    }
+                    replayed[0]++;
                 }
+            }, policy, batchSize);
+            store.compact();
+            indexes.rebuild(store);
+            aggregates.rebuild();
+            cache.clear();
+            journalBaseFile = baseFile;
+            journal = opened;
+            System.out.println("Recovered " + store.liveCount() + " expenses (" + replayed[0] + " journal records replayed)");
+        } catch (IOException e) {
+            indexes.rebuild(store);
+            aggregates.rebuild();
+            cache.clear();
+            System.err.println("Error opening journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes any journal records still waiting for their group commit.
+     */
+    public void commitJournal() {
+        ExpenseJournal log = journal;
+        if (log == null) {
+            return;
+        }
+        try {
+            log.commit();
+        } catch (IOException e) {
+            System.err.println("Error committing journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Folds the journal into a new base snapshot and starts an empty journal.
+     * Writers are blocked while the snapshot is written: every method that
+     * changes the store holds {@link #storeLock()} while it does so.
+     */
+    public void compactJournal() {
+        ExpenseJournal log = journal;
+        if (log == null) {
+            return;
+        }
+        synchronized (log) {
+            try {
+                ExpenseSnapshot.save(store, journalBaseFile); // Replaced atomically, so a crash keeps the old base
+                log.reset(ExpenseSnapshot.readChecksum(journalBaseFile));
+            } catch (IOException e) {
+                System.err.println("Error compacting journal: " + e.getMessage());
             }
-            System.out.println("Expenses loaded successfully from " + filename);
+        }
+    }
+
+    /**
+     * Compacts the journal periodically on a background thread.
+     * 
+     * @param period The time between compactions.
+     * @param unit   The unit of the period.
+     */
+    public void startJournalCompaction(long period, TimeUnit unit) {
+        stopJournalCompaction();
+        compactor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "expense-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compactJournal();
+            } catch (RuntimeException e) {
+                // An exception escaping the task would silently cancel every later compaction
+                System.err.println("Error compacting journal: " + e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Commits and closes the journal, turning journal mode off.
+     */
+    public void closeJournal() {
+        stopJournalCompaction();
+        ExpenseJournal log = journal;
+        if (log == null) {
+            return;
+        }
+        journal = null;
+        try {
+            log.close();
         } catch (IOException e) {
-            System.err.println("Error loading from file: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            System.err.println("Invalid number format in file: " + e.getMessage());
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+    }
+
+    private void stopJournalCompaction() {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            compactor = null;
         }
     }
 
+    /**
+     * Returns the lock held while the store changes. In journal mode it is
+     * the journal, which the background compactor also holds while it reads
+     * the store; otherwise nothing else reads the store concurrently.
+     */
+    private Object storeLock() {
+        ExpenseJournal log = journal;
+        return log == null ? this : log;
+    }
+
+    /**
+     * A bulk load replaces the data wholesale, so the journal cannot describe
+     * it; fold the new state into the base right away.
+     */
+    private void foldJournalAfterLoad() {
+        if (journal != null) {
+            compactJournal();
+        }
+    }
+
+    /**
+     * Returns row, byte and throughput figures for the most recent successful load.
+     * 
+     * @return The load statistics, or null if nothing has been loaded.
+     */
+    public ExpenseFileLoader.LoadStats getLastLoadStats() {
+        return lastLoadStats;
+    }
+
     /**
      * Main method for testing the ExpenseTracker class.
      */
@@ -151,6 +790,8 @@ public class ExpenseTracker {
             System.out.println("5. Generate Reports");
             System.out.println("   a. Total by Category");
             System.out.println("   b. Expenses in Date Range");
+            System.out.println("   c. Expenses in Month");
+            System.out.println("   d. Category x Period Summary");
             System.out.println("6. Save Expenses to File");
             System.out.println("7. Load Expenses from File");
             System.out.println("8. Exit");
@@ -219,6 +860,47 @@ public class ExpenseTracker {
                         }
                     }
                     break;
+                case "5c":
+                    YearMonth reportMonth = null;
+                    while (reportMonth == null) {
+                        System.out.println("Enter month (YYYY-MM): ");
+                        try {
+                            reportMonth = YearMonth.parse(scanner.nextLine().trim());
+                        } catch (DateTimeParseException e) {
+                            System.out.println("❌ Invalid month. Please try again.");
+                        }
+                    }
+                    ExpenseRange monthExpenses = tracker.viewMonth(reportMonth.getYear(), reportMonth.getMonthValue());
+                    for (Expense expense : monthExpenses) {
+                        System.out.println(expense);
+                    }
+                    System.out.println(monthExpenses.size() + " expenses, total $"
+                            + tracker.getTotalByMonth(reportMonth.getYear(), reportMonth.getMonthValue()));
+                    break;
+                case "5d":
+                    System.out.println("Group by period (all, day, week, month, year): ");
+                    ExpenseReport.Period period;
+                    try {
+                        period = ExpenseReport.Period.valueOf(scanner.nextLine().trim().toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Invalid period.");
+                        break;
+                    }
+                    System.out.println("Also group by category? (y/n): ");
+                    boolean byCategory = scanner.nextLine().trim().equalsIgnoreCase("y");
+                    ExpenseReport report = tracker.generateReport(byCategory, period, 50, 90, 99);
+                    System.out.println(report);
+                    System.out.println("Export to CSV? (y/n): ");
+                    if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                        String reportFilename = getValidFilename(scanner, "export");
+                        try {
+                            report.exportCsv(reportFilename);
+                            System.out.println("Report exported to " + reportFilename);
+                        } catch (IOException e) {
+                            System.err.println("Error exporting report: " + e.getMessage());
+                        }
+                    }
+                    break;
                 case "6":
                     String saveFilename = getValidFilename(scanner, "save");
                     tracker.saveToFile(saveFilename);
@@ -252,13 +934,29 @@ public class ExpenseTracker {
      * @return List of matching expenses.
      */
     public ArrayList<Expense> searchByDate(String date) {
-        ArrayList<Expense> result = new ArrayList<>();
-        for (Expense expense : expenses) {
-            if (expense.getDate().equals(date)) {
-                result.add(expense);
-            }
+        int day;
+        try {
+            day = ExpenseStore.toEpochDay(date);
+        } catch (IllegalArgumentException e) {
+            return new ArrayList<>(); // No stored row can match an unparseable date
         }
-        return result;
+        return searchDays(ExpenseMetrics.Operation.SEARCH_DATE, day, day);
+    }
+
+    /**
+     * Returns a cursor over the expenses on a date, without materializing them.
+     * 
+     * @param date The date to search for.
+     * @return A cursor over the matching expenses.
+     */
+    public ExpenseCursor cursorByDate(String date) {
+        int day;
+        try {
+            day = ExpenseStore.toEpochDay(date);
+        } catch (IllegalArgumentException e) {
+            return ExpenseCursor.empty(store); // No stored row can match an unparseable date
+        }
+        return viewRange(ExpenseMetrics.Operation.SEARCH_DATE, day, day).cursor();
     }
 
     /**
@@ -268,14 +966,32 @@ public class ExpenseTracker {
      * @return List of matching expenses.
      */
     public ArrayList<Expense> searchByCategory(String category) {
-        ArrayList<Expense> result = new ArrayList<>();
-        for (Expense expense : expenses) {
-            if (expense.getCategory().equals(category)) {
-                result.add(expense);
-            }
+        int code = store.findCategory(category);
+        if (code < 0) {
+            return new ArrayList<>();
+        }
+        ArrayList<Expense> result = cache.getCategory(code);
+        if (result == null) {
+            result = cursorByCategory(category).toList();
+            cache.putCategory(code, result);
         }
         return result;
+    }
 
+    /**
+     * Returns a cursor over the expenses in a category, without materializing them.
+     * 
+     * @param category The category to search for.
+     * @return A cursor over the matching expenses.
+     */
+    public ExpenseCursor cursorByCategory(String category) {
+        long start = metrics.start();
+        int code = store.findCategory(category);
+        ExpenseCursor cursor = code < 0 ? ExpenseCursor.empty(store)
+                : ExpenseCursor.ofRows(store, indexes.rowsForCategory(code));
+        record(ExpenseMetrics.Operation.SEARCH_CATEGORY, ExpenseMetrics.Source.CATEGORY_INDEX, cursor.remaining(),
+                start);
+        return cursor;
     }
 
     /**
@@ -285,15 +1001,90 @@ public class ExpenseTracker {
      * @return List of matching expenses.
      */
     public ArrayList<Expense> searchByAmount(double amount) {
-        ArrayList<Expense> result = new ArrayList<>();
-        for (Expense expense : expenses) {
-            if (expense.getAmount() == amount) {
-                result.add(expense);
+        return cursorByAmount(amount).toList();
+    }
+
+    /**
+     * Returns a cursor over the expenses with an amount, without materializing them.
+     * 
+     * @param amount The amount to search for.
+     * @return A cursor over the matching expenses.
+     */
+    public ExpenseCursor cursorByAmount(double amount) {
+        long start = metrics.start();
+        ExpenseCursor cursor = ExpenseCursor.ofRows(store, indexes.rowsForAmount(ExpenseStore.toCents(amount)));
+        record(ExpenseMetrics.Operation.SEARCH_AMOUNT, ExpenseMetrics.Source.AMOUNT_INDEX, cursor.remaining(), start);
+        return cursor;
+    }
+
+    /**
+     * Starts a query that combines a date range, categories, amount bounds,
+     * a sort order and a limit.
+     * 
+     * @return A query matching every expense until criteria are added.
+     */
+    public ExpenseQuery query() {
+        return new ExpenseQuery(store, indexes, metrics);
+    }
+
+    /**
+     * Returns the largest or smallest expenses of every category in an
+     * order, for example the five biggest amounts in each category. Each
+     * category is ranked by its own top-K query, and on a large tracker the
+     * categories are ranked on all available cores at once.
+     * 
+     * @param count      The number of expenses to keep per category.
+     * @param comparator The order to rank by: Expense.BY_DATE or Expense.BY_AMOUNT for column speed.
+     * @param largest    True for the largest expenses, false for the smallest.
+     * @return The expenses of each category that has any, in rank order, keyed by category.
+     */
+    public LinkedHashMap<String, ArrayList<Expense>> topByCategory(int count, Comparator<Expense> comparator,
+            boolean largest) {
+        ArrayList<Callable<ArrayList<Expense>>> tasks = new ArrayList<>();
+        ArrayList<String> names = new ArrayList<>();
+        for (int code = 0; code < store.categoryCount(); code++) {
+            if (indexes.countForCategory(code) > 0) {
+                String name = store.categoryName(code);
+                ExpenseQuery query = query().inCategories(name);
+                names.add(name);
+                tasks.add(() -> (largest ? query.top(count, comparator) : query.bottom(count, comparator)).list());
+            }
+        }
+        indexes.prepare(); // The tasks only read the indexes, so deferred maintenance must be done first
+        LinkedHashMap<String, ArrayList<Expense>> result = new LinkedHashMap<>();
+        if (store.liveCount() < PARALLEL_TOP_THRESHOLD || tasks.size() < 2) {
+            for (int i = 0; i < tasks.size(); i++) {
+                try {
+                    result.put(names.get(i), tasks.get(i).call());
+                } catch (Exception e) {
+                    throw new IllegalStateException("Top-K query failed: " + e.getMessage(), e);
+                }
             }
+            return result;
+        }
+        try {
+            List<Future<ArrayList<Expense>>> futures = ForkJoinPool.commonPool().invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                result.put(names.get(i), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while ranking categories", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Top-K query failed: " + e.getCause().getMessage(), e.getCause());
         }
         return result;
     }
 
+    /**
+     * Returns a cursor over every expense, in the order they were added.
+     * 
+     * @return A cursor over all expenses.
+     */
+    public ExpenseCursor cursorAll() {
+        return ExpenseCursor.ofAll(store);
+    }
+
     /**
      * Calculates the total expenses for a specific category.
      * 
@@ -301,13 +1092,66 @@ public class ExpenseTracker {
      * @return The total sum of expenses in the given category.
      */
     public double getTotalByCategory(String category) {
-        double sum = 0.0;
-        for (Expense expense : expenses) {
-            if (expense.getCategory().equals(category)) {
-                sum += expense.getAmount();
-            }
+        int code = store.findCategory(category);
+        if (code < 0) {
+            return 0.0;
         }
-        return sum;
+        return ExpenseStore.fromCents(aggregates.getCategorySum(code));
+    }
+
+    /**
+     * Returns the number of expenses in a specific category.
+     * 
+     * @param category The category to count.
+     * @return The number of expenses in the category.
+     */
+    public int getCountByCategory(String category) {
+        int code = store.findCategory(category);
+        return code < 0 ? 0 : aggregates.getCategoryCount(code);
+    }
+
+    /**
+     * Returns the smallest expense amount in a specific category.
+     * 
+     * @param category The category to inspect.
+     * @return The smallest amount, or 0 if the category has no expenses.
+     */
+    public double getMinByCategory(String category) {
+        int code = store.findCategory(category);
+        return code < 0 ? 0.0 : ExpenseStore.fromCents(aggregates.getCategoryMin(code));
+    }
+
+    /**
+     * Returns the largest expense amount in a specific category.
+     * 
+     * @param category The category to inspect.
+     * @return The largest amount, or 0 if the category has no expenses.
+     */
+    public double getMaxByCategory(String category) {
+        int code = store.findCategory(category);
+        return code < 0 ? 0.0 : ExpenseStore.fromCents(aggregates.getCategoryMax(code));
+    }
+
+    /**
+     * Returns the total expenses recorded on a specific date.
+     * 
+     * @param date The date (YYYY-MM-DD).
+     * @return The total for that date.
+     */
+    public double getTotalByDate(String date) {
+        int day = ExpenseDates.parse(date);
+        return day == ExpenseDates.INVALID ? 0.0 : ExpenseStore.fromCents(aggregates.getDaySum(day));
+    }
+
+    /**
+     * Returns the total expenses recorded in a calendar month.
+     * 
+     * @param year  The year.
+     * @param month The month, from 1 to 12.
+     * @return The total for that month.
+     */
+    public double getTotalByMonth(int year, int month) {
+        return ExpenseStore.fromCents(aggregates.getMonthSum(year, month));
     }
 
     /**
@@ -318,18 +1162,145 @@ public class ExpenseTracker {
      * @return A list of expenses within the specified date range.
      */
     public ArrayList<Expense> getExpensesInDateRange(String startDate, String endDate) {
-        ArrayList<Expense> result = new ArrayList<>();
-        for (Expense expense : expenses) {
-            if (expense.getDate().compareTo(startDate) >= 0 && expense.getDate().compareTo(endDate) <= 0) {
-                result.add(expense);
-            }
+        int startDay;
+        int endDay;
+        try {
+            startDay = startDate == null ? Integer.MIN_VALUE : ExpenseStore.toEpochDay(startDate);
+            endDay = endDate == null ? Integer.MAX_VALUE : ExpenseStore.toEpochDay(endDate);
+        } catch (IllegalArgumentException e) {
+            return new ArrayList<>(); // No stored row can fall between unparseable dates
         }
-        if (result.isEmpty()) {
-            System.out.println("No expenses found in the given date range.");
+        return searchDays(ExpenseMetrics.Operation.DATE_RANGE, startDay, endDay);
+    }
+
+    private ArrayList<Expense> searchDays(ExpenseMetrics.Operation operation, int startDay, int endDay) {
+        ArrayList<Expense> result = cache.getDateRange(startDay, endDay);
+        if (result == null) {
+            result = viewRange(operation, startDay, endDay).cursor().toList();
+            cache.putDateRange(startDay, endDay, result);
         }
         return result;
     }
 
+    /**
+     * Returns a view of the expenses within a date range, in date order.
+     * Either bound may be null to leave that end of the range open.
+     * 
+     * @param startDate The start date of the range (inclusive), or null.
+     * @param endDate   The end date of the range (inclusive), or null.
+     * @return A view over the matching expenses.
+     */
+    public ExpenseRange viewDateRange(String startDate, String endDate) {
+        int startDay;
+        int endDay;
+        try {
+            startDay = startDate == null ? Integer.MIN_VALUE : ExpenseStore.toEpochDay(startDate);
+            endDay = endDate == null ? Integer.MAX_VALUE : ExpenseStore.toEpochDay(endDate);
+        } catch (IllegalArgumentException e) {
+            startDay = 0; // An empty range: no stored row can fall between unparseable dates
+            endDay = -1;
+        }
+        return viewRange(ExpenseMetrics.Operation.DATE_RANGE, startDay, endDay);
+    }
+
+    /**
+     * Returns a view of the expenses in one calendar month, in date order.
+     * 
+     * @param year  The year.
+     * @param month The month, from 1 to 12.
+     * @return A view over the matching expenses.
+     */
+    public ExpenseRange viewMonth(int year, int month) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return viewRange(ExpenseMetrics.Operation.DATE_RANGE, (int) yearMonth.atDay(1).toEpochDay(), (int) yearMonth.atEndOfMonth().toEpochDay());
+    }
+
+    /**
+     * Returns a view of the expenses in one calendar year, in date order.
+     * 
+     * @param year The year.
+     * @return A view over the matching expenses.
+     */
+    public ExpenseRange viewYear(int year) {
+        return viewRange(ExpenseMetrics.Operation.DATE_RANGE, (int) LocalDate.of(year, 1, 1).toEpochDay(),
+                (int) LocalDate.of(year, 12, 31).toEpochDay());
+    }
+
+    private ExpenseRange viewRange(ExpenseMetrics.Operation operation, int startDay, int endDay) {
+        long start = metrics.start();
+        DateIndex dateIndex = indexes.dateIndex();
+        ExpenseRange range = new ExpenseRange(store, dateIndex, dateIndex.lowerBound(startDay),
+                dateIndex.upperBound(endDay));
+        record(operation, ExpenseMetrics.Source.DATE_INDEX, range.size(), start);
+        return range;
+    }
+
+    /**
+     * Computes a group-by report over every expense on all available cores.
+     * 
+     * @param byCategory  True to group by category.
+     * @param period      The calendar period to group by.
+     * @param percentiles Percentiles to compute for each group, each between 0 and 100.
+     * @return The report.
+     */
+    public ExpenseReport generateReport(boolean byCategory, ExpenseReport.Period period, double... percentiles) {
+        long start = metrics.start();
+        ExpenseReport report = ExpenseReport.compute(store, byCategory, period,
+                Runtime.getRuntime().availableProcessors(), percentiles);
+        metrics.recordLookup(ExpenseMetrics.Source.FULL_SCAN, store.liveCount(), report.getRows().size());
+        metrics.stop(ExpenseMetrics.Operation.REPORT, start);
+        return report;
+    }
+
+    /**
+     * Returns the latencies, row counts and index hits recorded for this
+     * tracker's operations.
+     * 
+     * @return The metrics, which can be switched off, registered with JMX or printed periodically.
+     */
+    public ExpenseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the cache of repeated date-range and category search results,
+     * with its hit and miss counts.
+     * 
+     * @return The query cache.
+     */
+    public ExpenseQueryCache getQueryCache() {
+        return cache;
+    }
+
+    /**
+     * Replaces the query cache with an empty one of the given size. A limit
+     * of zero entries turns caching off.
+     * 
+     * @param maxEntries The most results to keep.
+     * @param maxBytes   The most estimated heap bytes the cached results may hold.
+     */
+    public void setQueryCache(int maxEntries, long maxBytes) {
+        cache = new ExpenseQueryCache(maxEntries, maxBytes);
+    }
+
+    /**
+     * Records a lookup answered straight from an index, where every row
+     * examined is returned.
+     */
+    private void record(ExpenseMetrics.Operation operation, ExpenseMetrics.Source source, int rows, long start) {
+        metrics.recordLookup(source, rows, rows);
+        metrics.stop(operation, start);
+    }
+
+    /**
+     * Returns a summary of index sizes and the cost of keeping them up to date.
+     * 
+     * @return The index report.
+     */
+    public String getIndexReport() {
+        return indexes.report();
+    }
+
     private static boolean isValidFilename(String filename) {
         return filename != null && !filename.trim().isEmpty() && filename.matches("^[a-zA-Z0-9._-]+\\.(txt|csv)$");
     }
@@ -0,0 +1,381 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Benchmark harness for the ExpenseTracker operations. Each operation runs
+ * against synthetic data from {@link ExpenseDataGenerator} at several sizes,
+ * with warmup iterations followed by timed measurement iterations, and
+ * reports throughput, average latency and allocation per operation. Results
+ * are printed as a table and written as CSV and JSON so that runs can be
+ * compared between releases.
+ *
+ * <pre>
+ * java -Xmx4g ExpenseTrackerBenchmark [--sizes=1000,100000,1000000,10000000]
+ *         [--ops=searchByDate,getTotalByCategory] [--warmup=3] [--iterations=5]
+ *         [--time-ms=1000] [--out=benchmark-results]
+ * </pre>
+ *
+ * <p>Allocation is measured per thread, so work a benchmark hands to other
+ * threads is not counted.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ExpenseTrackerBenchmark {
+
+    private static final long SEED = 42;
+    private static final int[] DEFAULT_SIZES = { 1_000, 10_000, 100_000, 1_000_000 };
+    private static final int BATCH_ROWS = 10_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink; // Consumes benchmark results so the JIT cannot drop the work
+
+    /**
+     * One benchmarked operation.
+     */
+    private interface Benchmark {
+        /**
+         * Prepares state before an iteration; not timed.
+         */
+        default void setup() throws IOException {
+        }
+
+        /**
+         * Runs the operation once.
+         *
+         * @return A value derived from the result.
+         */
+        long run();
+    }
+
+    /**
+     * The measurements of one operation at one data size.
+     */
+    private static class Result {
+        final String operation;
+        final int rows;
+        final long ops;
+        final double opsPerSecond;
+        final double opsPerSecondError;
+        final double averageNanos;
+        final double bytesPerOp;
+        final double allocMegabytesPerSecond;
+
+        Result(String operation, int rows, long ops, long nanos, long bytes, double[] iterationThroughput) {
+            this.operation = operation;
+            this.rows = rows;
+            this.ops = ops;
+            double mean = Arrays.stream(iterationThroughput).average().orElse(0);
+            double variance = Arrays.stream(iterationThroughput).map(t -> (t - mean) * (t - mean)).sum()
+                    / Math.max(1, iterationThroughput.length - 1);
+            this.opsPerSecond = mean;
+            this.opsPerSecondError = Math.sqrt(variance);
+            this.averageNanos = (double) nanos / ops;
+            this.bytesPerOp = (double) bytes / ops;
+            this.allocMegabytesPerSecond = bytes / (nanos / 1e9) / (1024.0 * 1024.0);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = DEFAULT_SIZES;
+        List<String> only = null;
+        int warmup = 3;
+        int iterations = 5;
+        long iterationNanos = 1_000_000_000L;
+        String out = "benchmark-results";
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--sizes=")) {
+                sizes = Arrays.stream(value.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+            } else if (arg.startsWith("--ops=")) {
+                only = Arrays.asList(value.split(","));
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(value);
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Math.max(1, Integer.parseInt(value));
+            } else if (arg.startsWith("--time-ms=")) {
+                iterationNanos = Long.parseLong(value) * 1_000_000L;
+            } else if (arg.startsWith("--out=")) {
+                out = value;
+            } else {
+                System.err.println("Unknown option: " + arg);
+                return;
+            }
+        }
+
+        File dir = Files.createTempDirectory("expense-bench").toFile();
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-34s %10s %14s %12s %14s %12s %12s%n", "Benchmark", "Rows", "ops/s", "± error",
+                "avg ns/op", "B/op", "alloc MB/s");
+        for (int rows : sizes) {
+            Map<String, Benchmark> benchmarks = benchmarks(rows, dir);
+            for (Map.Entry<String, Benchmark> entry : benchmarks.entrySet()) {
+                if (only != null && !only.contains(entry.getKey())) {
+                    continue;
+                }
+                Result result = measure(entry.getKey(), rows, entry.getValue(), warmup, iterations, iterationNanos);
+                results.add(result);
+                System.out.printf("%-34s %10d %14.1f %12.1f %14.1f %12.1f %12.1f%n", result.operation, result.rows,
+                        result.opsPerSecond, result.opsPerSecondError, result.averageNanos, result.bytesPerOp,
+                        result.allocMegabytesPerSecond);
+            }
+        }
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+
+        writeCsv(out + ".csv", results);
+        writeJson(out + ".json", results);
+        System.out.println("Results written to " + out + ".csv and " + out + ".json (sink " + (sink & 1) + ")");
+    }
+
+    /**
+     * Builds the benchmarks for one data size. Queries target values that
+     * exist in the generated data.
+     */
+    private static Map<String, Benchmark> benchmarks(int rows, File dir) throws IOException {
+        ExpenseTracker tracker = new ExpenseTracker(new ExpenseDataGenerator(SEED).generateStore(rows));
+        tracker.setQueryCache(0, 0); // Repeated arguments would otherwise time cache hits, not the lookups
+        ExpenseTracker cached = new ExpenseTracker(new ExpenseDataGenerator(SEED).generateStore(rows));
+        String textFile = new File(dir, "expenses-" + rows + ".txt").getPath();
+        String saveFile = new File(dir, "saved-" + rows + ".txt").getPath();
+        String columnFile = new File(dir, "saved-" + rows + ".expc").getPath();
+        new ExpenseDataGenerator(SEED).writeFile(textFile, rows);
+
+        ExpenseDataGenerator probe = new ExpenseDataGenerator(SEED);
+        String date = ExpenseStore.fromEpochDay(probe.nextDay());
+        double amount = ExpenseStore.fromCents(probe.nextCents());
+        String rangeStart = "2020-06-01";
+        String rangeEnd = "2020-06-30";
+
+        Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("addExpense", new Benchmark() {
+            private ExpenseTracker target;
+            private int next;
+
+            @Override
+            public void setup() {
+                target = new ExpenseTracker(new ExpenseDataGenerator(SEED).generateStore(rows));
+            }
+
+            @Override
+            public long run() {
+                target.addExpense(date, amount, ExpenseDataGenerator.CATEGORIES[next++ % 5]);
+                return next;
+            }
+        });
+        benchmarks.put("addExpenses.batch" + BATCH_ROWS, new Benchmark() {
+            private final String[] dates = new String[BATCH_ROWS];
+            private final double[] amounts = new double[BATCH_ROWS];
+            private final String[] categories = new String[BATCH_ROWS];
+            private ExpenseTracker target;
+
+            @Override
+            public void setup() {
+                ExpenseDataGenerator batch = new ExpenseDataGenerator(SEED + 1);
+                for (int i = 0; i < BATCH_ROWS; i++) {
+                    dates[i] = ExpenseStore.fromEpochDay(batch.nextDay());
+                    amounts[i] = ExpenseStore.fromCents(batch.nextCents());
+                    categories[i] = ExpenseDataGenerator.CATEGORIES[batch.nextCategory()];
+                }
+                target = new ExpenseTracker(new ExpenseDataGenerator(SEED).generateStore(rows));
+            }
+
+            @Override
+            public long run() {
+                return target.addExpenses(dates, amounts, categories).getAccepted();
+            }
+        });
+        benchmarks.put("searchByDate", () -> tracker.searchByDate(date).size());
+        benchmarks.put("searchByCategory.top",
+                () -> tracker.searchByCategory(ExpenseDataGenerator.CATEGORIES[0]).size());
+        benchmarks.put("searchByCategory.rare", () -> tracker
+                .searchByCategory(ExpenseDataGenerator.CATEGORIES[ExpenseDataGenerator.CATEGORIES.length - 1]).size());
+        benchmarks.put("searchByAmount", () -> tracker.searchByAmount(amount).size());
+        benchmarks.put("getTotalExpenses", () -> Double.doubleToLongBits(tracker.getTotalExpenses()));
+        benchmarks.put("getTotalByCategory", () -> Double.doubleToLongBits(tracker.getTotalByCategory("Travel")));
+        benchmarks.put("getExpensesInDateRange", () -> tracker.getExpensesInDateRange(rangeStart, rangeEnd).size());
+        benchmarks.put("searchByDate.cached", () -> cached.searchByDate(date).size());
+        benchmarks.put("searchByCategory.top.cached",
+                () -> cached.searchByCategory(ExpenseDataGenerator.CATEGORIES[0]).size());
+        benchmarks.put("getExpensesInDateRange.cached",
+                () -> cached.getExpensesInDateRange(rangeStart, rangeEnd).size());
+        benchmarks.put("query.top50", () -> tracker.query().top(50, Expense.BY_AMOUNT).list().size());
+        benchmarks.put("query.top50.dateRange", () -> tracker.query().between(rangeStart, rangeEnd)
+                .top(50, Expense.BY_AMOUNT).list().size());
+        benchmarks.put("topByCategory5", () -> tracker.topByCategory(5, Expense.BY_AMOUNT, true).size());
+        benchmarks.put("saveToFile", () -> {
+            tracker.saveToFile(saveFile);
+            return new File(saveFile).length();
+        });
+        ExpenseTracker loaded = new ExpenseTracker();
+        benchmarks.put("loadFromFile", () -> {
+            loaded.loadFromFile(textFile);
+            return loaded.getLastLoadStats().getRows();
+        });
+        benchmarks.put("saveColumnFile", () -> {
+            tracker.saveColumnFile(columnFile);
+            return new File(columnFile).length();
+        });
+        benchmarks.put("loadColumnFile", () -> {
+            loaded.loadColumnFile(columnFile);
+            return loaded.getLastLoadStats().getRows();
+        });
+        addKernelBenchmarks(benchmarks, rows);
+        return benchmarks;
+    }
+
+    /**
+     * Adds the column scan kernels, scalar and best available, next to the
+     * object loops they replace: summing getAmount() over Expense objects.
+     */
+    private static void addKernelBenchmarks(Map<String, Benchmark> benchmarks, int rows) {
+        ExpenseStore store = new ExpenseDataGenerator(SEED).generateStore(rows);
+        long[] cents = new long[rows];
+        int[] codes = new int[rows];
+        ArrayList<Expense> expenses = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            cents[i] = store.centsAt(i);
+            codes[i] = store.categoryCodeAt(i);
+            expenses.add(store.get(i));
+        }
+        int travel = store.findCategory("Travel");
+        long min = 5_000;
+        long max = 10_000;
+        int[] out = new int[rows];
+
+        benchmarks.put("objects.sum", () -> {
+            double total = 0;
+            for (Expense expense : expenses) {
+                total += expense.getAmount();
+            }
+            return Double.doubleToLongBits(total);
+        });
+        benchmarks.put("objects.sumByCategory", () -> {
+            double total = 0;
+            for (Expense expense : expenses) {
+                if (expense.getCategory().equals("Travel")) {
+                    total += expense.getAmount();
+                }
+            }
+            return Double.doubleToLongBits(total);
+        });
+        benchmarks.put("objects.amountRange", () -> {
+            int n = 0;
+            for (Expense expense : expenses) {
+                if (expense.getAmount() >= min / 100.0 && expense.getAmount() <= max / 100.0) {
+                    n++;
+                }
+            }
+            return n;
+        });
+        for (ScanKernels kernels : new ScanKernels[] { ScanKernels.scalar(), ScanKernels.get() }) {
+            if (kernels != ScanKernels.scalar() && ScanKernels.get() == ScanKernels.scalar()) {
+                break; // No vector kernels on this JVM
+            }
+            String prefix = "kernel." + kernels.name() + ".";
+            benchmarks.put(prefix + "sum", () -> kernels.sum(cents, 0, rows));
+            benchmarks.put(prefix + "sumByCategory", () -> kernels.sumWhereEquals(cents, codes, travel, 0, rows));
+            benchmarks.put(prefix + "countByCategory", () -> kernels.countEquals(codes, travel, 0, rows));
+            benchmarks.put(prefix + "selectCategory", () -> kernels.selectEquals(codes, travel, 0, rows, out));
+            benchmarks.put(prefix + "amountRange", () -> kernels.selectRange(cents, min, max, 0, rows, out));
+        }
+    }
+
+    /**
+     * Runs warmup iterations and then measured iterations. Each iteration
+     * runs the operation in growing batches until its time is up, so the
+     * clock is read rarely even for operations that take nanoseconds.
+     */
+    private static Result measure(String name, int rows, Benchmark benchmark, int warmup, int iterations,
+            long iterationNanos) throws IOException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Operations print status lines
+        try {
+            for (int i = 0; i < warmup; i++) {
+                benchmark.setup();
+                runIteration(benchmark, iterationNanos, null);
+            }
+            long totalOps = 0;
+            long totalNanos = 0;
+            long totalBytes = 0;
+            double[] throughput = new double[iterations];
+            long[] measured = new long[3];
+            for (int i = 0; i < iterations; i++) {
+                benchmark.setup();
+                runIteration(benchmark, iterationNanos, measured);
+                totalOps += measured[0];
+                totalNanos += measured[1];
+                totalBytes += measured[2];
+                throughput[i] = measured[0] / (measured[1] / 1e9);
+            }
+            return new Result(name, rows, totalOps, totalNanos, totalBytes, throughput);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void runIteration(Benchmark benchmark, long iterationNanos, long[] measured) {
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long ops = 0;
+        long batch = 1;
+        long elapsed;
+        do {
+            for (long i = 0; i < batch; i++) {
+                sink += benchmark.run();
+            }
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+            if (elapsed < iterationNanos / 10) {
+                batch *= 2;
+            }
+        } while (elapsed < iterationNanos);
+        if (measured != null) {
+            measured[0] = ops;
+            measured[1] = elapsed;
+            measured[2] = THREADS.getThreadAllocatedBytes(thread) - bytesBefore;
+        }
+    }
+
+    private static void writeCsv(String filename, List<Result> results) throws IOException {
+        try (PrintWriter writer = new PrintWriter(filename)) {
+            writer.println("benchmark,rows,ops,ops_per_s,ops_per_s_error,avg_ns_per_op,bytes_per_op,alloc_mb_per_s");
+            for (Result r : results) {
+                writer.printf(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f%n", r.operation, r.rows, r.ops, r.opsPerSecond,
+                        r.opsPerSecondError, r.averageNanos, r.bytesPerOp, r.allocMegabytesPerSecond);
+            }
+        }
+    }
+
+    private static void writeJson(String filename, List<Result> results) throws IOException {
+        try (PrintWriter writer = new PrintWriter(filename)) {
+            writer.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                writer.printf(Locale.ROOT, "  {\"benchmark\": \"%s\", \"rows\": %d, \"ops\": %d, \"opsPerSecond\": %.3f, "
+                        + "\"opsPerSecondError\": %.3f, \"averageNanos\": %.3f, \"bytesPerOp\": %.3f, "
+                        + "\"allocMegabytesPerSecond\": %.3f}%s%n", r.operation, r.rows, r.ops, r.opsPerSecond,
+                        r.opsPerSecondError, r.averageNanos, r.bytesPerOp, r.allocMegabytesPerSecond,
+                        i < results.size() - 1 ? "," : "");
+            }
+            writer.println("]");
+        }
+    }
+}
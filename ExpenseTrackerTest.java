@@ -64,6 +64,11 @@ public class ExpenseTrackerTest {
         newTracker.loadFromFile("test_expenses.txt");
         newTracker.viewExpenses();
 
+        // === Test 11: Index Maintenance Report ===
+        System.out.println("\n=== Test 11: Index Maintenance Report ===");
+        System.out.println(newTracker.getIndexReport());
+        System.out.println("Expenses on 2024-01-03 after reload: " + newTracker.searchByDate("2024-01-03"));
+
         System.out.println("\nAll tests completed successfully!");
     }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+/**
+ * A Fenwick (binary indexed) tree over a growable array of small counts,
+ * used by {@link ExpenseStore} to hold a 1 for each live row and a 0 for each
+ * deleted one. Counting the live rows before a row, and finding the row at a
+ * given live position, both take O(log n) instead of a scan.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class FenwickTree {
+
+    private int[] tree; // 1-based; tree[i] sums the entries (i - lowbit(i), i]
+    private int size;
+
+    /**
+     * Constructs a tree over the given number of entries, all set to one.
+     *
+     * @param size The number of entries.
+     */
+    public FenwickTree(int size) {
+        tree = new int[Math.max(16, size + 1)];
+        this.size = size;
+        for (int i = 1; i <= size; i++) {
+            tree[i] = i & -i; // A node covers lowbit(i) entries, each one
+        }
+    }
+
+    /**
+     * Appends an entry.
+     *
+     * @param value The entry's value.
+     */
+    public void append(int value) {
+        if (size + 1 == tree.length) {
+            tree = Arrays.copyOf(tree, tree.length * 2);
+        }
+        int i = ++size;
+        // The new node covers (i - lowbit(i), i]: its own value plus the nodes below it
+        tree[i] = value + prefixSum(i - 1) - prefixSum(i - (i & -i));
+    }
+
+    /**
+     * Adds to an entry.
+     *
+     * @param index The entry, from 0.
+     * @param delta The amount to add.
+     */
+    public void add(int index, int delta) {
+        for (int i = index + 1; i <= size; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Sums the first entries.
+     *
+     * @param count The number of entries to sum.
+     * @return The sum of entries [0, count).
+     */
+    public int prefixSum(int count) {
+        int sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Finds the entry at which the running sum first exceeds the given rank.
+     * With 0/1 entries this is the index of the (rank + 1)-th one.
+     *
+     * @param rank The rank, from 0.
+     * @return The entry index, or size() if the total is not above rank.
+     */
+    public int select(int rank) {
+        int pos = 0;
+        int remaining = rank;
+        for (int step = Integer.highestOneBit(Math.max(1, size)); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= size && tree[next] <= remaining) {
+                pos = next;
+                remaining -= tree[next];
+            }
+        }
+        return pos; // Entries [0, pos) sum to at most rank, so entry pos is the one
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The size.
+     */
+    public int size() {
+        return size;
+    }
+}
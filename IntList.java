@@ -0,0 +1,104 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A growable list of primitive ints, used for row id lists in the indexes
+ * so that each entry costs four bytes instead of a boxed Integer.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class IntList {
+
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructs an empty list.
+     */
+    public IntList() {
+        values = new int[4];
+    }
+
+    /**
+     * Constructs an empty list with room for the given number of values.
+     *
+     * @param capacity The initial capacity.
+     */
+    public IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Constructs a list over the first values of an array, without copying it.
+     *
+     * @param values The backing array; the list owns it from now on.
+     * @param size   The number of values in use.
+     */
+    IntList(int[] values, int size) {
+        this.values = values.length == 0 ? new int[1] : values;
+        this.size = size;
+    }
+
+    /**
+     * Appends a value to the end of the list.
+     *
+     * @param value The value to append.
+     */
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Returns the value at the given position.
+     *
+     * @param index The position to read.
+     * @return The value.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Returns the number of values in the list.
+     *
+     * @return The size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the list holds no values.
+     *
+     * @return True if empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every value whose bit is set in a bitmap, in one pass that
+     * keeps the remaining values in order.
+     *
+     * @param bits The values to remove.
+     * @return The number of values removed.
+     */
+    public int removeAll(BitSet bits) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            values[kept] = values[i];
+            kept += bits.get(values[i]) ? 0 : 1;
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+}
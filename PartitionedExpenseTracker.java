@@ -0,0 +1,571 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An expense tracker that keeps its history on disk as one snapshot file per
+ * calendar month and holds only the months it has recently used in memory.
+ *
+ * <p>A small manifest records each month's earliest and latest date, row
+ * count, total and per-category totals. Totals over whole months are
+ * answered from the manifest without reading any partition; a date range
+ * only loads the months it touches, and of those only the two at its edges
+ * when it asks for totals rather than rows.</p>
+ *
+ * <p>Loaded months are kept in least-recently-used order under a budget of
+ * rows. Loading a month that would go over the budget evicts the months
+ * used longest ago, saving them first if they were changed. New expenses go
+ * to their month's partition, which is loaded (or created) first.</p>
+ *
+ * <pre>
+ * directory/
+ *   manifest        "EXPM", version, then per month: month key, min day,
+ *                   max day, rows, total cents, and per category its name,
+ *                   total cents and count; a CRC32 of all of it at the end
+ *   2024-03.snap    an {@link ExpenseSnapshot} of the month's rows
+ * </pre>
+ *
+ * <p>Like {@link ExpenseTracker}, this class is not thread-safe.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class PartitionedExpenseTracker {
+
+    /** The four bytes "EXPM" read as a big-endian int. */
+    public static final int MANIFEST_MAGIC = 0x4558504D;
+
+    /** The current manifest format version. */
+    public static final int MANIFEST_VERSION = 1;
+
+    private static final String MANIFEST = "manifest";
+
+    /**
+     * One month of expenses: its manifest entry, and its rows while loaded.
+     */
+    private static final class Partition {
+        final int monthKey;
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        int rows;
+        long totalCents;
+        final LinkedHashMap<String, long[]> categories = new LinkedHashMap<>(); // Name to {cents, count}
+        ExpenseStore store; // Null while the month is only on disk
+        ExpenseTracker tracker;
+        boolean dirty;
+
+        Partition(int monthKey) {
+            this.monthKey = monthKey;
+        }
+
+        void onAdd(int epochDay, long cents, String category) {
+            minDay = Math.min(minDay, epochDay);
+            maxDay = Math.max(maxDay, epochDay);
+            rows++;
+            totalCents += cents;
+            long[] totals = categories.computeIfAbsent(category, c -> new long[2]);
+            totals[0] += cents;
+            totals[1]++;
+        }
+
+        boolean overlaps(int startDay, int endDay) {
+            return rows > 0 && minDay <= endDay && startDay <= maxDay;
+        }
+
+        boolean within(int startDay, int endDay) {
+            return startDay <= minDay && maxDay <= endDay;
+        }
+
+        String fileName() {
+            int year = Math.floorDiv(monthKey, 12);
+            return String.format("%04d-%02d.snap", year, monthKey - year * 12 + 1);
+        }
+    }
+
+    private final Path directory;
+    private final long maxLoadedRows;
+    private final TreeMap<Integer, Partition> partitions = new TreeMap<>();
+    private final CategoryDictionary categories = new CategoryDictionary(); // Shared by every partition's store
+    private final LinkedHashMap<Integer, Partition> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private long loadedRows;
+    private boolean manifestDirty;
+    private long loads;
+    private long evictions;
+    private long pruned;
+
+    /**
+     * Opens a partitioned tracker in a directory, reading its manifest if
+     * there is one. No partition is loaded until a query needs it.
+     *
+     * @param directory     The directory holding the manifest and partition files; created if missing.
+     * @param maxLoadedRows The most rows to keep loaded before evicting the least recently used months.
+     * @throws IOException if the directory cannot be created or the manifest is unreadable or corrupt.
+     */
+    public PartitionedExpenseTracker(String directory, long maxLoadedRows) throws IOException {
+        if (maxLoadedRows < 1) {
+            throw new IllegalArgumentException("Row budget must be positive: " + maxLoadedRows);
+        }
+        this.directory = Paths.get(directory);
+        this.maxLoadedRows = maxLoadedRows;
+        Files.createDirectories(this.directory);
+        if (Files.exists(this.directory.resolve(MANIFEST))) {
+            readManifest();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Writes
+
+    /**
+     * Adds a new expense to its month's partition.
+     *
+     * @param date     The date of the expense.
+     * @param amount   The amount spent.
+     * @param category The category of the expense.
+     * @throws IllegalArgumentException if the expense is invalid.
+     * @throws IOException if the month's partition cannot be loaded or an evicted one saved.
+     */
+    public void addExpense(String date, double amount, String category) throws IOException {
+        add(new Expense(date, amount, category));
+    }
+
+    /**
+     * Adds a batch of already validated expenses, each to its month's
+     * partition, for example to split an existing tracker with
+     * addExpenses(tracker.cursorAll().stream().iterator()).
+     *
+     * @param expenses The expenses to add.
+     * @return The number of expenses added.
+     * @throws IOException if a partition cannot be loaded or an evicted one saved.
+     */
+    public int addExpenses(Iterator<Expense> expenses) throws IOException {
+        // Group by month first, so each partition is loaded once and gets one block
+        TreeMap<Integer, ArrayList<Expense>> byMonth = new TreeMap<>();
+        int count = 0;
+        while (expenses.hasNext()) {
+            Expense expense = expenses.next();
+            byMonth.computeIfAbsent(ExpenseDates.monthKey(expense.getEpochDay()), m -> new ArrayList<>()).add(expense);
+            count++;
+        }
+        for (Map.Entry<Integer, ArrayList<Expense>> month : byMonth.entrySet()) {
+            Partition partition = partitions.computeIfAbsent(month.getKey(), Partition::new);
+            load(partition, month.getValue().size());
+            partition.tracker.addExpenses(month.getValue().iterator());
+            for (Expense expense : month.getValue()) {
+                partition.onAdd(expense.getEpochDay(), expense.getCents(), categories.intern(expense.getCategory()));
+            }
+            loadedRows += month.getValue().size();
+            partition.dirty = true;
+            manifestDirty = true;
+        }
+        return count;
+    }
+
+    private void add(Expense expense) throws IOException {
+        Partition partition = partitions.computeIfAbsent(ExpenseDates.monthKey(expense.getEpochDay()), Partition::new);
+        load(partition, 1);
+        partition.tracker.addExpenses(Collections.singletonList(expense).iterator());
+        partition.onAdd(expense.getEpochDay(), expense.getCents(), categories.intern(expense.getCategory()));
+        loadedRows++;
+        partition.dirty = true;
+        manifestDirty = true;
+    }
+
+    /**
+     * Saves every changed partition and the manifest.
+     *
+     * @throws IOException if a file cannot be written.
+     */
+    public void flush() throws IOException {
+        for (Partition partition : loaded.values()) {
+            if (partition.dirty) {
+                savePartition(partition);
+            }
+        }
+        if (manifestDirty) {
+            writeManifest();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Queries
+
+    /**
+     * Retrieves all expenses within a date range, loading only the months
+     * the range touches. Either bound may be null to leave that end open.
+     *
+     * @param startDate The start date (inclusive), or null.
+     * @param endDate   The end date (inclusive), or null.
+     * @return The matching expenses in date order.
+     * @throws IOException if a partition cannot be loaded.
+     */
+    public ArrayList<Expense> getExpensesInDateRange(String startDate, String endDate) throws IOException {
+        int startDay = startDate == null ? Integer.MIN_VALUE : ExpenseStore.toEpochDay(startDate);
+        int endDay = endDate == null ? Integer.MAX_VALUE : ExpenseStore.toEpochDay(endDate);
+        ArrayList<Expense> result = new ArrayList<>();
+        for (Partition partition : overlapping(startDay, endDay)) {
+            load(partition, 0);
+            String from = startDay <= partition.minDay ? null : ExpenseDates.format(startDay);
+            String to = endDay >= partition.maxDay ? null : ExpenseDates.format(endDay);
+            partition.tracker.viewDateRange(from, to).forEach(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the total of every expense, from the manifest alone.
+     *
+     * @return The total.
+     */
+    public double getTotalExpenses() {
+        long total = 0;
+        for (Partition partition : partitions.values()) {
+            total += partition.totalCents;
+        }
+        return ExpenseStore.fromCents(total);
+    }
+
+    /**
+     * Returns the total of one category, from the manifest alone.
+     *
+     * @param category The category.
+     * @return The total.
+     */
+    public double getTotalByCategory(String category) {
+        int code = categories.find(category);
+        if (code < 0) {
+            return 0.0;
+        }
+        String name = categories.name(code); // The spelling the manifest is keyed by
+        long total = 0;
+        for (Partition partition : partitions.values()) {
+            long[] totals = partition.categories.get(name);
+            total += totals == null ? 0 : totals[0];
+        }
+        return ExpenseStore.fromCents(total);
+    }
+
+    /**
+     * Returns the total of a calendar month, from the manifest alone.
+     *
+     * @param year  The year.
+     * @param month The month, from 1 to 12.
+     * @return The total.
+     */
+    public double getTotalByMonth(int year, int month) {
+        Partition partition = partitions.get(year * 12 + month - 1);
+        return partition == null ? 0.0 : ExpenseStore.fromCents(partition.totalCents);
+    }
+
+    /**
+     * Returns the total of a date range. Months wholly inside the range are
+     * taken from the manifest; only the months at its edges are loaded.
+     *
+     * @param startDate The start date (inclusive), or null.
+     * @param endDate   The end date (inclusive), or null.
+     * @return The total.
+     * @throws IOException if an edge partition cannot be loaded.
+     */
+    public double getTotalInDateRange(String startDate, String endDate) throws IOException {
+        long total = 0;
+        for (Map.Entry<String, long[]> entry : categoryTotals(startDate, endDate).entrySet()) {
+            total += entry.getValue()[0];
+        }
+        return ExpenseStore.fromCents(total);
+    }
+
+    /**
+     * Returns the total and count of each category within a date range,
+     * pruned by the manifest like {@link #getTotalInDateRange}.
+     *
+     * @param startDate The start date (inclusive), or null.
+     * @param endDate   The end date (inclusive), or null.
+     * @return Each category with its total, in order of first appearance.
+     * @throws IOException if an edge partition cannot be loaded.
+     */
+    public LinkedHashMap<String, Double> getCategoryTotals(String startDate, String endDate) throws IOException {
+        LinkedHashMap<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> entry : categoryTotals(startDate, endDate).entrySet()) {
+            result.put(entry.getKey(), ExpenseStore.fromCents(entry.getValue()[0]));
+        }
+        return result;
+    }
+
+    private LinkedHashMap<String, long[]> categoryTotals(String startDate, String endDate) throws IOException {
+        int startDay = startDate == null ? Integer.MIN_VALUE : ExpenseStore.toEpochDay(startDate);
+        int endDay = endDate == null ? Integer.MAX_VALUE : ExpenseStore.toEpochDay(endDate);
+        LinkedHashMap<String, long[]> totals = new LinkedHashMap<>();
+        for (Partition partition : overlapping(startDay, endDay)) {
+            if (partition.within(startDay, endDay)) {
+                for (Map.Entry<String, long[]> entry : partition.categories.entrySet()) {
+                    long[] sum = totals.computeIfAbsent(entry.getKey(), c -> new long[2]);
+                    sum[0] += entry.getValue()[0];
+                    sum[1] += entry.getValue()[1];
+                }
+                pruned++;
+                continue;
+            }
+            load(partition, 0);
+            ExpenseCursor cursor = partition.tracker.viewDateRange(ExpenseDates.format(Math.max(startDay,
+                    partition.minDay)), ExpenseDates.format(Math.min(endDay, partition.maxDay))).cursor();
+            while (cursor.next()) {
+                long[] sum = totals.computeIfAbsent(cursor.getCategory(), c -> new long[2]);
+                sum[0] += cursor.cents();
+                sum[1]++;
+            }
+        }
+        return totals;
+    }
+
+    private ArrayList<Partition> overlapping(int startDay, int endDay) {
+        ArrayList<Partition> result = new ArrayList<>();
+        int first = startDay == Integer.MIN_VALUE ? Integer.MIN_VALUE : ExpenseDates.monthKey(startDay);
+        int last = endDay == Integer.MAX_VALUE ? Integer.MAX_VALUE : ExpenseDates.monthKey(endDay);
+        if (first > last) {
+            return result;
+        }
+        for (Partition partition : partitions.subMap(first, true, last, true).values()) {
+            if (partition.overlaps(startDay, endDay)) {
+                result.add(partition);
+            }
+        }
+        return result;
+    }
+
+    // ---------------------------------------------------------------------
+    // Statistics
+
+    /**
+     * Returns the number of expenses across every partition, loaded or not.
+     *
+     * @return The row count.
+     */
+    public long size() {
+        long rows = 0;
+        for (Partition partition : partitions.values()) {
+            rows += partition.rows;
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the number of months with expenses.
+     *
+     * @return The partition count.
+     */
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Returns the number of months currently held in memory.
+     *
+     * @return The loaded partition count.
+     */
+    public int getLoadedPartitionCount() {
+        return loaded.size();
+    }
+
+    /**
+     * Returns the number of rows currently held in memory.
+     *
+     * @return The loaded row count, at most the budget except for a single month larger than it.
+     */
+    public long getLoadedRows() {
+        return loadedRows;
+    }
+
+    /**
+     * Returns the number of partitions read from disk.
+     *
+     * @return The load count.
+     */
+    public long getLoads() {
+        return loads;
+    }
+
+    /**
+     * Returns the number of partitions dropped from memory to stay within the budget.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of partitions a range total answered from the manifest.
+     *
+     * @return The pruned count.
+     */
+    public long getPruned() {
+        return pruned;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Partitions: %d months, %d rows; %d months (%d rows) loaded of a %d-row budget; "
+                + "%d loads, %d evictions, %d answered from the manifest", partitions.size(), size(), loaded.size(),
+                loadedRows, maxLoadedRows, loads, evictions, pruned);
+    }
+
+    // ---------------------------------------------------------------------
+    // Loading and eviction
+
+    /**
+     * Makes a partition resident and most recently used, evicting others
+     * until it and the rows about to be added fit the budget.
+     */
+    private void load(Partition partition, int adding) throws IOException {
+        if (partition.tracker != null) {
+            loaded.get(partition.monthKey); // Mark as most recently used
+            evict(partition, adding);
+            return;
+        }
+        int rows = partition.rows;
+        evict(partition, rows + adding);
+        ExpenseStore store = new ExpenseStore(categories);
+        File file = directory.resolve(partition.fileName()).toFile();
+        if (rows > 0) {
+            if (!file.exists() || ExpenseSnapshot.load(store, file.getPath()) != rows) {
+                // Saved, or never saved, apart from the manifest before the process stopped: trust the partition
+                System.err.println("Partition " + file.getName() + " does not match the manifest, recounting it");
+                recount(partition, store);
+                rows = partition.rows;
+            }
+            loads++;
+        }
+        partition.store = store;
+        partition.tracker = new ExpenseTracker(store);
+        partition.tracker.getMetrics().setEnabled(false);
+        partition.tracker.setQueryCache(0, 0); // Results are copied out, so caching them would only cost memory
+        loaded.put(partition.monthKey, partition);
+        loadedRows += rows;
+    }
+
+    private void evict(Partition keep, long needed) throws IOException {
+        Iterator<Partition> eldest = loaded.values().iterator();
+        while (loadedRows + needed > maxLoadedRows && eldest.hasNext()) {
+            Partition partition = eldest.next();
+            if (partition == keep) {
+                continue;
+            }
+            if (partition.dirty) {
+                // The manifest covers every month, so save them all before it
+                // can count rows that are only in memory
+                flush();
+            }
+            loadedRows -= partition.rows;
+            partition.store = null;
+            partition.tracker = null;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private void savePartition(Partition partition) throws IOException {
+        ExpenseSnapshot.save(partition.store, directory.resolve(partition.fileName()).toString());
+        partition.dirty = false;
+    }
+
+    private void recount(Partition partition, ExpenseStore store) {
+        partition.minDay = Integer.MAX_VALUE;
+        partition.maxDay = Integer.MIN_VALUE;
+        partition.rows = 0;
+        partition.totalCents = 0;
+        partition.categories.clear();
+        ExpenseCursor cursor = ExpenseCursor.ofAll(store);
+        while (cursor.next()) {
+            partition.onAdd(cursor.epochDay(), cursor.cents(), cursor.getCategory());
+        }
+        manifestDirty = true;
+    }
+
+    // ---------------------------------------------------------------------
+    // Manifest
+
+    private void writeManifest() throws IOException {
+        Path file = directory.resolve(MANIFEST);
+        Path tmp = directory.resolve(MANIFEST + ".tmp");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MANIFEST_MAGIC);
+        out.writeInt(MANIFEST_VERSION);
+        out.writeInt(partitions.size());
+        for (Partition partition : partitions.values()) {
+            out.writeInt(partition.monthKey);
+            out.writeInt(partition.minDay);
+            out.writeInt(partition.maxDay);
+            out.writeInt(partition.rows);
+            out.writeLong(partition.totalCents);
+            out.writeInt(partition.categories.size());
+            for (Map.Entry<String, long[]> entry : partition.categories.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue()[0]);
+                out.writeLong(entry.getValue()[1]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        try (BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(tmp.toFile()))) {
+            bytes.writeTo(stream);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        manifestDirty = false;
+    }
+
+    private void readManifest() throws IOException {
+        byte[] bytes = Files.readAllBytes(directory.resolve(MANIFEST));
+        if (bytes.length < 20) {
+            throw new IOException("Manifest is truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (ByteBuffer.wrap(bytes).getLong(bytes.length - 8) != crc.getValue()) {
+            throw new IOException("Manifest checksum mismatch");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+        if (in.readInt() != MANIFEST_MAGIC) {
+            throw new IOException("Not a partition manifest");
+        }
+        int version = in.readInt();
+        if (version != MANIFEST_VERSION) {
+            throw new IOException("Unsupported manifest version: " + version);
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Partition partition = new Partition(in.readInt());
+            partition.minDay = in.readInt();
+            partition.maxDay = in.readInt();
+            partition.rows = in.readInt();
+            partition.totalCents = in.readLong();
+            int categoryCount = in.readInt();
+            for (int c = 0; c < categoryCount; c++) {
+                String name = categories.intern(in.readUTF());
+                long[] totals = partition.categories.computeIfAbsent(name, n -> new long[2]);
+                totals[0] += in.readLong();
+                totals[1] += in.readLong();
+            }
+            partitions.put(partition.monthKey, partition);
+        }
+    }
+}
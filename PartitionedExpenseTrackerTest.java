@@ -0,0 +1,201 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Test class for PartitionedExpenseTracker to validate splitting a history
+ * into monthly partitions, answering totals from the manifest, loading only
+ * the months a range touches, eviction under the row budget, persistence of
+ * new expenses, and recovery from a stale or corrupt manifest or a
+ * missing partition file.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class PartitionedExpenseTrackerTest {
+
+    private static final int ROWS = 200_000;
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("expense-partitions").toFile();
+        ExpenseTracker source = new ExpenseTracker(new ExpenseDataGenerator(30).generateStore(ROWS));
+        try {
+            // 1. Test Splitting Into Months
+            testSplit(source, dir);
+
+            // 2. Test Totals From the Manifest
+            testManifestTotals(source, dir);
+
+            // 3. Test Ranges Load Only the Months They Touch
+            testRanges(source, dir);
+
+            // 4. Test Eviction Under the Row Budget
+            testEviction(dir);
+
+            // 5. Test New Expenses Persist
+            testPersistence(dir);
+
+            // 6. Test Stale and Corrupt Manifests
+            testRecovery(dir);
+
+            // 7. Test Months Never Saved Before a Stop
+            testUnsavedMonths();
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static long cents(double amount) {
+        return ExpenseStore.toCents(amount);
+    }
+
+    // Test Splitting Into Months
+    private static void testSplit(ExpenseTracker source, File dir) throws IOException {
+        System.out.println("\n=== Testing Splitting Into Months ===");
+        PartitionedExpenseTracker tracker = new PartitionedExpenseTracker(dir.getPath(), 20_000);
+        long start = System.nanoTime();
+        int added = tracker.addExpenses(source.cursorAll().stream().iterator());
+        tracker.flush();
+        System.out.printf("Split %d expenses in %.0f ms%n", added, (System.nanoTime() - start) / 1e6);
+        System.out.println("Months: " + tracker.getPartitionCount() + " (Expected: 120)");
+        System.out.println("Rows: " + tracker.size() + " (Expected: " + ROWS + ")");
+        System.out.println((tracker.getLoadedRows() <= 20_000 ? "✅" : "❌") + " Loaded rows within the budget: "
+                + tracker.getLoadedRows());
+        System.out.println("Files: " + dir.list().length + " (Expected: 121, one per month and the manifest)");
+    }
+
+    // Test Totals From the Manifest
+    private static void testManifestTotals(ExpenseTracker source, File dir) throws IOException {
+        System.out.println("\n=== Testing Totals From the Manifest ===");
+        PartitionedExpenseTracker tracker = new PartitionedExpenseTracker(dir.getPath(), 20_000);
+        boolean same = cents(tracker.getTotalExpenses()) == cents(source.getTotalExpenses())
+                && cents(tracker.getTotalByCategory("Rent")) == cents(source.getTotalByCategory("Rent"))
+                && cents(tracker.getTotalByMonth(2019, 7)) == cents(source.getTotalByMonth(2019, 7));
+        System.out.println((same ? "✅" : "❌") + " Overall, category and month totals match the source");
+        System.out.println("Partitions loaded: " + tracker.getLoads() + " (Expected: 0)");
+    }
+
+    // Test Ranges Load Only the Months They Touch
+    private static void testRanges(ExpenseTracker source, File dir) throws IOException {
+        System.out.println("\n=== Testing Ranges Load Only the Months They Touch ===");
+        PartitionedExpenseTracker tracker = new PartitionedExpenseTracker(dir.getPath(), 20_000);
+        ArrayList<Expense> quarter = tracker.getExpensesInDateRange("2024-01-01", "2024-03-31");
+        ArrayList<Expense> expected = source.getExpensesInDateRange("2024-01-01", "2024-03-31");
+        boolean same = quarter.size() == expected.size();
+        for (int i = 0; same && i < quarter.size(); i++) {
+            same = quarter.get(i).getEpochDay() == expected.get(i).getEpochDay()
+                    && quarter.get(i).getCents() == expected.get(i).getCents();
+        }
+        System.out.println((same ? "✅" : "❌") + " Quarter matches the source: " + quarter.size() + " expenses");
+        System.out.println("Partitions loaded: " + tracker.getLoads() + " (Expected: 3)");
+        tracker.getExpensesInDateRange("2024-02-10", "2024-02-20");
+        System.out.println("Loaded after a second range in February: " + tracker.getLoads() + " (Expected: 3)");
+
+        long loads = tracker.getLoads();
+        double total = tracker.getTotalInDateRange("2016-01-15", "2018-06-10");
+        long expectedCents = source.query().between("2016-01-15", "2018-06-10").sumCents();
+        System.out.println((cents(total) == expectedCents ? "✅" : "❌") + " Range total matches the source");
+        System.out.println("Loaded for the range total: " + (tracker.getLoads() - loads) + ", from the manifest: "
+                + tracker.getPruned() + " (Expected: 2 and 28)");
+
+        LinkedHashMap<String, Double> categories = tracker.getCategoryTotals("2016-01-15", "2018-06-10");
+        long sum = 0;
+        for (double value : categories.values()) {
+            sum += cents(value);
+        }
+        System.out.println("Categories in the range: " + categories.size() + ", summing to the range total: "
+                + (sum == expectedCents) + " (Expected: 20, true)");
+        System.out.println("Empty range: " + tracker.getExpensesInDateRange("2030-01-01", "2030-12-31").size()
+                + " (Expected: 0)");
+    }
+
+    // Test Eviction Under the Row Budget
+    private static void testEviction(File dir) throws IOException {
+        System.out.println("\n=== Testing Eviction Under the Row Budget ===");
+        PartitionedExpenseTracker tracker = new PartitionedExpenseTracker(dir.getPath(), 5_000);
+        int rows = tracker.getExpensesInDateRange(null, null).size();
+        System.out.println("Rows read across every month: " + rows + " (Expected: " + ROWS + ")");
+        System.out.println((tracker.getLoadedRows() <= 5_000 ? "✅" : "❌") + " " + tracker);
+        System.out.println("Evictions: " + tracker.getEvictions() + " (Expected: at least 115)");
+    }
+
+    // Test New Expenses Persist
+    private static void testPersistence(File dir) throws IOException {
+        System.out.println("\n=== Testing New Expenses Persist ===");
+        PartitionedExpenseTracker tracker = new PartitionedExpenseTracker(dir.getPath(), 5_000);
+        double before = tracker.getTotalByMonth(2017, 5);
+        tracker.addExpense("2017-05-31", 1_000.0, "Rent"); // A cold month
+        tracker.addExpense("2031-01-01", 12.5, "Food"); // A new month
+        tracker.getExpensesInDateRange(null, null); // Evicts both, saving them
+        tracker.addExpense("2031-01-02", 7.5, "Food"); // Loads 2031-01 back and changes it again
+        tracker.flush();
+
+        PartitionedExpenseTracker reopened = new PartitionedExpenseTracker(dir.getPath(), 5_000);
+        System.out.println("May 2017 grew by: " + (reopened.getTotalByMonth(2017, 5) - before) + " (Expected: 1000.0)");
+        System.out.println("January 2031: " + reopened.getExpensesInDateRange("2031-01-01", "2031-01-31")
+                + " (Expected: 12.50 and 7.50)");
+        System.out.println("Months: " + reopened.getPartitionCount() + " (Expected: 121)");
+    }
+
+    // Test Stale and Corrupt Manifests
+    private static void testRecovery(File dir) throws IOException {
+        System.out.println("\n=== Testing Stale and Corrupt Manifests ===");
+        // A partition saved after the manifest, as if the process stopped before flush
+        ExpenseStore store = new ExpenseStore();
+        store.add("2031-01-05", 3.0, "Food");
+        ExpenseSnapshot.save(store, new File(dir, "2031-01.snap").getPath());
+        PartitionedExpenseTracker tracker = new PartitionedExpenseTracker(dir.getPath(), 5_000);
+        System.out.println("January 2031 after reload: " + tracker.getExpensesInDateRange("2031-01-01", "2031-01-31")
+                + " (Expected: 3.00 after a recount warning)");
+        System.out.println("Month total now: " + tracker.getTotalByMonth(2031, 1) + " (Expected: 3.0)");
+
+        try (RandomAccessFile manifest = new RandomAccessFile(new File(dir, "manifest"), "rw")) {
+            manifest.seek(20);
+            int value = manifest.read();
+            manifest.seek(20);
+            manifest.write(value ^ 0xFF);
+        }
+        try {
+            new PartitionedExpenseTracker(dir.getPath(), 5_000);
+            System.out.println("❌ Corrupt manifest was accepted");
+        } catch (IOException e) {
+            System.out.println("✅ Rejected: " + e.getMessage());
+        }
+    }
+
+    // Test Months Never Saved Before a Stop
+    private static void testUnsavedMonths() throws IOException {
+        System.out.println("\n=== Testing Months Never Saved Before a Stop ===");
+        File dir = Files.createTempDirectory("expense-unsaved").toFile();
+        try {
+            PartitionedExpenseTracker tracker = new PartitionedExpenseTracker(dir.getPath(), 2);
+            tracker.addExpense("2024-01-05", 10.0, "Food");
+            tracker.addExpense("2024-02-05", 20.0, "Food");
+            tracker.addExpense("2024-03-05", 30.0, "Food"); // Evicts January; no flush follows
+
+            PartitionedExpenseTracker reopened = new PartitionedExpenseTracker(dir.getPath(), 2);
+            System.out.println("February after reload: " + reopened.getExpensesInDateRange("2024-02-01", "2024-02-10")
+                    + " (Expected: 20.00)");
+            System.out.println("Total: " + reopened.getTotalExpenses() + " (Expected: 30.0, March was never saved)");
+
+            new File(dir, "2024-02.snap").delete();
+            PartitionedExpenseTracker missing = new PartitionedExpenseTracker(dir.getPath(), 2);
+            System.out.println("February without its file: "
+                    + missing.getExpensesInDateRange("2024-02-01", "2024-02-10")
+                    + " (Expected: [] after a recount warning)");
+            System.out.println("Month total now: " + missing.getTotalByMonth(2024, 2) + " (Expected: 0.0)");
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Scan kernels over the primitive columns of an {@link ExpenseStore}: sums,
+ * masked sums and filters that emit matching row ids. This class holds the
+ * scalar loops; {@link #get()} returns the SIMD implementation in
+ * VectorScanKernels instead when the jdk.incubator.vector module is
+ * available, and these loops otherwise.
+ *
+ * <p>Kernels work on a range [from, to) of the columns. Filters write
+ * matching row ids to an output array that must have room for to - from
+ * ids, and return how many they wrote.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ScanKernels {
+
+    private static final ScanKernels SCALAR = new ScanKernels();
+    private static final ScanKernels BEST = loadBest();
+
+    /**
+     * Constructs the scalar kernels; subclasses override with faster loops.
+     */
+    protected ScanKernels() {
+    }
+
+    /**
+     * Returns the fastest kernels this JVM supports.
+     *
+     * @return The vector kernels if available, otherwise the scalar ones.
+     */
+    public static ScanKernels get() {
+        return BEST;
+    }
+
+    /**
+     * Returns the scalar kernels, for comparison and testing.
+     *
+     * @return The scalar kernels.
+     */
+    public static ScanKernels scalar() {
+        return SCALAR;
+    }
+
+    private static ScanKernels loadBest() {
+        if (Boolean.getBoolean("expense.scalarKernels")) {
+            return SCALAR;
+        }
+        try {
+            // Loaded by name so this class still links when the incubator module is absent
+            return (ScanKernels) Class.forName("VectorScanKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Returns a short name for the implementation.
+     *
+     * @return The name.
+     */
+    public String name() {
+        return "scalar";
+    }
+
+    /**
+     * Sums a range of values.
+     *
+     * @param values The column.
+     * @param from   The first row (inclusive).
+     * @param to     The last row (exclusive).
+     * @return The sum.
+     */
+    public long sum(long[] values, int from, int to) {
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            total += values[i];
+        }
+        return total;
+    }
+
+    /**
+     * Sums the values of the rows whose code equals the given one.
+     *
+     * @param values The value column.
+     * @param codes  The code column.
+     * @param code   The code to match.
+     * @param from   The first row (inclusive).
+     * @param to     The last row (exclusive).
+     * @return The sum over matching rows.
+     */
+    public long sumWhereEquals(long[] values, int[] codes, int code, int from, int to) {
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            if (codes[i] == code) {
+                total += values[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Counts the rows whose code equals the given one.
+     *
+     * @param codes The code column.
+     * @param code  The code to match.
+     * @param from  The first row (inclusive).
+     * @param to    The last row (exclusive).
+     * @return The number of matching rows.
+     */
+    public int countEquals(int[] codes, int code, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (codes[i] == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the ids of the rows whose code equals the given one.
+     *
+     * @param codes The code column.
+     * @param code  The code to match.
+     * @param from  The first row (inclusive).
+     * @param to    The last row (exclusive).
+     * @param out   Receives the matching row ids in ascending order.
+     * @return The number of ids written.
+     */
+    public int selectEquals(int[] codes, int code, int from, int to, int[] out) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            out[n] = i; // Written unconditionally and kept only on a match, so there is no branch to mispredict
+            n += codes[i] == code ? 1 : 0;
+        }
+        return n;
+    }
+
+    /**
+     * Writes the ids of the rows whose value lies in an inclusive range.
+     *
+     * @param values The column.
+     * @param min    The smallest accepted value.
+     * @param max    The largest accepted value.
+     * @param from   The first row (inclusive).
+     * @param to     The last row (exclusive).
+     * @param out    Receives the matching row ids in ascending order.
+     * @return The number of ids written.
+     */
+    public int selectRange(long[] values, long min, long max, int from, int to, int[] out) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            long value = values[i];
+            out[n] = i;
+            n += (value >= min) & (value <= max) ? 1 : 0;
+        }
+        return n;
+    }
+}
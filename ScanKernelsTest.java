@@ -0,0 +1,90 @@
+import java.util.Random;
+
+/**
+ * Test class for ScanKernels to validate that the vector kernels, when
+ * available, give the same results as the scalar loops.
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ScanKernelsTest {
+
+    public static void main(String[] args) {
+        ScanKernels scalar = ScanKernels.scalar();
+        ScanKernels best = ScanKernels.get();
+        System.out.println("Kernels in use: " + best.name());
+
+        // 1. Test Parity on Random Columns
+        testParity(scalar, best);
+
+        // 2. Test Store Scans
+        testStoreScans();
+    }
+
+    // Test Parity on Random Columns
+    private static void testParity(ScanKernels scalar, ScanKernels best) {
+        System.out.println("\n=== Testing Parity on Random Columns ===");
+        Random random = new Random(9);
+        int mismatches = 0;
+        for (int trial = 0; trial < 300; trial++) {
+            int length = random.nextInt(200);
+            long[] values = new long[length];
+            int[] codes = new int[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = random.nextInt(10_000) - (trial % 7 == 0 ? 5_000 : 0);
+                codes[i] = random.nextInt(4);
+            }
+            int from = length == 0 ? 0 : random.nextInt(length);
+            int to = from + random.nextInt(length - from + 1);
+            int code = random.nextInt(5);
+            long min = random.nextInt(5_000);
+            long max = min + random.nextInt(5_000);
+            int[] a = new int[length];
+            int[] b = new int[length];
+
+            boolean same = scalar.sum(values, from, to) == best.sum(values, from, to)
+                    && scalar.sumWhereEquals(values, codes, code, from, to)
+                            == best.sumWhereEquals(values, codes, code, from, to)
+                    && scalar.countEquals(codes, code, from, to) == best.countEquals(codes, code, from, to)
+                    && sameIds(a, scalar.selectEquals(codes, code, from, to, a), b,
+                            best.selectEquals(codes, code, from, to, b))
+                    && sameIds(a, scalar.selectRange(values, min, max, from, to, a), b,
+                            best.selectRange(values, min, max, from, to, b));
+            if (!same) {
+                mismatches++;
+            }
+        }
+        System.out.println((mismatches == 0 ? "✅" : "❌") + " Mismatched trials: " + mismatches + " of 300");
+    }
+
+    // Test Store Scans
+    private static void testStoreScans() {
+        System.out.println("\n=== Testing Store Scans ===");
+        ExpenseStore store = new ExpenseStore();
+        store.add("2024-01-01", 10.0, "Food");
+        store.add("2024-01-02", 25.5, "Rent");
+        store.add("2024-01-03", 40.0, "Food");
+        store.add("2024-01-04", 5.0, "Food");
+        int food = store.findCategory("Food");
+        System.out.println("Total cents: " + store.sumCents() + " (Expected: 8050)");
+        System.out.println("Food cents: " + store.sumCentsByCategory(food) + " (Expected: 5500)");
+        System.out.println("Food count: " + store.countByCategory(food) + " (Expected: 3)");
+        IntList between = store.selectAmountRange(1000, 3000);
+        System.out.println("Rows from $10 to $30: " + between.size() + " [" + between.get(0) + ", " + between.get(1)
+                + "] (Expected: 2 [0, 1])");
+        System.out.println("Food rows: " + store.selectCategory(food).size() + " (Expected: 3)");
+    }
+
+    private static boolean sameIds(int[] a, int countA, int[] b, int countB) {
+        if (countA != countB) {
+            return false;
+        }
+        for (int i = 0; i < countA; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
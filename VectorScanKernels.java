@@ -0,0 +1,87 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD versions of the {@link ScanKernels} loops, using the
+ * jdk.incubator.vector API at the widest vector shape the CPU prefers.
+ * Compile and run with {@code --add-modules jdk.incubator.vector}; without
+ * the module this class fails to load and the scalar kernels are used.
+ *
+ * <p>Only the reductions are vectorized: sums, masked sums and counts. The
+ * filters that write row ids keep the branch-free scalar loops they inherit.
+ * Without a compress instruction in this version of the API, writing out
+ * the matching lanes of a vector was measured slower than those loops.</p>
+ *
+ * @author logicthreader
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class VectorScanKernels extends ScanKernels {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    // Ints with the same lane count as LONGS, so code and amount lanes line up
+    private static final VectorSpecies<Integer> INTS_FOR_LONGS = VectorSpecies.of(int.class,
+            VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    /**
+     * Constructs the vector kernels.
+     */
+    public VectorScanKernels() {
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + LONGS.vectorBitSize();
+    }
+
+    @Override
+    public long sum(long[] values, int from, int to) {
+        LongVector acc = LongVector.zero(LONGS);
+        int i = from;
+        for (int bound = from + LONGS.loopBound(to - from); i < bound; i += LONGS.length()) {
+            acc = acc.add(LongVector.fromArray(LONGS, values, i));
+        }
+        long total = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            total += values[i];
+        }
+        return total;
+    }
+
+    @Override
+    public long sumWhereEquals(long[] values, int[] codes, int code, int from, int to) {
+        LongVector acc = LongVector.zero(LONGS);
+        int i = from;
+        for (int bound = from + LONGS.loopBound(to - from); i < bound; i += LONGS.length()) {
+            LongVector wideCodes = (LongVector) IntVector.fromArray(INTS_FOR_LONGS, codes, i)
+                    .convertShape(VectorOperators.I2L, LONGS, 0);
+            acc = acc.add(LongVector.fromArray(LONGS, values, i), wideCodes.eq(code));
+        }
+        long total = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            if (codes[i] == code) {
+                total += values[i];
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public int countEquals(int[] codes, int code, int from, int to) {
+        int count = 0;
+        int i = from;
+        for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+            count += IntVector.fromArray(INTS, codes, i).eq(code).trueCount();
+        }
+        for (; i < to; i++) {
+            if (codes[i] == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+}